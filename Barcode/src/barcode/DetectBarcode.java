@@ -6,8 +6,10 @@ import jjil.algorithm.Gray8Rgb;
 import jjil.algorithm.Gray8ConnComp;
 import jjil.algorithm.Gray8HistEq;
 import jjil.algorithm.Gray8HorizVertContrast;
+import jjil.algorithm.Gray8Pyramid;
 import jjil.algorithm.RgbAvgGray;
 import jjil.algorithm.RgbSubSample;
+import jjil.core.CompiledSequence;
 import jjil.core.Image;
 import jjil.core.Rect;
 import jjil.core.RgbImage;
@@ -20,8 +22,12 @@ import jjil.debug.Debug;
  */
 public class DetectBarcode {
 	private static final boolean bDebug = true;
+	private static final int nReducedHeight = 300;
+	private static final int nReducedWidth = 400;
 	int nMinArea;
 	Rect rDetected;
+	CompiledSequence seq = null;
+	CompiledSequence seqGray = null;
 	
 	/**
 	 * Construct a new DetectBarcode operation.
@@ -53,18 +59,60 @@ public class DetectBarcode {
      * @throws jjil.core.Error Should not throw this except in the case of coding error.
      */
 	public boolean push(RgbImage rgb) throws jjil.core.Error {
-		final int nReducedHeight = 300;
-		final int nReducedWidth = 400;
-		// build pipeline
-		Sequence seq = new Sequence();
-		seq.add(new RgbSubSample(nReducedWidth, nReducedHeight));
-		seq.add(new RgbAvgGray());
-		seq.add(new Gray8HistEq());
-		seq.add(new Gray8HorizVertContrast(5, 2, -8, 3));
-		seq.add(new Gray16Threshold(20));
-		seq.push(rgb);
+		// build pipeline the first time through; it is reused after that
+		if (this.seq == null) {
+			Sequence seq = new Sequence();
+			seq.add(new RgbSubSample(nReducedWidth, nReducedHeight));
+			seq.add(new RgbAvgGray());
+			seq.add(new Gray8HistEq());
+			seq.add(new Gray8HorizVertContrast(5, 2, -8, 3));
+			seq.add(new Gray16Threshold(20));
+			this.seq = seq.compile();
+		}
+		this.seq.push(rgb);
+		return findBarcode(this.seq.getFront(), rgb.getWidth(), rgb.getHeight());
+	}
+	
+	/**
+     * Tries to detect a barcode in the image last pushed into a
+     * Gray8Pyramid, which should be the RgbImage converted to gray with
+     * RgbAvgGray. The detection is done in the reduced image taken from
+     * the pyramid, so when other detectors share the pyramid the frame is
+     * only reduced once. The reduced image is averaged rather than
+     * subsampled, so the result can differ slightly from push(RgbImage).
+     * @param pyramid the pyramid, with the gray image pushed into it.
+     * @return true iff a barcode appeared to have been found.
+     * @throws jjil.core.Error if nothing has been pushed into the pyramid
+     * or the pushed image is smaller than the reduced size.
+     */
+	public boolean push(Gray8Pyramid pyramid) throws jjil.core.Error {
+		if (this.seqGray == null) {
+			Sequence seq = new Sequence();
+			seq.add(new Gray8HistEq());
+			seq.add(new Gray8HorizVertContrast(5, 2, -8, 3));
+			seq.add(new Gray16Threshold(20));
+			this.seqGray = seq.compile();
+		}
+		Image imGray = pyramid.getLevel(0);
+		// Gray8HistEq changes its input, and the pyramid's images are
+		// shared, so it gets a copy
+		this.seqGray.push(
+				(Image) pyramid.getImage(nReducedWidth, nReducedHeight).clone());
+		return findBarcode(
+				this.seqGray.getFront(), imGray.getWidth(), imGray.getHeight());
+	}
+	
+	/**
+	 * Finds the barcode in the thresholded edge image at reduced resolution.
+	 * @param imThresh the thresholded edge image.
+	 * @param nWidth the width of the full resolution image.
+	 * @param nHeight the height of the full resolution image.
+	 * @return true iff a barcode appeared to have been found.
+	 * @throws jjil.core.Error Should not throw this except in the case of coding error.
+	 */
+	private boolean findBarcode(Image imThresh, int nWidth, int nHeight) 
+		throws jjil.core.Error {
 		Gray8ConnComp gcc = new Gray8ConnComp();
-		Image imThresh = seq.getFront();
 		Gray8Rgb g2r = new Gray8Rgb();
 		g2r.push(imThresh);
 		if (DetectBarcode.bDebug) {
@@ -86,10 +134,10 @@ public class DetectBarcode {
 			// for speed. Stretch the rectangle back to its
 			// original size
 			Rect rThisDetected = new Rect(
-					(rReduced.getLeft() * rgb.getWidth()) / nReducedWidth,
-					(rReduced.getTop() * rgb.getHeight()) / nReducedHeight,
-					(rReduced.getWidth() * rgb.getWidth()) / nReducedWidth,
-					(rReduced.getHeight() * rgb.getHeight()) / nReducedHeight
+					(rReduced.getLeft() * nWidth) / nReducedWidth,
+					(rReduced.getTop() * nHeight) / nReducedHeight,
+					(rReduced.getWidth() * nWidth) / nReducedWidth,
+					(rReduced.getHeight() * nHeight) / nReducedHeight
 					);
 			if (rThisDetected.getArea() >= this.nMinArea) {
 				int nRatio = 3 * rThisDetected.getWidth() / rThisDetected.getHeight();
@@ -49,6 +49,9 @@ import jjil.debug.Debug;
  * @author webb
  */
 public class ReadBarcode {
+    // widest Canny operator in Gray8CannyHoriz's table; wider ones are
+    // computed with iterated box filters
+    private static final int MAX_TABLE_CANNY_WIDTH = 99;
     private int dBestLeftPos;
     private int dBestRightPos;
     private Gray8Image imageCropped;
@@ -124,13 +127,17 @@ public class ReadBarcode {
         }
         /* Then do edge detection. The cWidth of the Canny operator is set
          * based on the cropped cWidth, which is supposed to be the
-         * barcode cWidth.
+         * barcode cWidth. Barcodes too wide for the operator's table are
+         * computed with iterated box filters, which aren't limited to the
+         * table; narrower ones use the table as before, so their edges
+         * don't change.
          */
         int cCannyWidth = cWidth / 6;
-        Gray8CannyHoriz canny = new Gray8CannyHoriz(cCannyWidth);
+        Gray8CannyHoriz canny = new Gray8CannyHoriz(
+                cCannyWidth, cCannyWidth > MAX_TABLE_CANNY_WIDTH);
         /* Now apply the edge detection to the cropped mage
          */
-        canny.push(imageCropped.clone());
+        canny.push((Image) imageCropped.clone());
         /* And obtain the result 
          */
         imageResult = canny.getFront();
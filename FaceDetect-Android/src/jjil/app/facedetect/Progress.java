@@ -1,9 +1,9 @@
 package jjil.app.facedetect;
 
+import java.io.BufferedInputStream;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
 
-import jjil.algorithm.HaarClassifierCascade;
+import jjil.algorithm.HaarCompiledCascade;
 import android.app.Activity;
 import android.content.Intent;
 import android.os.Bundle;
@@ -16,11 +16,9 @@ public class Progress extends Activity {
         	Thread t = new Thread() {
         		public void run() {
         			try {
-				    	InputStream is = getResources().openRawResource(R.raw.hcsb_ser);
-				    	ObjectInputStream ios = new ObjectInputStream(is);
-				    	Object o = ios.readObject();
-				    	DetectHaarParam.setCascade((HaarClassifierCascade) o);
-				    	ios.close();
+				    	InputStream is = getResources().openRawResource(R.raw.hcsb_bin);
+				    	DetectHaarParam.setCascade(
+				    			HaarCompiledCascade.read(new BufferedInputStream(is)));
 				    	is.close();
 	        		} catch (Exception ex) {
 	                	ex.printStackTrace();
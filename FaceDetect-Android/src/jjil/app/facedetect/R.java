@@ -25,7 +25,8 @@ public final class R {
         public static final int progress=0x7f030002;
     }
     public static final class raw {
-        public static final int hcsb_ser=0x7f040000;
+        public static final int hcsb_bin=0x7f040000;
+        public static final int hcsb_ser=0x7f040001;
     }
     public static final class string {
         public static final int app_name=0x7f050000;
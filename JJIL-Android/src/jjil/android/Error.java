@@ -33,6 +33,10 @@ public class Error extends jjil.core.Error {
             Messages.getString("PIPELINE_NO_RESULT");
         Error.szMessage[jjil.core.Error.PACKAGE.CORE][jjil.core.ErrorCodes.PIPELINE_EMPTY_PUSH] =
             Messages.getString("PIPELINE_EMPTY_PUSH");
+        Error.szMessage[jjil.core.Error.PACKAGE.CORE][jjil.core.ErrorCodes.PIPELINE_TYPE_MISMATCH] =
+            Messages.getString("PIPELINE_TYPE_MISMATCH");
+        Error.szMessage[jjil.core.Error.PACKAGE.CORE][jjil.core.ErrorCodes.PIPELINE_NOT_BANDED] =
+            Messages.getString("PIPELINE_NOT_BANDED");
 
         Error.szMessage[jjil.core.Error.PACKAGE.ALGORITHM] = new String[jjil.algorithm.ErrorCodes.COUNT];
         Error.szMessage[jjil.core.Error.PACKAGE.ALGORITHM][jjil.algorithm.ErrorCodes.CONN_COMP_LABEL_COMPARETO_NULL] =
@@ -0,0 +1,108 @@
+package jjil.benchmark;
+/*
+ * BarcodeBenchmark.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import barcode.DetectBarcode;
+import barcode.ReadBarcode;
+import jjil.core.Rect;
+import jjil.core.RgbImage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * BarcodeBenchmark measures the barcode reader of the Barcode project, the
+ * way ReadBarJ uses it: DetectBarcode finds the barcode in a camera image,
+ * and ReadBarcode reads it from the rectangle found. The input is an EAN-13
+ * label drawn by SyntheticImages.barcode in a textured scene; the label is
+ * the same size in the larger images, as when a camera of higher resolution
+ * is held at the same distance from a wider scene.<p>
+ * read always reads from the rectangle the label was drawn in, so it measures
+ * the same work whether or not detect finds the label at a given size.
+ * @author webb
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BarcodeBenchmark {
+    /**
+     * The minimum barcode area, in pixels, as in ReadBarJ.
+     */
+    private static final int MIN_AREA = 20000;
+
+    /**
+     * Image size, as width x height.
+     */
+    @Param({"640x480", "1024x768", "1600x1200"})
+    public String size;
+
+    DetectBarcode db;
+    Rect rect;
+    RgbImage rgb;
+
+    @Setup
+    public void setup() {
+        int[] rnSize = SyntheticImages.parseSize(this.size);
+        this.rgb = SyntheticImages.barcode(rnSize[0], rnSize[1], 4);
+        this.rect = SyntheticImages.barcodeRect(rnSize[0], rnSize[1]);
+        this.db = new DetectBarcode(MIN_AREA);
+    }
+
+    @Benchmark
+    public boolean detect() throws jjil.core.Error {
+        return this.db.push(this.rgb);
+    }
+
+    /**
+     * The whole flow: detect, then read from the detected rectangle if the
+     * barcode was found.
+     */
+    @Benchmark
+    public String detectAndRead() throws jjil.core.Error {
+        if (!this.db.push(this.rgb)) {
+            return null;
+        }
+        ReadBarcode rb = new ReadBarcode();
+        rb.setRect(this.db.getRect());
+        rb.push(this.rgb);
+        return rb.getCode();
+    }
+
+    @Benchmark
+    public String read() throws jjil.core.Error {
+        ReadBarcode rb = new ReadBarcode();
+        rb.setRect(this.rect);
+        rb.push(this.rgb);
+        return rb.getCode();
+    }
+}
@@ -0,0 +1,73 @@
+package jjil.benchmark;
+/*
+ * FftBenchmark.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import jjil.algorithm.Gray8Fft;
+import jjil.core.Gray8Image;
+import jjil.core.Image;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * FftBenchmark measures the two-dimensional FFT of Gray8Fft. It has its own
+ * sizes because Gray8Fft only accepts images whose width and height are
+ * powers of two.
+ * @author webb
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FftBenchmark {
+    /**
+     * Image size, as width x height. Both must be powers of two.
+     */
+    @Param({"128x128", "256x256", "512x512"})
+    public String size;
+
+    Gray8Fft fft;
+    Gray8Image gray;
+
+    @Setup
+    public void setup() {
+        int[] rnSize = SyntheticImages.parseSize(this.size);
+        this.gray = SyntheticImages.gray(rnSize[0], rnSize[1], 2);
+        this.fft = new Gray8Fft();
+    }
+
+    @Benchmark
+    public Image gray8Fft() throws jjil.core.Error {
+        this.fft.push(this.gray);
+        return this.fft.getFront();
+    }
+}
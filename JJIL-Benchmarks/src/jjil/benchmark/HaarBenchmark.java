@@ -0,0 +1,137 @@
+package jjil.benchmark;
+/*
+ * HaarBenchmark.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import jjil.algorithm.Gray8DetectHaarFeatureScale;
+import jjil.algorithm.Gray8DetectHaarMultiScale;
+import jjil.algorithm.j2se.Gray8DetectHaarParallel;
+import jjil.core.Gray8Image;
+import jjil.core.Image;
+import jjil.core.PipelineStage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * HaarBenchmark measures face detection over a whole image with the frontal
+ * face cascade from FaceDetect-J2ME (HCSB.txt, copied into the benchmark jar
+ * by the build). The input contains no faces, so every window is rejected by
+ * some stage of the cascade, as almost all windows are in a real image.<p>
+ * The detector parameter selects the implementation:
+ * <ul>
+ * <li>multiScale: Gray8DetectHaarMultiScale, cropping each window.
+ * <li>multiScaleIntegral: Gray8DetectHaarMultiScale in integral image mode.
+ * <li>featureScale: Gray8DetectHaarFeatureScale.
+ * <li>parallel: jjil.algorithm.j2se.Gray8DetectHaarParallel, on a
+ * ForkJoinPool with one thread per processor.
+ * </ul>
+ * @author webb
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HaarBenchmark {
+    /**
+     * The finest scale searched.
+     */
+    private static final int MIN_SCALE = 1;
+
+    /**
+     * The coarsest scale searched. The detectors limit this to the scale at
+     * which the cascade still fits in the image.
+     */
+    private static final int MAX_SCALE = 40;
+
+    /**
+     * Which detector to use.
+     */
+    @Param({"multiScale", "multiScaleIntegral", "featureScale", "parallel"})
+    public String detector;
+
+    /**
+     * Image size, as width x height.
+     */
+    @Param({"320x240", "640x480", "1280x960"})
+    public String size;
+
+    Gray8Image gray;
+    ForkJoinPool pool;
+    PipelineStage stage;
+
+    @Setup
+    public void setup() throws jjil.core.Error, IOException {
+        int[] rnSize = SyntheticImages.parseSize(this.size);
+        this.gray = SyntheticImages.gray(rnSize[0], rnSize[1], 3);
+        InputStream is = HaarBenchmark.class.getResourceAsStream("HCSB.txt"); //$NON-NLS-1$
+        if (is == null) {
+            throw new IOException("HCSB.txt not found"); //$NON-NLS-1$
+        }
+        try {
+            if (this.detector.equals("multiScale")) { //$NON-NLS-1$
+                this.stage = new Gray8DetectHaarMultiScale(is, MIN_SCALE, MAX_SCALE);
+            } else if (this.detector.equals("multiScaleIntegral")) { //$NON-NLS-1$
+                Gray8DetectHaarMultiScale dh =
+                        new Gray8DetectHaarMultiScale(is, MIN_SCALE, MAX_SCALE);
+                dh.setIntegralImage(true);
+                this.stage = dh;
+            } else if (this.detector.equals("featureScale")) { //$NON-NLS-1$
+                this.stage = new Gray8DetectHaarFeatureScale(is, MIN_SCALE, MAX_SCALE);
+            } else if (this.detector.equals("parallel")) { //$NON-NLS-1$
+                this.pool = new ForkJoinPool();
+                this.stage = new Gray8DetectHaarParallel(
+                        is, MIN_SCALE, MAX_SCALE, this.pool);
+            } else {
+                throw new IllegalArgumentException(this.detector);
+            }
+        } finally {
+            is.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public Image detect() throws jjil.core.Error {
+        this.stage.push(this.gray);
+        return this.stage.getFront();
+    }
+}
@@ -0,0 +1,77 @@
+package jjil.benchmark;
+/*
+ * OcrBenchmark.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import jjil.core.Gray8Image;
+import jjil.core.Rect;
+import jjil.j2se.ocr.Gray8FindTextBlock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * OcrBenchmark measures the OCR front end from JJIL-OCR, which finds the
+ * block of text in a page image before its characters are matched.<p>
+ * CharMatcher, which matches the characters, is not measured here. It needs
+ * a PrototypesCollection loaded from Tesseract training files, which are
+ * not part of this tree, and features computed by classes that depend on
+ * jjil.j2se.algorithm.CircularList and Pair, which JJIL-OCR uses but which
+ * are not in JJIL-J2SE. A charMatcher benchmark belongs here once those are
+ * available.
+ * @author webb
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OcrBenchmark {
+    /**
+     * Image size, as width x height.
+     */
+    @Param({"640x480", "1280x960", "2048x1536"})
+    public String size;
+
+    Gray8FindTextBlock findTextBlock;
+    Gray8Image gray;
+
+    @Setup
+    public void setup() {
+        int[] rnSize = SyntheticImages.parseSize(this.size);
+        this.gray = SyntheticImages.text(rnSize[0], rnSize[1], 5);
+        this.findTextBlock = new Gray8FindTextBlock();
+    }
+
+    @Benchmark
+    public Rect findTextBlock() {
+        return this.findTextBlock.push(this.gray);
+    }
+}
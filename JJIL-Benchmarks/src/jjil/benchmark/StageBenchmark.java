@@ -0,0 +1,221 @@
+package jjil.benchmark;
+/*
+ * StageBenchmark.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import jjil.algorithm.Gray8Canny;
+import jjil.algorithm.Gray8CannyHoriz;
+import jjil.algorithm.Gray8ConnComp;
+import jjil.algorithm.Gray8GaussHoriz;
+import jjil.algorithm.Gray8HistEq;
+import jjil.algorithm.Gray8QmSum;
+import jjil.algorithm.Gray8Shrink;
+import jjil.algorithm.RgbAvgGray;
+import jjil.algorithm.j2se.ParallelHistLookup;
+import jjil.core.Gray8Image;
+import jjil.core.Image;
+import jjil.core.RgbImage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * StageBenchmark measures the single stages that dominate the time of the
+ * jjil pipelines, each pushed with one image at several sizes. The time for
+ * a push is the time to produce the stage's output from its input; the
+ * input is made once, before measuring.<p>
+ * Gray8HistEq changes its input, so its input is copied from the original
+ * before each push, outside the measured time. ParallelHistLookup writes
+ * into a separate output image instead, both computing each image's own
+ * table and in fused mode, where each image is mapped through the table
+ * from the one before in the same pass that counts its histogram.
+ * @author webb
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StageBenchmark {
+    /**
+     * Input image for Gray8HistEq, restored before every push.
+     */
+    @State(Scope.Thread)
+    public static class HistEqInput {
+        Gray8Image gray;
+
+        @Setup(Level.Invocation)
+        public void restore(StageBenchmark b) {
+            if (this.gray == null) {
+                this.gray = (Gray8Image) b.gray.clone();
+            } else {
+                System.arraycopy(
+                        b.gray.getData(), 0,
+                        this.gray.getData(), 0,
+                        this.gray.getData().length);
+            }
+        }
+    }
+
+    /**
+     * Image size, as width x height.
+     */
+    @Param({"320x240", "640x480", "1280x960"})
+    public String size;
+
+    /**
+     * Gaussian sigma times 10, for Gray8GaussHoriz, Gray8CannyHoriz, and
+     * Gray8Canny.
+     * These are measured both convolving with their tables and in iterated
+     * box mode, whose cost doesn't depend on sigma.
+     */
+    @Param({"20", "80"})
+    public int sigma;
+
+    Gray8Image blobs;
+    Gray8Image gray;
+    RgbImage rgb;
+
+    Gray8Canny cannyEdges;
+    Gray8CannyHoriz canny;
+    Gray8CannyHoriz cannyBox;
+    Gray8ConnComp connComp;
+    Gray8GaussHoriz gauss;
+    Gray8GaussHoriz gaussBox;
+    Gray8HistEq histEq;
+    ParallelHistLookup histEqParallel;
+    ParallelHistLookup histEqFused;
+    Gray8Image histEqOutput;
+    Gray8QmSum qmSum;
+    Gray8Shrink shrink;
+    RgbAvgGray avgGray;
+
+    @Setup
+    public void setup() throws jjil.core.Error {
+        int[] rnSize = SyntheticImages.parseSize(this.size);
+        this.rgb = SyntheticImages.rgb(rnSize[0], rnSize[1], 1);
+        this.gray = SyntheticImages.gray(rnSize[0], rnSize[1], 1);
+        this.blobs = SyntheticImages.blobs(rnSize[0], rnSize[1], 1);
+        this.cannyEdges = new Gray8Canny(this.sigma, 20, 60);
+        this.canny = new Gray8CannyHoriz(this.sigma);
+        this.cannyBox = new Gray8CannyHoriz(this.sigma, true);
+        this.connComp = new Gray8ConnComp();
+        this.gauss = new Gray8GaussHoriz(this.sigma);
+        this.gaussBox = new Gray8GaussHoriz(this.sigma, true);
+        this.histEq = new Gray8HistEq();
+        this.histEqParallel = new ParallelHistLookup(new Gray8HistEq());
+        this.histEqFused = new ParallelHistLookup(new Gray8HistEq(), true);
+        this.histEqOutput = new Gray8Image(rnSize[0], rnSize[1]);
+        this.qmSum = new Gray8QmSum();
+        // shrink by a non-integral factor, as a detector's scale step would
+        this.shrink = new Gray8Shrink(rnSize[0] * 2 / 3, rnSize[1] * 2 / 3);
+        this.avgGray = new RgbAvgGray();
+    }
+
+    /**
+     * The complete Canny edge detector, to compare with the cost of
+     * gray8CannyHoriz, which is only one of its directions.
+     */
+    @Benchmark
+    public Image gray8Canny() throws jjil.core.Error {
+        this.cannyEdges.push(this.gray);
+        return this.cannyEdges.getFront();
+    }
+
+    @Benchmark
+    public Image gray8CannyHoriz() throws jjil.core.Error {
+        this.canny.push(this.gray);
+        return this.canny.getFront();
+    }
+
+    @Benchmark
+    public Image gray8CannyHorizBox() throws jjil.core.Error {
+        this.cannyBox.push(this.gray);
+        return this.cannyBox.getFront();
+    }
+
+    /**
+     * Labels the components and sorts them by size, as DetectBarcode does.
+     */
+    @Benchmark
+    public int gray8ConnComp() throws jjil.core.Error {
+        this.connComp.push(this.blobs);
+        return this.connComp.getComponentCount();
+    }
+
+    @Benchmark
+    public Image gray8GaussHoriz() throws jjil.core.Error {
+        this.gauss.push(this.gray);
+        return this.gauss.getFront();
+    }
+
+    @Benchmark
+    public Image gray8GaussHorizBox() throws jjil.core.Error {
+        this.gaussBox.push(this.gray);
+        return this.gaussBox.getFront();
+    }
+
+    @Benchmark
+    public Image gray8HistEq(HistEqInput input) throws jjil.core.Error {
+        this.histEq.push(input.gray);
+        return this.histEq.getFront();
+    }
+
+    @Benchmark
+    public Image gray8HistEqParallel() throws jjil.core.Error {
+        this.histEqParallel.push(this.gray, this.histEqOutput);
+        return this.histEqParallel.getFront();
+    }
+
+    @Benchmark
+    public Image gray8HistEqFused() throws jjil.core.Error {
+        this.histEqFused.push(this.gray, this.histEqOutput);
+        return this.histEqFused.getFront();
+    }
+
+    @Benchmark
+    public Image gray8QmSum() throws jjil.core.Error {
+        this.qmSum.push(this.gray);
+        return this.qmSum.getFront();
+    }
+
+    @Benchmark
+    public Image gray8Shrink() throws jjil.core.Error {
+        this.shrink.push(this.gray);
+        return this.shrink.getFront();
+    }
+
+    @Benchmark
+    public Image rgbAvgGray() throws jjil.core.Error {
+        this.avgGray.push(this.rgb);
+        return this.avgGray.getFront();
+    }
+}
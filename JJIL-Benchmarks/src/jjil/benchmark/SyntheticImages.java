@@ -0,0 +1,327 @@
+package jjil.benchmark;
+/*
+ * SyntheticImages.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.util.Random;
+
+import jjil.core.Gray8Image;
+import jjil.core.Rect;
+import jjil.core.RgbImage;
+
+/**
+ * SyntheticImages makes the benchmark inputs. Every image is computed from
+ * a fixed seed, so a benchmark sees exactly the same pixels on every run and
+ * every machine, and results from different builds can be compared.<p>
+ * The images are meant to look enough like camera images that the stages
+ * do realistic work: a smooth background with shading, solid shapes with
+ * sharp edges, and a little noise. Pixel values are computed as unsigned
+ * 0..255 intensities and stored the way jjil stores them, so gray values
+ * are offset by Byte.MIN_VALUE.
+ * @author webb
+ */
+public final class SyntheticImages {
+    /**
+     * The EAN-13 code drawn by barcode. Its check digit is correct.
+     */
+    public static final String BARCODE = "5901234123457"; //$NON-NLS-1$
+
+    /**
+     * The widest label barcode draws. ReadBarcode sets its edge detector's
+     * sigma from the label width, and can't read labels much wider.
+     */
+    public static final int MAX_BARCODE_WIDTH = 480;
+
+    // EAN-13 left-hand odd parity ("L") digit codes, 7 modules each
+    private static final String[] L_CODES = {
+        "0001101", "0011001", "0010011", "0111101", "0100011", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+        "0110001", "0101111", "0111011", "0110111", "0001011"  //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+    };
+
+    // parity of the six left-hand digits, selected by the first digit
+    private static final String[] PARITY = {
+        "LLLLLL", "LLGLGG", "LLGGLG", "LLGGGL", "LGLLGG", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+        "LGGLLG", "LGGGLG", "LGLGLG", "LGLGGL", "LGGLGL"  //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+    };
+
+    private SyntheticImages() {
+    }
+
+    /**
+     * Make an RgbImage holding a printed EAN-13 barcode of BARCODE, centered
+     * in a textured scene and covering half its width, up to
+     * MAX_BARCODE_WIDTH pixels.
+     * @param cWidth image width.
+     * @param cHeight image height.
+     * @param nSeed random seed.
+     * @return the image.
+     */
+    public static RgbImage barcode(int cWidth, int cHeight, long nSeed) {
+        RgbImage rgb = rgb(cWidth, cHeight, nSeed);
+        Rect r = barcodeRect(cWidth, cHeight);
+        int[] rnData = rgb.getData();
+        String szModules = ean13Modules(BARCODE);
+        int nModuleWidth = r.getWidth() / (szModules.length() + 18);
+        // white label with a 9-module quiet zone on each side
+        fill(rnData, cWidth, r, 0xFFF0F0F0);
+        int nLeft = r.getLeft() + 9 * nModuleWidth;
+        for (int i=0; i<szModules.length(); i++) {
+            if (szModules.charAt(i) == '1') {
+                fill(
+                    rnData,
+                    cWidth,
+                    new Rect(nLeft + i * nModuleWidth,
+                        r.getTop() + r.getHeight() / 10,
+                        nModuleWidth,
+                        r.getHeight() * 8 / 10),
+                    0xFF101010);
+            }
+        }
+        addNoise(rnData, new Random(nSeed + 1), 12);
+        return rgb;
+    }
+
+    /**
+     * Returns the rectangle barcode draws the label in.
+     * @param cWidth image width.
+     * @param cHeight image height.
+     * @return the label rectangle.
+     */
+    public static Rect barcodeRect(int cWidth, int cHeight) {
+        int nWidth = Math.min(cWidth / 2, MAX_BARCODE_WIDTH);
+        int nHeight = nWidth * 3 / 4;
+        return new Rect(
+                (cWidth - nWidth) / 2,
+                (cHeight - nHeight) / 2,
+                nWidth,
+                nHeight);
+    }
+
+    /**
+     * Make a binary Gray8Image of scattered blobs, as a thresholded image
+     * would be: Byte.MAX_VALUE in the blobs and Byte.MIN_VALUE elsewhere.
+     * There are about 20 blobs per 100x100 pixels, some touching.
+     * @param cWidth image width.
+     * @param cHeight image height.
+     * @param nSeed random seed.
+     * @return the image.
+     */
+    public static Gray8Image blobs(int cWidth, int cHeight, long nSeed) {
+        Gray8Image gray = new Gray8Image(cWidth, cHeight, Byte.MIN_VALUE);
+        byte[] bData = gray.getData();
+        Random random = new Random(nSeed);
+        int nBlobs = cWidth * cHeight / 500;
+        for (int n=0; n<nBlobs; n++) {
+            int x = random.nextInt(cWidth);
+            int y = random.nextInt(cHeight);
+            int nRadius = 1 + random.nextInt(8);
+            for (int i=Math.max(0, y-nRadius); i<Math.min(cHeight, y+nRadius+1); i++) {
+                for (int j=Math.max(0, x-nRadius); j<Math.min(cWidth, x+nRadius+1); j++) {
+                    if ((i-y)*(i-y) + (j-x)*(j-x) <= nRadius*nRadius) {
+                        bData[i*cWidth+j] = Byte.MAX_VALUE;
+                    }
+                }
+            }
+        }
+        return gray;
+    }
+
+    /**
+     * Returns the 95 modules of an EAN-13 code, '1' for a bar.
+     */
+    private static String ean13Modules(String szCode) {
+        StringBuffer sb = new StringBuffer("101"); //$NON-NLS-1$
+        String szParity = PARITY[szCode.charAt(0) - '0'];
+        for (int i=1; i<=6; i++) {
+            String szL = L_CODES[szCode.charAt(i) - '0'];
+            if (szParity.charAt(i-1) == 'L') {
+                sb.append(szL);
+            } else {
+                // G code is the R code reversed
+                sb.append(new StringBuffer(invert(szL)).reverse());
+            }
+        }
+        sb.append("01010"); //$NON-NLS-1$
+        for (int i=7; i<=12; i++) {
+            // R code is the L code inverted
+            sb.append(invert(L_CODES[szCode.charAt(i) - '0']));
+        }
+        sb.append("101"); //$NON-NLS-1$
+        return sb.toString();
+    }
+
+    /**
+     * Make a Gray8Image of a textured scene.
+     * @param cWidth image width.
+     * @param cHeight image height.
+     * @param nSeed random seed.
+     * @return the image.
+     */
+    public static Gray8Image gray(int cWidth, int cHeight, long nSeed) {
+        int[] rnData = rgb(cWidth, cHeight, nSeed).getData();
+        Gray8Image gray = new Gray8Image(cWidth, cHeight);
+        byte[] bData = gray.getData();
+        for (int i=0; i<rnData.length; i++) {
+            int nRgb = rnData[i];
+            int nGray = (((nRgb >> 16) & 0xff) + ((nRgb >> 8) & 0xff) + (nRgb & 0xff)) / 3;
+            bData[i] = (byte) (nGray + Byte.MIN_VALUE);
+        }
+        return gray;
+    }
+
+    /**
+     * Make an RgbImage of a textured scene: a shaded background with
+     * solid rectangles and disks of random colors on it, plus noise.
+     * @param cWidth image width.
+     * @param cHeight image height.
+     * @param nSeed random seed.
+     * @return the image.
+     */
+    public static RgbImage rgb(int cWidth, int cHeight, long nSeed) {
+        RgbImage rgb = new RgbImage(cWidth, cHeight);
+        int[] rnData = rgb.getData();
+        Random random = new Random(nSeed);
+        // shaded background
+        for (int i=0; i<cHeight; i++) {
+            for (int j=0; j<cWidth; j++) {
+                int nR = 64 + 96 * j / cWidth;
+                int nG = 64 + 96 * i / cHeight;
+                int nB = 128 - 64 * (i + j) / (cWidth + cHeight);
+                rnData[i*cWidth+j] = 0xFF000000 | (nR << 16) | (nG << 8) | nB;
+            }
+        }
+        // shapes, scaled with the image so each size shows the same scene
+        int nShapes = 40;
+        for (int n=0; n<nShapes; n++) {
+            int nColor = 0xFF000000 | random.nextInt(0x1000000);
+            int x = random.nextInt(cWidth);
+            int y = random.nextInt(cHeight);
+            int nSize = Math.max(2, cWidth * (2 + random.nextInt(12)) / 100);
+            if (random.nextBoolean()) {
+                fill(rnData,
+                     cWidth,
+                     new Rect(x, y,
+                         Math.min(nSize, cWidth - x),
+                         Math.min(nSize * (1 + random.nextInt(3)) / 2, cHeight - y)),
+                     nColor);
+            } else {
+                for (int i=Math.max(0, y-nSize); i<Math.min(cHeight, y+nSize); i++) {
+                    for (int j=Math.max(0, x-nSize); j<Math.min(cWidth, x+nSize); j++) {
+                        if ((i-y)*(i-y) + (j-x)*(j-x) <= nSize*nSize) {
+                            rnData[i*cWidth+j] = nColor;
+                        }
+                    }
+                }
+            }
+        }
+        addNoise(rnData, random, 8);
+        return rgb;
+    }
+
+    /**
+     * Make a binary Gray8Image of a thresholded page, as Gray8FindTextBlock
+     * expects: a block of lines of character-sized marks, Byte.MAX_VALUE in
+     * the marks and Byte.MIN_VALUE elsewhere.
+     * @param cWidth image width.
+     * @param cHeight image height.
+     * @param nSeed random seed.
+     * @return the image.
+     */
+    public static Gray8Image text(int cWidth, int cHeight, long nSeed) {
+        Gray8Image gray = new Gray8Image(cWidth, cHeight, Byte.MIN_VALUE);
+        byte[] bData = gray.getData();
+        Random random = new Random(nSeed);
+        int nCharHeight = Math.max(8, cHeight / 30);
+        int nCharWidth = nCharHeight * 2 / 3;
+        int nLeft = cWidth / 8;
+        int nRight = cWidth - cWidth / 8;
+        for (int y = cHeight / 4; y + nCharHeight < cHeight * 3 / 4; y += nCharHeight * 2) {
+            for (int x = nLeft; x + nCharWidth < nRight; x += nCharWidth + nCharWidth / 4) {
+                if (random.nextInt(6) == 0) {
+                    continue; // a space
+                }
+                // a character: a few strokes in a cell
+                for (int nStroke = 0; nStroke < 3; nStroke++) {
+                    boolean bVert = random.nextBoolean();
+                    int nPos = random.nextInt(bVert ? nCharWidth : nCharHeight);
+                    int nThick = Math.max(1, nCharHeight / 8);
+                    for (int i=0; i<nCharHeight; i++) {
+                        for (int j=0; j<nCharWidth; j++) {
+                            int d = bVert ? j - nPos : i - nPos;
+                            if (d >= 0 && d < nThick) {
+                                bData[(y+i)*cWidth + x + j] = Byte.MAX_VALUE;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return gray;
+    }
+
+    /**
+     * Add uniform noise of up to +/- nAmplitude to each color component.
+     */
+    private static void addNoise(int[] rnData, Random random, int nAmplitude) {
+        for (int i=0; i<rnData.length; i++) {
+            int nRgb = rnData[i];
+            int nResult = 0xFF000000;
+            for (int nShift = 0; nShift <= 16; nShift += 8) {
+                int n = ((nRgb >> nShift) & 0xff) +
+                        random.nextInt(2 * nAmplitude + 1) - nAmplitude;
+                nResult |= Math.max(0, Math.min(255, n)) << nShift;
+            }
+            rnData[i] = nResult;
+        }
+    }
+
+    /**
+     * Fill a rectangle with a color.
+     */
+    private static void fill(int[] rnData, int cWidth, Rect r, int nColor) {
+        for (int i=r.getTop(); i<r.getBottom(); i++) {
+            for (int j=r.getLeft(); j<r.getRight(); j++) {
+                rnData[i*cWidth+j] = nColor;
+            }
+        }
+    }
+
+    /**
+     * Swap '0' and '1' in a module string.
+     */
+    private static String invert(String szModules) {
+        StringBuffer sb = new StringBuffer(szModules.length());
+        for (int i=0; i<szModules.length(); i++) {
+            sb.append(szModules.charAt(i) == '0' ? '1' : '0');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parse a size parameter of the form "640x480".
+     * @param szSize the size.
+     * @return the width and height.
+     */
+    public static int[] parseSize(String szSize) {
+        int nX = szSize.indexOf('x');
+        return new int[] {
+            Integer.parseInt(szSize.substring(0, nX)),
+            Integer.parseInt(szSize.substring(nX+1))
+        };
+    }
+}
@@ -35,6 +35,10 @@ public class Error extends jjil.core.Error {
             LS.getMessage("PIPELINE_NO_RESULT");
         Error.szMessage[jjil.core.Error.PACKAGE.CORE][jjil.core.ErrorCodes.PIPELINE_EMPTY_PUSH] =
             LS.getMessage("PIPELINE_EMPTY_PUSH");
+        Error.szMessage[jjil.core.Error.PACKAGE.CORE][jjil.core.ErrorCodes.PIPELINE_TYPE_MISMATCH] =
+            LS.getMessage("PIPELINE_TYPE_MISMATCH");
+        Error.szMessage[jjil.core.Error.PACKAGE.CORE][jjil.core.ErrorCodes.PIPELINE_NOT_BANDED] =
+            LS.getMessage("PIPELINE_NOT_BANDED");
 
         Error.szMessage[jjil.core.Error.PACKAGE.ALGORITHM] = new String[jjil.algorithm.ErrorCodes.COUNT];
         Error.szMessage[jjil.core.Error.PACKAGE.ALGORITHM][jjil.algorithm.ErrorCodes.CONN_COMP_LABEL_COMPARETO_NULL] =
@@ -0,0 +1,351 @@
+package jjil.algorithm.j2se;
+/*
+ * AsyncPipeline.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jjil.core.Image;
+import jjil.core.PipelineStage;
+
+/**
+ * AsyncPipeline runs the stages of a video pipeline on their own threads, so
+ * that several frames are processed at once: while one frame is in the
+ * detector, the next can be converted and the one after that captured.<p>
+ * Each stage passed to the constructor runs on its own thread. A stage can be
+ * a Sequence or CompiledSequence, so a group of quick stages can share a
+ * thread. The stages are connected by bounded queues of getQueueCapacity()
+ * frames. When a queue is full the stage feeding it waits, so a slow stage
+ * holds back the stages before it, and eventually put, rather than letting
+ * frames pile up. For a live camera feed, where the latest frame is the one
+ * that matters, setDropOldest makes put discard the oldest waiting frame
+ * instead of waiting.<p>
+ * Frames come out of take in the order they were put, each with its frame
+ * number. A frame on which a stage throws comes out with the error, in its
+ * place, and the pipeline goes on with the next frame.<p>
+ * Since a stage works on the next frame while later stages are still working
+ * on its last output, a stage must not reuse its output image from one push
+ * to the next (as Gray8HorizVar does, or a stage with an ImagePool whose
+ * outputs are released too early) unless the stages reading that output are
+ * on the same thread. Each stage is used only by its own thread.<p>
+ * put and close can be called from any thread; they wait for each other, but
+ * never for take, so one thread can put while another takes. 
+ * @author webb
+ */
+public class AsyncPipeline {
+    /**
+     * The output of the pipeline for one input frame.
+     */
+    public static final class Frame {
+        private final long nFrame;
+        private final Image image;
+        private final Throwable error;
+
+        Frame(long nFrame, Image image, Throwable error) {
+            this.nFrame = nFrame;
+            this.image = image;
+            this.error = error;
+        }
+
+        /**
+         * Returns the error thrown by the stage that failed on this frame.
+         * @return the error, usually a jjil.core.Error, or null if the frame
+         * was processed.
+         */
+        public Throwable getError() {
+            return this.error;
+        }
+
+        /**
+         * Returns the frame number: 0 for the first image put, 1 for the
+         * next, and so on.
+         * @return the frame number.
+         */
+        public long getFrameNumber() {
+            return this.nFrame;
+        }
+
+        /**
+         * Returns the output image.
+         * @return the output of the last stage, or null if there was an error.
+         */
+        public Image getImage() {
+            return this.image;
+        }
+    }
+
+    /**
+     * Runs one stage: takes frames from its input queue, pushes them, and
+     * puts the outputs on its output queue.
+     */
+    private static class Worker implements Runnable {
+        private final PipelineStage stage;
+        private final BlockingQueue<Frame> queueIn;
+        private final BlockingQueue<Frame> queueOut;
+
+        Worker(PipelineStage stage,
+                BlockingQueue<Frame> queueIn,
+                BlockingQueue<Frame> queueOut) {
+            this.stage = stage;
+            this.queueIn = queueIn;
+            this.queueOut = queueOut;
+        }
+
+        @Override
+        public void run() {
+            boolean bEnd = false;
+            try {
+                while (true) {
+                    Frame frame = this.queueIn.take();
+                    if (frame == END) {
+                        this.queueOut.put(END);
+                        bEnd = true;
+                        return;
+                    }
+                    if (frame.error != null) {
+                        this.queueOut.put(frame);
+                        continue;
+                    }
+                    process(frame);
+                }
+            } catch (InterruptedException ex) {
+                // shutdown
+            } finally {
+                if (!bEnd) {
+                    // don't leave take waiting forever if this thread dies
+                    this.queueOut.offer(END);
+                }
+            }
+        }
+
+        private void process(Frame frame) throws InterruptedException {
+            Frame frameOut;
+            try {
+                this.stage.push(frame.image);
+                if (this.stage.isMultiOutput()) {
+                    // pass each output on as a frame with the same number
+                    while (!this.stage.isEmpty()) {
+                        this.queueOut.put(new Frame(
+                                frame.nFrame, this.stage.getFront(), null));
+                    }
+                    return;
+                }
+                frameOut = new Frame(frame.nFrame, this.stage.getFront(), null);
+            } catch (Throwable t) {
+                // usually a jjil.core.Error, which isn't an Exception
+                frameOut = new Frame(frame.nFrame, null, t);
+            }
+            this.queueOut.put(frameOut);
+        }
+    }
+
+    // marks the end of the input
+    private static final Frame END = new Frame(-1, null, null);
+
+    private final PipelineStage[] rStage;
+    // the queues between the stages, set once by start
+    private volatile List<BlockingQueue<Frame>> queues = null;
+    private final List<Thread> threads = new CopyOnWriteArrayList<Thread>();
+    private final AtomicLong nDropped = new AtomicLong();
+    // held by put and close, so frame numbers follow the input queue order
+    // and nothing follows END; never held by take
+    private final ReentrantLock lockPut = new ReentrantLock();
+    private volatile boolean bDropOldest = false;
+    private boolean bClosed = false;    // guarded by lockPut
+    private volatile boolean bEnded = false;
+    private long nNextFrame = 0;        // guarded by lockPut
+    private int nQueueCapacity = 2;
+
+    /**
+     * Creates a new instance of AsyncPipeline. Each stage runs on its own
+     * thread once start is called.
+     * @param rStage the stages, in order. A stage can be a Sequence to run
+     * several stages on one thread.
+     */
+    public AsyncPipeline(PipelineStage... rStage) {
+        this.rStage = rStage.clone();
+    }
+
+    /**
+     * Signal the end of the input. Frames already put are still processed,
+     * and then take returns null.
+     * @throws InterruptedException if interrupted while waiting for space
+     * in the input queue.
+     * @throws IllegalStateException if the pipeline has not been started.
+     */
+    public void close() throws InterruptedException {
+        List<BlockingQueue<Frame>> queues = getQueues();
+        this.lockPut.lockInterruptibly();
+        try {
+            if (!this.bClosed) {
+                queues.get(0).put(END);
+                this.bClosed = true;
+            }
+        } finally {
+            this.lockPut.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of frames discarded by put because the input queue
+     * was full and setDropOldest was set.
+     * @return the number of dropped frames.
+     */
+    public long getDroppedCount() {
+        return this.nDropped.get();
+    }
+
+    /**
+     * Returns the number of frames each queue between stages can hold.
+     * @return the queue capacity.
+     */
+    public int getQueueCapacity() {
+        return this.nQueueCapacity;
+    }
+
+    /**
+     * Put the next input frame into the pipeline. If the input queue is full,
+     * put waits for space, unless setDropOldest is set, in which case the
+     * oldest waiting frame is discarded.
+     * @param image the input image. It must not be changed until the first
+     * stage has processed it.
+     * @return the frame number of the image.
+     * @throws InterruptedException if interrupted while waiting for space.
+     * @throws IllegalStateException if the pipeline has not been started, or
+     * has been closed.
+     */
+    public long put(Image image) throws InterruptedException {
+        BlockingQueue<Frame> queue = getQueues().get(0);
+        this.lockPut.lockInterruptibly();
+        try {
+            if (this.bClosed) {
+                throw new IllegalStateException(toString());
+            }
+            Frame frame = new Frame(this.nNextFrame, image, null);
+            if (this.bDropOldest) {
+                while (!queue.offer(frame)) {
+                    if (queue.poll() != null) {
+                        this.nDropped.incrementAndGet();
+                    }
+                }
+            } else {
+                queue.put(frame);
+            }
+            return this.nNextFrame++;
+        } finally {
+            this.lockPut.unlock();
+        }
+    }
+    
+    // the queues, or IllegalStateException if not started
+    private List<BlockingQueue<Frame>> getQueues() {
+        List<BlockingQueue<Frame>> queues = this.queues;
+        if (queues == null) {
+            throw new IllegalStateException(toString());
+        }
+        return queues;
+    }
+
+    /**
+     * Set whether put discards the oldest waiting frame when the input
+     * queue is full, instead of waiting. This keeps the latency of a live
+     * camera feed low when the pipeline can't keep up.
+     * @param bDropOldest true to drop frames. Default is false.
+     */
+    public void setDropOldest(boolean bDropOldest) {
+        this.bDropOldest = bDropOldest;
+    }
+
+    /**
+     * Set the number of frames each queue between stages can hold. Larger
+     * queues smooth out variations in stage times, at the cost of latency
+     * and memory. This must be called before start.
+     * @param nQueueCapacity the queue capacity. Default is 2.
+     * @throws IllegalArgumentException if nQueueCapacity is not positive.
+     */
+    public synchronized void setQueueCapacity(int nQueueCapacity) {
+        if (nQueueCapacity <= 0) {
+            throw new IllegalArgumentException(Integer.toString(nQueueCapacity));
+        }
+        this.nQueueCapacity = nQueueCapacity;
+    }
+
+    /**
+     * Stop the threads running the stages, discarding frames in the
+     * pipeline. This should be called if the pipeline is abandoned before
+     * close and take have finished it.
+     */
+    public void shutdown() {
+        for (Thread thread: this.threads) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Start the threads running the stages.
+     * @throws IllegalStateException if the pipeline has already been started.
+     */
+    public synchronized void start() {
+        if (this.queues != null) {
+            throw new IllegalStateException(toString());
+        }
+        List<BlockingQueue<Frame>> queues = new ArrayList<BlockingQueue<Frame>>();
+        for (int i=0; i<=this.rStage.length; i++) {
+            queues.add(new ArrayBlockingQueue<Frame>(this.nQueueCapacity));
+        }
+        this.queues = Collections.unmodifiableList(queues);
+        for (int i=0; i<this.rStage.length; i++) {
+            Thread thread = new Thread(
+                    new Worker(this.rStage[i], queues.get(i), queues.get(i+1)),
+                    "AsyncPipeline " + i + " " + this.rStage[i].toString());
+            thread.setDaemon(true);
+            this.threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Get the next output frame, in the order the frames were put, waiting
+     * for it if necessary.
+     * @return the next frame, or null if close has been called and every
+     * frame has been taken.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws IllegalStateException if the pipeline has not been started.
+     */
+    public Frame take() throws InterruptedException {
+        BlockingQueue<Frame> queue = getQueues().get(this.rStage.length);
+        if (this.bEnded) {
+            return null;
+        }
+        Frame frame = queue.take();
+        if (frame == END) {
+            this.bEnded = true;
+            // pass the end on to any other thread waiting in take
+            queue.offer(END);
+            return null;
+        }
+        return frame;
+    }
+}
@@ -31,8 +31,8 @@ import java.util.Enumeration;
 
 import jjil.algorithm.ErrorCodes;
 import jjil.algorithm.Gray8Crop;
+import jjil.algorithm.Gray8Pyramid;
 import jjil.algorithm.Gray8RectStretch;
-import jjil.algorithm.Gray8Shrink;
 import jjil.core.Error;
 import jjil.core.Gray8Image;
 import jjil.core.Image;
@@ -108,6 +108,24 @@ public class Gray8DetectHaarMultiScale extends PipelineStage {
      * @throws jjil.core.Error if image is too small
      */
     public void detect(Gray8Image imGray) throws jjil.core.Error {
+        // the pyramid is made for each image and not kept, so the scaled
+        // images and the input aren't held on to after detect returns
+        Gray8Pyramid pyramid = new Gray8Pyramid(
+                Gray8Pyramid.MEAN, (int) (this.fScaleChange * 256));
+        pyramid.push(imGray);
+        detect(pyramid);
+    }
+    
+    /**
+     * Detect rectangles in the image last pushed into a Gray8Pyramid, taking
+     * the image at each scale from the pyramid. Detectors working on the same
+     * frame can share a pyramid so each scaled image is only made once.
+     * @param pyramid the pyramid, with the image pushed into it.
+     * @throws jjil.core.Error if nothing has been pushed into the pyramid or
+     * the image is too small
+     */
+    public void detect(Gray8Pyramid pyramid) throws jjil.core.Error {
+        Gray8Image imGray = pyramid.getLevel(0);
         this.rc = new RectCollection();
         
         if (imGray.getWidth() < this.hcc.getWidth() ||
@@ -128,9 +146,7 @@ public class Gray8DetectHaarMultiScale extends PipelineStage {
             int nTargetHeight = (int) (imGray.getHeight() / fScale);
             int nStepHoriz = Math.max(1, nTargetWidth / this.nStep);
             int nStepVert = Math.max(1, nTargetHeight / this.nStep);
-            Gray8Shrink gs = new Gray8Shrink(nTargetWidth, nTargetHeight);
-            gs.push(imGray);
-            Gray8Image imShrunk = (Gray8Image) gs.getFront();
+            Gray8Image imShrunk = pyramid.getImage(nTargetWidth, nTargetHeight);
             for (int i=0; i<imShrunk.getWidth()-this.hcc.getWidth(); i+=nStepHoriz) {
                 // compute left coordinate in original image
                 int nXPos = (i * imGray.getWidth()) / imShrunk.getWidth();
@@ -162,7 +178,6 @@ public class Gray8DetectHaarMultiScale extends PipelineStage {
                                         imShrunk.getWidth(), 
                                     (this.hcc.getHeight() * imGray.getHeight()) / 
                                         imShrunk.getHeight());
-                            System.out.println("Found something " + r.toString());
                             this.rc.add(r);
                         }
                     }
@@ -0,0 +1,379 @@
+package jjil.algorithm.j2se;
+/*
+ * Gray8DetectHaarParallel.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import jjil.algorithm.ErrorCodes;
+import jjil.algorithm.Gray8IntegralImage;
+import jjil.algorithm.HaarClassifierCascade;
+import jjil.core.Error;
+import jjil.core.Gray8Image;
+import jjil.core.Image;
+import jjil.core.PipelineStage;
+import jjil.core.Rect;
+
+/**
+ * Gray8DetectHaarParallel applies a Haar cascade at multiple locations and
+ * multiple scales to an input Gray8Image, using all the processors in a 
+ * ForkJoinPool.<p>
+ * The search is done as in jjil.algorithm.Gray8DetectHaarFeatureScale: the
+ * integral image of the input is formed once, at full resolution, and each scale
+ * is searched by a copy of the Haar cascade scaled to that size. The work is
+ * divided into units of one scale and a band of window rows within that scale.
+ * The units are independent -- they share only the integral image and the scaled
+ * cascades, which are read-only while the search is going on -- so they can be
+ * evaluated in any order on any thread.<p>
+ * The detections from each unit are merged at the end in a fixed order,
+ * coarsest scale first and then from top to bottom, so the result doesn't
+ * depend on the number of threads or how the work was scheduled. The merge
+ * applies the same rule as the sequential detectors: a detection whose center
+ * lies inside an area already detected at a coarser scale is discarded. Within
+ * a scale, all windows are tested, so the parallel detector may find a few
+ * more overlapping windows than the sequential one, which skips windows near
+ * a recent detection.<p>
+ * The output on getFront is a mask the size of the input image with the 
+ * detected areas set to Byte.MAX_VALUE. The detected rectangles, in input
+ * image coordinates, are available from getDetectedRegions. The mask comes
+ * from the stage's ImagePool or the image given to push(Image, Image), if
+ * any, and the integral image is kept from push to push, so a stream of
+ * images of the same size doesn't allocate either.
+ * @author webb
+ */
+public class Gray8DetectHaarParallel extends PipelineStage {
+    /**
+     * One unit of work: one band of window rows at one scale.
+     */
+    private class Band {
+        HaarClassifierCascade hcc; // cascade scaled to this band's scale
+        int nXStep, nYStep; // steps between windows
+        int nYFirst, nYLast; // first and last (inclusive) window rows
+        
+        Band(HaarClassifierCascade hcc, int nXStep, int nYStep, 
+                int nYFirst, int nYLast) {
+            this.hcc = hcc;
+            this.nXStep = nXStep;
+            this.nYStep = nYStep;
+            this.nYFirst = nYFirst;
+            this.nYLast = nYLast;
+        }
+    }
+    
+    /**
+     * Evaluates a range of bands, splitting it in half until only one band
+     * is left. The results are concatenated left half first, so they come
+     * out in band order regardless of which thread did the work.
+     */
+    private class SearchTask extends RecursiveTask<List<Rect>> {
+        private static final long serialVersionUID = 1L;
+        private final List<Band> bands;
+        private final Gray8IntegralImage ii;
+        private final int nFirst, nLast; // range of bands, last exclusive
+        
+        SearchTask(List<Band> bands, Gray8IntegralImage ii, int nFirst, int nLast) {
+            this.bands = bands;
+            this.ii = ii;
+            this.nFirst = nFirst;
+            this.nLast = nLast;
+        }
+        
+        @Override
+        protected List<Rect> compute() {
+            if (this.nLast - this.nFirst == 1) {
+                try {
+                    return search(this.bands.get(this.nFirst), this.ii);
+                } catch (jjil.core.Error er) {
+                    throw new RuntimeException(er);
+                }
+            }
+            int nMid = (this.nFirst + this.nLast) / 2;
+            SearchTask left = new SearchTask(this.bands, this.ii, this.nFirst, nMid);
+            SearchTask right = new SearchTask(this.bands, this.ii, nMid, this.nLast);
+            right.fork();
+            List<Rect> result = left.compute();
+            result.addAll(right.join());
+            return result;
+        }
+    }
+    
+    // the Haar cascade at its trained size
+    private HaarClassifierCascade hcc;
+    // maximum scale is the largest factor the cascade is enlarged by
+    private int nMaxScale = 10;
+    // minimum scale is the smallest factor the cascade is enlarged by
+    private int nMinScale = 1;
+    // number of window rows in each band
+    private int nRowsPerBand = 4;
+    // scale change is the change in scale from one search to the next
+    // times 256
+    private int nScaleChange = 12 * 256 / 10;
+    // number of steps across the image at each scale
+    private int nStep = 30;
+    // pool that does the work
+    private ForkJoinPool pool;
+    // integral image of the input, reused while the image size is the same
+    private final Gray8IntegralImage ii = new Gray8IntegralImage();
+    // detected rectangles from the last image
+    private List<Rect> rects = Collections.emptyList();
+    // scaled Haar cascades, keyed by scale
+    private Map<Integer, HaarClassifierCascade> scaled = 
+        new HashMap<Integer, HaarClassifierCascade>();
+    
+    /**
+     * Creates a new instance of Gray8DetectHaarParallel using a ForkJoinPool
+     * with one thread per available processor.
+     * @param is Input stream containing the Haar cascade, in the format read
+     * by jjil.algorithm.HaarClassifierCascade.
+     * @param nMinScale Minimum (finest) scale at which features will be detected.
+     * A scale of 1 does detection with the cascade at its trained size.
+     * @param nMaxScale Maximum (coarsest) scale at which features will be detected.
+     * @throws jjil.core.Error if there is an error in the input file.
+     * @throws java.io.IOException if there is an I/O error reading the input file.
+     */
+    public Gray8DetectHaarParallel(InputStream is, int nMinScale, int nMaxScale)
+        throws jjil.core.Error, IOException
+    {
+        this(is, nMinScale, nMaxScale, new ForkJoinPool());
+    }
+    
+    /**
+     * Creates a new instance of Gray8DetectHaarParallel using a given pool.
+     * @param is Input stream containing the Haar cascade, in the format read
+     * by jjil.algorithm.HaarClassifierCascade.
+     * @param nMinScale Minimum (finest) scale at which features will be detected.
+     * @param nMaxScale Maximum (coarsest) scale at which features will be detected.
+     * @param pool the ForkJoinPool that will evaluate the cascade.
+     * @throws jjil.core.Error if there is an error in the input file.
+     * @throws java.io.IOException if there is an I/O error reading the input file.
+     */
+    public Gray8DetectHaarParallel(
+            InputStream is, 
+            int nMinScale, 
+            int nMaxScale, 
+            ForkJoinPool pool)
+        throws jjil.core.Error, IOException
+    {
+        this.nMinScale = nMinScale;
+        this.nMaxScale = nMaxScale;
+        this.pool = pool;
+        // load Haar classifier cascade and flatten it for fast evaluation
+        InputStreamReader isr = new InputStreamReader(is);
+        this.hcc = HaarClassifierCascade.fromStream(isr).compile();
+    }
+    
+    /**
+     * Divide the search into bands of window rows at each scale.
+     * @param ii the integral image of the input.
+     * @return the list of bands, coarsest scale first and then top to bottom.
+     * @throws jjil.core.Error if the cascade cannot be scaled.
+     */
+    private List<Band> makeBands(Gray8IntegralImage ii) throws jjil.core.Error {
+        List<Band> bands = new ArrayList<Band>();
+        int nScale = Math.min(this.nMaxScale * 256,
+                Math.min(ii.getWidth() * 256 / this.hcc.getWidth(),
+                ii.getHeight() * 256 / this.hcc.getHeight()));
+        while (nScale >= this.nMinScale * 256) {
+            HaarClassifierCascade hccScaled = this.scaled.get(nScale);
+            if (hccScaled == null) {
+                hccScaled = nScale == 256 ? this.hcc : this.hcc.scale(nScale);
+                this.scaled.put(nScale, hccScaled);
+            }
+            // bind the cascade to the integral image now so evaluation
+            // doesn't modify it
+            hccScaled.setStride(ii.getStride());
+            int nYMax = ii.getHeight() - hccScaled.getHeight();
+            if (ii.getWidth() >= hccScaled.getWidth() && nYMax >= 0) {
+                int nXStep = Math.max(Math.max(1, nScale >> 8), 
+                        ii.getWidth() / this.nStep);
+                int nYStep = Math.max(Math.max(1, nScale >> 8), 
+                        ii.getHeight() / this.nStep);
+                for (int nY = 0; nY <= nYMax; nY += nYStep * this.nRowsPerBand) {
+                    bands.add(new Band(hccScaled, nXStep, nYStep, nY, 
+                            Math.min(nYMax, nY + nYStep * (this.nRowsPerBand - 1))));
+                }
+            }
+            nScale = nScale * 256 / this.nScaleChange;
+        }
+        return bands;
+    }
+    
+    /**
+     * Get the rectangles detected in the last image. They are in order of 
+     * decreasing size, and top to bottom and left to right within a size.
+     * @return the detected rectangles.
+     */
+    public List<Rect> getDetectedRegions() {
+        return Collections.unmodifiableList(this.rects);
+    }
+    
+    /**
+     * Apply the Haar cascade at multiple scales in parallel and prepare a mask
+     * image showing where features were detected.
+     * @param image Input Gray8Image.
+     * @throws jjil.core.Error if the input is not a Gray8Image or is too small.
+     */
+    @Override
+    public void push(Image image) throws jjil.core.Error
+    {
+        if (!(image instanceof Gray8Image)) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.IMAGE_NOT_GRAY8IMAGE,
+                            image.toString(),
+                            null,
+                            null);
+        }
+        if (image.getWidth() < this.hcc.getWidth() ||
+            image.getHeight() < this.hcc.getHeight()) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.IMAGE_TOO_SMALL,
+                            image.toString(),
+                            this.hcc.toString(),
+                            null);
+        }
+        // Gray8IntegralImage keeps its arrays while the image size is
+        // the same, so only the first image of a size allocates them
+        Gray8IntegralImage ii = this.ii;
+        ii.push(image);
+        List<Band> bands = makeBands(ii);
+        List<Rect> found;
+        if (bands.isEmpty()) {
+            found = new ArrayList<Rect>();
+        } else {
+            try {
+                found = this.pool.invoke(new SearchTask(bands, ii, 0, bands.size()));
+            } catch (RuntimeException ex) {
+                jjil.core.Error er = findError(ex);
+                if (er != null) {
+                    throw er;
+                }
+                throw ex;
+            }
+        }
+        // merge: discard detections centered in an area already detected
+        Gray8Image imMask = newGray8Image(image.getWidth(), image.getHeight());
+        byte[] bMask = imMask.getData();
+        Arrays.fill(bMask, Byte.MIN_VALUE);
+        this.rects = new ArrayList<Rect>();
+        for (Rect r: found) {
+            int nCenter = (r.getTop() + r.getHeight() / 2) * imMask.getWidth() +
+                    r.getLeft() + r.getWidth() / 2;
+            if (bMask[nCenter] == Byte.MIN_VALUE) {
+                imMask.fill(r, Byte.MAX_VALUE);
+                this.rects.add(r);
+            }
+        }
+        super.setOutput(imMask);
+    }
+    
+    /**
+     * Find the jjil.core.Error a band threw among the causes of an exception.
+     * ForkJoinTask can wrap an exception thrown on a worker thread again
+     * when it reaches the caller, so the Error may be several causes down.
+     * @param t the exception.
+     * @return the Error, or null if there isn't one.
+     */
+    private static jjil.core.Error findError(Throwable t) {
+        while (t != null && !(t instanceof jjil.core.Error)) {
+            t = t.getCause();
+        }
+        return (jjil.core.Error) t;
+    }
+    
+    /**
+     * Search one band.
+     * @param band the band to search.
+     * @param ii the integral image of the input.
+     * @return the windows in the band where the cascade detected a feature.
+     * @throws jjil.core.Error if the cascade evaluation fails.
+     */
+    private List<Rect> search(Band band, Gray8IntegralImage ii) 
+        throws jjil.core.Error 
+    {
+        List<Rect> result = new ArrayList<Rect>();
+        int nWidth = band.hcc.getWidth();
+        int nHeight = band.hcc.getHeight();
+        for (int nY = band.nYFirst; nY <= band.nYLast; nY += band.nYStep) {
+            for (int nX = 0; nX <= ii.getWidth() - nWidth; nX += band.nXStep) {
+                if (band.hcc.eval(ii, nX, nY)) {
+                    result.add(new Rect(nX, nY, nWidth, nHeight));
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Set the pool that evaluates the cascade.
+     * @param pool the new ForkJoinPool.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+    
+    /**
+     * Set the number of window rows in each unit of work. Smaller bands 
+     * balance the load better across threads; larger bands have less overhead.
+     * @param nRowsPerBand the number of window rows. Default is 4.
+     * @throws jjil.core.Error if nRowsPerBand is not positive.
+     */
+    public void setRowsPerBand(int nRowsPerBand) throws jjil.core.Error {
+        if (nRowsPerBand <= 0) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            Integer.toString(nRowsPerBand),
+                            "1",
+                            null);
+        }
+        this.nRowsPerBand = nRowsPerBand;
+    }
+    
+    /**
+     * Set minimum and maximum scale.
+     * @param nMinScale The finest scale -- a scale factor of 1 applies the
+     * cascade at its trained size.
+     * @param nMaxScale The coarsest scale.
+     */
+    public void setScale(int nMinScale, int nMaxScale) {
+        this.nMinScale = nMinScale;
+        this.nMaxScale = nMaxScale;
+    }
+    
+    /**
+     * Set step. We move the detection window by an amount equal to
+     * this number divided into the image size, but never less than the
+     * scale factor.
+     * @param nStep the new step value. Default is 30.
+     */
+    public void setStep(int nStep) {
+        this.nStep = nStep;
+    }
+}
@@ -0,0 +1,354 @@
+package jjil.algorithm.j2se;
+/*
+ * HaarCascadeCodeGen.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.TreeSet;
+
+import jjil.algorithm.HaarClassifierCascade;
+import jjil.algorithm.HaarCompiledCascade;
+
+/**
+ * HaarCascadeCodeGen generates a Java class that evaluates one particular
+ * Haar cascade. Every stage of the cascade becomes straight-line code, with the
+ * rectangle offsets, weights, and thresholds as literal constants, so nothing
+ * is interpreted when a window is evaluated. Rectangle offsets are written
+ * relative to the index of the window's top-left corner in the integral image
+ * and the integral image stride, so the class works for any image size.<p>
+ * The generated class extends jjil.algorithm.HaarClassifierCascade and can be
+ * used anywhere a cascade loaded from a file can, for example by passing it to
+ * the Gray8DetectHaarMultiScale constructor. It only evaluates the cascade at
+ * its trained size; scale() throws an Error.<p>
+ * Usage:
+ * <pre>
+ * java jjil.algorithm.j2se.HaarCascadeCodeGen cascade.txt|cascade.bin
+ *     com.example.FaceCascade srcdir
+ * </pre>
+ * The input cascade can be in either the text format or the binary format of
+ * HaarCompiledCascade (recognized by its magic number). The class is written
+ * under srcdir in the directory for its package.
+ * @author webb
+ */
+public class HaarCascadeCodeGen {
+    // maximum number of weak classifiers in one generated method, to stay
+    // well under the 64K limit on the size of a method
+    private static final int MAX_WC_PER_METHOD = 100;
+
+    private int nBaseHeight, nBaseWidth;
+    private int[] rnRectWeight;
+    private int[] rnStageThreshold;
+    private int[] rnStageWc;
+    private int[] rnWcA;
+    private int[] rnWcB;
+    private int[] rnWcRect;
+    private int[] rnWcThreshold;
+    private short[] rsRect;
+
+    /**
+     * Creates a code generator for a compiled cascade.
+     * @param hcc the cascade.
+     * @throws jjil.core.Error if the cascade can't be read back.
+     * @throws java.io.IOException never; the cascade is written to memory.
+     */
+    public HaarCascadeCodeGen(HaarCompiledCascade hcc)
+        throws jjil.core.Error, IOException
+    {
+        // the binary format is the public description of the cascade
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        hcc.write(baos);
+        DataInputStream dis = new DataInputStream(
+                new ByteArrayInputStream(baos.toByteArray()));
+        int[] rnHeader = readInts(dis, HaarCompiledCascade.HEADER_INTS);
+        HaarCompiledCascade.checkHeader(rnHeader);
+        this.nBaseWidth = rnHeader[2];
+        this.nBaseHeight = rnHeader[3];
+        this.rnStageThreshold = readInts(dis, rnHeader[4]);
+        this.rnStageWc = readInts(dis, rnHeader[4] + 1);
+        this.rnWcThreshold = readInts(dis, rnHeader[5]);
+        this.rnWcA = readInts(dis, rnHeader[5]);
+        this.rnWcB = readInts(dis, rnHeader[5]);
+        this.rnWcRect = readInts(dis, rnHeader[5] + 1);
+        this.rnRectWeight = readInts(dis, rnHeader[6]);
+        this.rsRect = new short[4 * rnHeader[6]];
+        for (int i=0; i<this.rsRect.length; i++) {
+            this.rsRect[i] = dis.readShort();
+        }
+    }
+
+    /**
+     * Generates the Java source for a class that evaluates the cascade.
+     * @param pw where to write the source.
+     * @param szPackage the package of the class, or null or "" for the
+     * default package.
+     * @param szClass the simple name of the class.
+     */
+    public void generate(PrintWriter pw, String szPackage, String szClass) {
+        if (szPackage != null && szPackage.length() > 0) {
+            pw.println("package " + szPackage + ";"); //$NON-NLS-1$ //$NON-NLS-2$
+            pw.println();
+        }
+        pw.println("import jjil.algorithm.ErrorCodes;"); //$NON-NLS-1$
+        pw.println("import jjil.algorithm.Gray8IntegralImage;"); //$NON-NLS-1$
+        pw.println("import jjil.algorithm.HaarClassifierCascade;"); //$NON-NLS-1$
+        pw.println("import jjil.core.Error;"); //$NON-NLS-1$
+        pw.println("import jjil.core.Gray8Image;"); //$NON-NLS-1$
+        pw.println("import jjil.core.Gray8ViewImage;"); //$NON-NLS-1$
+        pw.println("import jjil.core.Image;"); //$NON-NLS-1$
+        pw.println();
+        pw.println("/**"); //$NON-NLS-1$
+        pw.println(" * Haar cascade for a " + this.nBaseWidth + "x" +  //$NON-NLS-1$ //$NON-NLS-2$
+                this.nBaseHeight + " window with " + //$NON-NLS-1$
+                this.rnStageThreshold.length + " stages."); //$NON-NLS-1$
+        pw.println(" * Generated by jjil.algorithm.j2se.HaarCascadeCodeGen; do not edit."); //$NON-NLS-1$
+        pw.println(" */"); //$NON-NLS-1$
+        pw.println("public class " + szClass + " extends HaarClassifierCascade {"); //$NON-NLS-1$ //$NON-NLS-2$
+        pw.println("    private static final long serialVersionUID = 1L;"); //$NON-NLS-1$
+        pw.println("    private transient Gray8IntegralImage ii = null;"); //$NON-NLS-1$
+        pw.println();
+        pw.println("    public " + szClass + "() {"); //$NON-NLS-1$ //$NON-NLS-2$
+        pw.println("        this.width = " + this.nBaseWidth + ";"); //$NON-NLS-1$ //$NON-NLS-2$
+        pw.println("        this.height = " + this.nBaseHeight + ";"); //$NON-NLS-1$ //$NON-NLS-2$
+        pw.println("    }"); //$NON-NLS-1$
+        pw.println();
+        generateEvalImage(pw);
+        generateEvalIntegral(pw);
+        for (int nStage=0; nStage<this.rnStageThreshold.length; nStage++) {
+            for (int nWc=this.rnStageWc[nStage], nPart=0;
+                nWc<this.rnStageWc[nStage+1];
+                nWc+=MAX_WC_PER_METHOD, nPart++) {
+                generateStagePart(pw, nStage, nPart, nWc,
+                        Math.min(nWc + MAX_WC_PER_METHOD, this.rnStageWc[nStage+1]));
+            }
+        }
+        pw.println("    public HaarClassifierCascade scale(int nScale) throws Error {"); //$NON-NLS-1$
+        pw.println("        throw new Error("); //$NON-NLS-1$
+        pw.println("                        Error.PACKAGE.ALGORITHM,"); //$NON-NLS-1$
+        pw.println("                        ErrorCodes.OBJECT_NOT_EXPECTED_TYPE,"); //$NON-NLS-1$
+        pw.println("                        this.toString(),"); //$NON-NLS-1$
+        pw.println("                        \"HaarCompiledCascade\","); //$NON-NLS-1$
+        pw.println("                        null);"); //$NON-NLS-1$
+        pw.println("    }"); //$NON-NLS-1$
+        pw.println();
+        pw.println("    public boolean isViewSupported() {"); //$NON-NLS-1$
+        pw.println("        return true;"); //$NON-NLS-1$
+        pw.println("    }"); //$NON-NLS-1$
+        pw.println();
+        pw.println("    public void setStride(int nStride) {"); //$NON-NLS-1$
+        pw.println("        // offsets are computed from the stride in eval"); //$NON-NLS-1$
+        pw.println("    }"); //$NON-NLS-1$
+        pw.println();
+        pw.println("    public String toString() {"); //$NON-NLS-1$
+        pw.println("        return \"(" + szClass + " \" + this.width + \" \" + this.height + \")\";"); //$NON-NLS-1$ //$NON-NLS-2$
+        pw.println("    }"); //$NON-NLS-1$
+        pw.println("}"); //$NON-NLS-1$
+    }
+
+    // eval(Image) forms the integral image of the input, which may be a
+    // view, and evaluates the cascade at its top-left corner
+    private void generateEvalImage(PrintWriter pw) {
+        pw.println("    public boolean eval(Image image) throws Error {"); //$NON-NLS-1$
+        pw.println("        if (!(image instanceof Gray8Image) &&"); //$NON-NLS-1$
+        pw.println("            !(image instanceof Gray8ViewImage)) {"); //$NON-NLS-1$
+        pw.println("            throw new Error("); //$NON-NLS-1$
+        pw.println("                            Error.PACKAGE.ALGORITHM,"); //$NON-NLS-1$
+        pw.println("                            ErrorCodes.IMAGE_NOT_GRAY8IMAGE,"); //$NON-NLS-1$
+        pw.println("                            image.toString(),"); //$NON-NLS-1$
+        pw.println("                            null,"); //$NON-NLS-1$
+        pw.println("                            null);"); //$NON-NLS-1$
+        pw.println("        }"); //$NON-NLS-1$
+        pw.println("        if (this.ii == null) {"); //$NON-NLS-1$
+        pw.println("            this.ii = new Gray8IntegralImage();"); //$NON-NLS-1$
+        pw.println("        }"); //$NON-NLS-1$
+        pw.println("        this.ii.push(image);"); //$NON-NLS-1$
+        pw.println("        return eval(this.ii, 0, 0);"); //$NON-NLS-1$
+        pw.println("    }"); //$NON-NLS-1$
+        pw.println();
+    }
+
+    // eval(Gray8IntegralImage, int, int) computes the window standard deviation
+    // and calls the stage methods in order, stopping at the first that fails
+    private void generateEvalIntegral(PrintWriter pw) {
+        pw.println("    public boolean eval(Gray8IntegralImage ii, int nX, int nY) throws Error {"); //$NON-NLS-1$
+        pw.println("        int sd = ii.getStdDev(nX, nY, " + this.nBaseWidth + ", " + //$NON-NLS-1$ //$NON-NLS-2$
+                this.nBaseHeight + ");"); //$NON-NLS-1$
+        pw.println("        int s = ii.getStride();"); //$NON-NLS-1$
+        pw.println("        int b = nY * s + nX;"); //$NON-NLS-1$
+        pw.println("        int[] d = ii.getSum();"); //$NON-NLS-1$
+        for (int nStage=0; nStage<this.rnStageThreshold.length; nStage++) {
+            int nParts = (this.rnStageWc[nStage+1] - this.rnStageWc[nStage] +
+                    MAX_WC_PER_METHOD - 1) / MAX_WC_PER_METHOD;
+            StringBuilder sb = new StringBuilder("        if ("); //$NON-NLS-1$
+            if (nParts == 0) {
+                sb.append("0"); //$NON-NLS-1$
+            }
+            for (int nPart=0; nPart<nParts; nPart++) {
+                if (nPart > 0) {
+                    sb.append(" + "); //$NON-NLS-1$
+                }
+                sb.append("stage").append(nStage).append('_').append(nPart) //$NON-NLS-1$
+                    .append("(d, b, s, sd)"); //$NON-NLS-1$
+            }
+            sb.append(" < ").append(this.rnStageThreshold[nStage]) //$NON-NLS-1$
+                .append(") return false;"); //$NON-NLS-1$
+            pw.println(sb.toString());
+        }
+        pw.println("        return true;"); //$NON-NLS-1$
+        pw.println("    }"); //$NON-NLS-1$
+        pw.println();
+    }
+
+    // generate one method summing weak classifiers nFirst to nLast-1 of a stage
+    private void generateStagePart(PrintWriter pw, int nStage, int nPart,
+            int nFirst, int nLast)
+    {
+        pw.println("    private static int stage" + nStage + "_" + nPart +  //$NON-NLS-1$ //$NON-NLS-2$
+                "(int[] d, int b, int s, int sd) {"); //$NON-NLS-1$
+        // compute the start of each row used once
+        TreeSet<Integer> rows = new TreeSet<Integer>();
+        for (int nRect=this.rnWcRect[nFirst]; nRect<this.rnWcRect[nLast]; nRect++) {
+            rows.add(Integer.valueOf(this.rsRect[4*nRect+1]));
+            rows.add(Integer.valueOf(this.rsRect[4*nRect+1] + this.rsRect[4*nRect+3]));
+        }
+        for (Integer row: rows) {
+            if (row.intValue() == 0) {
+                pw.println("        int r0 = b;"); //$NON-NLS-1$
+            } else {
+                pw.println("        int r" + row + " = b + " + row + " * s;"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            }
+        }
+        pw.println("        int sum = 0;"); //$NON-NLS-1$
+        pw.println("        int f;"); //$NON-NLS-1$
+        int nArea = this.nBaseWidth * this.nBaseHeight;
+        for (int nWc=nFirst; nWc<nLast; nWc++) {
+            StringBuilder sb = new StringBuilder("        f = "); //$NON-NLS-1$
+            if (this.rnWcRect[nWc] == this.rnWcRect[nWc+1]) {
+                sb.append("0"); //$NON-NLS-1$
+            }
+            for (int nRect=this.rnWcRect[nWc]; nRect<this.rnWcRect[nWc+1]; nRect++) {
+                int tlx = this.rsRect[4*nRect];
+                int tly = this.rsRect[4*nRect+1];
+                int w = this.rsRect[4*nRect+2];
+                int h = this.rsRect[4*nRect+3];
+                if (nRect > this.rnWcRect[nWc]) {
+                    sb.append(" + "); //$NON-NLS-1$
+                }
+                sb.append('(').append(this.rnRectWeight[nRect]).append(") * (") //$NON-NLS-1$
+                    .append("d[r").append(tly+h).append(" + ").append(tlx+w).append("] - ") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    .append("d[r").append(tly+h).append(" + ").append(tlx).append("] - ") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    .append("d[r").append(tly).append(" + ").append(tlx+w).append("] + ") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    .append("d[r").append(tly).append(" + ").append(tlx).append("])"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            }
+            sb.append(';');
+            pw.println(sb.toString());
+            pw.println("        sum += (f << 12) < (((" + this.rnWcThreshold[nWc] + //$NON-NLS-1$
+                    " * sd >> 6) * " + nArea + ") >> 6) ? " + //$NON-NLS-1$ //$NON-NLS-2$
+                    this.rnWcA[nWc] + " : " + this.rnWcB[nWc] + ";"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        pw.println("        return sum;"); //$NON-NLS-1$
+        pw.println("    }"); //$NON-NLS-1$
+        pw.println();
+    }
+
+    /**
+     * Reads a cascade in either the text or binary format.
+     * @param file the cascade file.
+     * @return the compiled cascade.
+     * @throws jjil.core.Error if the cascade can't be parsed.
+     * @throws java.io.IOException if the file can't be read.
+     */
+    private static HaarCompiledCascade load(File file)
+        throws jjil.core.Error, IOException
+    {
+        // binary cascades start with a magic number
+        boolean bBinary;
+        DataInputStream dis = new DataInputStream(new FileInputStream(file));
+        try {
+            bBinary = file.length() >= 4 && dis.readInt() == HaarCompiledCascade.MAGIC;
+        } finally {
+            dis.close();
+        }
+        if (bBinary) {
+            return HaarCascadeBinary.map(file);
+        }
+        InputStreamReader isr = new InputStreamReader(new FileInputStream(file));
+        try {
+            return HaarClassifierCascade.fromStream(isr).compile();
+        } finally {
+            isr.close();
+        }
+    }
+
+    /**
+     * Generates a Java class from a Haar cascade file.
+     * @param args the cascade file, the fully qualified class name, and the
+     * source directory.
+     */
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.err.println(
+                    "usage: java jjil.algorithm.j2se.HaarCascadeCodeGen " + //$NON-NLS-1$
+                    "<cascade> <class name> <source directory>"); //$NON-NLS-1$
+            System.exit(1);
+        }
+        String szPackage = ""; //$NON-NLS-1$
+        String szClass = args[1];
+        int nDot = args[1].lastIndexOf('.');
+        if (nDot >= 0) {
+            szPackage = args[1].substring(0, nDot);
+            szClass = args[1].substring(nDot+1);
+        }
+        File dir = new File(args[2], szPackage.replace('.', File.separatorChar));
+        try {
+            HaarCascadeCodeGen hccg = new HaarCascadeCodeGen(load(new File(args[0])));
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException(dir.toString());
+            }
+            PrintWriter pw = new PrintWriter(new OutputStreamWriter(
+                    new FileOutputStream(new File(dir, szClass + ".java")))); //$NON-NLS-1$
+            try {
+                hccg.generate(pw, szPackage, szClass);
+            } finally {
+                pw.close();
+            }
+        } catch (jjil.core.Error er) {
+            System.err.println(new jjil.j2se.Error(er).getLocalizedMessage());
+            System.exit(1);
+        } catch (IOException ex) {
+            System.err.println(ex.getLocalizedMessage());
+            System.exit(1);
+        }
+    }
+
+    // read an array of ints
+    private static int[] readInts(DataInputStream dis, int nCount) throws IOException {
+        int[] rn = new int[nCount];
+        for (int i=0; i<nCount; i++) {
+            rn[i] = dis.readInt();
+        }
+        return rn;
+    }
+}
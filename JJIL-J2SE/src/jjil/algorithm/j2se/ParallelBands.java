@@ -0,0 +1,285 @@
+package jjil.algorithm.j2se;
+/*
+ * ParallelBands.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import jjil.algorithm.ErrorCodes;
+import jjil.core.BandedStage;
+import jjil.core.Error;
+import jjil.core.Image;
+import jjil.core.PipelineStage;
+
+/**
+ * ParallelBands runs a BandedStage on a ForkJoinPool, dividing the image into
+ * bands of rows which are computed by different threads.<p>
+ * All the bands write into the single output image returned by the stage's
+ * startBands, each into its own rows, so there is nothing to stitch together
+ * afterwards. Each band reads the rows it needs directly from the input image,
+ * including the getHalo() rows above and below it, so the input is not
+ * copied either. Since every output row is computed by the same code as in
+ * the stage's own push, the output is identical to the serial output, no
+ * matter how many threads there are or how the bands were scheduled.<p>
+ * A stage is run in parallel by wrapping it:
+ * <pre>
+ *   seq.add(new ParallelBands(new Gray8GaussHoriz(nSigma)));
+ * </pre>
+ * The wrapped stage should not be used anywhere else at the same time.
+ * ParallelBands is itself a BandedStage, so it can be used in a
+ * StreamingSequence, where each chunk of rows is computed in parallel.
+ * @author webb
+ */
+public class ParallelBands extends PipelineStage implements BandedStage {
+    /**
+     * Computes a range of rows, splitting it in half until it is no more
+     * than one band high.
+     */
+    private class BandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Image imageInput;
+        private final Image imageOutput;
+        private final int nRowFirst, nRowLimit; // range of rows, last exclusive
+        private final int nBand; // rows per band
+
+        BandTask(Image imageInput, Image imageOutput,
+                int nRowFirst, int nRowLimit, int nBand) {
+            this.imageInput = imageInput;
+            this.imageOutput = imageOutput;
+            this.nRowFirst = nRowFirst;
+            this.nRowLimit = nRowLimit;
+            this.nBand = nBand;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.nRowLimit - this.nRowFirst <= this.nBand) {
+                try {
+                    stage.pushBand(this.imageInput, this.imageOutput,
+                            this.nRowFirst, this.nRowLimit);
+                } catch (jjil.core.Error er) {
+                    throw new RuntimeException(er);
+                }
+                return;
+            }
+            // split on a band boundary so the bands are the same no matter
+            // how the work is divided
+            int nMid = this.nRowFirst +
+                    (this.nRowLimit - this.nRowFirst) / this.nBand / 2 * this.nBand;
+            if (nMid == this.nRowFirst) {
+                nMid += this.nBand;
+            }
+            invokeAll(
+                    new BandTask(this.imageInput, this.imageOutput,
+                            this.nRowFirst, nMid, this.nBand),
+                    new BandTask(this.imageInput, this.imageOutput,
+                            nMid, this.nRowLimit, this.nBand));
+        }
+    }
+
+    // the stage being run
+    private final BandedStage stage;
+    // pool that does the work
+    private ForkJoinPool pool;
+    // number of rows in each band; 0 means chosen from the image height
+    private int nRowsPerBand = 0;
+
+    /**
+     * Creates a new instance of ParallelBands using a ForkJoinPool with one
+     * thread per available processor.
+     * @param stage the stage to run.
+     */
+    public ParallelBands(BandedStage stage) {
+        this(stage, new ForkJoinPool());
+    }
+
+    /**
+     * Creates a new instance of ParallelBands using a given pool, which can
+     * be shared with other stages.
+     * @param stage the stage to run.
+     * @param pool the ForkJoinPool that will compute the bands.
+     */
+    public ParallelBands(BandedStage stage, ForkJoinPool pool) {
+        this.stage = stage;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the number of rows in each band for an image. If it hasn't
+     * been set, there are about four bands per thread, so work-stealing can
+     * balance the load. Bands are never less than twice the halo high, so
+     * rows on the edge of the bands are not most of the work.
+     * @param cHeight the image height.
+     * @return the band height.
+     */
+    private int getBandHeight(int cHeight) {
+        if (this.nRowsPerBand > 0) {
+            return this.nRowsPerBand;
+        }
+        int nBands = 4 * this.pool.getParallelism();
+        int nBand = (cHeight + nBands - 1) / nBands;
+        return Math.max(nBand, Math.max(8, 2 * this.stage.getHalo()));
+    }
+
+    /**
+     * Returns the halo of the stage being run.
+     * @return the stage's halo.
+     */
+    @Override
+    public int getHalo() {
+        return this.stage.getHalo();
+    }
+
+    /**
+     * Returns the stage being run.
+     * @return the BandedStage.
+     */
+    public BandedStage getStage() {
+        return this.stage;
+    }
+
+    /**
+     * Returns the type of image the stage accepts, if it is a PipelineStage.
+     * @return the input type, or null.
+     */
+    @Override
+    public Class getInputType() {
+        if (this.stage instanceof PipelineStage) {
+            return ((PipelineStage) this.stage).getInputType();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the type of image the stage produces, if it is a PipelineStage.
+     * @return the output type, or null.
+     */
+    @Override
+    public Class getOutputType() {
+        if (this.stage instanceof PipelineStage) {
+            return ((PipelineStage) this.stage).getOutputType();
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the stage doesn't change its input.
+     * @return true if the stage is a PipelineStage whose input is read-only.
+     */
+    @Override
+    public boolean isInputReadOnly() {
+        return this.stage instanceof PipelineStage &&
+                ((PipelineStage) this.stage).isInputReadOnly();
+    }
+
+    /**
+     * Run the stage on an image, computing bands of rows in parallel.
+     * @param image the input image.
+     * @throws jjil.core.Error if the stage throws it.
+     */
+    @Override
+    public void push(Image image) throws jjil.core.Error {
+        Image imageOutput = this.stage.startBands(image);
+        pushBand(image, imageOutput, 0, image.getHeight());
+        super.setOutput(imageOutput);
+    }
+
+    /**
+     * Compute rows nRowFirst to nRowLimit - 1 of the output, dividing them
+     * into bands computed in parallel.
+     * @param imageInput the input image.
+     * @param imageOutput the output image, from startBands.
+     * @param nRowFirst the first row to compute.
+     * @param nRowLimit one past the last row to compute.
+     * @throws jjil.core.Error if the stage throws it.
+     */
+    @Override
+    public void pushBand(
+            Image imageInput,
+            Image imageOutput,
+            int nRowFirst,
+            int nRowLimit) throws jjil.core.Error {
+        int nBand = getBandHeight(imageInput.getHeight());
+        if (nRowLimit - nRowFirst <= nBand) {
+            // one band, so there's nothing to run in parallel
+            this.stage.pushBand(imageInput, imageOutput, nRowFirst, nRowLimit);
+            return;
+        }
+        try {
+            this.pool.invoke(new BandTask(
+                    imageInput, imageOutput, nRowFirst, nRowLimit, nBand));
+        } catch (RuntimeException ex) {
+            // ForkJoinTask can wrap a worker's exception again when it
+            // reaches the caller, so the Error may be several causes down
+            for (Throwable t = ex.getCause(); t != null; t = t.getCause()) {
+                if (t instanceof jjil.core.Error) {
+                    throw (jjil.core.Error) t;
+                }
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Check the input image and get the output image from the stage.
+     * @param imageInput the input image.
+     * @return the output image.
+     * @throws jjil.core.Error if the stage throws it.
+     */
+    @Override
+    public Image startBands(Image imageInput) throws jjil.core.Error {
+        return this.stage.startBands(imageInput);
+    }
+
+    /**
+     * Set the pool that computes the bands.
+     * @param pool the new ForkJoinPool.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Set the number of rows in each band. Smaller bands balance the load
+     * better across threads; larger bands have less overhead. By default the
+     * band height is chosen from the image height and the pool's parallelism.
+     * @param nRowsPerBand the number of rows.
+     * @throws jjil.core.Error if nRowsPerBand is not positive.
+     */
+    public void setRowsPerBand(int nRowsPerBand) throws jjil.core.Error {
+        if (nRowsPerBand <= 0) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            Integer.toString(nRowsPerBand),
+                            "1",
+                            null);
+        }
+        this.nRowsPerBand = nRowsPerBand;
+    }
+
+    /**
+     * Return a string describing the stage.
+     * @return the string.
+     */
+    @Override
+    public String toString() {
+        return super.toString() + " (" + this.stage.toString() + ")";
+    }
+}
@@ -0,0 +1,410 @@
+package jjil.algorithm.j2se;
+/*
+ * ParallelHistLookup.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import jjil.algorithm.ErrorCodes;
+import jjil.algorithm.Gray8Hist;
+import jjil.algorithm.HistogramLookup;
+import jjil.core.Error;
+import jjil.core.Gray8Image;
+import jjil.core.Image;
+import jjil.core.PipelineStage;
+
+/**
+ * ParallelHistLookup runs a stage which maps an image through a lookup table
+ * computed from its histogram -- Gray8HistEq, Gray8HistMatch, or
+ * Gray8OtsuThreshold -- on a ForkJoinPool.<p>
+ * The image is divided into bands of rows. Each band is counted into its own
+ * sub-histogram, so the threads never share counters, and the sub-histograms
+ * are added together as the bands are joined. The stage computes the lookup
+ * table from the total, and the table is applied to the bands in parallel.
+ * Addition doesn't depend on order, so the result is identical to the
+ * stage's own push.<p>
+ * In fused mode, meant for video with stable lighting, each image is mapped
+ * through the table computed from the image before it, and its histogram is
+ * counted in the same pass, giving the table for the next image. This makes
+ * one pass over the pixels instead of two. The first image, and any image of
+ * a different size from the one before, is done the usual way; reset starts
+ * again after a change of scene.<p>
+ * Like the stages it runs, ParallelHistLookup modifies its input, unless an
+ * output image is supplied with push(Image, Image):
+ * <pre>
+ *   seq.add(new ParallelHistLookup(new Gray8HistEq()));
+ * </pre>
+ * The wrapped stage should not be used anywhere else at the same time.
+ * computeHistogram is also available on its own.
+ * @author webb
+ */
+public class ParallelHistLookup extends PipelineStage {
+    /**
+     * Counts, and optionally maps, a range of rows, splitting it in half
+     * until it is no more than one band high. Each band's histogram is its
+     * own, and they are added as the halves are joined.
+     */
+    private class HistTask extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+        private final Gray8Image imageInput;
+        private final Gray8Image imageOutput; // null to only count
+        private final byte[] rbLookup;
+        private final int nRowFirst, nRowLimit; // range of rows, last exclusive
+        private final int nBand; // rows per band
+
+        HistTask(Gray8Image imageInput, Gray8Image imageOutput,
+                byte[] rbLookup, int nRowFirst, int nRowLimit, int nBand) {
+            this.imageInput = imageInput;
+            this.imageOutput = imageOutput;
+            this.rbLookup = rbLookup;
+            this.nRowFirst = nRowFirst;
+            this.nRowLimit = nRowLimit;
+            this.nBand = nBand;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (this.nRowLimit - this.nRowFirst <= this.nBand) {
+                int[] rnHist = new int[256];
+                if (this.imageOutput == null) {
+                    Gray8Hist.addHistogram(this.imageInput,
+                            this.nRowFirst, this.nRowLimit, rnHist);
+                } else {
+                    Gray8Hist.addHistogramAndLookup(this.imageInput,
+                            this.imageOutput, this.rbLookup,
+                            this.nRowFirst, this.nRowLimit, rnHist);
+                }
+                return rnHist;
+            }
+            int nMid = this.nRowFirst +
+                    (this.nRowLimit - this.nRowFirst) / this.nBand / 2 * this.nBand;
+            if (nMid == this.nRowFirst) {
+                nMid += this.nBand;
+            }
+            HistTask right = new HistTask(this.imageInput, this.imageOutput,
+                    this.rbLookup, nMid, this.nRowLimit, this.nBand);
+            right.fork();
+            int[] rnHist = new HistTask(this.imageInput, this.imageOutput,
+                    this.rbLookup, this.nRowFirst, nMid, this.nBand).compute();
+            int[] rnRight = right.join();
+            for (int i = 0; i < rnHist.length; i++) {
+                rnHist[i] += rnRight[i];
+            }
+            return rnHist;
+        }
+    }
+
+    /**
+     * Maps a range of rows through the lookup table, splitting it in half
+     * until it is no more than one band high.
+     */
+    private class LookupTask extends RecursiveTask<Void> {
+        private static final long serialVersionUID = 1L;
+        private final Gray8Image imageInput;
+        private final Gray8Image imageOutput;
+        private final byte[] rbLookup;
+        private final int nRowFirst, nRowLimit; // range of rows, last exclusive
+        private final int nBand; // rows per band
+
+        LookupTask(Gray8Image imageInput, Gray8Image imageOutput,
+                byte[] rbLookup, int nRowFirst, int nRowLimit, int nBand) {
+            this.imageInput = imageInput;
+            this.imageOutput = imageOutput;
+            this.rbLookup = rbLookup;
+            this.nRowFirst = nRowFirst;
+            this.nRowLimit = nRowLimit;
+            this.nBand = nBand;
+        }
+
+        @Override
+        protected Void compute() {
+            if (this.nRowLimit - this.nRowFirst <= this.nBand) {
+                byte[] data = this.imageInput.getData();
+                byte[] dataOut = this.imageOutput.getData();
+                int nLimit = this.nRowLimit * this.imageInput.getWidth();
+                for (int i = this.nRowFirst * this.imageInput.getWidth();
+                        i < nLimit; i++) {
+                    dataOut[i] = this.rbLookup[data[i] - Byte.MIN_VALUE];
+                }
+                return null;
+            }
+            int nMid = this.nRowFirst +
+                    (this.nRowLimit - this.nRowFirst) / this.nBand / 2 * this.nBand;
+            if (nMid == this.nRowFirst) {
+                nMid += this.nBand;
+            }
+            invokeAll(
+                    new LookupTask(this.imageInput, this.imageOutput,
+                            this.rbLookup, this.nRowFirst, nMid, this.nBand),
+                    new LookupTask(this.imageInput, this.imageOutput,
+                            this.rbLookup, nMid, this.nRowLimit, this.nBand));
+            return null;
+        }
+    }
+
+    // true to map each image through the table from the image before
+    private boolean bFused;
+    // size of the image rbLookup was computed from
+    private int cWidthLast = -1, cHeightLast = -1;
+    // number of rows in each band; 0 means chosen from the image height
+    private int nRowsPerBand = 0;
+    // pool that does the work
+    private ForkJoinPool pool;
+    // table from the last image, in fused mode
+    private byte[] rbLookup = null;
+    // histogram of the last image
+    private int[] rnHistogram = null;
+    // the stage that computes the lookup table
+    private final HistogramLookup stage;
+
+    /**
+     * Creates a new instance of ParallelHistLookup using a ForkJoinPool with
+     * one thread per available processor.
+     * @param stage the stage whose table is to be computed and applied.
+     */
+    public ParallelHistLookup(HistogramLookup stage) {
+        this(stage, false, new ForkJoinPool());
+    }
+
+    /**
+     * Creates a new instance of ParallelHistLookup using a ForkJoinPool with
+     * one thread per available processor, choosing the mode.
+     * @param stage the stage whose table is to be computed and applied.
+     * @param bFused true for fused mode, where each image is mapped through
+     * the table from the image before.
+     */
+    public ParallelHistLookup(HistogramLookup stage, boolean bFused) {
+        this(stage, bFused, new ForkJoinPool());
+    }
+
+    /**
+     * Creates a new instance of ParallelHistLookup using a given pool, which
+     * can be shared with other stages.
+     * @param stage the stage whose table is to be computed and applied.
+     * @param bFused true for fused mode, where each image is mapped through
+     * the table from the image before.
+     * @param pool the ForkJoinPool that will compute the bands.
+     */
+    public ParallelHistLookup(
+            HistogramLookup stage,
+            boolean bFused,
+            ForkJoinPool pool) {
+        this.stage = stage;
+        this.bFused = bFused;
+        this.pool = pool;
+    }
+
+    /**
+     * Computes the histogram of an image, counting bands of rows in
+     * parallel.
+     * @param image the input image.
+     * @return the histogram, a 256-element int array offset so element 0
+     * corresponds to Byte.MIN_VALUE, as from Gray8Hist.computeHistogram.
+     */
+    public int[] computeHistogram(Gray8Image image) {
+        return invokeHist(image, null, null);
+    }
+
+    /**
+     * Returns the number of rows in each band for an image. If it hasn't
+     * been set, there are about four bands per thread, so work-stealing can
+     * balance the load, and bands are at least 8 rows.
+     * @param cHeight the image height.
+     * @return the band height.
+     */
+    private int getBandHeight(int cHeight) {
+        if (this.nRowsPerBand > 0) {
+            return this.nRowsPerBand;
+        }
+        int nBands = 4 * this.pool.getParallelism();
+        return Math.max(8, (cHeight + nBands - 1) / nBands);
+    }
+
+    /**
+     * Returns the histogram of the last image pushed.
+     * @return the histogram, or null if no image has been pushed since the
+     * last reset.
+     */
+    public int[] getHistogram() {
+        return this.rnHistogram == null ? null : this.rnHistogram.clone();
+    }
+
+    /**
+     * Returns the type of image this stage accepts.
+     * @return Gray8Image.class
+     */
+    @Override
+    public Class getInputType() {
+        return Gray8Image.class;
+    }
+
+    /**
+     * Returns the type of image this stage produces.
+     * @return Gray8Image.class
+     */
+    @Override
+    public Class getOutputType() {
+        return Gray8Image.class;
+    }
+
+    /**
+     * Returns the stage whose table is computed and applied.
+     * @return the HistogramLookup.
+     */
+    public HistogramLookup getStage() {
+        return this.stage;
+    }
+
+    /**
+     * Counts the histogram of the image, also mapping it through rbLookup
+     * into imageOutput if that isn't null.
+     */
+    private int[] invokeHist(
+            Gray8Image image,
+            Gray8Image imageOutput,
+            byte[] rbLookup) {
+        return this.pool.invoke(new HistTask(image, imageOutput, rbLookup,
+                0, image.getHeight(), getBandHeight(image.getHeight())));
+    }
+
+    /**
+     * Returns true in fused mode.
+     * @return true if each image is mapped through the table from the image
+     * before.
+     */
+    public boolean isFused() {
+        return this.bFused;
+    }
+
+    /**
+     * Maps an image through the stage's lookup table, modifying it.
+     * @param image the input image (output replaces input).
+     * @throws jjil.core.Error if image is not a Gray8Image, or the stage
+     * throws it.
+     */
+    @Override
+    public void push(Image image) throws jjil.core.Error {
+        push(image, image);
+    }
+
+    /**
+     * Maps an image through the stage's lookup table, writing the result
+     * into imageDest if it is a Gray8Image of the same size, and into the
+     * input otherwise.
+     * @param image the input image.
+     * @param imageDest the output image. May be the input image, or null.
+     * @throws jjil.core.Error if image is not a Gray8Image, or the stage
+     * throws it.
+     */
+    @Override
+    public void push(Image image, Image imageDest) throws jjil.core.Error {
+        if (!(image instanceof Gray8Image)) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.IMAGE_NOT_GRAY8IMAGE,
+                            image.toString(),
+                            null,
+                            null);
+        }
+        Gray8Image input = (Gray8Image) image;
+        Gray8Image output = input;
+        if (imageDest instanceof Gray8Image &&
+                imageDest.getWidth() == image.getWidth() &&
+                imageDest.getHeight() == image.getHeight()) {
+            output = (Gray8Image) imageDest;
+        }
+        if (this.bFused && this.rbLookup != null &&
+                input.getWidth() == this.cWidthLast &&
+                input.getHeight() == this.cHeightLast) {
+            // one pass: the last table is applied while this image is
+            // counted, and this image's table is kept for the next
+            this.rnHistogram = invokeHist(input, output, this.rbLookup);
+            this.rbLookup = this.stage.getLookup(this.rnHistogram);
+        } else {
+            this.rnHistogram = invokeHist(input, null, null);
+            byte[] rbLookup = this.stage.getLookup(this.rnHistogram);
+            this.pool.invoke(new LookupTask(input, output, rbLookup,
+                    0, input.getHeight(), getBandHeight(input.getHeight())));
+            if (this.bFused) {
+                this.rbLookup = rbLookup;
+            }
+        }
+        this.cWidthLast = input.getWidth();
+        this.cHeightLast = input.getHeight();
+        super.setOutput(output);
+    }
+
+    /**
+     * Forgets the table from the last image, so the next image is mapped
+     * through its own table. Use this in fused mode when the scene changes.
+     */
+    public void reset() {
+        this.rbLookup = null;
+        this.rnHistogram = null;
+    }
+
+    /**
+     * Chooses whether each image is mapped through its own table or, in
+     * fused mode, the table from the image before.
+     * @param bFused true for fused mode.
+     */
+    public void setFused(boolean bFused) {
+        this.bFused = bFused;
+        if (!bFused) {
+            this.rbLookup = null;
+        }
+    }
+
+    /**
+     * Set the pool that computes the bands.
+     * @param pool the new ForkJoinPool.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Set the number of rows in each band. Smaller bands balance the load
+     * better across threads; larger bands have less overhead. By default the
+     * band height is chosen from the image height and the pool's parallelism.
+     * @param nRowsPerBand the number of rows.
+     * @throws jjil.core.Error if nRowsPerBand is not positive.
+     */
+    public void setRowsPerBand(int nRowsPerBand) throws jjil.core.Error {
+        if (nRowsPerBand <= 0) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            Integer.toString(nRowsPerBand),
+                            "1",
+                            null);
+        }
+        this.nRowsPerBand = nRowsPerBand;
+    }
+
+    /**
+     * Return a string describing the stage.
+     * @return the string.
+     */
+    @Override
+    public String toString() {
+        return super.toString() + " (" + this.stage.toString() +
+                (this.bFused ? ", fused)" : ")");
+    }
+}
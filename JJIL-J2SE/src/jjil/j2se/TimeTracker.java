@@ -0,0 +1,532 @@
+package jjil.j2se;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import jjil.core.Image;
+import jjil.core.PipelineStage;
+import jjil.core.StageMonitor;
+
+/**
+ * TimeTracker measures the stages of a pipeline under J2SE. It is a
+ * jjil.core.StageMonitor, so when it is installed with
+ * PipelineStage.setDefaultMonitor every Sequence, CompiledSequence and Ladder
+ * built afterwards reports each of its stages to it; and it is a
+ * jjil.core.TimeTracker, so named tasks can be timed the same way.<p>
+ * For each stage or task it records the number of calls, a histogram of the
+ * latencies (from which percentiles are estimated to within 1/8 of the
+ * value), the bytes allocated by the calling thread during the call (where
+ * the JVM's ThreadMXBean supports it), and the size of the output images.
+ * getSnapshot returns the statistics, and getReport formats them as a table.
+ * Stages are recorded by class, so pipelines that are built again for each
+ * image add to the same statistics, and stages of the same class are
+ * combined; tasks are recorded by name. reset discards the statistics.
+ * <br>
+ * Ex. usage:<br>
+ * <blockquote>
+ * <pre>
+ *	TimeTracker tt = TimeTracker.getInstance();
+ *	PipelineStage.setDefaultMonitor(tt);
+ *	Sequence seq = ...; // built with the monitor
+ *	...
+ *	System.out.print(tt.getReport());
+ * </pre>
+ * </blockquote>
+ * Without a monitor, pipelines only test for null around each stage.
+ * setEnabled(false) stops recording with the monitor still installed, at the
+ * cost of a call and a test. TimeTracker is thread-safe.
+ * @author webb
+ *
+ */
+public class TimeTracker implements jjil.core.TimeTracker, StageMonitor {
+    /**
+     * The statistics of one stage or task, as of when getSnapshot was called.
+     */
+    public static final class Stats {
+        private final String szName;
+        private final long lCount, lEmpty;
+        private final long lTotalNanos, lMaxNanos;
+        private final long lAllocated;
+        private final long lOutputPixels;
+        private final int cOutputWidth, cOutputHeight;
+        private final long[] rlHistogram;
+
+        Stats(Entry e) {
+            this.szName = e.szName;
+            this.lCount = e.lCount;
+            this.lEmpty = e.lEmpty;
+            this.lTotalNanos = e.lTotalNanos;
+            this.lMaxNanos = e.lMaxNanos;
+            this.lAllocated = e.lAllocated;
+            this.lOutputPixels = e.lOutputPixels;
+            this.cOutputWidth = e.cOutputWidth;
+            this.cOutputHeight = e.cOutputHeight;
+            this.rlHistogram = e.rlHistogram.clone();
+        }
+
+        /**
+         * Returns the bytes allocated by the calling thread during all calls.
+         * @return the allocated bytes, or 0 if the JVM doesn't measure them.
+         */
+        public long getAllocatedBytes() {
+            return this.lAllocated;
+        }
+
+        /**
+         * Returns the number of calls.
+         * @return the call count.
+         */
+        public long getCount() {
+            return this.lCount;
+        }
+
+        /**
+         * Returns the number of calls which produced no output, because the
+         * stage threw or had nothing to output.
+         * @return the number of calls without output.
+         */
+        public long getEmptyCount() {
+            return this.lEmpty;
+        }
+
+        /**
+         * Returns the longest call.
+         * @return the maximum latency in nanoseconds.
+         */
+        public long getMaxNanos() {
+            return this.lMaxNanos;
+        }
+
+        /**
+         * Returns the average call.
+         * @return the mean latency in nanoseconds.
+         */
+        public long getMeanNanos() {
+            return this.lCount == 0 ? 0 : this.lTotalNanos / this.lCount;
+        }
+
+        /**
+         * Returns the name of the stage or task.
+         * @return the name.
+         */
+        public String getName() {
+            return this.szName;
+        }
+
+        /**
+         * Returns the height of the last output image.
+         * @return the height, or 0 if there hasn't been an output.
+         */
+        public int getOutputHeight() {
+            return this.cOutputHeight;
+        }
+
+        /**
+         * Returns the total number of pixels in the output images.
+         * @return the output pixel count.
+         */
+        public long getOutputPixels() {
+            return this.lOutputPixels;
+        }
+
+        /**
+         * Returns the width of the last output image.
+         * @return the width, or 0 if there hasn't been an output.
+         */
+        public int getOutputWidth() {
+            return this.cOutputWidth;
+        }
+
+        /**
+         * Estimate a percentile of the latency from the histogram.
+         * @param dPercentile the percentile, from 0 to 100.
+         * @return the latency in nanoseconds which that percentage of calls
+         * took no longer than, to within 1/8.
+         */
+        public long getPercentileNanos(double dPercentile) {
+            long lRank = (long) Math.ceil(this.lCount * dPercentile / 100.0);
+            long lSum = 0;
+            for (int i=0; i<this.rlHistogram.length; i++) {
+                lSum += this.rlHistogram[i];
+                if (lSum >= lRank && lSum > 0) {
+                    return Math.min(this.lMaxNanos, getBucketLimit(i));
+                }
+            }
+            return this.lMaxNanos;
+        }
+
+        /**
+         * Returns the total time of all calls.
+         * @return the total latency in nanoseconds.
+         */
+        public long getTotalNanos() {
+            return this.lTotalNanos;
+        }
+    }
+
+    /**
+     * The statistics of one stage or task, as they are being recorded.
+     */
+    private static final class Entry {
+        final String szName;
+        long lCount, lEmpty;
+        long lTotalNanos, lMaxNanos;
+        long lAllocated;
+        long lOutputPixels;
+        int cOutputWidth, cOutputHeight;
+        final long[] rlHistogram = new long[BUCKETS];
+
+        Entry(String szName) {
+            this.szName = szName;
+        }
+
+        synchronized void record(long lNanos, long lBytes, Image image) {
+            this.lCount++;
+            this.lTotalNanos += lNanos;
+            this.lMaxNanos = Math.max(this.lMaxNanos, lNanos);
+            this.rlHistogram[getBucket(lNanos)]++;
+            this.lAllocated += lBytes;
+            if (image == null) {
+                this.lEmpty++;
+            } else {
+                this.cOutputWidth = image.getWidth();
+                this.cOutputHeight = image.getHeight();
+                this.lOutputPixels += (long) image.getWidth() * image.getHeight();
+            }
+        }
+
+        synchronized Stats snapshot() {
+            return new Stats(this);
+        }
+    }
+
+    /**
+     * The stages a thread is in, innermost last, and the tasks it has
+     * started. Arrays are used so that nothing is allocated per call; each
+     * task's array holds its start time, its start allocation, and 1 while
+     * it is running, and is kept for the next call.
+     */
+    private static final class ThreadState {
+        Object[] rKey = new Object[8];
+        long[] rlNanos = new long[8];
+        long[] rlBytes = new long[8];
+        int nDepth = 0;
+        final Map<String, long[]> mTasks = new HashMap<String, long[]>();
+
+        void push(Object key, long lNanos, long lBytes) {
+            if (this.nDepth == this.rKey.length) {
+                Object[] rKeyNew = new Object[2 * this.nDepth];
+                long[] rlNanosNew = new long[2 * this.nDepth];
+                long[] rlBytesNew = new long[2 * this.nDepth];
+                System.arraycopy(this.rKey, 0, rKeyNew, 0, this.nDepth);
+                System.arraycopy(this.rlNanos, 0, rlNanosNew, 0, this.nDepth);
+                System.arraycopy(this.rlBytes, 0, rlBytesNew, 0, this.nDepth);
+                this.rKey = rKeyNew;
+                this.rlNanos = rlNanosNew;
+                this.rlBytes = rlBytesNew;
+            }
+            this.rKey[this.nDepth] = key;
+            this.rlNanos[this.nDepth] = lNanos;
+            this.rlBytes[this.nDepth] = lBytes;
+            this.nDepth++;
+        }
+    }
+
+    // histogram buckets: 8 per power of two
+    private static final int SUB_BITS = 3;
+    private static final int BUCKETS = (64 - SUB_BITS) << SUB_BITS;
+    // the JVM ThreadMXBean's getThreadAllocatedBytes(long), bound to the
+    // bean, or null if it hasn't one. com.sun.management isn't on every
+    // JVM, so it is found by reflection, and called through a method handle
+    // of exact type so that nothing is boxed or allocated per call
+    private static final MethodHandle sGetAllocatedBytes = 
+            getAllocatedBytesHandle(ManagementFactory.getThreadMXBean());
+    private static final TimeTracker sTimeTracker = new TimeTracker();
+
+    // entries keyed by stage class or task name
+    private final ConcurrentHashMap<Object, Entry> mhmEntries =
+            new ConcurrentHashMap<Object, Entry>();
+    private final List<Entry> mlEntries = new CopyOnWriteArrayList<Entry>();
+    private final ThreadLocal<ThreadState> mtlState = new ThreadLocal<ThreadState>() {
+        @Override
+        protected ThreadState initialValue() {
+            return new ThreadState();
+        }
+    };
+    private volatile boolean mbEnabled = true;
+    private volatile boolean mbAllocation = sGetAllocatedBytes != null;
+
+    /**
+     * Creates a new instance of TimeTracker with no statistics.
+     */
+    public TimeTracker() {
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread so far.
+     */
+    private long getAllocatedBytes() {
+        if (!this.mbAllocation) {
+            return 0;
+        }
+        try {
+            return (long) sGetAllocatedBytes.invokeExact(
+                    Thread.currentThread().getId());
+        } catch (Throwable t) {
+            this.mbAllocation = false;
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the histogram bucket of a latency.
+     */
+    private static int getBucket(long lNanos) {
+        if (lNanos < (1 << SUB_BITS)) {
+            return (int) Math.max(0, lNanos);
+        }
+        int nExp = 63 - Long.numberOfLeadingZeros(lNanos);
+        int nSub = (int) (lNanos >>> (nExp - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+        return ((nExp - SUB_BITS + 1) << SUB_BITS) + nSub;
+    }
+
+    /**
+     * Returns the largest latency in a histogram bucket.
+     */
+    private static long getBucketLimit(int nBucket) {
+        if (nBucket < (1 << SUB_BITS)) {
+            return nBucket;
+        }
+        int nShift = (nBucket >> SUB_BITS) - 1;
+        long lFirst = ((long) ((1 << SUB_BITS) + (nBucket & ((1 << SUB_BITS) - 1)))) << nShift;
+        return lFirst + (1L << nShift) - 1;
+    }
+
+    @Override
+    public String getCumulativeTimes() {
+        StringBuilder sb = new StringBuilder();
+        for (Entry e: this.mlEntries) {
+            Stats s = e.snapshot();
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            double dMillis = s.getTotalNanos() / 1.0e6;
+            if (dMillis > 1000) {
+                sb.append(s.getName()).append(": ").append(dMillis / 1000.0).append("s");
+            } else {
+                sb.append(s.getName()).append(": ").append(dMillis).append("ms");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the entry for a stage class or task name, creating it if 
+     * necessary.
+     */
+    private Entry getEntry(Object key) {
+        Entry e = this.mhmEntries.get(key);
+        if (e == null) {
+            Entry eNew = new Entry(key instanceof Class ? 
+                    ((Class<?>) key).getName() : key.toString());
+            e = this.mhmEntries.putIfAbsent(key, eNew);
+            if (e == null) {
+                e = eNew;
+                this.mlEntries.add(e);
+            }
+        }
+        return e;
+    }
+
+    /**
+     * Returns a shared instance of TimeTracker.
+     * @return the shared TimeTracker.
+     */
+    public static TimeTracker getInstance() {
+        return sTimeTracker;
+    }
+
+    /**
+     * Format the statistics as a table, one line per stage or task, in the
+     * order they were first seen. Times are in microseconds.
+     * @return the report.
+     */
+    public String getReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-40s %8s %10s %10s %10s %10s %10s %12s %11s%n",
+                "stage", "count", "mean us", "p50 us", "p90 us", "p99 us",
+                "max us", "alloc/call", "output"));
+        for (Stats s: getSnapshot()) {
+            String szName = s.getName();
+            if (szName.length() > 40) {
+                szName = szName.substring(0, 37) + "...";
+            }
+            long lCount = Math.max(1, s.getCount());
+            sb.append(String.format("%-40s %8d %10.1f %10.1f %10.1f %10.1f %10.1f %12d %11s%n",
+                    szName,
+                    s.getCount(),
+                    s.getMeanNanos() / 1000.0,
+                    s.getPercentileNanos(50) / 1000.0,
+                    s.getPercentileNanos(90) / 1000.0,
+                    s.getPercentileNanos(99) / 1000.0,
+                    s.getMaxNanos() / 1000.0,
+                    s.getAllocatedBytes() / lCount,
+                    s.getOutputWidth() + "x" + s.getOutputHeight()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Get the statistics of every stage and task, in the order they were
+     * first seen.
+     * @return a copy of the statistics.
+     */
+    public List<Stats> getSnapshot() {
+        List<Stats> l = new ArrayList<Stats>();
+        for (Entry e: this.mlEntries) {
+            l.add(e.snapshot());
+        }
+        return l;
+    }
+
+    /**
+     * Get the ThreadMXBean's getThreadAllocatedBytes(long), bound to the 
+     * bean, if it can measure allocation per thread, turning the measurement
+     * on.
+     */
+    private static MethodHandle getAllocatedBytesHandle(Object mx) {
+        try {
+            Class<?> cMx = Class.forName("com.sun.management.ThreadMXBean");
+            if (!cMx.isInstance(mx)) {
+                return null;
+            }
+            if (!((Boolean) cMx.getMethod("isThreadAllocatedMemorySupported")
+                    .invoke(mx)).booleanValue()) {
+                return null;
+            }
+            if (!((Boolean) cMx.getMethod("isThreadAllocatedMemoryEnabled")
+                    .invoke(mx)).booleanValue()) {
+                cMx.getMethod("setThreadAllocatedMemoryEnabled", boolean.class)
+                    .invoke(mx, Boolean.TRUE);
+            }
+            return MethodHandles.publicLookup()
+                    .unreflect(cMx.getMethod("getThreadAllocatedBytes", long.class))
+                    .bindTo(mx)
+                    .asType(MethodType.methodType(long.class, long.class));
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Record the end of a call.
+     */
+    private void end(Object key, Image image) {
+        ThreadState ts = this.mtlState.get();
+        // a call started while recording was off has no start to match
+        if (ts.nDepth == 0 || ts.rKey[ts.nDepth-1] != key) {
+            return;
+        }
+        long lNanos = System.nanoTime();
+        long lBytes = getAllocatedBytes();
+        ts.nDepth--;
+        ts.rKey[ts.nDepth] = null;
+        getEntry(key.getClass()).record(
+                lNanos - ts.rlNanos[ts.nDepth],
+                Math.max(0, lBytes - ts.rlBytes[ts.nDepth]),
+                image);
+    }
+
+    @Override
+    public void endStage(PipelineStage stage, Image imageOutput) {
+        if (this.mbEnabled) {
+            end(stage, imageOutput);
+        }
+    }
+
+    @Override
+    public void endTask(String szTaskName) {
+        if (!this.mbEnabled) {
+            return;
+        }
+        long lNanos = System.nanoTime();
+        long lBytes = getAllocatedBytes();
+        long[] rlStart = this.mtlState.get().mTasks.get(szTaskName);
+        if (rlStart != null && rlStart[2] != 0) {
+            rlStart[2] = 0;
+            getEntry(szTaskName).record(
+                    lNanos - rlStart[0],
+                    Math.max(0, lBytes - rlStart[1]),
+                    null);
+        }
+    }
+
+    /**
+     * Returns true if statistics are being recorded.
+     * @return true if enabled.
+     */
+    public boolean isEnabled() {
+        return this.mbEnabled;
+    }
+
+    /**
+     * Discard the statistics of every stage and task.
+     */
+    @Override
+    public void reset() {
+        this.mhmEntries.clear();
+        this.mlEntries.clear();
+    }
+
+    /**
+     * Turn measurement of allocated bytes on or off. It is on by default if
+     * the JVM supports it, and costs about as much as reading the time. If
+     * the JVM doesn't support it, it stays off.
+     * @param bAllocation true to measure allocation.
+     */
+    public void setAllocationMeasured(boolean bAllocation) {
+        this.mbAllocation = bAllocation && sGetAllocatedBytes != null;
+    }
+
+    /**
+     * Turn recording on or off. The default is on.
+     * @param bEnabled true to record statistics.
+     */
+    public void setEnabled(boolean bEnabled) {
+        this.mbEnabled = bEnabled;
+    }
+
+    @Override
+    public void startStage(PipelineStage stage, Image imageInput) {
+        if (this.mbEnabled) {
+            ThreadState ts = this.mtlState.get();
+            long lBytes = getAllocatedBytes();
+            ts.push(stage, System.nanoTime(), lBytes);
+        }
+    }
+
+    @Override
+    public void startTask(String szTaskName) {
+        if (this.mbEnabled) {
+            Map<String, long[]> mTasks = this.mtlState.get().mTasks;
+            long[] rlStart = mTasks.get(szTaskName);
+            if (rlStart == null) {
+                rlStart = new long[3];
+                mTasks.put(szTaskName, rlStart);
+            }
+            rlStart[1] = getAllocatedBytes();
+            rlStart[0] = System.nanoTime();
+            rlStart[2] = 1;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * GaussIteratedBox.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jjil.algorithm;
+import jjil.core.Error;
+
+/**
+ * GaussIteratedBox approximates a Gaussian along a line of pixels by
+ * applying a box filter (a running sum) three times. The cost per pixel is
+ * the same whatever the width of the Gaussian, where convolving with the
+ * Gaussian costs in proportion to its width. It is the engine behind the
+ * iterated box mode of Gray8GaussHoriz, Gray8GaussSmoothVert,
+ * Gray8CannyHoriz, and Gray8CannyVert.<p>
+ * The box widths are odd, so each box is centered, and are chosen so the
+ * variance of the three boxes together (each box of width w adds
+ * (w*w - 1) / 12) is as close as possible to the variance asked for. The
+ * running sums are kept in integer without dividing, so they are exact; the
+ * result is only divided once, at the end. Past the ends of the line the
+ * pixels are reflected, so that pixel -1 is pixel 1.<p>
+ * Besides the smoothed line, the second difference of the smoothed line can
+ * be computed. This approximates the second derivative of Gaussian that the
+ * Canny stages in this package apply, and is scaled the same way: the sum of
+ * the absolute values of the operator is 1.<p>
+ * A GaussIteratedBox holds nothing but the box widths, so one can be used by
+ * several threads at once. The caller supplies the line buffers.
+ * @author webb
+ */
+public class GaussIteratedBox {
+    /**
+     * Largest input value. The pixels are 8-bit and unsigned.
+     */
+    private static final int MAX_VALUE = 255;
+
+    /**
+     * Largest variance, times 100. Beyond this (a standard deviation of
+     * about 60 pixels) the sums could overflow.
+     */
+    private static final int MAX_VARIANCE = 360000;
+
+    private int nAbsSecond; // sum of absolute values of the second difference
+                            // of the kernel
+    private int nRadius1;   // radius of each box; width is 2 * radius + 1
+    private int nRadius2;
+    private int nRadius3;
+    private int nVariance;  // variance asked for, times 100
+    private int nWeight;    // product of the box widths, the sum of the kernel
+
+    /**
+     * Works out the box widths for a given variance.
+     * @param nVariance the variance of the Gaussian, in pixels squared,
+     * times 100. The Gray8GaussHoriz kernel for a given cSigma has a variance
+     * of cSigma * cSigma / 2 in these units; the Gray8CannyHoriz kernel, of
+     * cSigma * cSigma.
+     * @throws jjil.core.Error if the variance is negative or so large that
+     * the sums could overflow.
+     */
+    public GaussIteratedBox(int nVariance) throws jjil.core.Error {
+        if (nVariance < 0 || nVariance > MAX_VARIANCE) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            new Integer(nVariance).toString(),
+                            "0", //$NON-NLS-1$
+                            new Integer(MAX_VARIANCE).toString());
+        }
+        this.nVariance = nVariance;
+        // Three boxes of width w have variance (w*w - 1) / 4, so the ideal
+        // width is sqrt(4 * variance + 1). Take the odd width wl at or
+        // below it and wl + 2 above it, and use as many of the narrower
+        // boxes as gets closest to the variance (Kovesi's construction).
+        int nWl = isqrt((4 * nVariance + 100) / 100);
+        if (nWl % 2 == 0) {
+            nWl--;
+        }
+        // m = (12V - 3wl^2 - 12wl - 9) / (-4wl - 4), rounded, with V in
+        // hundredths
+        int nNum = 100 * (3 * nWl * nWl + 12 * nWl + 9) - 12 * nVariance;
+        int nDen = 100 * (4 * nWl + 4);
+        int nNarrow = Math.max(0, Math.min(3, (2 * nNum + nDen) / (2 * nDen)));
+        int nRl = (nWl - 1) / 2;
+        this.nRadius1 = nNarrow > 0 ? nRl : nRl + 1;
+        this.nRadius2 = nNarrow > 1 ? nRl : nRl + 1;
+        this.nRadius3 = nNarrow > 2 ? nRl : nRl + 1;
+        // the second difference can reach 4 * MAX_VALUE * weight
+        long lWeight = (long) (2 * this.nRadius1 + 1) *
+            (long) (2 * this.nRadius2 + 1) *
+            (long) (2 * this.nRadius3 + 1);
+        if (lWeight > Integer.MAX_VALUE / (4 * MAX_VALUE)) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            new Integer(nVariance).toString(),
+                            "0", //$NON-NLS-1$
+                            this.toString());
+        }
+        this.nWeight = (int) lWeight;
+        this.nAbsSecond = absSecond();
+    }
+
+    /**
+     * Computes the sum of the absolute values of the second difference of
+     * the kernel, which is the three boxes convolved together.
+     */
+    private int absSecond() {
+        int nHalf = this.nRadius1 + this.nRadius2 + this.nRadius3;
+        // kernel, with a zero on each end for the second difference
+        int[] rnKernel = new int[2 * nHalf + 3];
+        rnKernel[nHalf + 1] = 1;
+        int[] rnRadius = {this.nRadius1, this.nRadius2, this.nRadius3};
+        for (int nBox=0; nBox<rnRadius.length; nBox++) {
+            int[] rnNext = new int[rnKernel.length];
+            int nR = rnRadius[nBox];
+            for (int i=0; i<rnKernel.length; i++) {
+                int nSum = 0;
+                for (int k=Math.max(0, i-nR); k<=Math.min(rnKernel.length-1, i+nR); k++) {
+                    nSum += rnKernel[k];
+                }
+                rnNext[i] = nSum;
+            }
+            rnKernel = rnNext;
+        }
+        int nAbs = 0;
+        for (int i=0; i<rnKernel.length; i++) {
+            int nLeft = i > 0 ? rnKernel[i-1] : 0;
+            int nRight = i < rnKernel.length-1 ? rnKernel[i+1] : 0;
+            nAbs += Math.abs(nLeft - 2 * rnKernel[i] + nRight);
+        }
+        return nAbs;
+    }
+
+    /**
+     * Applies one box filter to positions nFirst to nLimit - 1 of a line,
+     * reading positions up to nRadius on each side of those.
+     */
+    private static void box(
+            int[] rnIn,
+            int[] rnOut,
+            int nRadius,
+            int cLength,
+            int nFirst,
+            int nLimit) {
+        if (nFirst >= nLimit) {
+            return;
+        }
+        int nSum = 0;
+        for (int k=nFirst-nRadius; k<=nFirst+nRadius; k++) {
+            nSum += rnIn[k >= 0 && k < cLength ? k : reflect(k, cLength)];
+        }
+        rnOut[nFirst] = nSum;
+        for (int j=nFirst+1; j<nLimit; j++) {
+            int nAdd = j + nRadius;
+            int nSub = j - nRadius - 1;
+            nSum += rnIn[nAdd < cLength ? nAdd : reflect(nAdd, cLength)] -
+                rnIn[nSub >= 0 ? nSub : reflect(nSub, cLength)];
+            rnOut[j] = nSum;
+        }
+    }
+
+    /**
+     * Applies the three boxes, leaving the sums (not yet divided by the
+     * weight) in rnOut from nFirst - nExtra to nLimit + nExtra - 1, as far
+     * as the line goes.
+     */
+    private void cascade(
+            int[] rnIn,
+            int[] rnWork,
+            int[] rnOut,
+            int cLength,
+            int nFirst,
+            int nLimit,
+            int nExtra) {
+        // each box must cover the reach of the boxes after it
+        int nExtra1 = this.nRadius2 + this.nRadius3 + nExtra;
+        int nExtra2 = this.nRadius3 + nExtra;
+        box(rnIn, rnOut, this.nRadius1, cLength,
+                Math.max(0, nFirst - nExtra1), Math.min(cLength, nLimit + nExtra1));
+        box(rnOut, rnWork, this.nRadius2, cLength,
+                Math.max(0, nFirst - nExtra2), Math.min(cLength, nLimit + nExtra2));
+        box(rnWork, rnOut, this.nRadius3, cLength,
+                Math.max(0, nFirst - nExtra), Math.min(cLength, nLimit + nExtra));
+    }
+
+    /**
+     * Returns the number of pixels on each side of a pixel that its smoothed
+     * value depends on. The second difference depends on one more.
+     * @return the reach of the three boxes together.
+     */
+    public int getHalo() {
+        return this.nRadius1 + this.nRadius2 + this.nRadius3;
+    }
+
+    /**
+     * Returns the radius of one of the boxes, so that callers can apply the
+     * boxes in other ways, for example across rows with running sums of
+     * whole rows.
+     * @param nBox which box, 0, 1, or 2.
+     * @return the radius of the box; its width is 2 * radius + 1.
+     */
+    public int getRadius(int nBox) {
+        return nBox == 0 ? this.nRadius1 :
+            nBox == 1 ? this.nRadius2 : this.nRadius3;
+    }
+
+    /**
+     * Returns the variance the boxes were chosen for.
+     * @return the variance, times 100.
+     */
+    public int getVariance() {
+        return this.nVariance;
+    }
+
+    /**
+     * Returns the sum of the kernel, which is what the sums of the three
+     * boxes must be divided by.
+     * @return the product of the box widths.
+     */
+    public int getWeight() {
+        return this.nWeight;
+    }
+
+    /**
+     * Integer square root, rounded down.
+     */
+    private static int isqrt(int n) {
+        int nRoot = 0;
+        while ((nRoot + 1) * (nRoot + 1) <= n) {
+            nRoot++;
+        }
+        return nRoot;
+    }
+
+    /**
+     * Reflects a position outside the line back into it, so that -1 becomes
+     * 1 and cLength becomes cLength - 2, repeating for positions more than
+     * a line length outside.
+     */
+    private static int reflect(int n, int cLength) {
+        if (cLength == 1) {
+            return 0;
+        }
+        int nPeriod = 2 * cLength - 2;
+        n %= nPeriod;
+        if (n < 0) {
+            n += nPeriod;
+        }
+        return n < cLength ? n : nPeriod - n;
+    }
+
+    /**
+     * Computes the second difference of the smoothed line at positions nFirst
+     * to nLimit - 1, scaled so the operator's absolute values sum to 1 and
+     * rounded down. Only positions from nFirst - getHalo() - 1 to
+     * nLimit + getHalo() of rnIn (as far as the line goes) are read.
+     * @param rnIn the line, unsigned 8-bit values. It is not changed.
+     * @param rnWork a work buffer at least cLength long.
+     * @param rnOut the result, which is written at nFirst to nLimit - 1. It
+     * must be at least cLength long, and not be rnIn or rnWork.
+     * @param cLength the length of the line.
+     * @param nFirst the first position to compute.
+     * @param nLimit one past the last position to compute.
+     */
+    public void secondDifference(
+            int[] rnIn,
+            int[] rnWork,
+            int[] rnOut,
+            int cLength,
+            int nFirst,
+            int nLimit) {
+        // the sums go in rnWork and the differences in rnOut
+        cascade(rnIn, rnOut, rnWork, cLength, nFirst, nLimit, 1);
+        for (int j=nFirst; j<nLimit; j++) {
+            int nPrev = j - 1 >= 0 ? j - 1 : reflect(j - 1, cLength);
+            int nNext = j + 1 < cLength ? j + 1 : reflect(j + 1, cLength);
+            int nDiff = rnWork[nPrev] - 2 * rnWork[j] + rnWork[nNext];
+            // divide, rounding down as the Canny stages' shift does
+            rnOut[j] = nDiff >= 0 ?
+                    nDiff / this.nAbsSecond :
+                    -((this.nAbsSecond - 1 - nDiff) / this.nAbsSecond);
+        }
+    }
+
+    /**
+     * Smooths the line at positions nFirst to nLimit - 1, rounding to the
+     * nearest integer. Only positions from nFirst - getHalo() to
+     * nLimit + getHalo() - 1 of rnIn (as far as the line goes) are read.
+     * The sums have room for values up to four times as large as 8-bit
+     * pixels, so a caller can keep two more bits of precision by multiplying
+     * the pixels by 4 first.
+     * @param rnIn the line, unsigned values up to 4 * 255. It is not changed.
+     * @param rnWork a work buffer at least cLength long.
+     * @param rnOut the result, which is written at nFirst to nLimit - 1. It
+     * must be at least cLength long, and not be rnIn or rnWork.
+     * @param cLength the length of the line.
+     * @param nFirst the first position to compute.
+     * @param nLimit one past the last position to compute.
+     */
+    public void smooth(
+            int[] rnIn,
+            int[] rnWork,
+            int[] rnOut,
+            int cLength,
+            int nFirst,
+            int nLimit) {
+        cascade(rnIn, rnWork, rnOut, cLength, nFirst, nLimit, 0);
+        int nHalf = this.nWeight / 2;
+        for (int j=nFirst; j<nLimit; j++) {
+            rnOut[j] = (rnOut[j] + nHalf) / this.nWeight;
+        }
+    }
+
+    /**
+     * Returns a string describing the boxes.
+     * @return the string describing the boxes.
+     */
+    public String toString() {
+        return super.toString() + " (" + this.nVariance + ";" + //$NON-NLS-1$ //$NON-NLS-2$
+            (2 * this.nRadius1 + 1) + "," + //$NON-NLS-1$
+            (2 * this.nRadius2 + 1) + "," + //$NON-NLS-1$
+            (2 * this.nRadius3 + 1) + ")"; //$NON-NLS-1$
+    }
+}
@@ -55,7 +55,7 @@ public class Gray16Gray8 extends PipelineStage {
     				null);
         }
         Gray16Image gray = (Gray16Image) image;
-        Gray8Image gray8 = new Gray8Image(image.getWidth(), image.getHeight());
+        Gray8Image gray8 = newGray8Image(image.getWidth(), image.getHeight());
         short[] grayData = gray.getData();
         byte[] gray8Data = gray8.getData();
         for (int i=0; i<gray.getWidth() * gray.getHeight(); i++) {
@@ -66,4 +66,28 @@ public class Gray16Gray8 extends PipelineStage {
         }
         super.setOutput(gray8);
     }
+    
+    /**
+     * Returns the type of image this stage accepts.
+     * @return Gray16Image.class
+     */
+    public Class getInputType() {
+        return Gray16Image.class;
+    }
+    
+    /**
+     * Returns the type of image this stage produces.
+     * @return Gray8Image.class
+     */
+    public Class getOutputType() {
+        return Gray8Image.class;
+    }
+    
+    /**
+     * Returns true, since the input image is not changed.
+     * @return true.
+     */
+    public boolean isInputReadOnly() {
+        return true;
+    }
 }
@@ -87,5 +87,28 @@ public class Gray16Threshold extends PipelineStage {
     public String toString() {
     	return super.toString() + "(" + this.nThreshold + ")"; //$NON-NLS-1$ //$NON-NLS-2$
     }
-
+    
+    /**
+     * Returns the type of image this stage accepts.
+     * @return Gray16Image.class
+     */
+    public Class getInputType() {
+        return Gray16Image.class;
+    }
+    
+    /**
+     * Returns the type of image this stage produces.
+     * @return Gray8Image.class
+     */
+    public Class getOutputType() {
+        return Gray8Image.class;
+    }
+    
+    /**
+     * Returns true, since the input image is not changed.
+     * @return true.
+     */
+    public boolean isInputReadOnly() {
+        return true;
+    }
 }
@@ -57,7 +57,7 @@ public class Gray32Gray8 extends PipelineStage {
 
         }
         Gray32Image gray32 = (Gray32Image) image;
-        Gray8Image gray8 = new Gray8Image(image.getWidth(), image.getHeight());
+        Gray8Image gray8 = newGray8Image(image.getWidth(), image.getHeight());
         int[] gray32Data = gray32.getData();
         byte[] gray8Data = gray8.getData();
         for (int i=0; i<gray32.getWidth() * gray32.getHeight(); i++) {
@@ -70,4 +70,28 @@ public class Gray32Gray8 extends PipelineStage {
         }
         super.setOutput(gray8);
     }
+    
+    /**
+     * Returns the type of image this stage accepts.
+     * @return Gray32Image.class
+     */
+    public Class getInputType() {
+        return Gray32Image.class;
+    }
+    
+    /**
+     * Returns the type of image this stage produces.
+     * @return Gray8Image.class
+     */
+    public Class getOutputType() {
+        return Gray8Image.class;
+    }
+    
+    /**
+     * Returns true, since the input image is not changed.
+     * @return true.
+     */
+    public boolean isInputReadOnly() {
+        return true;
+    }
 }
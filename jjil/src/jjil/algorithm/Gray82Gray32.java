@@ -55,7 +55,7 @@ public class Gray82Gray32 extends PipelineStage {
             				null);
         }
         Gray8Image gray = (Gray8Image) image;
-        Gray32Image gray32 = new Gray32Image(image.getWidth(), image.getHeight());
+        Gray32Image gray32 = newGray32Image(image.getWidth(), image.getHeight());
         byte[] grayData = gray.getData();
         int[] gray32Data = gray32.getData();
         for (int i=0; i<gray.getWidth() * gray.getHeight(); i++) {
@@ -68,4 +68,28 @@ public class Gray82Gray32 extends PipelineStage {
         }
         super.setOutput(gray32);
     }
+    
+    /**
+     * Returns the type of image this stage accepts.
+     * @return Gray8Image.class
+     */
+    public Class getInputType() {
+        return Gray8Image.class;
+    }
+    
+    /**
+     * Returns the type of image this stage produces.
+     * @return Gray32Image.class
+     */
+    public Class getOutputType() {
+        return Gray32Image.class;
+    }
+    
+    /**
+     * Returns true, since the input image is not changed.
+     * @return true.
+     */
+    public boolean isInputReadOnly() {
+        return true;
+    }
 }
@@ -29,7 +29,8 @@ import jjil.core.Image;
 import jjil.core.PipelineStage;
 
 /**
- * Computes absolute value of a Gray8Image, replacing the original.
+ * Computes absolute value of a Gray8Image, replacing the original. The
+ * result can instead be written into another image with push(Image, Image).
  * @author webb
  */
 public class Gray8Abs extends PipelineStage {
@@ -43,10 +44,22 @@ public class Gray8Abs extends PipelineStage {
     /** 
      * Compute absolute value of the image. Input is range
      * Byte.MIN_VALUE to Byte.MAX_VALUE; output is 0..Byte.MAX_VALUE
-     * @param image the input Gray8Image
+     * @param image the input Gray8Image (output replaces input).
      * @throws jjil.core.Error if image is not a Gray8Image
      */
     public void push(Image image) throws jjil.core.Error {
+        push(image, image);
+    }
+    
+    /** 
+     * Compute absolute value of the image, writing the result into
+     * imageDest if it is a Gray8Image of the same size, and into the input
+     * otherwise.
+     * @param image the input Gray8Image
+     * @param imageDest the output image. May be the input image, or null.
+     * @throws jjil.core.Error if image is not a Gray8Image
+     */
+    public void push(Image image, Image imageDest) throws jjil.core.Error {
         if (!(image instanceof Gray8Image)) {
             throw new Error(
             				Error.PACKAGE.ALGORITHM,
@@ -56,11 +69,33 @@ public class Gray8Abs extends PipelineStage {
             				null);
         }
         Gray8Image input = (Gray8Image) image;
+        Gray8Image output = input;
+        if (imageDest instanceof Gray8Image &&
+                imageDest.getWidth() == image.getWidth() &&
+                imageDest.getHeight() == image.getHeight()) {
+            output = (Gray8Image) imageDest;
+        }
         byte[] bIn = input.getData();
+        byte[] bOut = output.getData();
         for (int i=0; i<bIn.length; i++) {
-         	bIn[i] = (byte) Math.min(Byte.MAX_VALUE, Math.abs(bIn[i]));
+         	bOut[i] = (byte) Math.min(Byte.MAX_VALUE, Math.abs(bIn[i]));
         }
-        super.setOutput(input);
+        super.setOutput(output);
+    }
+    
+    /**
+     * Returns the type of image this stage accepts.
+     * @return Gray8Image.class
+     */
+    public Class getInputType() {
+        return Gray8Image.class;
     }
     
+    /**
+     * Returns the type of image this stage produces.
+     * @return Gray8Image.class
+     */
+    public Class getOutputType() {
+        return Gray8Image.class;
+    }
 }
@@ -0,0 +1,569 @@
+/*
+ * Gray8Canny.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jjil.algorithm;
+import jjil.core.Error;
+import jjil.core.Gray8Image;
+import jjil.core.Image;
+import jjil.core.PipelineStage;
+
+/**
+ * Gray8Canny is the complete Canny edge detector: the image is smoothed with
+ * a Gaussian, the gradient is computed, edges are thinned to the pixels where
+ * the gradient magnitude is largest across the edge (non-maximum
+ * suppression), and the edges are kept where they are stronger than a high
+ * threshold or are connected to such pixels through pixels stronger than a
+ * low threshold (hysteresis). Gray8CannyHoriz and Gray8CannyVert, by
+ * contrast, only apply the operator in one direction.<p>
+ * The steps are done together, in one pass down the image. Each row is read
+ * once and passed through a window of a few rows for each step, so the
+ * smoothed image, the gradient, and the magnitude are never stored whole;
+ * only the edge map is. The Gaussian is approximated by iterated box filters
+ * (see GaussIteratedBox), so the cost per pixel doesn't depend on sigma.<p>
+ * The gradient is the difference between the smoothed pixels on either side
+ * of a pixel, horizontally and vertically, and its magnitude is the sum of
+ * their absolute values. The magnitude is scaled to 8 times the change in
+ * gray level per pixel, which is the scale of the Sobel operator, so the
+ * thresholds are on the same scale as in other Canny detectors that use it.
+ * Pixels on the border of the image are never edges.<p>
+ * The result is either a binary edge map (EDGE_MAP), a Gray8Image with edges
+ * Byte.MAX_VALUE and other pixels Byte.MIN_VALUE, or only a list of the edge
+ * pixels (EDGE_LIST), in which case the input image is passed through. The
+ * list is available with getEdges in both modes.
+ * @author webb
+ */
+public class Gray8Canny extends PipelineStage {
+    /**
+     * The output is a Gray8Image with edges Byte.MAX_VALUE and other pixels
+     * Byte.MIN_VALUE.
+     */
+    public static final int EDGE_MAP = 0;
+    /**
+     * The input is passed through, and the edges are only available from
+     * getEdges.
+     */
+    public static final int EDGE_LIST = 1;
+
+    /**
+     * Largest sigma, times 10. The Gaussian is the one Gray8CannyHoriz
+     * approximates in iterated box mode, which is limited to this.
+     */
+    private static final int MAX_SIGMA = 600;
+
+    /** Direction of the gradient, in the edge map's work rows.
+     */
+    private static final byte DIR_HORIZ = 0;
+    private static final byte DIR_VERT = 1;
+    private static final byte DIR_DIAG_DOWN = 2; // down and right, or up and left
+    private static final byte DIR_DIAG_UP = 3;   // up and right, or down and left
+
+    /** Marks in the edge map while it is being computed. Weak pixels are over
+     * the low threshold; they become edges if hysteresis reaches them.
+     */
+    private static final byte MARK_NONE = Byte.MIN_VALUE;
+    private static final byte MARK_WEAK = 0;
+    private static final byte MARK_EDGE = Byte.MAX_VALUE;
+
+    private GaussIteratedBox box;
+    private int cEdges = 0;
+    private int cSigma;
+    private int nHigh;
+    private int nLow;
+    private int nOutput;
+    private int[] rnEdges = new int[0]; // edge pixel positions, also the
+                                        // queue for hysteresis
+    private byte[] rbMap = null;        // edge map in EDGE_LIST mode
+
+    /* The rolling windows. Level 0 holds rows smoothed horizontally, levels
+     * 1 to 3 the sums of each box applied down the columns; level 3 is
+     * divided, so it is the smoothed image. The magnitude and direction are
+     * kept for the three rows that non-maximum suppression looks at.
+     */
+    private int[][] rrnAcc;      // running sum for levels 1 to 3
+    private int[][][] rrrnRows;  // rows of each level, by row mod length
+    private int[] rnFirst;       // first row of each level
+    private int[] rnNext;        // next row to compute at each level
+    private int[] rnRadius;      // radius of the box for levels 1 to 3
+    private byte[][] rrbDir;
+    private int[][] rrnMag;
+    private int[] rnLine;
+    private int[] rnWork;
+
+    /**
+     * Creates a new instance of Gray8Canny producing an edge map.
+     * @param cSigma the sigma of the Gaussian, times 10.
+     * @param nLow the low threshold on the gradient magnitude.
+     * @param nHigh the high threshold on the gradient magnitude.
+     * @throws jjil.core.Error if cSigma is out of range or the thresholds
+     * are negative or out of order.
+     */
+    public Gray8Canny(int cSigma, int nLow, int nHigh) throws jjil.core.Error {
+        this(cSigma, nLow, nHigh, EDGE_MAP);
+    }
+
+    /**
+     * Creates a new instance of Gray8Canny.
+     * @param cSigma the sigma of the Gaussian, times 10.
+     * @param nLow the low threshold on the gradient magnitude.
+     * @param nHigh the high threshold on the gradient magnitude.
+     * @param nOutput EDGE_MAP or EDGE_LIST.
+     * @throws jjil.core.Error if a parameter is out of range.
+     */
+    public Gray8Canny(int cSigma, int nLow, int nHigh, int nOutput)
+        throws jjil.core.Error {
+        if (nOutput != EDGE_MAP && nOutput != EDGE_LIST) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            new Integer(nOutput).toString(),
+                            new Integer(EDGE_MAP).toString(),
+                            new Integer(EDGE_LIST).toString());
+        }
+        this.nOutput = nOutput;
+        setSigma(cSigma);
+        setThresholds(nLow, nHigh);
+    }
+
+    /**
+     * Adds a pixel to the list of edges, growing it if necessary.
+     */
+    private void addEdge(int nPos) {
+        if (this.cEdges == this.rnEdges.length) {
+            int[] rnNew = new int[Math.max(1024, 2 * this.rnEdges.length)];
+            System.arraycopy(this.rnEdges, 0, rnNew, 0, this.cEdges);
+            this.rnEdges = rnNew;
+        }
+        this.rnEdges[this.cEdges++] = nPos;
+    }
+
+    /**
+     * Computes the gradient magnitude and direction of row nRow, from rows
+     * nRow - 1 to nRow + 1 of the smoothed image. Outside the image the
+     * smoothed image is reflected, as it is in smoothing.
+     */
+    private void computeGradient(int nRow, int cWidth) {
+        int[][] rrnSmooth = this.rrrnRows[3];
+        int nLen = rrnSmooth.length;
+        int[] rnAbove = rrnSmooth[(nRow - 1 - this.rnFirst[3]) % nLen];
+        int[] rnRow = rrnSmooth[(nRow - this.rnFirst[3]) % nLen];
+        int[] rnBelow = rrnSmooth[(nRow + 1 - this.rnFirst[3]) % nLen];
+        int[] rnMag = this.rrnMag[nRow % 3];
+        byte[] rbDir = this.rrbDir[nRow % 3];
+        for (int j=0; j<cWidth; j++) {
+            int nLeft = j > 0 ? j - 1 : Math.min(1, cWidth - 1);
+            int nRight = j < cWidth - 1 ? j + 1 : Math.max(0, cWidth - 2);
+            int nDx = rnRow[nRight] - rnRow[nLeft];
+            int nDy = rnBelow[j] - rnAbove[j];
+            int nAbsDx = nDx >= 0 ? nDx : -nDx;
+            int nAbsDy = nDy >= 0 ? nDy : -nDy;
+            rnMag[j] = nAbsDx + nAbsDy;
+            // tan(22.5 degrees) is about 106 / 256
+            if (nAbsDy * 256 <= nAbsDx * 106) {
+                rbDir[j] = DIR_HORIZ;
+            } else if (nAbsDx * 256 <= nAbsDy * 106) {
+                rbDir[j] = DIR_VERT;
+            } else if ((nDx > 0) == (nDy > 0)) {
+                rbDir[j] = DIR_DIAG_DOWN;
+            } else {
+                rbDir[j] = DIR_DIAG_UP;
+            }
+        }
+    }
+
+    /**
+     * Makes the rolling windows, if the ones from the last push don't fit
+     * an image of this width.
+     */
+    private void allocate(int cWidth) {
+        if (this.rnLine != null && this.rnLine.length == cWidth &&
+                this.rnRadius[1] == this.box.getRadius(0) &&
+                this.rnRadius[2] == this.box.getRadius(1) &&
+                this.rnRadius[3] == this.box.getRadius(2)) {
+            return;
+        }
+        this.rnRadius = new int[4];
+        for (int i=1; i<=3; i++) {
+            this.rnRadius[i] = this.box.getRadius(i - 1);
+        }
+        this.rrrnRows = new int[4][][];
+        for (int i=0; i<3; i++) {
+            // the next level's box reads rows j - r - 1 to j + r
+            this.rrrnRows[i] = new int[2 * this.rnRadius[i + 1] + 2][cWidth];
+        }
+        // the gradient reads three rows
+        this.rrrnRows[3] = new int[3][cWidth];
+        this.rrnAcc = new int[4][];
+        for (int i=1; i<=3; i++) {
+            this.rrnAcc[i] = new int[cWidth];
+        }
+        this.rnFirst = new int[4];
+        this.rnNext = new int[4];
+        this.rrnMag = new int[3][cWidth];
+        this.rrbDir = new byte[3][cWidth];
+        this.rnLine = new int[cWidth];
+        this.rnWork = new int[cWidth];
+    }
+
+    /**
+     * Follows edges from the pixels over the high threshold to the weak
+     * pixels connected to them. The edges found so far are the queue; each
+     * weak pixel reached is marked and added to it.
+     */
+    private void follow(byte[] rbMap, int cWidth) {
+        for (int i=0; i<this.cEdges; i++) {
+            int nPos = this.rnEdges[i];
+            // edge pixels are never on the border, so the neighbors are
+            // all in the image
+            for (int nRow=nPos-cWidth; nRow<=nPos+cWidth; nRow+=cWidth) {
+                for (int n=nRow-1; n<=nRow+1; n++) {
+                    if (rbMap[n] == MARK_WEAK) {
+                        rbMap[n] = MARK_EDGE;
+                        addEdge(n);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of edge pixels found by the last push.
+     * @return the number of edge pixels.
+     */
+    public int getEdgeCount() {
+        return this.cEdges;
+    }
+
+    /**
+     * Returns the edge pixels found by the last push, as positions in the
+     * image (row * width + column). They are in the order they were found,
+     * which is not the order of the rows.
+     * @return an array of getEdgeCount() positions.
+     */
+    public int[] getEdges() {
+        int[] rnResult = new int[this.cEdges];
+        System.arraycopy(this.rnEdges, 0, rnResult, 0, this.cEdges);
+        return rnResult;
+    }
+
+    /**
+     * Returns the high threshold.
+     * @return the high threshold on the gradient magnitude.
+     */
+    public int getHighThreshold() {
+        return this.nHigh;
+    }
+
+    /**
+     * Returns the type of image this stage accepts.
+     * @return Gray8Image.class
+     */
+    public Class getInputType() {
+        return Gray8Image.class;
+    }
+
+    /**
+     * Returns the low threshold.
+     * @return the low threshold on the gradient magnitude.
+     */
+    public int getLowThreshold() {
+        return this.nLow;
+    }
+
+    /**
+     * Returns the kind of output.
+     * @return EDGE_MAP or EDGE_LIST.
+     */
+    public int getOutputMode() {
+        return this.nOutput;
+    }
+
+    /**
+     * Returns the type of image this stage produces.
+     * @return Gray8Image.class
+     */
+    public Class getOutputType() {
+        return Gray8Image.class;
+    }
+
+    /**
+     * Returns the current value of sigma.
+     * @return the sigma of the Gaussian, times 10.
+     */
+    public int getSigma() {
+        return this.cSigma;
+    }
+
+    /**
+     * Returns true, since the input image is only read.
+     * @return true.
+     */
+    public boolean isInputReadOnly() {
+        return true;
+    }
+
+    /**
+     * Thins and thresholds row nRow, marking each pixel in the edge map. The
+     * magnitude and direction of rows nRow - 1 to nRow + 1 must have been
+     * computed. A pixel is kept if its magnitude is greater than the pixel
+     * before it across the edge and at least as great as the one after, so
+     * that an edge two pixels wide with equal magnitudes is kept once.
+     */
+    private void suppress(int nRow, int cWidth, byte[] rbMap) {
+        int[] rnAbove = this.rrnMag[(nRow - 1) % 3];
+        int[] rnMag = this.rrnMag[nRow % 3];
+        int[] rnBelow = this.rrnMag[(nRow + 1) % 3];
+        byte[] rbDir = this.rrbDir[nRow % 3];
+        int nPos = nRow * cWidth;
+        rbMap[nPos] = MARK_NONE;
+        for (int j=1; j<cWidth-1; j++) {
+            int nMag = rnMag[j];
+            byte bMark = MARK_NONE;
+            if (nMag > this.nLow) {
+                int nBefore, nAfter;
+                switch (rbDir[j]) {
+                    case DIR_HORIZ:
+                        nBefore = rnMag[j-1];
+                        nAfter = rnMag[j+1];
+                        break;
+                    case DIR_VERT:
+                        nBefore = rnAbove[j];
+                        nAfter = rnBelow[j];
+                        break;
+                    case DIR_DIAG_DOWN:
+                        nBefore = rnAbove[j-1];
+                        nAfter = rnBelow[j+1];
+                        break;
+                    default:
+                        nBefore = rnBelow[j-1];
+                        nAfter = rnAbove[j+1];
+                        break;
+                }
+                if (nMag > nBefore && nMag >= nAfter) {
+                    if (nMag > this.nHigh) {
+                        bMark = MARK_EDGE;
+                        addEdge(nPos + j);
+                    } else {
+                        bMark = MARK_WEAK;
+                    }
+                }
+            }
+            rbMap[nPos + j] = bMark;
+        }
+        if (cWidth > 1) {
+            rbMap[nPos + cWidth - 1] = MARK_NONE;
+        }
+    }
+
+    /**
+     * Finds the edges in a Gray8Image.
+     * @param image the input Gray8Image. It is not changed.
+     * @throws jjil.core.Error if the input is not a Gray8Image.
+     */
+    public void push(Image image) throws jjil.core.Error {
+        if (!(image instanceof Gray8Image)) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.IMAGE_NOT_GRAY8IMAGE,
+                            image.toString(),
+                            null,
+                            null);
+        }
+        Gray8Image gray = (Gray8Image) image;
+        int cWidth = gray.getWidth();
+        int cHeight = gray.getHeight();
+        Gray8Image imageResult = null;
+        byte[] rbMap;
+        if (this.nOutput == EDGE_MAP) {
+            imageResult = newGray8Image(cWidth, cHeight);
+            rbMap = imageResult.getData();
+        } else {
+            if (this.rbMap == null || this.rbMap.length != cWidth * cHeight) {
+                this.rbMap = new byte[cWidth * cHeight];
+            }
+            rbMap = this.rbMap;
+        }
+        allocate(cWidth);
+        // the gradient of row -1 reads smoothed row -1, which reads the
+        // rows above it through the boxes
+        this.rnFirst[3] = -1;
+        for (int i=2; i>=0; i--) {
+            this.rnFirst[i] = this.rnFirst[i + 1] - this.rnRadius[i + 1];
+        }
+        for (int i=0; i<=3; i++) {
+            this.rnNext[i] = this.rnFirst[i];
+        }
+        this.cEdges = 0;
+        byte[] rbIn = gray.getData();
+        for (int j=0; j<cWidth; j++) {
+            rbMap[j] = MARK_NONE;
+        }
+        for (int i=0; i<cHeight; i++) {
+            smoothLevel(3, i + 1, rbIn, cWidth, cHeight);
+            computeGradient(i, cWidth);
+            if (i >= 2) {
+                suppress(i - 1, cWidth, rbMap);
+            }
+        }
+        if (cHeight > 1) {
+            for (int j=(cHeight-1)*cWidth; j<cHeight*cWidth; j++) {
+                rbMap[j] = MARK_NONE;
+            }
+        }
+        follow(rbMap, cWidth);
+        if (this.nOutput == EDGE_MAP) {
+            // weak pixels hysteresis didn't reach are not edges
+            for (int i=0; i<rbMap.length; i++) {
+                if (rbMap[i] == MARK_WEAK) {
+                    rbMap[i] = MARK_NONE;
+                }
+            }
+            super.setOutput(imageResult);
+        } else {
+            super.setOutput(image);
+        }
+    }
+
+    /**
+     * Sets sigma, which controls the scale of the edges found. A small sigma
+     * finds fine detail, while a larger sigma finds only broader edges.
+     * @param cSigma the sigma of the Gaussian, times 10, from 1 to 600.
+     * @throws jjil.core.Error if cSigma is out of range.
+     */
+    public void setSigma(int cSigma) throws jjil.core.Error {
+        if (cSigma < 1 || cSigma > MAX_SIGMA) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            new Integer(cSigma).toString(),
+                            new Integer(1).toString(),
+                            new Integer(MAX_SIGMA).toString());
+        }
+        this.box = new GaussIteratedBox(cSigma * cSigma);
+        this.cSigma = cSigma;
+    }
+
+    /**
+     * Sets the hysteresis thresholds. Pixels whose gradient magnitude is
+     * over nHigh are edges, and so are pixels over nLow that are connected
+     * to them through pixels over nLow.
+     * @param nLow the low threshold.
+     * @param nHigh the high threshold.
+     * @throws jjil.core.Error if nLow is negative or greater than nHigh.
+     */
+    public void setThresholds(int nLow, int nHigh) throws jjil.core.Error {
+        if (nLow < 0 || nLow > nHigh) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            new Integer(nLow).toString(),
+                            new Integer(0).toString(),
+                            new Integer(nHigh).toString());
+        }
+        this.nLow = nLow;
+        this.nHigh = nHigh;
+    }
+
+    /**
+     * Computes level nLevel down to row nRow; level 3 is the smoothed
+     * image. Each level is computed a row at a time from the level before,
+     * which is computed as far as the box needs; the first row of a level is
+     * the sum over its whole box, and each row after that adds the row
+     * entering the box and subtracts the one leaving it.
+     */
+    private void smoothLevel(
+            int nLevel,
+            int nRow,
+            byte[] rbIn,
+            int cWidth,
+            int cHeight) {
+        int[][] rrnRows = this.rrrnRows[nLevel];
+        while (this.rnNext[nLevel] <= nRow) {
+            int nCur = this.rnNext[nLevel]++;
+            int[] rnOut = rrnRows[(nCur - this.rnFirst[nLevel]) % rrnRows.length];
+            if (nLevel == 0) {
+                // the row, reflected into the image, smoothed horizontally
+                // with two more bits of precision
+                int nIn = reflect(nCur, cHeight) * cWidth;
+                for (int j=0; j<cWidth; j++) {
+                    this.rnLine[j] = (rbIn[nIn + j] - Byte.MIN_VALUE) << 2;
+                }
+                this.box.smooth(this.rnLine, this.rnWork, rnOut, cWidth, 0, cWidth);
+                continue;
+            }
+            int nRadius = this.rnRadius[nLevel];
+            smoothLevel(nLevel - 1, nCur + nRadius, rbIn, cWidth, cHeight);
+            int[][] rrnPrev = this.rrrnRows[nLevel - 1];
+            int nPrevFirst = this.rnFirst[nLevel - 1];
+            int[] rnAcc = this.rrnAcc[nLevel];
+            if (nCur == this.rnFirst[nLevel]) {
+                for (int j=0; j<cWidth; j++) {
+                    rnAcc[j] = 0;
+                }
+                for (int k=nCur-nRadius; k<=nCur+nRadius; k++) {
+                    int[] rnPrev = rrnPrev[(k - nPrevFirst) % rrnPrev.length];
+                    for (int j=0; j<cWidth; j++) {
+                        rnAcc[j] += rnPrev[j];
+                    }
+                }
+            } else {
+                int[] rnAdd =
+                    rrnPrev[(nCur + nRadius - nPrevFirst) % rrnPrev.length];
+                int[] rnSub =
+                    rrnPrev[(nCur - nRadius - 1 - nPrevFirst) % rrnPrev.length];
+                for (int j=0; j<cWidth; j++) {
+                    rnAcc[j] += rnAdd[j] - rnSub[j];
+                }
+            }
+            if (nLevel < 3) {
+                System.arraycopy(rnAcc, 0, rnOut, 0, cWidth);
+            } else {
+                int nWeight = this.box.getWeight();
+                int nHalf = nWeight / 2;
+                for (int j=0; j<cWidth; j++) {
+                    rnOut[j] = (rnAcc[j] + nHalf) / nWeight;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reflects a row outside the image back into it, so that row -1 is row
+     * 1, the same way GaussIteratedBox reflects along a row.
+     */
+    private static int reflect(int n, int cLength) {
+        if (cLength == 1) {
+            return 0;
+        }
+        int nPeriod = 2 * cLength - 2;
+        n %= nPeriod;
+        if (n < 0) {
+            n += nPeriod;
+        }
+        return n < cLength ? n : nPeriod - n;
+    }
+
+    /**
+     * Returns a string describing this stage.
+     * @return a string describing the stage.
+     */
+    public String toString() {
+        return super.toString() + " (" + this.cSigma + "," + //$NON-NLS-1$ //$NON-NLS-2$
+            this.nLow + "," + this.nHigh + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
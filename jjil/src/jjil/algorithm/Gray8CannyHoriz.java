@@ -23,6 +23,7 @@
  */
 
 package jjil.algorithm;
+import jjil.core.BandedStage;
 import jjil.core.Error;
 import jjil.core.Gray8Image;
 import jjil.core.Image;
@@ -36,15 +37,27 @@ import jjil.core.PipelineStage;
  * the maximum value is about 10.0. Larger sigma values give an operator which
  * is less sensitive to high frequencies and more sensitive to low frequencies.
  * <p>
+ * In iterated box mode (see setIteratedBox) the operator is approximated by
+ * the second difference of three box filters applied in turn (see
+ * GaussIteratedBox), so the cost per pixel doesn't depend on sigma, and
+ * sigma can be larger than the table of coefficients allows. Blurry images
+ * need large sigma, where this is several times faster than convolving
+ * with the table.
  * @author webb
  */
-public class Gray8CannyHoriz extends PipelineStage {
+public class Gray8CannyHoriz extends PipelineStage implements BandedStage {
     /** cSigma is the sigma value we'll be using. It has been multiplied
      * by 10.0 and converted to integer because CLDC 1.0 doesn't allow
      * floating point. The minimum legal value for cSigma is 1; the maximum
      * is given by the length of nCoeff below.
      */
     private int cSigma;
+    /** True in iterated box mode, when box is used instead of nCoeff.
+     */
+    private boolean bIteratedBox = false;
+    /** The box filters that approximate the operator in iterated box mode.
+     */
+    private GaussIteratedBox box = null;
     /** nCoeff row i is the precomputed Canny coefficients for sigma = i/10.0.
      * They have been scaled by 256 and converted to integer because CLDC 1.0
      * doesn't allow floating point. The coefficients have been scaled and
@@ -167,6 +180,19 @@ public class Gray8CannyHoriz extends PipelineStage {
         this.setSigma(cSigma);
     }
     
+    /**
+     * Creates a new instance of Gray8CannyHoriz, choosing how the operator
+     * is computed.
+     * @param cSigma the sigma value for the operator, which is the sigma
+     * in the Gaussian distribution multipied by 10.0 and converted to integer.
+     * @param bIteratedBox true to use iterated box mode (see setIteratedBox).
+     * @throws jjil.core.Error if cSigma is out of range.
+     */
+    public Gray8CannyHoriz(int cSigma, boolean bIteratedBox) throws jjil.core.Error {
+        this.bIteratedBox = bIteratedBox;
+        this.setSigma(cSigma);
+    }
+    
     /**
      * Apply the Canny operator horizontally to the input input image.
      * The sigma value for the operator is set in the class constructor.
@@ -177,21 +203,36 @@ public class Gray8CannyHoriz extends PipelineStage {
      * @throws jjil.core.Error if the input is not a Gray8Image.
      */
     public void push(Image image) throws jjil.core.Error {
-        if (!(image instanceof Gray8Image)) {
-            throw new Error(
-        			Error.PACKAGE.ALGORITHM,
-        			ErrorCodes.IMAGE_NOT_GRAY8IMAGE,
-        			image.toString(),
-        			null,
-        			null);
+        Image imageResult = startBands(image);
+        pushBand(image, imageResult, 0, image.getHeight());
+        super.setOutput(imageResult);
+    }
+    
+    /**
+     * Returns 0, since the Canny operator is applied within each row.
+     * @return 0.
+     */
+    public int getHalo() {
+        return 0;
+    }
+    
+    /**
+     * Apply the Canny operator to rows nRowFirst to nRowLimit - 1 of the input.
+     * @param image the input Gray8Image.
+     * @param imageResult the output image, from startBands.
+     * @param nRowFirst the first row to compute.
+     * @param nRowLimit one past the last row to compute.
+     */
+    public void pushBand(Image image, Image imageResult, int nRowFirst, int nRowLimit) {
+        byte[] bIn = ((Gray8Image) image).getData();
+        byte[] bResult = ((Gray8Image) imageResult).getData();
+        if (this.bIteratedBox) {
+            pushBandBox(bIn, bResult, image.getWidth(), nRowFirst, nRowLimit);
+            return;
         }
-        Gray8Image input = (Gray8Image) image;
-        Gray8Image result = new Gray8Image(image.getWidth(), image.getHeight());
-        byte[] bIn = input.getData();
-        byte[] bResult = result.getData();
         int[] wCoeff = this.nCoeff[this.cSigma];
-        int cWidth = input.getWidth();
-        for (int i=0; i<input.getHeight(); i++) {
+        int cWidth = image.getWidth();
+        for (int i=nRowFirst; i<nRowLimit; i++) {
             for (int j=0; j<cWidth; j++) {
                 /* left side of Canny operator */
                 int wSum = 0;
@@ -220,7 +261,49 @@ public class Gray8CannyHoriz extends PipelineStage {
                 bResult[i*cWidth + j] = (byte) wSum;
             }
         }
-        super.setOutput(result);
+    }
+    
+    /**
+     * Apply the Canny operator in iterated box mode to rows nRowFirst to
+     * nRowLimit - 1, a row at a time.
+     */
+    private void pushBandBox(
+            byte[] bIn, 
+            byte[] bResult, 
+            int cWidth, 
+            int nRowFirst, 
+            int nRowLimit) {
+        int[] rnIn = new int[cWidth];
+        int[] rnWork = new int[cWidth];
+        int[] rnOut = new int[cWidth];
+        for (int i=nRowFirst; i<nRowLimit; i++) {
+            int nRow = i * cWidth;
+            for (int j=0; j<cWidth; j++) {
+                rnIn[j] = bIn[nRow + j] - Byte.MIN_VALUE;
+            }
+            this.box.secondDifference(rnIn, rnWork, rnOut, cWidth, 0, cWidth);
+            for (int j=0; j<cWidth; j++) {
+                bResult[nRow + j] = (byte) rnOut[j];
+            }
+        }
+    }
+    
+    /**
+     * Check the input and get the output image.
+     * @param image the input image.
+     * @return a Gray8Image the size of the input.
+     * @throws jjil.core.Error if the input is not a Gray8Image.
+     */
+    public Image startBands(Image image) throws jjil.core.Error {
+        if (!(image instanceof Gray8Image)) {
+            throw new Error(
+        			Error.PACKAGE.ALGORITHM,
+        			ErrorCodes.IMAGE_NOT_GRAY8IMAGE,
+        			image.toString(),
+        			null,
+        			null);
+        }
+        return newGray8Image(image.getWidth(), image.getHeight());
     }
     
      /** Returns the current value of sigma.
@@ -231,6 +314,14 @@ public class Gray8CannyHoriz extends PipelineStage {
         return this.cSigma;
     }
     
+    /**
+     * Returns true in iterated box mode.
+     * @return true if the operator is approximated by iterated box filters.
+     */
+    public boolean isIteratedBox() {
+        return this.bIteratedBox;
+    }
+    
     /**
      * sets a new value for sigma. Sigma controls the frequency of edges
      * that the operator responds to. A small sigma value gives higher
@@ -239,7 +330,7 @@ public class Gray8CannyHoriz extends PipelineStage {
      * @throws jjil.core.Error if cSigma is out of range.
      */
     public void setSigma(int cSigma) throws jjil.core.Error {
-        if (cSigma <= 1 || cSigma >= this.nCoeff.length) {
+        if (cSigma <= 1 || (!this.bIteratedBox && cSigma >= this.nCoeff.length)) {
             throw new Error(
         			Error.PACKAGE.ALGORITHM,
         			ErrorCodes.PARAMETER_OUT_OF_RANGE,
@@ -247,9 +338,34 @@ public class Gray8CannyHoriz extends PipelineStage {
         			new Integer(1).toString(),
         			new Integer(this.nCoeff.length).toString());
         }
+        if (this.bIteratedBox) {
+            this.box = new GaussIteratedBox(cSigma * cSigma);
+        }
         this.cSigma = cSigma;
     }
     
+    /**
+     * Chooses between convolving with the table of coefficients and the
+     * iterated box approximation, whose cost doesn't depend on sigma. In
+     * iterated box mode sigma can go up to 600.
+     * @param bIteratedBox true to use iterated box mode. Default is false.
+     * @throws jjil.core.Error if sigma is too large for the mode chosen.
+     */
+    public void setIteratedBox(boolean bIteratedBox) throws jjil.core.Error {
+        if (bIteratedBox) {
+            // the operator is the second derivative of a Gaussian of this sigma
+            this.box = new GaussIteratedBox(this.cSigma * this.cSigma);
+        } else if (this.cSigma >= this.nCoeff.length) {
+            throw new Error(
+        			Error.PACKAGE.ALGORITHM,
+        			ErrorCodes.PARAMETER_OUT_OF_RANGE,
+        			new Integer(this.cSigma).toString(),
+        			new Integer(1).toString(),
+        			new Integer(this.nCoeff.length).toString());
+        }
+        this.bIteratedBox = bIteratedBox;
+    }
+    
     /** returns a string describing this Canny operator.
      *
      * @return a string describing the Canny operator.
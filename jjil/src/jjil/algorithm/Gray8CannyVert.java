@@ -36,6 +36,12 @@ import jjil.core.PipelineStage;
  * the maximum value is about 10.0. Larger sigma values give an operator which
  * is less sensitive to high frequencies and more sensitive to low frequencies.
  * <p>
+ * In iterated box mode (see setIteratedBox) the operator is approximated by
+ * the second difference of three box filters applied in turn (see
+ * GaussIteratedBox), so the cost per pixel doesn't depend on sigma, and
+ * sigma can be larger than the table of coefficients allows. Blurry images
+ * need large sigma, where this is several times faster than convolving
+ * with the table.
  * @author webb
  */
 public class Gray8CannyVert extends PipelineStage {
@@ -45,6 +51,12 @@ public class Gray8CannyVert extends PipelineStage {
      * is given by the length of nCoeff below.
      */
     private int cSigma;
+    /** True in iterated box mode, when box is used instead of nCoeff.
+     */
+    private boolean bIteratedBox = false;
+    /** The box filters that approximate the operator in iterated box mode.
+     */
+    private GaussIteratedBox box = null;
     /** nCoeff row i is the precomputed Canny coefficients for sigma = i/10.0.
      * They have been scaled by 256 and converted to integer because CLDC 1.0
      * doesn't allow floating point. The coefficients have been scaled and
@@ -167,6 +179,19 @@ public class Gray8CannyVert extends PipelineStage {
         this.setSigma(cSigma);
     }
     
+    /**
+     * Creates a new instance of Gray8CannyVert, choosing how the operator
+     * is computed.
+     * @param cSigma the sigma value for the operator, which is the sigma
+     * in the Gaussian distribution multipied by 10.0 and converted to integer.
+     * @param bIteratedBox true to use iterated box mode (see setIteratedBox).
+     * @throws jjil.core.Error if cSigma is out of range.
+     */
+    public Gray8CannyVert(int cSigma, boolean bIteratedBox) throws jjil.core.Error {
+        this.bIteratedBox = bIteratedBox;
+        this.setSigma(cSigma);
+    }
+    
     /**
      * Apply the Canny operator vertically to the input input image.
      * The sigma value for the operator is set in the class constructor.
@@ -189,6 +214,12 @@ public class Gray8CannyVert extends PipelineStage {
         Gray8Image result = new Gray8Image(image.getWidth(), image.getHeight());
         byte[] bIn = input.getData();
         byte[] bResult = result.getData();
+        if (this.bIteratedBox) {
+            pushBox(bIn, bResult, input.getWidth(), input.getHeight(), 
+                    0, input.getHeight());
+            super.setOutput(result);
+            return;
+        }
         int[] wCoeff = this.nCoeff[this.cSigma];
         int cWidth = input.getWidth();
         for (int j=0; j<cWidth; j++) {
@@ -223,6 +254,35 @@ public class Gray8CannyVert extends PipelineStage {
         super.setOutput(result);
     }
     
+    /**
+     * Apply the Canny operator in iterated box mode to rows nRowFirst to
+     * nRowLimit - 1, a column at a time. Only the rows of each column that
+     * the boxes reach are read.
+     */
+    private void pushBox(
+            byte[] bIn, 
+            byte[] bResult, 
+            int cWidth, 
+            int cHeight,
+            int nRowFirst, 
+            int nRowLimit) {
+        int nHalo = this.box.getHalo() + 1;
+        int nLo = Math.max(0, nRowFirst - nHalo);
+        int nHi = Math.min(cHeight, nRowLimit + nHalo);
+        int[] rnIn = new int[cHeight];
+        int[] rnWork = new int[cHeight];
+        int[] rnOut = new int[cHeight];
+        for (int j=0; j<cWidth; j++) {
+            for (int i=nLo; i<nHi; i++) {
+                rnIn[i] = bIn[i*cWidth + j] - Byte.MIN_VALUE;
+            }
+            this.box.secondDifference(rnIn, rnWork, rnOut, cHeight, nRowFirst, nRowLimit);
+            for (int i=nRowFirst; i<nRowLimit; i++) {
+                bResult[i*cWidth + j] = (byte) rnOut[i];
+            }
+        }
+    }
+    
      /** Returns the current value of sigma.
      *
      * @return the sigma value
@@ -231,6 +291,14 @@ public class Gray8CannyVert extends PipelineStage {
         return this.cSigma;
     }
     
+    /**
+     * Returns true in iterated box mode.
+     * @return true if the operator is approximated by iterated box filters.
+     */
+    public boolean isIteratedBox() {
+        return this.bIteratedBox;
+    }
+    
     /**
      * sets a new value for sigma. Sigma controls the frequency of edges
      * that the operator responds to. A small sigma value gives higher
@@ -239,7 +307,7 @@ public class Gray8CannyVert extends PipelineStage {
      * @throws jjil.core.Error if cSigma is out of range.
      */
     public void setSigma(int cSigma) throws jjil.core.Error {
-        if (cSigma <= 1 || cSigma >= this.nCoeff.length) {
+        if (cSigma <= 1 || (!this.bIteratedBox && cSigma >= this.nCoeff.length)) {
             throw new Error(
         			Error.PACKAGE.ALGORITHM,
         			ErrorCodes.PARAMETER_OUT_OF_RANGE,
@@ -247,9 +315,34 @@ public class Gray8CannyVert extends PipelineStage {
         			new Integer(1).toString(),
         			new Integer(this.nCoeff.length).toString());
         }
+        if (this.bIteratedBox) {
+            this.box = new GaussIteratedBox(cSigma * cSigma);
+        }
         this.cSigma = cSigma;
     }
     
+    /**
+     * Chooses between convolving with the table of coefficients and the
+     * iterated box approximation, whose cost doesn't depend on sigma. In
+     * iterated box mode sigma can go up to 600.
+     * @param bIteratedBox true to use iterated box mode. Default is false.
+     * @throws jjil.core.Error if sigma is too large for the mode chosen.
+     */
+    public void setIteratedBox(boolean bIteratedBox) throws jjil.core.Error {
+        if (bIteratedBox) {
+            // the operator is the second derivative of a Gaussian of this sigma
+            this.box = new GaussIteratedBox(this.cSigma * this.cSigma);
+        } else if (this.cSigma >= this.nCoeff.length) {
+            throw new Error(
+        			Error.PACKAGE.ALGORITHM,
+        			ErrorCodes.PARAMETER_OUT_OF_RANGE,
+        			new Integer(this.cSigma).toString(),
+        			new Integer(1).toString(),
+        			new Integer(this.nCoeff.length).toString());
+        }
+        this.bIteratedBox = bIteratedBox;
+    }
+    
     /** returns a string describing this Canny operator.
      *
      * @return a string describing the Canny operator.
@@ -25,6 +25,7 @@
 package jjil.algorithm;
 import jjil.core.Error;
 import jjil.core.Gray8Image;
+import jjil.core.Gray8ViewImage;
 import jjil.core.Image;
 import jjil.core.PipelineStage;
 import jjil.core.Rect;
@@ -39,6 +40,7 @@ public class Gray8Crop extends PipelineStage {
     int cWidth; /* width of cropping window */
     int cX; /* left edge of cropping window */
     int cY; /* top of cropping window */
+    boolean bView = false; /* true if output shares the input's pixels */
     
     /** Creates a new instance of Gray8Crop. The cropping window
      * is specified here.
@@ -70,15 +72,29 @@ public class Gray8Crop extends PipelineStage {
     }
     
     /** Crops the input gray image to the cropping window that was
-     * specified in the constructor.
+     * specified in the constructor. The input can be a Gray8Image or
+     * a Gray8ViewImage. If setView(true) has been called the output is
+     * a Gray8ViewImage sharing the input's pixels, so cropping takes constant time;
+     * otherwise the pixels are copied into a new Gray8Image.
      *
      * @param image the input image.
      * @throws jjil.core.Error if the cropping window
      *    extends outside the input image, or the input image
-     *    is not a Gray8Image.
+     *    is not a Gray8Image or Gray8ViewImage.
      */
     public void push(Image image) throws jjil.core.Error {
-        if (!(image instanceof Gray8Image)) {
+        byte[] src;
+        int nOffset, nStride; // position of input pixel (0,0) and row stride
+        if (image instanceof Gray8Image) {
+            src = ((Gray8Image) image).getData();
+            nOffset = 0;
+            nStride = image.getWidth();
+        } else if (image instanceof Gray8ViewImage) {
+            Gray8ViewImage imageView = (Gray8ViewImage) image;
+            src = imageView.getData();
+            nOffset = imageView.getOffset();
+            nStride = imageView.getStride();
+        } else {
             throw new Error(
                 			Error.PACKAGE.ALGORITHM,
                 			ErrorCodes.IMAGE_NOT_GRAY8IMAGE,
@@ -86,7 +102,6 @@ public class Gray8Crop extends PipelineStage {
                 			null,
                 			null);
         }
-        Gray8Image imageInput = (Gray8Image) image;
         if (this.cX + this.cWidth > image.getWidth() ||
             this.cY + this.cHeight > image.getHeight()) {
             throw new Error(
@@ -96,13 +111,25 @@ public class Gray8Crop extends PipelineStage {
                             this.toString(),
                             null);
         }
-        Gray8Image imageResult = new Gray8Image(this.cWidth,this.cHeight);
-        byte[] src = imageInput.getData();
+        if (this.bView) {
+            super.setOutput(new Gray8ViewImage(
+                    src,
+                    nOffset,
+                    nStride,
+                    image.getWidth(),
+                    image.getHeight(),
+                    this.cX,
+                    this.cY,
+                    this.cWidth,
+                    this.cHeight));
+            return;
+        }
+        Gray8Image imageResult = newGray8Image(this.cWidth,this.cHeight);
         byte[] dst = imageResult.getData();
         for (int i=0; i<this.cHeight; i++) {
             System.arraycopy(
                     src, 
-                    (i+this.cY)*image.getWidth() + this.cX,
+                    nOffset + (i+this.cY)*nStride + this.cX,
                     dst,
                     i*this.cWidth,
                     this.cWidth);
@@ -142,6 +169,17 @@ public class Gray8Crop extends PipelineStage {
         return this.cWidth;
     }
     
+    /**
+     * Choose whether the output shares the input's pixels. A view is
+     * created in constant time, but it is a Gray8ViewImage rather than a Gray8Image,
+     * and changing its pixels changes the input image.
+     * @param bView true to output a Gray8ViewImage, false (the default) to
+     * copy the pixels into a new Gray8Image.
+     */
+    public void setView(boolean bView) {
+        this.bView = bView;
+    }
+    
     /** Change the cropping window. 
      *
      * @param x left edge of cropping window
@@ -196,4 +234,14 @@ public class Gray8Crop extends PipelineStage {
         return super.toString() + " (" + this.cX + "," + this.cY +  //$NON-NLS-1$ //$NON-NLS-2$
                 "," + this.cWidth + "," + this.cHeight + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
     }
+    
+    /**
+     * Returns true unless view mode is set. The input image is never changed
+     * here, but in view mode the output shares the input's pixels, so a later
+     * stage that changes the output would change the input too.
+     * @return true iff view mode is not set.
+     */
+    public boolean isInputReadOnly() {
+        return !this.bView;
+    }
 }
@@ -0,0 +1,726 @@
+/*
+ * Gray8DetectHaarFeatureScale.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jjil.algorithm;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Hashtable;
+
+import jjil.core.Error;
+import jjil.core.Gray8Image;
+import jjil.core.Image;
+import jjil.core.PipelineStage;
+import jjil.core.TimeTracker;
+
+/**
+ * Gray8DetectHaarFeatureScale applies a Haar cascade at multiple locations and
+ * multiple scales to an input Gray8Image, like Gray8DetectHaarMultiScale, but
+ * instead of shrinking the image to each scale it scales the Haar cascade.
+ * The integral image of the input is formed once per frame, at full resolution,
+ * and every scale is searched by evaluating a scaled copy of the cascade in it.
+ * Since the cost of evaluating a Haar feature doesn't depend on its size, this
+ * removes the shrink and integral image computation for each scale, which
+ * otherwise dominates the cost of detection.<p>
+ * detect returns the list of windows where features were detected (see
+ * HaarDetections); push produces a mask the size of the input image, with the
+ * masked (non-Byte.MIN_VALUE) locations indicating the areas where the feature
+ * was detected. As in Gray8DetectHaarMultiScale, scales are searched from
+ * coarsest to finest, and windows whose central pixel is inside a detection
+ * are skipped.<p>
+ * Scales here are factors, times 256, by which the Haar cascade window is
+ * enlarged; a scale of 256 applies the cascade at its trained size at full
+ * image resolution. This corresponds to the scale factor 1 in
+ * Gray8DetectHaarMultiScale. The scaled cascades are cached, so they are
+ * created only once for each scale.<p>
+ * Scaling the cascade rounds the rectangle coordinates in each Haar feature,
+ * so the results are close to, but not exactly the same as, those from
+ * Gray8DetectHaarMultiScale.<p>
+ * For video, tracking mode (see setTracking) makes use of the fact that features
+ * move little from one frame to the next. Instead of searching the whole frame,
+ * each detection from the previous frame is looked for only in a small area
+ * around where it was, at the same scale or, failing that, the scales searched
+ * on either side. The best window in each area becomes the new detection. The whole frame is still
+ * searched every few frames, so that new features are found, and whenever a
+ * feature from the previous frame can't be found again.<p>
+ * Coarse-to-fine search (see setCoarseToFine) reduces the number of windows
+ * evaluated at each scale. Only the first stage of the cascade is applied on a
+ * grid several steps apart, and the full cascade is then applied at the normal
+ * step only around the grid points whose first stage sum came within a margin
+ * of the stage threshold. Areas where the first stage clearly rejected the
+ * window are not searched further.<p>
+ * For tuning, profiling (see setProfiling) records for each scale the number of
+ * windows evaluated, how many reach each stage of the cascade, the number of
+ * weak classifiers evaluated, and the time taken (see HaarProfile). The time
+ * at each scale can also be reported to a TimeTracker (see setTimeTracker).
+ * @author webb
+ */
+public class Gray8DetectHaarFeatureScale extends PipelineStage {
+    // scaled Haar cascades, keyed by scale; only the scales in rnGrid are kept
+    private Hashtable hashScaled = new Hashtable();
+    private HaarClassifierCascade hcc;
+    // integral image, reused from one frame to the next
+    private Gray8IntegralImage ii = new Gray8IntegralImage();
+    // maximum scale is the largest factor the cascade is enlarged by
+    private int nMaxScale = 10;
+    // minimum scale is the smallest factor the cascade is enlarged by
+    private int nMinScale = 1;
+    // scale change is the change in scale from one search to the next
+    // times 256
+    private int nScaleChange = 12 * 256 / 10;
+    // number of steps across the image at each scale
+    private int nStep = 30;
+    // explicit list of scales (times 256) to search, or null
+    private int[] rnScales = null;
+    // scales (times 256) searched in the current image, in search order
+    private int[] rnGrid = new int[0];
+    // detections from the last image
+    private HaarDetections detections = new HaarDetections();
+    // minimum overlap percentage for non-maximum suppression, 0 for none
+    private int nOverlap = 0;
+    // frames since the whole frame was last searched
+    private int nSinceFullSearch = 0;
+    // the whole frame is searched at least this often in tracking mode;
+    // 0 means tracking is off
+    private int nTrackInterval = 0;
+    // detections from the previous image, which are being tracked
+    private HaarDetections tracks = new HaarDetections();
+    // coarse grid spacing, in steps, for coarse-to-fine search; 1 means off
+    private int nCoarse = 1;
+    // how far below its threshold the first stage sum at a coarse grid point
+    // can be for the area around it to be searched
+    private int nCoarseMargin = 0;
+    // flags for the windows to be searched in coarse-to-fine search, reused
+    private boolean[] rbRefine = null;
+    // flags for the coarse grid points whose first stage was rejected, reused
+    private boolean[] rbRejected = null;
+    // profile of the last detect, or null if profiling is off
+    private HaarProfile profile = null;
+    // stage counts for the scale being profiled, or null
+    private int[] rnReach = null;
+    // time tracker for time at each scale, or null
+    private TimeTracker tt = null;
+    
+    /**
+     * Creates a new instance of Gray8DetectHaarFeatureScale. 
+     * @param is Input stream containing the Haar cascade. This is the same
+     * format read by Gray8DetectHaarMultiScale.
+     * @param nMinScale Minimum (finest) scale at which features will be detected.
+     * A scale of 1 does detection with the cascade at its trained size.
+     * @param nMaxScale Maximum (coarsest) scale at which features will be detected.
+     * @throws jjil.core.Error if there is an error in the input file.
+     * @throws java.io.IOException if there is an I/O error reading the input file.
+     */
+    public Gray8DetectHaarFeatureScale(InputStream is, int nMinScale, int nMaxScale) 
+    	throws jjil.core.Error, IOException
+    {
+        setScale(nMinScale, nMaxScale);
+        // load Haar classifier cascade and flatten it for fast evaluation
+        InputStreamReader isr = new InputStreamReader(is);
+        this.hcc = HaarClassifierCascade.fromStream(isr).compile();
+    }
+    
+    /**
+     * Returns the Haar cascade scaled by a factor, creating it if it has
+     * not been created before.
+     * @param nScale the scale factor, times 256. This is one of the scales in
+     * rnGrid, so the cached cascades are limited to those.
+     * @return the scaled Haar cascade.
+     * @throws jjil.core.Error if the cascade cannot be scaled.
+     */
+    private HaarClassifierCascade getScaled(int nScale) throws jjil.core.Error {
+        if (nScale == 256) {
+            return this.hcc;
+        }
+        Integer key = new Integer(nScale);
+        HaarClassifierCascade hccScaled = 
+                (HaarClassifierCascade) this.hashScaled.get(key);
+        if (hccScaled == null) {
+            hccScaled = this.hcc.scale(nScale);
+            this.hashScaled.put(key, hccScaled);
+        }
+        return hccScaled;
+    }
+    
+    /**
+     * Apply the Haar cascade at multiple scales and return the list of windows
+     * where features were detected.
+     * @param image Input Gray8Image.
+     * @return the detections. They are valid until the next call; the object
+     * is reused.
+     * @throws jjil.core.Error if the input is not a Gray8Image or is too small.
+     */
+    public HaarDetections detect(Image image) throws jjil.core.Error
+    {
+        if (!(image instanceof Gray8Image)) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.IMAGE_NOT_GRAY8IMAGE,
+                            image.toString(),
+                            null,
+                            null);
+        }
+        if (image.getWidth() < this.hcc.getWidth() ||
+            image.getHeight() < this.hcc.getHeight()) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.IMAGE_TOO_SMALL,
+                            image.toString(),
+                            this.hcc.toString(),
+                            null);
+        }
+        this.ii.push(image);
+        makeGrid();
+        if (this.profile != null) {
+            this.profile.clear();
+        }
+        // the last image's detections become the tracks; the old tracks
+        // object is reused for the new detections
+        HaarDetections hd = this.tracks;
+        this.tracks = this.detections;
+        this.detections = hd;
+        this.detections.clear();
+        if (this.nTrackInterval > 0 && 
+            this.tracks.getCount() > 0 &&
+            this.nSinceFullSearch + 1 < this.nTrackInterval &&
+            track()) {
+            this.nSinceFullSearch++;
+        } else {
+            // discard anything a failed track() found
+            this.detections.clear();
+            if (this.profile != null) {
+                this.profile.clear();
+            }
+            searchAll();
+            this.nSinceFullSearch = 0;
+        }
+        if (this.nOverlap > 0) {
+            this.detections.suppress(this.nOverlap);
+        }
+        return this.detections;
+    }
+    
+    /**
+     * Apply the Haar cascade at multiple scales and prepare a mask image showing
+     * where features were detected. The mask is formed from the detections 
+     * returned by detect.
+     * @param image Input Gray8Image.
+     * @throws jjil.core.Error if the input is not a Gray8Image or is too small.
+     */
+    public void push(Image image) throws jjil.core.Error
+    {
+        super.setOutput(detect(image).toMask(image.getWidth(), image.getHeight()));
+    }
+    
+    /**
+     * Search the whole image at every scale.
+     * @throws jjil.core.Error if the Haar cascade cannot be scaled or evaluated.
+     */
+    private void searchAll() throws jjil.core.Error {
+        for (int i=0; i<this.rnGrid.length; i++) {
+            search(this.rnGrid[i]);
+        }
+    }
+    
+    /**
+     * Make the list of scales to search in the current image, either the
+     * explicit list or the scales from the maximum to the minimum scale.
+     * If it has changed, the scaled cascades for scales no longer in
+     * the list are dropped.
+     */
+    private void makeGrid() {
+        int[] rnNew = this.rnScales;
+        if (rnNew == null) {
+            // largest scale at which the cascade window fits in the image
+            int nTop = Math.min(this.nMaxScale * 256,
+                    Math.min(this.ii.getWidth() * 256 / this.hcc.getWidth(),
+                    this.ii.getHeight() * 256 / this.hcc.getHeight()));
+            int nCount = 0;
+            for (int nScale = nTop; 
+                nScale >= this.nMinScale * 256; 
+                nScale = nScale * 256 / this.nScaleChange) {
+                nCount++;
+            }
+            rnNew = new int[nCount];
+            for (int i = 0, nScale = nTop; i < nCount; i++) {
+                rnNew[i] = nScale;
+                nScale = nScale * 256 / this.nScaleChange;
+            }
+        }
+        boolean bSame = rnNew.length == this.rnGrid.length;
+        for (int i=0; bSame && i<rnNew.length; i++) {
+            bSame = rnNew[i] == this.rnGrid[i];
+        }
+        if (bSame) {
+            return;
+        }
+        this.rnGrid = rnNew;
+        Hashtable hashNew = new Hashtable();
+        for (int i=0; i<rnNew.length; i++) {
+            Integer key = new Integer(rnNew[i]);
+            Object o = this.hashScaled.get(key);
+            if (o != null) {
+                hashNew.put(key, o);
+            }
+        }
+        this.hashScaled = hashNew;
+    }
+    
+    /**
+     * Stop profiling and timing a scale.
+     * @param nScale the scale, times 256.
+     */
+    private void endScale(int nScale) {
+        if (this.profile != null) {
+            this.profile.endScale();
+            this.rnReach = null;
+        }
+        if (this.tt != null) {
+            this.tt.endTask("scale " + nScale); //$NON-NLS-1$
+        }
+    }
+    
+    /**
+     * Apply a Haar cascade to a window, counting the stages reached if 
+     * profiling.
+     * @param hccScaled the Haar cascade at the current scale.
+     * @param nX horizontal position of the top-left corner of the window.
+     * @param nY vertical position of the top-left corner of the window.
+     * @param nStages the maximum number of stages to evaluate.
+     * @return the score of the last stage evaluated.
+     * @throws jjil.core.Error if the Haar cascade cannot be evaluated.
+     */
+    private int evalScore(
+            HaarClassifierCascade hccScaled, 
+            int nX, 
+            int nY, 
+            int nStages) throws jjil.core.Error {
+        if (this.rnReach != null) {
+            return hccScaled.evalScore(this.ii, nX, nY, nStages, this.rnReach);
+        } 
+        return hccScaled.evalScore(this.ii, nX, nY, nStages);
+    }
+    
+    /**
+     * Start profiling and timing a scale.
+     * @param nScale the scale, times 256.
+     * @param hccScaled the Haar cascade at the scale.
+     */
+    private void startScale(int nScale, HaarClassifierCascade hccScaled) {
+        if (this.profile != null) {
+            this.rnReach = this.profile.startScale(nScale, hccScaled);
+        }
+        if (this.tt != null) {
+            this.tt.startTask("scale " + nScale); //$NON-NLS-1$
+        }
+    }
+    
+    /**
+     * Coarse pass of coarse-to-fine search. The first stage of the cascade is
+     * applied at every nCoarse'th window in each direction, and wherever the
+     * stage sum is within nCoarseMargin of the threshold the windows around it,
+     * up to the next grid point, are flagged in rbRefine to be searched.
+     * Grid points that the first stage rejected are never flagged, since
+     * the cascade is already known to reject them.
+     * @param hccScaled the Haar cascade at the current scale.
+     * @param nXStep horizontal step between windows.
+     * @param nYStep vertical step between windows.
+     * @param nCols number of windows across the image.
+     * @param nRows number of windows down the image.
+     * @throws jjil.core.Error if the Haar cascade cannot be evaluated.
+     */
+    private void coarse(
+            HaarClassifierCascade hccScaled, 
+            int nXStep, 
+            int nYStep, 
+            int nCols, 
+            int nRows) throws jjil.core.Error {
+        int nSize = nCols * nRows;
+        if (this.rbRefine == null || this.rbRefine.length < nSize) {
+            this.rbRefine = new boolean[nSize];
+        }
+        for (int i = 0; i < nSize; i++) {
+            this.rbRefine[i] = false;
+        }
+        int nGridCols = (nCols + this.nCoarse - 1) / this.nCoarse;
+        int nGridSize = nGridCols * ((nRows + this.nCoarse - 1) / this.nCoarse);
+        if (this.rbRejected == null || this.rbRejected.length < nGridSize) {
+            this.rbRejected = new boolean[nGridSize];
+        }
+        int nReach = this.nCoarse - 1;
+        for (int j = 0; j < nRows; j += this.nCoarse) {
+            for (int i = 0; i < nCols; i += this.nCoarse) {
+                // not profiled here; search counts each window once
+                int nScore = hccScaled.evalScore(this.ii, i * nXStep, j * nYStep, 1);
+                this.rbRejected[(j / this.nCoarse) * nGridCols + i / this.nCoarse] = 
+                        nScore < 0;
+                if (nScore >= -this.nCoarseMargin) {
+                    int nLeft = Math.max(0, i - nReach);
+                    int nRight = Math.min(nCols - 1, i + nReach);
+                    for (int l = Math.max(0, j - nReach); 
+                        l <= Math.min(nRows - 1, j + nReach); 
+                        l++) {
+                        for (int k = nLeft; k <= nRight; k++) {
+                            this.rbRefine[l * nCols + k] = true;
+                        }
+                    }
+                }
+            }
+        }
+        // don't search the grid points again where the first stage failed
+        for (int j = 0; j < nRows; j += this.nCoarse) {
+            for (int i = 0; i < nCols; i += this.nCoarse) {
+                if (this.rbRejected[(j / this.nCoarse) * nGridCols + i / this.nCoarse]) {
+                    this.rbRefine[j * nCols + i] = false;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Search the image at one scale, adding the windows where features were 
+     * detected to the detections.
+     * @param nScale the scale factor, times 256.
+     * @throws jjil.core.Error if the Haar cascade cannot be scaled or evaluated.
+     */
+    private void search(int nScale) throws jjil.core.Error {
+        HaarClassifierCascade hccScaled = getScaled(nScale);
+        int nWidth = hccScaled.getWidth();
+        int nHeight = hccScaled.getHeight();
+        int nImageWidth = this.ii.getWidth();
+        int nImageHeight = this.ii.getHeight();
+        if (nWidth > nImageWidth || nHeight > nImageHeight) {
+            return;
+        }
+        // step is the same fraction of the image as in Gray8DetectHaarMultiScale
+        // but never less than one pixel at the current scale
+        int nXStep = Math.max(Math.max(1, nScale >> 8), nImageWidth / this.nStep);
+        int nYStep = Math.max(Math.max(1, nScale >> 8), nImageHeight / this.nStep);
+        int nCols = (nImageWidth - nWidth) / nXStep + 1;
+        int nRows = (nImageHeight - nHeight) / nYStep + 1;
+        startScale(nScale, hccScaled);
+        if (this.nCoarse > 1) {
+            coarse(hccScaled, nXStep, nYStep, nCols, nRows);
+        }
+        int nxLastFound = -nWidth;
+        int nyLastFound = -nHeight;
+        for (int j = 0, nY = 0; j < nRows; j++, nY += nYStep) {
+            for (int i = 0, nX = 0; i < nCols; i++, nX += nXStep) {
+                if ((this.nCoarse == 1 || this.rbRefine[j * nCols + i]) &&
+                    nX > nxLastFound + nWidth &&
+                    nY > nyLastFound + nHeight &&
+                    !this.detections.containsCenter(nX, nY, nWidth, nHeight)) {
+                    int nScore = evalScore(hccScaled, nX, nY, Integer.MAX_VALUE);
+                    if (nScore >= 0) {
+                        nxLastFound = nX;
+                        nyLastFound = nY;
+                        this.detections.add(nX, nY, nWidth, nHeight, nScale, nScore);
+                    }
+                } else if (this.rnReach != null && this.nCoarse > 1 &&
+                    i % this.nCoarse == 0 && j % this.nCoarse == 0) {
+                    // a grid point only the coarse pass evaluated
+                    this.rnReach[0]++;
+                }
+            }
+        }
+        endScale(nScale);
+    }
+    
+    /**
+     * Returns the index of the scale in rnGrid nearest a scale, or the
+     * nearest smaller or larger one.
+     * @param nScale the scale, times 256.
+     * @param nDir 0 for the nearest scale, -1 for the largest scale smaller
+     * than it, 1 for the smallest scale larger than it.
+     * @return the index in rnGrid, or -1 if there is no such scale.
+     */
+    private int nearestScale(int nScale, int nDir) {
+        int nBest = -1;
+        for (int i=0; i<this.rnGrid.length; i++) {
+            int nDiff = this.rnGrid[i] - nScale;
+            if (nDir * nDiff < 0 || (nDir != 0 && nDiff == 0)) {
+                continue;
+            }
+            if (nBest < 0 || 
+                Math.abs(nDiff) < Math.abs(this.rnGrid[nBest] - nScale)) {
+                nBest = i;
+            }
+        }
+        return nBest;
+    }
+    
+    /**
+     * Look for each of the tracks near where it was in the last image. The
+     * area searched extends a quarter of the window size on each side of the
+     * window's last position, at the last scale or, if nothing is found
+     * there, the next smaller and larger scales searched. Only the scales
+     * searched in the whole image are used, so the scales stay within the
+     * minimum and maximum and no other scaled cascades are created. The
+     * highest-scoring window in the area is added to the detections.
+     * @return true iff every track was found again.
+     * @throws jjil.core.Error if the Haar cascade cannot be scaled or evaluated.
+     */
+    private boolean track() throws jjil.core.Error {
+        int nImageWidth = this.ii.getWidth();
+        int nImageHeight = this.ii.getHeight();
+        for (int i=0; i<this.tracks.getCount(); i++) {
+            // center of the track
+            int nCx = this.tracks.getX(i) + this.tracks.getWidth(i) / 2;
+            int nCy = this.tracks.getY(i) + this.tracks.getHeight(i) / 2;
+            int nBestScore = -1;
+            int nBestX = 0, nBestY = 0, nBestScale = 0;
+            HaarClassifierCascade hccBest = null;
+            // the last scale first; scores are not comparable across scales,
+            // so the neighbouring scales are tried only if that fails
+            int nNearest = nearestScale(this.tracks.getScale(i), 0);
+            if (nNearest < 0) {
+                return false;
+            }
+            for (int j=0; j<3 && hccBest == null; j++) {
+                int nIndex = nNearest;
+                if (j == 1) {
+                    nIndex = nearestScale(this.rnGrid[nNearest], -1);
+                } else if (j == 2) {
+                    nIndex = nearestScale(this.rnGrid[nNearest], 1);
+                }
+                if (nIndex < 0) {
+                    continue;
+                }
+                int nScale = this.rnGrid[nIndex];
+                HaarClassifierCascade hccScaled = getScaled(nScale);
+                int nWidth = hccScaled.getWidth();
+                int nHeight = hccScaled.getHeight();
+                if (nWidth > nImageWidth || nHeight > nImageHeight) {
+                    continue;
+                }
+                int nStep = Math.max(1, nScale >> 8);
+                startScale(nScale, hccScaled);
+                int nXMin = Math.max(0, nCx - nWidth / 2 - nWidth / 4);
+                int nXMax = Math.min(nImageWidth - nWidth, nCx - nWidth / 2 + nWidth / 4);
+                int nYMin = Math.max(0, nCy - nHeight / 2 - nHeight / 4);
+                int nYMax = Math.min(nImageHeight - nHeight, nCy - nHeight / 2 + nHeight / 4);
+                for (int nY = nYMin; nY <= nYMax; nY += nStep) {
+                    for (int nX = nXMin; nX <= nXMax; nX += nStep) {
+                        int nScore = evalScore(hccScaled, nX, nY, Integer.MAX_VALUE);
+                        if (nScore > nBestScore) {
+                            nBestScore = nScore;
+                            nBestX = nX;
+                            nBestY = nY;
+                            nBestScale = nScale;
+                            hccBest = hccScaled;
+                        }
+                    }
+                }
+                endScale(nScale);
+            }
+            if (hccBest == null) {
+                // lost this track
+                return false;
+            }
+            this.detections.add(nBestX, nBestY, hccBest.getWidth(), 
+                    hccBest.getHeight(), nBestScale, nBestScore);
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the profile of the last call to detect or push.
+     * @return a snapshot of the profile, which does not change on later calls,
+     * or null if profiling is off.
+     */
+    public HaarProfile getProfile() {
+        if (this.profile == null) {
+            return null;
+        }
+        return new HaarProfile(this.profile);
+    }
+    
+    /**
+     * Set coarse-to-fine search. The first stage of the cascade is applied on
+     * a grid nCoarse steps apart, and the whole cascade is applied at every
+     * step only within nCoarse - 1 steps of the grid points where the first 
+     * stage sum was no more than nMargin below its threshold. A larger
+     * margin searches more windows and misses fewer features. Since the
+     * areas searched are judged by the first stage alone, the margin should be
+     * chosen by checking detection on typical images for the cascade in use.
+     * @param nCoarse the grid spacing, in steps. 1 turns coarse-to-fine search
+     * off, so every window is searched; this is the default.
+     * @param nMargin how far below the first stage threshold, in the units
+     * of the cascade's stage sums, a grid point's sum can be for the area
+     * around it to be searched.
+     * @throws jjil.core.Error if nCoarse is not positive or nMargin is negative.
+     */
+    public void setCoarseToFine(int nCoarse, int nMargin) throws jjil.core.Error {
+        if (nCoarse <= 0) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            new Integer(nCoarse).toString(),
+                            "1",
+                            null);
+        }
+        if (nMargin < 0) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            new Integer(nMargin).toString(),
+                            "0",
+                            null);
+        }
+        this.nCoarse = nCoarse;
+        this.nCoarseMargin = nMargin;
+    }
+    
+    /**
+     * Set minimum and maximum scale.
+     * @param nMinScale The finest scale -- a scale factor of 1 applies the 
+     * cascade at its trained size.
+     * @param nMaxScale The coarsest scale. 
+     * <B>Note.</B> The maximum scale actually used is the minimum of this 
+     * number and the scale which would enlarge the cascade to the size of
+     * the image.
+     * @throws jjil.core.Error if nMinScale is less than 1.
+     */
+    public void setScale(int nMinScale, int nMaxScale) throws jjil.core.Error {
+        if (nMinScale < 1) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            new Integer(nMinScale).toString(),
+                            "1",
+                            null);
+        }
+        this.nMinScale = nMinScale;
+        this.nMaxScale = nMaxScale;
+        this.rnScales = null;
+    }
+    
+    /**
+     * Set an explicit list of scales to search, overriding the minimum
+     * and maximum scale. The scales are searched in the order given, so 
+     * they should normally be in decreasing order.
+     * @param rnScales the scales, times 256. Each must be at least 256.
+     * A null value returns to searching from the maximum to the minimum scale.
+     * @throws jjil.core.Error if any scale is less than 256.
+     */
+    public void setScales(int[] rnScales) throws jjil.core.Error {
+        if (rnScales != null) {
+            for (int i=0; i<rnScales.length; i++) {
+                if (rnScales[i] < 256) {
+                    throw new Error(
+                                    Error.PACKAGE.ALGORITHM,
+                                    ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                                    new Integer(rnScales[i]).toString(),
+                                    "256",
+                                    null);
+                }
+            }
+        }
+        this.rnScales = rnScales;
+    }
+    
+    /**
+     * Set non-maximum suppression. When this is set, detect removes any
+     * detection that overlaps a higher-scoring detection by at least nOverlap
+     * percent of the smaller window's area. See HaarDetections.suppress.
+     * @param nOverlap the overlap percentage; 0 (the default) turns 
+     * suppression off.
+     * @throws jjil.core.Error if nOverlap is negative.
+     */
+    public void setOverlap(int nOverlap) throws jjil.core.Error {
+        if (nOverlap < 0) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            new Integer(nOverlap).toString(),
+                            "0",
+                            null);
+        }
+        this.nOverlap = nOverlap;
+    }
+    
+    /**
+     * Turn profiling on or off. When profiling is on, each call to detect
+     * or push records the windows evaluated, the stages they reach, and the
+     * time taken at each scale, which can be retrieved with getProfile.
+     * Profiling is off by default.
+     * @param bProfile true to turn profiling on.
+     */
+    public void setProfiling(boolean bProfile) {
+        if (bProfile) {
+            if (this.profile == null) {
+                this.profile = new HaarProfile();
+            }
+        } else {
+            this.profile = null;
+        }
+    }
+    
+    /**
+     * Set a TimeTracker to record the time spent at each scale. The task
+     * for each scale is named "scale " followed by the scale, times 256.
+     * @param tt the TimeTracker, or null for none, which is the default.
+     */
+    public void setTimeTracker(TimeTracker tt) {
+        this.tt = tt;
+    }
+    
+    /**
+     * Set tracking mode, for video. In tracking mode each detection from the
+     * previous image is searched for only near where it was, and the whole
+     * image is searched only every nInterval images, or when a detection from
+     * the previous image is not found again.
+     * @param nInterval the maximum number of images between searches of 
+     * the whole image. 0 or 1 turns tracking off, so every image is searched
+     * completely; this is the default.
+     * @throws jjil.core.Error if nInterval is negative.
+     */
+    public void setTracking(int nInterval) throws jjil.core.Error {
+        if (nInterval < 0) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            new Integer(nInterval).toString(),
+                            "0",
+                            null);
+        }
+        this.nTrackInterval = nInterval;
+        this.nSinceFullSearch = 0;
+        this.tracks.clear();
+    }
+    
+    /**
+     * Set the number of steps across the image at each scale. The step
+     * between windows is the image width or height divided by this number,
+     * but never less than the scale factor.
+     * @param nStep the number of steps. Default is 30.
+     * @throws jjil.core.Error if nStep is not positive.
+     */
+    public void setStep(int nStep) throws jjil.core.Error {
+        if (nStep <= 0) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            new Integer(nStep).toString(),
+                            "1",
+                            null);
+        }
+        this.nStep = nStep;
+    }
+}
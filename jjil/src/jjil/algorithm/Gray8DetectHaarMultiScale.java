@@ -30,6 +30,7 @@ import jjil.core.Error;
 import jjil.core.Gray8Image;
 import jjil.core.Gray8MaskedImage;
 import jjil.core.Gray8OffsetImage;
+import jjil.core.Gray8ViewImage;
 import jjil.core.Image;
 import jjil.core.PipelineStage;
 
@@ -40,17 +41,37 @@ import jjil.core.PipelineStage;
  * The Haar cascade is applied at multiple scales, starting with the coarsest scale,
  * and working down to the finest scale. At each scale, the cascade is applied to
  * subimages spread across the image. If the cascade detects a feature, the area of
- * the mask corresponding to that subimage is set to Byte.MAX_VALUE. When a subimage
+ * the mask corresponding to that subimage is set to Byte.MAX_VALUE, and the
+ * subimage is added to a list of detections (see HaarDetections). When a subimage
  * is to be tested, the mask is first examined to see if the central pixel in the
  * mask area corresponding to that subimage is masked. If it is, the subimage is 
  * skipped. When transitioning to a finer scale, the mask is stretched to the new
  * size. This results in areas where features have been detected at a coarser scale
  * not being re-searched at a finer scale.<br>
- * Gray8DetectHaarMultiScale is structured as a pipeline stage so push'ing an image
- * results in a new mask being available on getFront. The mask can be further processed
+ * The detections are returned by detect, as a list of rectangles in input image
+ * coordinates with the scale and score of each. Overlapping detections can be
+ * merged by non-maximum suppression (see setOverlap).<br>
+ * Gray8DetectHaarMultiScale is also structured as a pipeline stage so push'ing an
+ * image results in a mask being available on getFront. Normally this is the
+ * search mask, stretched to the input size. When non-maximum suppression is
+ * set the search mask includes windows that were suppressed, so instead the
+ * mask is drawn from the remaining detections (see HaarDetections.toMask). 
+ * The mask can be further processed
  * by doing connected component detection to determine the feature characteristics,
  * or the mask can be displayed in an overlay on the original image to show the
- * feature areas.
+ * feature areas.<br>
+ * Normally each subimage is viewed in place in the scaled image (see
+ * Gray8ViewImage), without copying, if the Haar cascade accepts views (see
+ * HaarClassifierCascade.isViewSupported), or copied otherwise, and the Haar 
+ * cascade forms its own cumulative sum and standard deviation for it. When integral image
+ * mode is set (see setIntegralImage) the cumulative sum and sum of squares are
+ * formed once for each scale, using Gray8IntegralImage, and each subimage is 
+ * evaluated in place as an offset into them. The features detected are the same
+ * but the cost per subimage is much lower.<br>
+ * The scaled images are taken from a Gray8Pyramid. When several detectors
+ * work on the same frame they can share one, pushing the frame into it once
+ * and calling detect(Gray8Pyramid), so each scaled image (and integral image)
+ * is made once for all of them.
  * @author webb
  */
 public class Gray8DetectHaarMultiScale extends PipelineStage {
@@ -62,6 +83,17 @@ public class Gray8DetectHaarMultiScale extends PipelineStage {
     // scale change is the change in scale from one search to the next
     // times 256
     private int nScaleChange = 12 * 256 / 10;
+    // if true, form one integral image per scale and evaluate the
+    // subimages as offsets into it
+    private boolean bIntegralImage = false;
+    // integral image, reused from one scale to the next
+    private Gray8IntegralImage ii = null;
+    // detections from the last image
+    private HaarDetections detections = new HaarDetections();
+    // search mask at the finest scale searched in the last image
+    private Gray8Image imMask = null;
+    // minimum overlap percentage for non-maximum suppression, 0 for none
+    private int nOverlap = 0;
        
     /**
      * Creates a new instance of Gray8DetectHaarMultiScale. The scale parameters correspond
@@ -89,18 +121,34 @@ public class Gray8DetectHaarMultiScale extends PipelineStage {
     }
     
     /**
-     * Apply multi-scale Haar cascade and prepare a mask image showing where features
-     * were detected.
+     * Creates a new instance of Gray8DetectHaarMultiScale from a Haar cascade
+     * that has already been created, for example a HaarCompiledCascade loaded
+     * from the binary format or a class generated by HaarCascadeCodeGen.
+     * @param hcc the Haar cascade.
+     * @param nMinScale Minimum (finest) scale at which features will be detected.
+     * @param nMaxScale Maximum (coarsest) scale at which features will be detected.
+     */
+    public Gray8DetectHaarMultiScale(HaarClassifierCascade hcc, int nMinScale, int nMaxScale) 
+    {
+        this.hcc = hcc;
+        this.nMinScale = nMinScale;
+        this.nMaxScale = nMaxScale;
+    }
+    
+    /**
+     * Apply the multi-scale Haar cascade and return the list of windows where
+     * features were detected, in input image coordinates. Windows whose center
+     * is masked by a feature already detected are not searched.
      * @param image Input Gray8Image.
+     * @return the detections. The same object is reused by the next call.
+     * Each detection's scale is the factor the image was shrunk by, times 256.
+     * Its score is the last stage score (see 
+     * HaarClassifierCascade.evalScore).
      * @throws jjil.core.Error if the input is not a Gray8Image or is too small.
      */
-         
-    public void push(Image image) throws jjil.core.Error
+    public HaarDetections detect(Image image) throws jjil.core.Error
     {
-        Gray8Image imGray;
-        if (image instanceof Gray8Image) {
-            imGray = (Gray8Image) image;
-        } else {
+        if (!(image instanceof Gray8Image)) {
             throw new Error(
                             Error.PACKAGE.ALGORITHM,
                             ErrorCodes.IMAGE_NOT_GRAY8IMAGE,
@@ -108,73 +156,222 @@ public class Gray8DetectHaarMultiScale extends PipelineStage {
                             null,
                             null);
         }
-        if (image.getWidth() < this.hcc.getWidth() ||
-            image.getHeight() < this.hcc.getHeight()) {
+        // the pyramid is made for each image and not kept, so the scaled
+        // images and the input aren't held on to after detect returns
+        Gray8Pyramid pyramid = new Gray8Pyramid(Gray8Pyramid.MEAN, this.nScaleChange);
+        pyramid.push(image);
+        return detect(pyramid, false);
+    }
+    
+    /**
+     * Apply the multi-scale Haar cascade to the image last pushed into a
+     * Gray8Pyramid, taking the image at each scale from the pyramid. Several
+     * detectors working on the same frame can share one pyramid, so each
+     * scaled image is only made once. In integral image mode the integral
+     * images are taken from the pyramid too.<p>
+     * The detections are the same as detect(Image) returns for the pushed
+     * image if the pyramid is a Gray8Pyramid.MEAN pyramid.
+     * @param pyramid the pyramid, with the input image pushed into it.
+     * @return the detections. The same object is reused by the next call.
+     * @throws jjil.core.Error if nothing has been pushed into the pyramid or
+     * the pushed image is too small.
+     */
+    public HaarDetections detect(Gray8Pyramid pyramid) throws jjil.core.Error
+    {
+        return detect(pyramid, true);
+    }
+    
+    /**
+     * Search the image pushed into a pyramid at each scale.
+     * @param pyramid the pyramid.
+     * @param bShared if true, the pyramid is shared, and the integral images
+     * are taken from it; otherwise they are formed here, reusing one integral
+     * image for all scales.
+     * @return the detections.
+     * @throws jjil.core.Error if the pushed image is too small.
+     */
+    private HaarDetections detect(Gray8Pyramid pyramid, boolean bShared) 
+        throws jjil.core.Error
+    {
+        Gray8Image imGray = pyramid.getLevel(0);
+        if (imGray.getWidth() < this.hcc.getWidth() ||
+            imGray.getHeight() < this.hcc.getHeight()) {
             throw new Error(
                             Error.PACKAGE.ALGORITHM,
                             ErrorCodes.IMAGE_TOO_SMALL,
-                            image.toString(),
+                            imGray.toString(),
                             this.hcc.toString(),
                             null);
         }
-        int nScale = Math.min(this.nMaxScale, 
-                Math.min(image.getWidth() / this.hcc.getWidth(),
-                image.getHeight() / this.hcc.getHeight()));
+        this.detections.clear();
         // Zero the mask
-        Gray8Image imMask = new Gray8Image(1,1,Byte.MIN_VALUE);
+        this.imMask = new Gray8Image(1, 1, Byte.MIN_VALUE);
+        int nScale = Math.min(this.nMaxScale, 
+                Math.min(imGray.getWidth() / this.hcc.getWidth(),
+                imGray.getHeight() / this.hcc.getHeight()));
         while (nScale >= this.nMinScale) {
-            // shrink the input image
+            // get the shrunk input image
             int nTargetWidth = imGray.getWidth() / nScale;
             int nTargetHeight = imGray.getHeight() / nScale;
-            Gray8Shrink gs = new Gray8Shrink(nTargetWidth, nTargetHeight);
-            gs.push(imGray);
-            Gray8Image imShrunk = (Gray8Image) gs.getFront();
+            Gray8Image imShrunk = pyramid.getImage(nTargetWidth, nTargetHeight);
             // scale the mask to the new size
             Gray8RectStretch grs = new Gray8RectStretch(nTargetWidth, nTargetHeight);
-            grs.push(imMask);
-            imMask = (Gray8Image) grs.getFront();
-            // combine the image and mask to make a masked image
-            Gray8MaskedImage gmi = new Gray8MaskedImage(imShrunk, imMask);
-            // pass the masked image to a subimage generator
-            MaskedGray8SubImgGen mgsi = new MaskedGray8SubImgGen(
-                    this.hcc.getWidth(),
-                    this.hcc.getHeight(),
-                    Math.max(1, gmi.getWidth() / 30),
-                    Math.max(1, gmi.getHeight() / 30));
-            mgsi.push(gmi);
-            // now run Haar detection on each scaled image
-            int nxLastFound = -hcc.getWidth();
-            int nyLastFound = -hcc.getHeight();
-            while (!mgsi.isEmpty()) {
-                Gray8OffsetImage imSub = (Gray8OffsetImage) mgsi.getFront();
-                // if we've found a feature recently we skip forward until
-                // we're outside the masked region. There's no point rerunning
-                // the detector
-                if (imSub.getXOffset() > nxLastFound + hcc.getWidth() &&
-                    imSub.getYOffset() > nyLastFound + hcc.getHeight()) {
-                    if (hcc.eval(imSub)) {
-                        // Found something. 
-                        nxLastFound = imSub.getXOffset();
-                        nyLastFound = imSub.getYOffset();
-                        // assign Byte.MAX_VALUE to the feature area so we don't
-                        // search it again
-                        Gray8Rect gr = new Gray8Rect(nxLastFound, 
-                                nyLastFound, 
-                                this.hcc.getWidth(), 
-                                this.hcc.getHeight(), 
-                                Byte.MAX_VALUE);
-                        gr.push(imMask);
-                        imMask = (Gray8Image) gr.getFront();
-                     }
-                }
+            grs.push(this.imMask);
+            this.imMask = (Gray8Image) grs.getFront();
+            Gray8IntegralImage ii = null;
+            if (this.bIntegralImage) {
+                ii = getIntegralImage(pyramid, bShared, imShrunk);
             }
+            search(pyramid, bShared, imGray, imShrunk, ii, nScale);
             nScale = nScale * 256 / this.nScaleChange;
         }
+        if (this.nOverlap > 0) {
+            this.detections.suppress(this.nOverlap);
+        }
+        return this.detections;
+    }
+    
+    /**
+     * Returns the integral image of the image at one scale.
+     * @param pyramid the pyramid the image was taken from.
+     * @param bShared if true, the integral image is taken from the pyramid;
+     * otherwise it is formed here, reusing one integral image for all scales.
+     * @param imShrunk the image at the current scale.
+     * @return the integral image of imShrunk.
+     * @throws jjil.core.Error if the integral image can't be formed.
+     */
+    private Gray8IntegralImage getIntegralImage(
+            Gray8Pyramid pyramid, 
+            boolean bShared, 
+            Gray8Image imShrunk) 
+        throws jjil.core.Error
+    {
+        if (bShared) {
+            return pyramid.getIntegralImage(
+                    imShrunk.getWidth(), 
+                    imShrunk.getHeight());
+        }
+        if (this.ii == null) {
+            this.ii = new Gray8IntegralImage();
+        }
+        this.ii.push(imShrunk);
+        return this.ii;
+    }
+    
+    /**
+     * Apply multi-scale Haar cascade and prepare a mask image showing where features
+     * were detected. Without non-maximum suppression this is the search mask,
+     * as it always has been; with it, the mask is drawn from the detections
+     * that remain (see HaarDetections.toMask).
+     * @param image Input Gray8Image.
+     * @throws jjil.core.Error if the input is not a Gray8Image or is too small.
+     */
+         
+    public void push(Image image) throws jjil.core.Error
+    {
+        HaarDetections hd = detect(image);
+        if (this.nOverlap > 0) {
+            super.setOutput(hd.toMask(image.getWidth(), image.getHeight()));
+            return;
+        }
         // Stretch imMask to original image size; this is the result
         Gray8RectStretch grs = new Gray8RectStretch(image.getWidth(), image.getHeight());
-        grs.push(imMask);
+        grs.push(this.imMask);
         super.setOutput(grs.getFront());
     }
+    
+    /**
+     * Search one scale of the image. The windows are generated by
+     * MaskedGray8SubImgGen, skipping those whose center is masked, and each
+     * detection is masked so it isn't searched again. In integral image mode
+     * the cascade is evaluated at offsets in the integral image of the shrunk
+     * image; otherwise each window is passed to the cascade, and the integral
+     * image is only formed to score the windows the cascade accepts.
+     * @param pyramid the pyramid imShrunk was taken from.
+     * @param bShared true if the pyramid is shared.
+     * @param imGray the input image.
+     * @param imShrunk the image at the current scale.
+     * @param ii the integral image of imShrunk, or null if not in integral
+     * image mode.
+     * @param nScale the factor the input image was shrunk by.
+     * @throws jjil.core.Error if the Haar cascade evaluation fails.
+     */
+    private void search(
+            Gray8Pyramid pyramid,
+            boolean bShared,
+            Gray8Image imGray, 
+            Gray8Image imShrunk, 
+            Gray8IntegralImage ii, 
+            int nScale)
+        throws jjil.core.Error
+    {
+        int nWidth = this.hcc.getWidth();
+        int nHeight = this.hcc.getHeight();
+        // combine the image and mask to make a masked image
+        Gray8MaskedImage gmi = new Gray8MaskedImage(imShrunk, this.imMask);
+        // pass the masked image to a subimage generator
+        MaskedGray8SubImgGen mgsi = new MaskedGray8SubImgGen(
+                nWidth,
+                nHeight,
+                Math.max(1, gmi.getWidth() / 30),
+                Math.max(1, gmi.getHeight() / 30));
+        // the cascade only reads the window, so it doesn't need a copy
+        // if it accepts views. The integral image mode only uses the position.
+        mgsi.setView(ii != null || this.hcc.isViewSupported());
+        mgsi.push(gmi);
+        // window size in the input image
+        int nInWidth = nWidth * imGray.getWidth() / imShrunk.getWidth();
+        int nInHeight = nHeight * imGray.getHeight() / imShrunk.getHeight();
+        Gray8IntegralImage iiScore = ii;
+        int nxLastFound = -nWidth;
+        int nyLastFound = -nHeight;
+        while (!mgsi.isEmpty()) {
+            Image imSub = mgsi.getFront();
+            int nX, nY;
+            if (imSub instanceof Gray8ViewImage) {
+                nX = ((Gray8ViewImage) imSub).getXOffset();
+                nY = ((Gray8ViewImage) imSub).getYOffset();
+            } else {
+                nX = ((Gray8OffsetImage) imSub).getXOffset();
+                nY = ((Gray8OffsetImage) imSub).getYOffset();
+            }
+            // if we've found a feature recently we skip forward until
+            // we're outside the masked region. There's no point rerunning
+            // the detector
+            if (nX <= nxLastFound + nWidth || nY <= nyLastFound + nHeight) {
+                continue;
+            }
+            int nScore;
+            if (ii != null) {
+                nScore = this.hcc.evalScore(ii, nX, nY);
+            } else if (this.hcc.eval(imSub)) {
+                // score the window from the integral image. This is
+                // only done for windows the cascade accepts, which are few.
+                if (iiScore == null) {
+                    iiScore = getIntegralImage(pyramid, bShared, imShrunk);
+                }
+                nScore = Math.max(0, this.hcc.evalScore(iiScore, nX, nY));
+            } else {
+                nScore = -1;
+            }
+            if (nScore >= 0) {
+                // Found something. 
+                nxLastFound = nX;
+                nyLastFound = nY;
+                // assign Byte.MAX_VALUE to the feature area so we don't
+                // search it again
+                Gray8Rect gr = new Gray8Rect(nX, nY, nWidth, nHeight, Byte.MAX_VALUE);
+                gr.push(this.imMask);
+                this.detections.add(
+                        nX * imGray.getWidth() / imShrunk.getWidth(), 
+                        nY * imGray.getHeight() / imShrunk.getHeight(), 
+                        nInWidth, 
+                        nInHeight, 
+                        nScale * 256, 
+                        nScore);
+            }
+        }
+    }
      
     /**
      * Set minimum and maximum scale.
@@ -189,4 +386,35 @@ public class Gray8DetectHaarMultiScale extends PipelineStage {
         this.nMinScale = nMinScale;
         this.nMaxScale = nMaxScale;
     }
+    
+    /**
+     * Set integral image mode. In integral image mode the cumulative sum and
+     * sum of squares of the image are formed once at each scale and the Haar
+     * cascade is evaluated on the subimages in place, instead of forming them
+     * again for every subimage.
+     * @param bIntegralImage true to use integral image mode. Default is false.
+     */
+    public void setIntegralImage(boolean bIntegralImage) {
+        this.bIntegralImage = bIntegralImage;
+    }
+    
+    /**
+     * Set non-maximum suppression. When this is set, detect removes any
+     * detection that overlaps a higher-scoring detection by at least nOverlap
+     * percent of the smaller window's area. See HaarDetections.suppress.
+     * @param nOverlap the overlap percentage; 0 (the default) turns 
+     * suppression off.
+     * @throws jjil.core.Error if nOverlap is negative.
+     */
+    public void setOverlap(int nOverlap) throws jjil.core.Error {
+        if (nOverlap < 0) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            new Integer(nOverlap).toString(),
+                            "0",
+                            null);
+        }
+        this.nOverlap = nOverlap;
+    }
 }
@@ -23,6 +23,7 @@
  */
 
 package jjil.algorithm;
+import jjil.core.BandedStage;
 import jjil.core.Error;
 import jjil.core.Gray8Image;
 import jjil.core.Image;
@@ -36,16 +37,32 @@ import jjil.core.PipelineStage;
  * the maximum value is about 10.0. Larger sigma values give an operator which
  * is more blurred.
  * <p>
+ * In iterated box mode (see setIteratedBox) the Gaussian is approximated by
+ * three box filters applied in turn (see GaussIteratedBox), so the cost per
+ * pixel doesn't depend on sigma, and sigma can be larger than the table of
+ * coefficients allows. At large sigma this is several times faster than
+ * convolving with the table; at small sigma it is no faster and the
+ * approximation is coarser. The results also differ in gain: the table's
+ * coefficients were normalized over one side of the kernel, so they add up
+ * to more than 1 and stretch values away from mid-gray, while the boxes add
+ * up to exactly 1.
+ * <p>
  * Hungarian prefix is 'gshz'.
  * @author webb
  */
-public class Gray8GaussSmoothVert extends PipelineStage {
+public class Gray8GaussSmoothVert extends PipelineStage implements BandedStage {
     /** cSigma is the sigma value we'll be using. It has been multiplied
      * by 10.0 and converted to integer because CLDC 1.0 doesn't allow
      * floating point. The minimum legal value for cSigma is 1; the maximum
      * is given by the length of nCoeff below.
      */
     private int cSigma;
+    /** True in iterated box mode, when box is used instead of nCoeff.
+     */
+    private boolean bIteratedBox = false;
+    /** The box filters that approximate the operator in iterated box mode.
+     */
+    private GaussIteratedBox box = null;
     /** nCoeff row i is the precomputed Gauss coefficients for sigma = i/10.0.
      * They have been scaled by 256 and converted to integer because CLDC 1.0
      * doesn't allow floating point. The coefficients have been scaled and
@@ -173,7 +190,20 @@ public class Gray8GaussSmoothVert extends PipelineStage {
         this.setSigma(cSigma);
     }
     
-    /** Apply the Gaussian horizontally to the input input image.
+    /**
+     * Creates a new instance of Gray8GaussSmoothVert, choosing how the operator
+     * is computed.
+     * @param cSigma the sigma value for the operator, which is the sigma
+     * in the Gaussian distribution multipied by 10.0 and converted to integer.
+     * @param bIteratedBox true to use iterated box mode (see setIteratedBox).
+     * @throws jjil.core.Error if cSigma is out of range.
+     */
+    public Gray8GaussSmoothVert(int cSigma, boolean bIteratedBox) throws jjil.core.Error {
+        this.bIteratedBox = bIteratedBox;
+        this.setSigma(cSigma);
+    }
+    
+    /** Apply the Gaussian vertically to the input input image.
      * The sigma value for the operator is set in the class constructor.
      * We handle the borders of the image a little carefully to avoid creating
      * spurious edges at them. The image value at the border is reflected so
@@ -183,49 +213,121 @@ public class Gray8GaussSmoothVert extends PipelineStage {
      * @throws jjil.core.Error if image is not a Gray8Image
      */
     public void push(Image image) throws jjil.core.Error {
-        if (!(image instanceof Gray8Image)) {
-            throw new Error(
-                			Error.PACKAGE.ALGORITHM,
-                			ErrorCodes.IMAGE_NOT_GRAY8IMAGE,
-                			image.toString(),
-                			null,
-                			null);
+        Image imageResult = startBands(image);
+        pushBand(image, imageResult, 0, image.getHeight());
+        super.setOutput(imageResult);
+    }
+    
+    /**
+     * Returns the number of rows above and below a pixel that the Gaussian
+     * reaches, which depends on sigma.
+     * @return the vertical halo of the Gaussian.
+     */
+    public int getHalo() {
+        if (this.bIteratedBox) {
+            return this.box.getHalo();
+        }
+        return this.nCoeff[this.cSigma].length - 1;
+    }
+    
+    /**
+     * Apply the Gaussian to rows nRowFirst to nRowLimit - 1 of the input.
+     * @param image the input Gray8Image.
+     * @param imageResult the output image, from startBands.
+     * @param nRowFirst the first row to compute.
+     * @param nRowLimit one past the last row to compute.
+     */
+    public void pushBand(Image image, Image imageResult, int nRowFirst, int nRowLimit) {
+        byte[] bIn = ((Gray8Image) image).getData();
+        byte[] bResult = ((Gray8Image) imageResult).getData();
+        if (this.bIteratedBox) {
+            pushBandBox(
+                    bIn, 
+                    bResult, 
+                    image.getWidth(), 
+                    image.getHeight(), 
+                    nRowFirst, 
+                    nRowLimit);
+            return;
         }
-        Gray8Image input = (Gray8Image) image;
-        Gray8Image result = new Gray8Image(image.getWidth(), image.getHeight());
-        byte[] bIn = input.getData();
-        byte[] bResult = result.getData();
         int[] wCoeff = this.nCoeff[this.cSigma];
-        int cHeight = input.getHeight();
-        for (int j=0; j<input.getWidth(); j++) {
-            for (int i=0; i<cHeight; i++) {
+        int cWidth = image.getWidth();
+        int cHeight = image.getHeight();
+        for (int i=nRowFirst; i<nRowLimit; i++) {
+            for (int j=0; j<cWidth; j++) {
                 /* left side of Gaussian */
                 int wSum = 0;
                 /* Use Math.abs to mirror the index at the border
                  */
                 for (int k=1; k<wCoeff.length; k++) {
-                    wSum += wCoeff[k] * bIn[Math.abs(i-k)*cHeight + j];
+                    wSum += wCoeff[k] * bIn[Math.abs(i-k)*cWidth + j];
                 }
                 /* right side of Gaussian */
                 for (int k=0; 
                          k<wCoeff.length; 
                          k++) {
                     if (i + k < cHeight) {
-                        wSum += wCoeff[k] * bIn[(i+k)*cHeight + j];
+                        wSum += wCoeff[k] * bIn[(i+k)*cWidth + j];
                     } else {
                         // reflect at border. i + k >= cHeight so
-                        // 2*cWidth - (i + k + 1) < cHeight
+                        // 2*cHeight - (i + k + 1) < cHeight
                         int cPos = 2*cHeight - (i + k + 1);
-                        wSum += wCoeff[k] * bIn[cPos*cHeight + j];
+                        wSum += wCoeff[k] * bIn[cPos*cWidth + j];
                     }
                 }
                 /* Gaussian coefficients are scaled so sum is 256.
                  */
                 wSum = wSum >> 8;
-                bResult[i*cHeight + j] = (byte) wSum;
+                bResult[i*cWidth + j] = (byte) wSum;
             }
         }
-        super.setOutput(result);
+    }
+    
+    /**
+     * Apply the Gaussian in iterated box mode to rows nRowFirst to
+     * nRowLimit - 1, a column at a time. Only the rows of each column that
+     * the boxes reach are read.
+     */
+    private void pushBandBox(
+            byte[] bIn, 
+            byte[] bResult, 
+            int cWidth, 
+            int cHeight,
+            int nRowFirst, 
+            int nRowLimit) {
+        int nHalo = this.box.getHalo();
+        int nLo = Math.max(0, nRowFirst - nHalo);
+        int nHi = Math.min(cHeight, nRowLimit + nHalo);
+        int[] rnIn = new int[cHeight];
+        int[] rnWork = new int[cHeight];
+        int[] rnOut = new int[cHeight];
+        for (int j=0; j<cWidth; j++) {
+            for (int i=nLo; i<nHi; i++) {
+                rnIn[i] = bIn[i*cWidth + j] - Byte.MIN_VALUE;
+            }
+            this.box.smooth(rnIn, rnWork, rnOut, cHeight, nRowFirst, nRowLimit);
+            for (int i=nRowFirst; i<nRowLimit; i++) {
+                bResult[i*cWidth + j] = (byte) (rnOut[i] + Byte.MIN_VALUE);
+            }
+        }
+    }
+    
+    /**
+     * Check the input and get the output image.
+     * @param image the input image.
+     * @return a Gray8Image the size of the input.
+     * @throws jjil.core.Error if the input is not a Gray8Image.
+     */
+    public Image startBands(Image image) throws jjil.core.Error {
+        if (!(image instanceof Gray8Image)) {
+            throw new Error(
+                			Error.PACKAGE.ALGORITHM,
+                			ErrorCodes.IMAGE_NOT_GRAY8IMAGE,
+                			image.toString(),
+                			null,
+                			null);
+        }
+        return newGray8Image(image.getWidth(), image.getHeight());
     }
     
      /** Returns the current value of sigma.
@@ -236,6 +338,14 @@ public class Gray8GaussSmoothVert extends PipelineStage {
         return this.cSigma;
     }
     
+    /**
+     * Returns true in iterated box mode.
+     * @return true if the operator is approximated by iterated box filters.
+     */
+    public boolean isIteratedBox() {
+        return this.bIteratedBox;
+    }
+    
     /** sets a new value for sigma. Sigma controls the frequency of edges
      * that the operator responds to. A small sigma value gives less blur.
      *
@@ -245,7 +355,7 @@ public class Gray8GaussSmoothVert extends PipelineStage {
      * we're precomputed.
      */
     public void setSigma(int cSigma) throws jjil.core.Error {
-        if (cSigma <= 1 || cSigma >= this.nCoeff.length) {
+        if (cSigma <= 1 || (!this.bIteratedBox && cSigma >= this.nCoeff.length)) {
             throw new Error(
                 			Error.PACKAGE.ALGORITHM,
                 			ErrorCodes.PARAMETER_OUT_OF_RANGE,
@@ -253,9 +363,34 @@ public class Gray8GaussSmoothVert extends PipelineStage {
                 			new Integer(1).toString(),
                 			new Integer(this.nCoeff.length).toString());
         }
+        if (this.bIteratedBox) {
+            this.box = new GaussIteratedBox(cSigma * cSigma / 2);
+        }
         this.cSigma = cSigma;
     }
     
+    /**
+     * Chooses between convolving with the table of coefficients and the
+     * iterated box approximation, whose cost doesn't depend on sigma. In
+     * iterated box mode sigma can go up to 848.
+     * @param bIteratedBox true to use iterated box mode. Default is false.
+     * @throws jjil.core.Error if sigma is too large for the mode chosen.
+     */
+    public void setIteratedBox(boolean bIteratedBox) throws jjil.core.Error {
+        if (bIteratedBox) {
+            // the kernel is exp(-x*x/(sigma*sigma)), with variance sigma*sigma/2
+            this.box = new GaussIteratedBox(this.cSigma * this.cSigma / 2);
+        } else if (this.cSigma >= this.nCoeff.length) {
+            throw new Error(
+                			Error.PACKAGE.ALGORITHM,
+                			ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                			new Integer(this.cSigma).toString(),
+                			new Integer(1).toString(),
+                			new Integer(this.nCoeff.length).toString());
+        }
+        this.bIteratedBox = bIteratedBox;
+    }
+    
     /** returns a string describing this Gaussian blur.
      *
      * @return a string describing the Gaussian blur.
@@ -26,7 +26,10 @@ package jjil.algorithm;
 import jjil.core.Gray8Image;
 
 /**
- * Computes the histogram of a gray image. 
+ * Computes the histogram of a gray image. The histogram of part of an image,
+ * a band of rows, can be added to a histogram, so that the bands of a large
+ * image can be counted separately (by different threads, for example) and
+ * their histograms added together.
  * 
  * @author webb
  */
@@ -36,6 +39,61 @@ public class Gray8Hist {
     private Gray8Hist() {
     }
     
+    /** Add the histogram of rows nRowFirst to nRowLimit - 1 of an image to
+     * a histogram.
+     *
+     * @param image the input image.
+     * @param nRowFirst the first row to count.
+     * @param nRowLimit one past the last row to count.
+     * @param rnHistogram the histogram, a 256-element int array offset so
+     * element 0 corresponds to Byte.MIN_VALUE. The counts are added to it.
+     */
+    public static void addHistogram(
+            Gray8Image image, 
+            int nRowFirst, 
+            int nRowLimit, 
+            int[] rnHistogram) {
+        byte[] data = image.getData();
+        int nLimit = nRowLimit * image.getWidth();
+        for (int i=nRowFirst * image.getWidth(); i<nLimit; i++) {
+            rnHistogram[data[i]-Byte.MIN_VALUE] ++;
+        }
+    }
+    
+    /** Map rows nRowFirst to nRowLimit - 1 of an image through a lookup
+     * table and add the histogram of the rows, before they are mapped, to a
+     * histogram. This does in one pass over the pixels what addHistogram and
+     * Gray8Lookup do in two, for when the table doesn't depend on the
+     * histogram -- when it comes from the histogram of an earlier image, for
+     * example.
+     *
+     * @param image the input image.
+     * @param imageOutput the output image, the same size as the input. May
+     * be the input image.
+     * @param rbLookup the lookup table. Value g is mapped to
+     * rbLookup[g - Byte.MIN_VALUE].
+     * @param nRowFirst the first row to map.
+     * @param nRowLimit one past the last row to map.
+     * @param rnHistogram the histogram of the input, as in addHistogram. The
+     * counts are added to it.
+     */
+    public static void addHistogramAndLookup(
+            Gray8Image image, 
+            Gray8Image imageOutput,
+            byte[] rbLookup,
+            int nRowFirst, 
+            int nRowLimit, 
+            int[] rnHistogram) {
+        byte[] data = image.getData();
+        byte[] dataOut = imageOutput.getData();
+        int nLimit = nRowLimit * image.getWidth();
+        for (int i=nRowFirst * image.getWidth(); i<nLimit; i++) {
+            int n = data[i]-Byte.MIN_VALUE;
+            rnHistogram[n] ++;
+            dataOut[i] = rbLookup[n];
+        }
+    }
+    
     /** Compute the histogram of the input gray image.
      *
      * @param image the input image
@@ -45,15 +103,7 @@ public class Gray8Hist {
      */
     public static int[] computeHistogram(Gray8Image image) {
         int[] result = new int[256];
-        for (int i=0; i<256; i++) {
-            result[i] = 0;
-        }
-        byte[] data = image.getData();
-        for (int i=0; i<image.getHeight(); i++) {
-            for (int j=0; j<image.getWidth(); j++) {
-                result[data[i*image.getWidth()+j]-Byte.MIN_VALUE] ++;
-            }
-        }
+        addHistogram(image, 0, image.getHeight(), result);
         return result;
     }
     
@@ -29,13 +29,22 @@ import jjil.core.Image;
 import jjil.core.PipelineStage;
 
 /**
- * Equalize the histogram of a gray image.
+ * Equalize the histogram of a gray image. This PipelineStage modifies its
+ * input. The lookup table which equalizes an image with a given histogram
+ * is available from getLookup.
  * <p>
  * @author webb
  */
-public class Gray8HistEq extends PipelineStage {
+public class Gray8HistEq extends PipelineStage implements HistogramLookup {
     private int cPixels = 0;
     private Gray8HistMatch histMatch;
+    /* The histogram, the lookup table and the stage applying it are kept
+     * from one image to the next, so push doesn't allocate.
+     */
+    private int[] histogram = new int[256];
+    private int[] histCum = new int[256];
+    private byte[] lookup = new byte[256];
+    private Gray8Lookup modify = null;
     
     /**
      * Creates a new instance of Gray8HistEq
@@ -46,6 +55,23 @@ public class Gray8HistEq extends PipelineStage {
         this.histMatch = new Gray8HistMatch(nullHist);
     }
     
+    /** Computes the lookup table which equalizes the histogram of an image
+     * with a given histogram.
+     *
+     * @param histogram the image's histogram, offset so element 0
+     * corresponds to Byte.MIN_VALUE. It is not changed.
+     * @return the lookup table.
+     * @throws jjil.core.Error if histogram does not have 256 elements.
+     */
+    public byte[] getLookup(int[] histogram) throws jjil.core.Error {
+        int cPixels = 0;
+        for (int i=0; i<histogram.length; i++) {
+            cPixels += histogram[i];
+        }
+        setPixelCount(cPixels);
+        return this.histMatch.getLookup(histogram);
+    }
+    
     /** Equalize the histogram of an input gray image.
      *
      * @param image the input image.
@@ -61,12 +87,36 @@ public class Gray8HistEq extends PipelineStage {
             				null);
         }
         Gray8Image gray = (Gray8Image) image;
+        for (int i=0; i<256; i++) {
+            this.histogram[i] = 0;
+        }
+        Gray8Hist.addHistogram(gray, 0, gray.getHeight(), this.histogram);
+        setPixelCount(gray.getWidth() * gray.getHeight());
+        /* Apply the histogram match algorithm to equalize the histogram
+         * of the input.
+         */
+        this.histMatch.getLookup(this.histogram, this.histCum, this.lookup);
+        if (this.modify == null) {
+            this.modify = new Gray8Lookup(this.lookup);
+        } else {
+            this.modify.setTable(this.lookup);
+        }
+        this.modify.push(gray);
+        super.setOutput(this.modify.getFront());
+    }
+    
+    /** Sets the target histogram for images with cPixels pixels.
+     *
+     * @param cPixels the number of pixels in the image.
+     * @throws jjil.core.Error if Gray8HistMatch throws jjil.core.Error due to coding error.
+     */
+    private void setPixelCount(int cPixels) throws jjil.core.Error {
         /* In order to avoid recreating histMatch every call, we recompute
          * the target histogram only when the image size (total # pixels)
          * changes.
          */
-        if (image.getWidth() * image.getHeight() != cPixels) {
-            this.cPixels = image.getWidth() * image.getHeight();
+        if (cPixels != this.cPixels) {
+            this.cPixels = cPixels;
             int cPixelsRemaining = cPixels;
             /* (Re)compute the equalizing histogram. We want a histogram
              * which is as flat as possible. The calculation below evens
@@ -80,10 +130,21 @@ public class Gray8HistEq extends PipelineStage {
             }
             this.histMatch.setHistogram(histogram);
         }
-        /* Apply the histogram match algorithm to equalize the histogram
-         * of the input.
-         */
-        this.histMatch.push(gray);
-        super.setOutput(this.histMatch.getFront());
+    }
+    
+    /**
+     * Returns the type of image this stage accepts.
+     * @return Gray8Image.class
+     */
+    public Class getInputType() {
+        return Gray8Image.class;
+    }
+    
+    /**
+     * Returns the type of image this stage produces.
+     * @return Gray8Image.class
+     */
+    public Class getOutputType() {
+        return Gray8Image.class;
     }
 }
@@ -33,10 +33,11 @@ import jjil.core.RgbVal;
  * Pipeline stage modifies a gray image's pixel values to make its histogram
  * match a target histogram (to the extent this is possible while uniquely
  * mapping each input grayvalue). This PipelineStage modifies its input.
+ * The lookup table for a given input histogram is available from getLookup.
  *
  * @author webb
  */
-public class Gray8HistMatch extends PipelineStage {
+public class Gray8HistMatch extends PipelineStage implements HistogramLookup {
     /* We use the cumulative pixel count in computation, not
      * the input histogram.
      */
@@ -52,8 +53,8 @@ public class Gray8HistMatch extends PipelineStage {
         setHistogram(histTarget);
     }
     
-    private byte[] createLookup(int[] histCumTarget, int[] histCumSource) {
-        byte[] lookup = new byte[256];
+    private void createLookup(
+            int[] histCumTarget, int[] histCumSource, byte[] lookup) {
         int j=0;
         for (int i=0; i<256; i++) {
             while (histCumTarget[j] < histCumSource[i]) {
@@ -66,7 +67,6 @@ public class Gray8HistMatch extends PipelineStage {
                 lookup[i] = Byte.MAX_VALUE;
             }
         }
-        return lookup;
     }
     
     /** getHistogram returns the target histogram that has been
@@ -86,6 +86,49 @@ public class Gray8HistMatch extends PipelineStage {
         return result;
     }
     
+    /** getLookup computes the lookup table which transforms an image with
+     * a given histogram to have the target histogram.
+     *
+     * @param histogram the input image's histogram, offset so element 0
+     * corresponds to Byte.MIN_VALUE. It is not changed.
+     * @return the lookup table.
+     * @throws jjil.core.Error if histogram does not have 256
+     * elements.
+     */
+    public byte[] getLookup(int[] histogram) throws jjil.core.Error {
+        if (histogram.length != 256) {
+            throw new Error(
+    				Error.PACKAGE.ALGORITHM,
+    				ErrorCodes.HISTOGRAM_LENGTH_NOT_256,
+    				histogram.toString(),
+    				null,
+    				null);
+        }
+        byte[] lookup = new byte[256];
+        getLookup(histogram, new int[256], lookup);
+        return lookup;
+    }
+    
+    /** Computes the lookup table for a histogram into arrays the caller
+     * supplies, so a stage applying a table to every image can reuse them.
+     *
+     * @param histogram the input image's histogram, 256 elements, as in
+     * getLookup(int[]). It is not changed.
+     * @param histCum a 256-element work array.
+     * @param lookup the 256-element lookup table, which is overwritten.
+     */
+    void getLookup(int[] histogram, int[] histCum, byte[] lookup) {
+        // for the purposes of computation below we need a cumulative
+        // pixel count, not a histogram
+        histCum[0] = histogram[0];
+        for (int i=1; i<256; i++) {
+            histCum[i] = histogram[i] + histCum[i-1];
+        }
+        // create a lookkup table to map the input cumulative histogram
+        // to the target cumulative histogram.
+        createLookup(this.histCumTarget, histCum, lookup);
+    }
+    
     /** push transforms an input gray image to have the target histogram,
      * as near as possible while assigning each input grayvalue a unique
      * output grayvalue.
@@ -111,16 +154,9 @@ public class Gray8HistMatch extends PipelineStage {
          * match what was intended.
          */
         Gray8Image input = (Gray8Image) image;
-        // get the input histogram
-        int[] histCum = Gray8Hist.computeHistogram(input);
-        // for the purposes of computation below we need a cumulative
-        // pixel count, not a histogram
-        for (int i=1; i<256; i++) {
-            histCum[i] = histCum[i] + histCum[i-1];
-        }
-        // create a lookkup table to map the input cumulative histogram
-        // to the target cumulative histogram.
-        byte[] lookup = createLookup(this.histCumTarget, histCum);
+        // get the input histogram and the lookup table that maps it
+        // to the target histogram
+        byte[] lookup = getLookup(Gray8Hist.computeHistogram(input));
         // apply the lookup table
         Gray8Lookup modify = new Gray8Lookup(lookup);
         modify.push(input);
@@ -23,6 +23,7 @@
  */
 
 package jjil.algorithm;
+import jjil.core.BandedStage;
 import jjil.core.Error;
 import jjil.core.Gray16Image;
 import jjil.core.Gray8Image;
@@ -34,7 +35,7 @@ import jjil.core.PipelineStage;
  * the current pixel.
  * @author webb
  */
-public class Gray8HorizVar extends PipelineStage {
+public class Gray8HorizVar extends PipelineStage implements BandedStage {
 	/**
 	 * The window size -- pixels within nWindow of the current
 	 * pixel are included in the window.
@@ -59,26 +60,36 @@ public class Gray8HorizVar extends PipelineStage {
      * @throws jjil.core.Error if image is not a Gray8Image
      */
     public void push(Image image) throws jjil.core.Error {
-        if (!(image instanceof Gray8Image)) {
-            throw new Error(
-    				Error.PACKAGE.ALGORITHM,
-    				ErrorCodes.IMAGE_NOT_GRAY8IMAGE,
-    				image.toString(),
-    				null,
-    				null);
-        }
-        if (this.g16 == null || 
-        	this.g16.getWidth() != image.getWidth()	|| 
-        	this.g16.getHeight() != image.getHeight()) {
-        	this.g16 = new Gray16Image(
-        			image.getWidth(), 
-        			image.getHeight());
-        }
+        startBands(image);
+        pushBand(image, this.g16, 0, image.getHeight());
+        super.setOutput(this.g16);
+    }
+    
+    /**
+     * Returns 0, since the variance is computed within each row.
+     * @return 0.
+     */
+    public int getHalo() {
+        return 0;
+    }
+    
+    /**
+     * Compute the horizontal variance in rows nRowFirst to nRowLimit - 1.
+     * @param image the input Gray8Image.
+     * @param imageOutput the output Gray16Image, from startBands.
+     * @param nRowFirst the first row to compute.
+     * @param nRowLimit one past the last row to compute.
+     */
+    public void pushBand(
+            Image image, 
+            Image imageOutput, 
+            int nRowFirst, 
+            int nRowLimit) {
         Gray8Image input = (Gray8Image) image;
         byte[] bIn = input.getData();
         int cWidth = input.getWidth();
-        short[] sOut = g16.getData();
-        for (int i=0; i<input.getHeight(); i++) {
+        short[] sOut = ((Gray16Image) imageOutput).getData();
+        for (int i=nRowFirst; i<nRowLimit; i++) {
 	        int nSum = 0;
 	        int nSumSq = 0;
 	        int nCount = 0;
@@ -112,7 +123,39 @@ public class Gray8HorizVar extends PipelineStage {
             	sOut[i*cWidth + j] = nVar;
             }
         }
-        super.setOutput(g16);
     }
     
+    /**
+     * Check the input and get the output image, which is reused from the
+     * last push when it is the same size.
+     * @param image the input image.
+     * @return the output Gray16Image.
+     * @throws jjil.core.Error if image is not a Gray8Image
+     */
+    public Image startBands(Image image) throws jjil.core.Error {
+        if (!(image instanceof Gray8Image)) {
+            throw new Error(
+    				Error.PACKAGE.ALGORITHM,
+    				ErrorCodes.IMAGE_NOT_GRAY8IMAGE,
+    				image.toString(),
+    				null,
+    				null);
+        }
+        if (this.g16 == null || 
+        	this.g16.getWidth() != image.getWidth()	|| 
+        	this.g16.getHeight() != image.getHeight()) {
+        	this.g16 = new Gray16Image(
+        			image.getWidth(), 
+        			image.getHeight());
+        }
+        return this.g16;
+    }
+    
+    /**
+     * Returns true, since the input image is not changed.
+     * @return true.
+     */
+    public boolean isInputReadOnly() {
+        return true;
+    }
 }
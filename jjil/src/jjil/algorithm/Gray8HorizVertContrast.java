@@ -23,6 +23,8 @@
  */
 
 package jjil.algorithm;
+import jjil.core.Gray16Image;
+import jjil.core.Gray8Image;
 import jjil.core.Image;
 import jjil.core.Ladder;
 import jjil.core.PipelineStage;
@@ -62,4 +64,27 @@ public class Gray8HorizVertContrast extends PipelineStage {
         super.setOutput(this.pipe.getFront());
     }
     
+    /**
+     * Returns the type of image this stage accepts.
+     * @return Gray8Image.class
+     */
+    public Class getInputType() {
+        return Gray8Image.class;
+    }
+    
+    /**
+     * Returns the type of image this stage produces.
+     * @return Gray16Image.class
+     */
+    public Class getOutputType() {
+        return Gray16Image.class;
+    }
+    
+    /**
+     * Returns true, since the input image is not changed.
+     * @return true.
+     */
+    public boolean isInputReadOnly() {
+        return true;
+    }
 }
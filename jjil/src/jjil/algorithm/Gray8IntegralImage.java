@@ -0,0 +1,204 @@
+/*
+ * Gray8IntegralImage.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jjil.algorithm;
+import jjil.core.Error;
+import jjil.core.Gray8Image;
+import jjil.core.Gray8ViewImage;
+import jjil.core.Image;
+import jjil.core.MathPlus;
+
+/**
+ * Gray8IntegralImage forms the cumulative sum and the cumulative sum of squares
+ * of a Gray8Image, so that the sum, mean, and standard deviation of any
+ * rectangular window in the image can be computed in constant time.<p>
+ * Unlike Gray8QmSum, the sums are stored with an extra row and column of zeroes
+ * at the top and left, so the arrays are (width+1) &times; (height+1) and
+ * <blockquote> Sum(i+1,j+1) = &sum;<sub>k &le; i, l &le; j</sub> Input(k,l). </blockquote>
+ * This means every window sum is computed the same way, with four lookups,
+ * no matter where the window lies in the image.<p>
+ * The sums are 32 bits, the sums of squares 64 bits. The 32-bit sums can
+ * overflow for very large images, but since two's complement arithmetic wraps
+ * around, window sums are still correct as long as the sum over the window
+ * itself fits in 32 bits.<p>
+ * The arrays are reused from one push to the next when the image size does not
+ * change, so the same Gray8IntegralImage can be used for every frame of a
+ * video stream without allocation.
+ * @author webb
+ */
+public class Gray8IntegralImage {
+    private int nHeight; // height of the input image
+    private int nWidth; // width of the input image
+    private int rnSum[]; // cumulative sum, (nWidth+1) x (nHeight+1)
+    private long rlSumSq[]; // cumulative sum of squares, same size
+
+    /**
+     * Creates a new instance of Gray8IntegralImage
+     */
+    public Gray8IntegralImage() {
+    }
+
+    /**
+     * Returns the height of the image last pushed.
+     * @return the image height.
+     */
+    public int getHeight() {
+        return this.nHeight;
+    }
+
+    /**
+     * Return standard deviation of a window, times 256. The computation is
+     * the same as in Gray8Statistics, so the result is exactly what you would get
+     * by cropping the window and passing it to Gray8Statistics.
+     * @param nX horizontal position of the top-left corner of the window.
+     * @param nY vertical position of the top-left corner of the window.
+     * @param nW window width.
+     * @param nH window height.
+     * @return the standard deviation of the window, times 256.
+     * @throws jjil.core.Error if the variance computed is less than zero.
+     */
+    public int getStdDev(int nX, int nY, int nW, int nH) throws jjil.core.Error {
+        int nStride = this.nWidth + 1;
+        int nTl = nY * nStride + nX;
+        int nBl = nTl + nH * nStride;
+        long lSum = this.rnSum[nBl + nW] - this.rnSum[nBl] -
+                this.rnSum[nTl + nW] + this.rnSum[nTl];
+        long lSumSq = this.rlSumSq[nBl + nW] - this.rlSumSq[nBl] -
+                this.rlSumSq[nTl + nW] + this.rlSumSq[nTl];
+        long lCount = nW * nH;
+        // same expanded form of the variance computation as Gray8Statistics,
+        // scaled by 256 twice (once for the variance and once more for accuracy
+        // in the square root)
+        int n = (int) ((lSumSq / (lCount - 1) -
+                    lSum / lCount * lSum  / (lCount - 1)) << 16);
+        if (n < 0) throw new Error(
+            			Error.PACKAGE.ALGORITHM,
+            			ErrorCodes.STATISTICS_VARIANCE_LESS_THAN_ZERO,
+            			new Integer(n).toString(),
+            			null,
+            			null);
+        // return standard deviation * 256 = sqrt(variance * 256 * 256)
+        return MathPlus.sqrt(n);
+    }
+
+    /**
+     * Returns the row stride of the sum arrays, which is the image width plus 1.
+     * The window with top-left corner (x,y) starts at index y * stride + x.
+     * @return the row stride of the sum arrays.
+     */
+    public int getStride() {
+        return this.nWidth + 1;
+    }
+
+    /**
+     * Returns the cumulative sum array. The array is (width+1) &times; (height+1),
+     * with the first row and column zero.
+     * @return the cumulative sum array.
+     */
+    public int[] getSum() {
+        return this.rnSum;
+    }
+
+    /**
+     * Returns the cumulative sum of squares array. The array is
+     * (width+1) &times; (height+1), with the first row and column zero.
+     * @return the cumulative sum of squares array.
+     */
+    public long[] getSumSq() {
+        return this.rlSumSq;
+    }
+
+    /**
+     * Returns the width of the image last pushed.
+     * @return the image width.
+     */
+    public int getWidth() {
+        return this.nWidth;
+    }
+
+    /**
+     * Returns the sum of the pixels in a window.
+     * @param nX horizontal position of the top-left corner of the window.
+     * @param nY vertical position of the top-left corner of the window.
+     * @param nW window width.
+     * @param nH window height.
+     * @return the sum of the (unsigned) pixel values in the window.
+     */
+    public int getWindowSum(int nX, int nY, int nW, int nH) {
+        int nStride = this.nWidth + 1;
+        int nTl = nY * nStride + nX;
+        int nBl = nTl + nH * nStride;
+        return this.rnSum[nBl + nW] - this.rnSum[nBl] -
+                this.rnSum[nTl + nW] + this.rnSum[nTl];
+    }
+
+    /**
+     * Forms the cumulative sum and sum of squares of an image.
+     * @param image the input image, a Gray8Image or Gray8ViewImage.
+     * @throws jjil.core.Error if the input is not a Gray8Image or 
+     * Gray8ViewImage
+     */
+    public void push(Image image) throws jjil.core.Error {
+        byte[] grayData;
+        int nInOffset, nInStride; // position of input pixel (0,0) and row stride
+        if (image instanceof Gray8Image) {
+            grayData = ((Gray8Image) image).getData();
+            nInOffset = 0;
+            nInStride = image.getWidth();
+        } else if (image instanceof Gray8ViewImage) {
+            Gray8ViewImage imageView = (Gray8ViewImage) image;
+            grayData = imageView.getData();
+            nInOffset = imageView.getOffset();
+            nInStride = imageView.getStride();
+        } else {
+            throw new Error(
+            				Error.PACKAGE.ALGORITHM,
+            				ErrorCodes.IMAGE_NOT_GRAY8IMAGE,
+            				image.toString(),
+            				null,
+            				null);
+        }
+        int nStride = image.getWidth() + 1;
+        int nSize = nStride * (image.getHeight() + 1);
+        if (this.rnSum == null || this.rnSum.length != nSize) {
+            // first row and column are zero and stay zero
+            this.rnSum = new int[nSize];
+            this.rlSumSq = new long[nSize];
+        }
+        this.nWidth = image.getWidth();
+        this.nHeight = image.getHeight();
+        int[] sum = this.rnSum;
+        long[] sumSq = this.rlSumSq;
+        for (int i=0; i<this.nHeight; i++) {
+            int nSum = 0;
+            long lSumSq = 0;
+            int nIn = nInOffset + i * nInStride;
+            int nOut = (i+1) * nStride + 1;
+            for (int j=0; j<this.nWidth; j++) {
+                /* Convert from signed byte value to unsigned byte.
+                 */
+                int grayUnsigned = grayData[nIn+j] - Byte.MIN_VALUE;
+                nSum += grayUnsigned;
+                lSumSq += grayUnsigned * grayUnsigned;
+                sum[nOut+j] = sum[nOut+j-nStride] + nSum;
+                sumSq[nOut+j] = sumSq[nOut+j-nStride] + lSumSq;
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@
  */
 
 package jjil.algorithm;
+import jjil.core.BandedStage;
 import jjil.core.Error;
 import jjil.core.Gray8Image;
 import jjil.core.Image;
@@ -31,11 +32,12 @@ import jjil.core.PipelineStage;
 /**
  * Pipeline stage applies a lookup table to an image. The lookup table
  * can be supplied through the constructor or by the setTable procedure.
- * This pipeline stage modifies its input.
+ * This pipeline stage modifies its input, unless an output image is
+ * supplied with push(Image, Image).
  *
  * @author webb
  */
-public class Gray8Lookup extends PipelineStage {
+public class Gray8Lookup extends PipelineStage implements BandedStage {
     private byte[] table;
     
     /**
@@ -63,6 +65,18 @@ public class Gray8Lookup extends PipelineStage {
      * @throws jjil.core.Error if image is not a Gray8Image.
      */
     public void push(Image image) throws jjil.core.Error {
+        push(image, image);
+    }
+    
+    /**
+     * Maps input Gray8Image through the lookup table, writing the result into
+     * imageDest if it is a Gray8Image of the same size, and into the input
+     * otherwise.
+     * @param image the input image.
+     * @param imageDest the output image. May be the input image, or null.
+     * @throws jjil.core.Error if image is not a Gray8Image.
+     */
+    public void push(Image image, Image imageDest) throws jjil.core.Error {
         if (!(image instanceof Gray8Image)) {
             throw new Error(
             				Error.PACKAGE.ALGORITHM,
@@ -72,16 +86,50 @@ public class Gray8Lookup extends PipelineStage {
             				null);
         }
         Gray8Image input = (Gray8Image) image;
-        byte[] data = input.getData();
-        for (int i=0; i<data.length; i++) {
-            data[i] = this.table[data[i]+128];
+        Gray8Image output = input;
+        if (imageDest instanceof Gray8Image &&
+                imageDest.getWidth() == image.getWidth() &&
+                imageDest.getHeight() == image.getHeight()) {
+            output = (Gray8Image) imageDest;
+        }
+        pushBand(input, output, 0, input.getHeight());
+        super.setOutput(output);
+    }
+    
+    /**
+     * Returns 0, since each pixel is mapped independently.
+     * @return 0.
+     */
+    public int getHalo() {
+        return 0;
+    }
+    
+    /**
+     * Maps rows nRowFirst to nRowLimit - 1 of the input through the lookup
+     * table.
+     * @param image the input Gray8Image.
+     * @param imageOutput the output image, from startBands. May be the input.
+     * @param nRowFirst the first row to map.
+     * @param nRowLimit one past the last row to map.
+     */
+    public void pushBand(
+            Image image, 
+            Image imageOutput, 
+            int nRowFirst, 
+            int nRowLimit) {
+        byte[] data = ((Gray8Image) image).getData();
+        byte[] dataOut = ((Gray8Image) imageOutput).getData();
+        int nLimit = nRowLimit * image.getWidth();
+        for (int i=nRowFirst * image.getWidth(); i<nLimit; i++) {
+            dataOut[i] = this.table[data[i]+128];
         }
-        super.setOutput(input);
     }
     
     /**
      * Assign a new lookup table. Images passed to push() after setTable is called
-     * will be mapped by the new image.
+     * will be mapped by the new image. The table is copied into the array the
+     * stage already has, so a new table can be set for every image without
+     * allocating.
      * @param table The lookup table. Input image value g is mapped to table[g + Byte.MinValue]
      * @throws jjil.core.Error if table is not a 256-element array.
      */
@@ -94,7 +142,43 @@ public class Gray8Lookup extends PipelineStage {
             				null,
             				null);
         }
-        this.table = new byte[256];
+        if (this.table == null) {
+            this.table = new byte[256];
+        }
         System.arraycopy(table, 0, this.table, 0, this.table.length);
     }
+    
+    /**
+     * Check the input image. The output is the input, mapped in place.
+     * @param image the input image.
+     * @return image.
+     * @throws jjil.core.Error if image is not a Gray8Image.
+     */
+    public Image startBands(Image image) throws jjil.core.Error {
+        if (!(image instanceof Gray8Image)) {
+            throw new Error(
+            				Error.PACKAGE.ALGORITHM,
+            				ErrorCodes.IMAGE_NOT_GRAY8IMAGE,
+            				image.toString(),
+            				null,
+            				null);
+        }
+        return image;
+    }
+    
+    /**
+     * Returns the type of image this stage accepts.
+     * @return Gray8Image.class
+     */
+    public Class getInputType() {
+        return Gray8Image.class;
+    }
+    
+    /**
+     * Returns the type of image this stage produces.
+     * @return Gray8Image.class
+     */
+    public Class getOutputType() {
+        return Gray8Image.class;
+    }
 }
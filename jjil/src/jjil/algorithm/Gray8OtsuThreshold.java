@@ -13,12 +13,16 @@ import jjil.core.PipelineStage;
  * <p>
  * Algorithm from
  * http://homepages.inf.ed.ac.uk/rbf/CVonline/LOCAL_COPIES/MORSE/threshold.pdf
+ * <p>
+ * The threshold chosen for an image with a given histogram is available as a
+ * lookup table from getLookup.
  * 
  * @author webb
  * 
  */
-public class Gray8OtsuThreshold extends PipelineStage {
+public class Gray8OtsuThreshold extends PipelineStage implements HistogramLookup {
 	private boolean mbSmaller;
+	private boolean mbWithin;
 	private int mnAdjustFactor;
 	private int mnCountBelow, mnCountAbove;
 
@@ -54,11 +58,31 @@ public class Gray8OtsuThreshold extends PipelineStage {
 		/* compute histogram */
 		int[] rnHistogram = Gray8Hist.computeHistogram(g8i);
 		/* calculate Otsu threshold */
+		int nThresh = chooseThreshold(rnHistogram);
+		// Gray8Threshold test is on byte value so we adjust
+		// appropriately. The histogram value runs from 0-256 so
+		// we have to offset it by Byte.MIN_VALUE.
+		// Gray8Threshold replaces its input.
+		Gray8Threshold g8t = new Gray8Threshold(nThresh + Byte.MIN_VALUE,
+				this.mbWithin);
+		g8t.push(imageInput);
+		super.setOutput(g8t.getFront());
+	}
+
+	/**
+	 * Calculate the Otsu threshold, adjusted by the adjust factor, and
+	 * decide whether pixels below it are on (sets mbWithin).
+	 * 
+	 * @param rnHistogram
+	 *            the input histogram
+	 * @return the threshold, from 0-256
+	 */
+	private int chooseThreshold(int[] rnHistogram) {
 		int nThresh = calculateOtsuThreshold(rnHistogram);
 		// determine whether small pixel values should get set on (bWithin = true)
 		// or not
-		boolean bWithin = this.mbSmaller == (this.mnCountBelow < this.mnCountAbove);
-		if (bWithin) {
+		this.mbWithin = this.mbSmaller == (this.mnCountBelow < this.mnCountAbove);
+		if (this.mbWithin) {
 			nThresh = (nThresh * this.mnAdjustFactor) / 256;
 		} else {
 			nThresh = 256 - ((256 - nThresh) * this.mnAdjustFactor) / 256;
@@ -68,14 +92,35 @@ public class Gray8OtsuThreshold extends PipelineStage {
 //		} else {
 //			nThresh = (nThresh * this.mnBias) / 256;
 //		}
-		// Gray8Threshold test is on byte value so we adjust
-		// appropriately. The histogram value runs from 0-256 so
-		// we have to offset it by Byte.MIN_VALUE.
-		// Gray8Threshold replaces its input.
-		Gray8Threshold g8t = new Gray8Threshold(nThresh + Byte.MIN_VALUE,
-				bWithin);
-		g8t.push(imageInput);
-		super.setOutput(g8t.getFront());
+		return nThresh;
+	}
+
+	/**
+	 * Compute the lookup table which applies the threshold push would choose
+	 * for an image with a given histogram. Pixels map to Byte.MIN_VALUE or
+	 * Byte.MAX_VALUE, as in push.
+	 * 
+	 * @param rnHistogram
+	 *            the input histogram, offset so element 0 corresponds to
+	 *            Byte.MIN_VALUE
+	 * @return the lookup table
+	 * @throws Error
+	 *             if the histogram does not have 256 elements
+	 */
+	public byte[] getLookup(int[] rnHistogram) throws Error {
+		if (rnHistogram.length != 256) {
+			throw new Error(Error.PACKAGE.ALGORITHM,
+					ErrorCodes.HISTOGRAM_LENGTH_NOT_256, rnHistogram.toString(),
+					null, null);
+		}
+		// the same test Gray8Threshold makes, on the signed byte value
+		int nThresh = chooseThreshold(rnHistogram) + Byte.MIN_VALUE;
+		byte[] rbLookup = new byte[256];
+		for (int i = 0; i < 256; i++) {
+			rbLookup[i] = ((i + Byte.MIN_VALUE < nThresh) == this.mbWithin) ?
+					Byte.MAX_VALUE : Byte.MIN_VALUE;
+		}
+		return rbLookup;
 	}
 
 	/**
@@ -0,0 +1,527 @@
+/*
+ * Gray8Pyramid.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jjil.algorithm;
+import java.util.Hashtable;
+
+import jjil.core.Error;
+import jjil.core.Gray8Image;
+import jjil.core.Image;
+import jjil.core.PipelineStage;
+
+/**
+ * Gray8Pyramid holds reduced copies of one Gray8Image, so that several
+ * detectors working on the same frame can share them instead of each
+ * shrinking the frame again. Pushing an image starts a new frame; the
+ * image is passed through unchanged as the output, and the reduced copies
+ * are then asked for with getLevel or getImage.<p>
+ * Level 0 is the pushed image. Each level after that is smaller than the one
+ * before it by the ratio given in the constructor, which need not be an
+ * integer. In a MEAN pyramid every reduced image is made from the pushed
+ * image by averaging, exactly as Gray8Shrink would make it. In a GAUSSIAN
+ * pyramid each level is made from the level before it, first smoothed with
+ * a Gaussian wide enough for the ratio (in iterated box mode, see
+ * Gray8GaussHoriz) and then averaged down to size.<p>
+ * getImage asks for a reduced image of any size, not just a level size. This
+ * is what detectors that search at their own scales use. In a MEAN pyramid
+ * it is made from the pushed image, so a detector gets the same image it got
+ * from Gray8Shrink; in a GAUSSIAN pyramid it is averaged down from the
+ * smallest level that is at least as large.<p>
+ * Nothing is computed until it is asked for, and everything is kept until the
+ * next push, so an image asked for by several detectors is only made once.
+ * The integral image of any reduced image (see Gray8IntegralImage) can be
+ * asked for the same way, and is likewise made once.<p>
+ * A Gray8Pyramid can be used by several threads at once: the images for a
+ * frame are made under a lock of their own, so different images are made in
+ * parallel while a second request for the same image waits for the first.
+ * The images it returns are shared and must not be changed; a stage that
+ * changes its input (Gray8HistEq, for example) must be given a copy. A push
+ * doesn't change images already returned, so a detector still working on the
+ * last frame isn't disturbed by a push of the next one.
+ * @author webb
+ */
+public class Gray8Pyramid extends PipelineStage {
+    /**
+     * Make each reduced image by averaging the pushed image.
+     */
+    public static final int MEAN = 0;
+
+    /**
+     * Make each level by smoothing the level before it with a Gaussian
+     * and averaging.
+     */
+    public static final int GAUSSIAN = 1;
+
+    /**
+     * One reduced image, made when it is first asked for.
+     */
+    private static class Entry {
+        int cWidth;
+        int cHeight;
+        int nLevel;                 // level number, or -1 if not a level size
+        Gray8Image image = null;
+        Gray8IntegralImage ii = null;
+
+        Entry(int cWidth, int cHeight, int nLevel) {
+            this.cWidth = cWidth;
+            this.cHeight = cHeight;
+            this.nLevel = nLevel;
+        }
+    }
+
+    /**
+     * The pushed image and the reduced images made from it so far.
+     */
+    private static class Frame {
+        Gray8Image image;
+        Hashtable entries = new Hashtable(); // Entry by size
+        int nMinHeight;     // smallest level size when the frame was pushed
+        int nMinWidth;
+        int[] rnLevelWidth;
+        int[] rnLevelHeight;
+
+        Frame(Gray8Image image, int nMinWidth, int nMinHeight) {
+            this.image = image;
+            this.nMinWidth = nMinWidth;
+            this.nMinHeight = nMinHeight;
+        }
+    }
+
+    private Frame frame = null;
+    // smallest width and height of a level
+    private int nMinHeight = 1;
+    private int nMinWidth = 1;
+    // ratio of each level's size to the next level's, times 256
+    private int nRatio;
+    // sigma times 10 of the smoothing applied before reducing, GAUSSIAN only
+    private int nSigma;
+    // MEAN or GAUSSIAN
+    private int nType;
+
+    /**
+     * Creates a new Gray8Pyramid.
+     * @param nType MEAN or GAUSSIAN.
+     * @param nRatio the ratio of the size of each level to the size of the
+     * next level, times 256. 512 halves the size from one level to the next;
+     * 307 reduces it by a factor of 1.2. Must be greater than 256.
+     * @throws jjil.core.Error if nType is not MEAN or GAUSSIAN, or nRatio is
+     * not greater than 256.
+     */
+    public Gray8Pyramid(int nType, int nRatio) throws jjil.core.Error {
+        if (nType != MEAN && nType != GAUSSIAN) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            new Integer(nType).toString(),
+                            new Integer(MEAN).toString(),
+                            new Integer(GAUSSIAN).toString());
+        }
+        if (nRatio <= 256) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            new Integer(nRatio).toString(),
+                            "257", //$NON-NLS-1$
+                            null);
+        }
+        this.nType = nType;
+        this.nRatio = nRatio;
+        // An image whose blur is a Gaussian of sigma 0.5 pixels needs a
+        // Gaussian of sigma 0.5 * sqrt(r*r - 1) to look the same after it is
+        // reduced by r. The smoothing stages' sigma is that times sqrt(2),
+        // in tenths of a pixel, so it is sqrt(50 * (r*r - 1)). They take
+        // sigma from 2 to 848 in iterated box mode, which a ratio of 120
+        // already reaches, so larger ratios are limited to 128 first to
+        // keep r*r from overflowing.
+        int nRatioSigma = Math.min(nRatio, 128 * 256);
+        int nSigma = jjil.core.MathPlus.sqrt(
+                50 * ((nRatioSigma * nRatioSigma - 256 * 256) / 256)) / 16;
+        this.nSigma = Math.max(2, Math.min(848, nSigma));
+    }
+
+    /**
+     * Returns the pushed image's current frame, failing if nothing has been
+     * pushed.
+     */
+    private synchronized Frame getFrame() throws jjil.core.Error {
+        if (this.frame == null) {
+            throw new Error(
+                            Error.PACKAGE.CORE,
+                            jjil.core.ErrorCodes.NO_RESULT_AVAILABLE,
+                            this.toString(),
+                            null,
+                            null);
+        }
+        return this.frame;
+    }
+
+    /**
+     * Returns the entry for a given size, adding it if it isn't there.
+     */
+    private Entry getEntry(Frame f, int cWidth, int cHeight, int nLevel) {
+        Integer key = new Integer((cWidth << 16) | cHeight);
+        synchronized (f.entries) {
+            Entry e = (Entry) f.entries.get(key);
+            if (e == null) {
+                e = new Entry(cWidth, cHeight, nLevel);
+                f.entries.put(key, e);
+            }
+            return e;
+        }
+    }
+
+    /**
+     * Returns the entry for a level, checking the level number.
+     */
+    private Entry getEntry(Frame f, int nLevel) throws jjil.core.Error {
+        if (nLevel < 0 || nLevel >= getLevelCount(f)) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            new Integer(nLevel).toString(),
+                            "0", //$NON-NLS-1$
+                            new Integer(getLevelCount(f) - 1).toString());
+        }
+        return getEntry(f, f.rnLevelWidth[nLevel], f.rnLevelHeight[nLevel], nLevel);
+    }
+
+    /**
+     * Returns the entry for a size, checking the size and finding the level
+     * it belongs to, if any.
+     */
+    private Entry getEntry(Frame f, int cWidth, int cHeight)
+        throws jjil.core.Error
+    {
+        if (cWidth <= 0 || cHeight <= 0) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.OUTPUT_IMAGE_SIZE_NEGATIVE,
+                            new Integer(cWidth).toString(),
+                            new Integer(cHeight).toString(),
+                            this.toString());
+        }
+        if (cWidth > f.image.getWidth() || cHeight > f.image.getHeight()) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.SHRINK_OUTPUT_LARGER_THAN_INPUT,
+                            f.image.toString(),
+                            new Integer(cWidth).toString(),
+                            new Integer(cHeight).toString());
+        }
+        int nLevel = -1;
+        int cLevels = getLevelCount(f);
+        for (int i=0; i<cLevels; i++) {
+            if (f.rnLevelWidth[i] == cWidth && f.rnLevelHeight[i] == cHeight) {
+                nLevel = i;
+                break;
+            }
+        }
+        return getEntry(f, cWidth, cHeight, nLevel);
+    }
+
+    /**
+     * Makes the image for an entry, if it hasn't been made already.
+     */
+    private Gray8Image getImage(Frame f, Entry e) throws jjil.core.Error {
+        synchronized (e) {
+            if (e.image == null) {
+                if (e.nLevel == 0) {
+                    e.image = f.image;
+                } else if (this.nType == GAUSSIAN && e.nLevel > 0) {
+                    // smooth the level before this one, then reduce it.
+                    // The level before is bigger, and images are only
+                    // ever made from bigger ones, so waiting for it
+                    // can't deadlock.
+                    Gray8Image imPrev = getImage(f, getEntry(f, e.nLevel - 1));
+                    Gray8GaussHoriz gh = new Gray8GaussHoriz(this.nSigma, true);
+                    gh.push(imPrev);
+                    Gray8GaussSmoothVert gv =
+                        new Gray8GaussSmoothVert(this.nSigma, true);
+                    gv.push(gh.getFront());
+                    e.image = reduce((Gray8Image) gv.getFront(), e.cWidth, e.cHeight);
+                } else if (this.nType == GAUSSIAN) {
+                    // reduce the smallest level at least as big as this
+                    int nLevel = 0;
+                    int cLevels = getLevelCount(f);
+                    while (nLevel + 1 < cLevels &&
+                            f.rnLevelWidth[nLevel + 1] >= e.cWidth &&
+                            f.rnLevelHeight[nLevel + 1] >= e.cHeight) {
+                        nLevel++;
+                    }
+                    e.image = reduce(
+                            getImage(f, getEntry(f, nLevel)), e.cWidth, e.cHeight);
+                } else {
+                    e.image = reduce(f.image, e.cWidth, e.cHeight);
+                }
+            }
+            return e.image;
+        }
+    }
+
+    /**
+     * Makes the integral image for an entry, if it hasn't been made already.
+     */
+    private Gray8IntegralImage getIntegralImage(Frame f, Entry e)
+        throws jjil.core.Error
+    {
+        Gray8Image image = getImage(f, e);
+        synchronized (e) {
+            if (e.ii == null) {
+                Gray8IntegralImage ii = new Gray8IntegralImage();
+                ii.push(image);
+                e.ii = ii;
+            }
+            return e.ii;
+        }
+    }
+
+    /**
+     * Returns a reduced image of a given size. See the class description
+     * for how it is made. It is made the first time it is asked for after a
+     * push, and the same image is returned after that until the next push.
+     * The image must not be changed.
+     * @param cWidth the width of the image.
+     * @param cHeight the height of the image.
+     * @return the reduced image.
+     * @throws jjil.core.Error if no image has been pushed, or the size is not
+     * positive or is bigger than the pushed image.
+     */
+    public Gray8Image getImage(int cWidth, int cHeight) throws jjil.core.Error {
+        Frame f = getFrame();
+        return getImage(f, getEntry(f, cWidth, cHeight));
+    }
+
+    /**
+     * Returns the integral image of a reduced image of a given size, made
+     * the first time it is asked for after a push. It must not be changed.
+     * @param cWidth the width of the reduced image.
+     * @param cHeight the height of the reduced image.
+     * @return the integral image.
+     * @throws jjil.core.Error if no image has been pushed, or the size is not
+     * positive or is bigger than the pushed image.
+     */
+    public Gray8IntegralImage getIntegralImage(int cWidth, int cHeight)
+        throws jjil.core.Error
+    {
+        Frame f = getFrame();
+        return getIntegralImage(f, getEntry(f, cWidth, cHeight));
+    }
+
+    /**
+     * Returns the integral image of a level, made the first time it is
+     * asked for after a push. It must not be changed.
+     * @param nLevel the level, from 0 to getLevelCount() - 1.
+     * @return the integral image.
+     * @throws jjil.core.Error if no image has been pushed or the level is
+     * out of range.
+     */
+    public Gray8IntegralImage getIntegralImage(int nLevel) throws jjil.core.Error {
+        Frame f = getFrame();
+        return getIntegralImage(f, getEntry(f, nLevel));
+    }
+
+    /**
+     * Returns a level, made the first time it is asked for after a push.
+     * Level 0 is the pushed image. It must not be changed.
+     * @param nLevel the level, from 0 to getLevelCount() - 1.
+     * @return the level image.
+     * @throws jjil.core.Error if no image has been pushed or the level is
+     * out of range.
+     */
+    public Gray8Image getLevel(int nLevel) throws jjil.core.Error {
+        Frame f = getFrame();
+        return getImage(f, getEntry(f, nLevel));
+    }
+
+    /**
+     * Works out the level sizes for a frame, the first time they are needed,
+     * and returns the number of levels.
+     */
+    private int getLevelCount(Frame f) {
+        synchronized (f) {
+            if (f.rnLevelWidth == null) {
+                int cWidth = f.image.getWidth();
+                int cHeight = f.image.getHeight();
+                int cLevels = 0;
+                for (int w=cWidth, h=cHeight;
+                    w >= f.nMinWidth && h >= f.nMinHeight;
+                    w = w * 256 / this.nRatio, h = h * 256 / this.nRatio) {
+                    cLevels++;
+                }
+                // the pushed image is always a level, however small
+                cLevels = Math.max(1, cLevels);
+                f.rnLevelWidth = new int[cLevels];
+                f.rnLevelHeight = new int[cLevels];
+                for (int i=0; i<cLevels; i++) {
+                    f.rnLevelWidth[i] = cWidth;
+                    f.rnLevelHeight[i] = cHeight;
+                    cWidth = cWidth * 256 / this.nRatio;
+                    cHeight = cHeight * 256 / this.nRatio;
+                }
+            }
+            return f.rnLevelWidth.length;
+        }
+    }
+
+    /**
+     * Returns the number of levels for the pushed image. The last level is
+     * the last one whose width and height are no smaller than the minimum
+     * set by setMinSize.
+     * @return the number of levels, at least 1.
+     * @throws jjil.core.Error if no image has been pushed.
+     */
+    public int getLevelCount() throws jjil.core.Error {
+        return getLevelCount(getFrame());
+    }
+
+    /**
+     * Returns the height of a level, without making it.
+     * @param nLevel the level, from 0 to getLevelCount() - 1.
+     * @return the height of the level.
+     * @throws jjil.core.Error if no image has been pushed or the level is
+     * out of range.
+     */
+    public int getLevelHeight(int nLevel) throws jjil.core.Error {
+        return getEntry(getFrame(), nLevel).cHeight;
+    }
+
+    /**
+     * Returns the width of a level, without making it.
+     * @param nLevel the level, from 0 to getLevelCount() - 1.
+     * @return the width of the level.
+     * @throws jjil.core.Error if no image has been pushed or the level is
+     * out of range.
+     */
+    public int getLevelWidth(int nLevel) throws jjil.core.Error {
+        return getEntry(getFrame(), nLevel).cWidth;
+    }
+
+    /**
+     * Returns the ratio from one level to the next.
+     * @return the ratio times 256.
+     */
+    public int getRatio() {
+        return this.nRatio;
+    }
+
+    /**
+     * Returns the type of pyramid.
+     * @return MEAN or GAUSSIAN.
+     */
+    public int getType() {
+        return this.nType;
+    }
+
+    /**
+     * Starts a new frame. The reduced images of the last frame are dropped
+     * (though not changed, so threads still using them aren't affected) and
+     * the image is passed through as the output.
+     * @param image the input Gray8Image.
+     * @throws jjil.core.Error if the input is not a Gray8Image.
+     */
+    public void push(Image image) throws jjil.core.Error {
+        if (!(image instanceof Gray8Image)) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.IMAGE_NOT_GRAY8IMAGE,
+                            image.toString(),
+                            null,
+                            null);
+        }
+        synchronized (this) {
+            this.frame = new Frame(
+                    (Gray8Image) image, this.nMinWidth, this.nMinHeight);
+        }
+        super.setOutput(image);
+    }
+
+    /**
+     * Reduces an image to a given size by averaging.
+     */
+    private Gray8Image reduce(Gray8Image image, int cWidth, int cHeight)
+        throws jjil.core.Error
+    {
+        // a Resampler can only be used by one thread, so each image gets
+        // its own
+        Resampler r = new Resampler(
+                image.getWidth(), image.getHeight(), cWidth, cHeight);
+        Gray8Image result = new Gray8Image(cWidth, cHeight);
+        r.resample(image.getData(), 0, image.getWidth(),
+                result.getData(), 0, cWidth);
+        return result;
+    }
+
+    /**
+     * Sets the smallest level size. Levels stop before the width or height
+     * gets smaller than this. A detector with a fixed window size can set
+     * this to the window size so getLevelCount counts only the levels it
+     * can search. Takes effect at the next push.
+     * @param nMinWidth the smallest level width.
+     * @param nMinHeight the smallest level height.
+     * @throws jjil.core.Error if either is not positive.
+     */
+    public synchronized void setMinSize(int nMinWidth, int nMinHeight)
+        throws jjil.core.Error
+    {
+        if (nMinWidth <= 0 || nMinHeight <= 0) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.OUTPUT_IMAGE_SIZE_NEGATIVE,
+                            new Integer(nMinWidth).toString(),
+                            new Integer(nMinHeight).toString(),
+                            this.toString());
+        }
+        this.nMinWidth = nMinWidth;
+        this.nMinHeight = nMinHeight;
+    }
+
+    /**
+     * Returns a string describing the pyramid.
+     * @return the string describing the pyramid.
+     */
+    public String toString() {
+        return super.toString() + " (" + //$NON-NLS-1$
+                (this.nType == MEAN ? "MEAN" : "GAUSSIAN") + "," + //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                this.nRatio + ")"; //$NON-NLS-1$
+    }
+
+    /**
+     * Returns the type of image this stage accepts.
+     * @return Gray8Image.class
+     */
+    public Class getInputType() {
+        return Gray8Image.class;
+    }
+
+    /**
+     * Returns the type of image this stage produces.
+     * @return Gray8Image.class
+     */
+    public Class getOutputType() {
+        return Gray8Image.class;
+    }
+
+    /**
+     * Returns true, since the input image is not changed.
+     * @return true.
+     */
+    public boolean isInputReadOnly() {
+        return true;
+    }
+}
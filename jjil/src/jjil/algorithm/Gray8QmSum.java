@@ -26,6 +26,7 @@ package jjil.algorithm;
 import jjil.core.Error;
 import jjil.core.Gray32Image;
 import jjil.core.Gray8Image;
+import jjil.core.Gray8ViewImage;
 import jjil.core.Image;
 import jjil.core.PipelineStage;
 /**
@@ -51,11 +52,23 @@ public class Gray8QmSum extends PipelineStage {
      *  Output is 32-bit gray image.
      *  Input is 8-bit gray image.
      *
-     * @param image the input image.
-     * @throws jjil.core.Error if the input is not a Gray8Image
+     * @param image the input image, a Gray8Image or Gray8ViewImage.
+     * @throws jjil.core.Error if the input is not a Gray8Image or 
+     * Gray8ViewImage
      */
     public void push(Image image) throws jjil.core.Error {
-        if (!(image instanceof Gray8Image)) {
+        byte[] data;
+        int nOffset, nStride; // position of input pixel (0,0) and row stride
+        if (image instanceof Gray8Image) {
+            data = ((Gray8Image) image).getData();
+            nOffset = 0;
+            nStride = image.getWidth();
+        } else if (image instanceof Gray8ViewImage) {
+            Gray8ViewImage imageView = (Gray8ViewImage) image;
+            data = imageView.getData();
+            nOffset = imageView.getOffset();
+            nStride = imageView.getStride();
+        } else {
             throw new Error(
             				Error.PACKAGE.ALGORITHM,
             				ErrorCodes.IMAGE_NOT_GRAY8IMAGE,
@@ -63,36 +76,50 @@ public class Gray8QmSum extends PipelineStage {
             				null,
             				null);
         }
-        Gray8Image gray = (Gray8Image) image;
-        Gray32Image gray32 = new Gray32Image(image.getWidth(), image.getHeight());
-        byte[] grayData = gray.getData();
+        Gray32Image gray32 = newGray32Image(image.getWidth(), image.getHeight());
         int[] gray32Data = gray32.getData();
         // First row
         int nSum = 0;
-        for (int j=0; j<gray.getWidth(); j++) {
+        for (int j=0; j<image.getWidth(); j++) {
             /* Convert from signed byte value to unsigned byte for storage
              * in the 32-bit image.
              */
-            int grayUnsigned = (grayData[j]) - Byte.MIN_VALUE;
+            int grayUnsigned = (data[nOffset+j]) - Byte.MIN_VALUE;
             /* Assign 32-bit output */
             nSum += grayUnsigned;
             gray32Data[j] = nSum;
         }
         // Other rows
-        for (int i=1; i<gray.getHeight(); i++) {
+        for (int i=1; i<image.getHeight(); i++) {
             nSum = 0;
-            for (int j=0; j<gray.getWidth(); j++) {
+            for (int j=0; j<image.getWidth(); j++) {
                 /* Convert from signed byte value to unsigned byte for storage
                  * in the 32-bit image.
                  */
                 int grayUnsigned = 
-                        (grayData[i*gray.getWidth()+j]) - Byte.MIN_VALUE;
+                        (data[nOffset+i*nStride+j]) - Byte.MIN_VALUE;
                 nSum += grayUnsigned;
-                gray32Data[i*gray.getWidth()+j] = 
-                        gray32Data[(i-1)*gray.getWidth()+j] +
+                gray32Data[i*image.getWidth()+j] = 
+                        gray32Data[(i-1)*image.getWidth()+j] +
                         nSum;
             }
         }
         super.setOutput(gray32);
     }
+    
+    /**
+     * Returns the type of image this stage produces.
+     * @return Gray32Image.class
+     */
+    public Class getOutputType() {
+        return Gray32Image.class;
+    }
+    
+    /**
+     * Returns true, since the input image is not changed.
+     * @return true.
+     */
+    public boolean isInputReadOnly() {
+        return true;
+    }
 }
@@ -31,12 +31,15 @@ import jjil.core.PipelineStage;
 /** Pipeline stage stretches an image to a larger rectangular size with 
  * bilinear interpolation. For more information on this and other image
  * warps, see George Wolberg's excellent book, "Digital Image Warping",
- * Wiley-IEEE Computer Society Press, 1990.
+ * Wiley-IEEE Computer Society Press, 1990.<p>
+ * The work is done by a Resampler, which is kept from one push to the next
+ * while the input size doesn't change.
  * @author webb
  */
 public class Gray8RectStretch extends PipelineStage {
     private int cHeight;
     private int cWidth;
+    private Resampler resampler = null; // resamples to the target size
     
     /** Creates a new instance of Gray8RectStretch. 
      *
@@ -92,14 +95,15 @@ public class Gray8RectStretch extends PipelineStage {
 			        		new Integer(this.cHeight).toString());
         }
         Gray8Image input = (Gray8Image) image;
-        /** we do the stretch in to passes, one horizontal and the other
-         * vertical. This leads to less computation than doing it in one
-         * pass, because the calculation of the interpolation weights
-         * has to happen only once. 
-         */
-        /* horizontal stretch */
-        Gray8Image horiz = stretchHoriz(input);
-        Gray8Image result = stretchVert(horiz);
+        if (this.resampler == null || !this.resampler.isSize(
+                input.getWidth(), input.getHeight(), this.cWidth, this.cHeight)) {
+            this.resampler = new Resampler(
+                    input.getWidth(), input.getHeight(), this.cWidth, this.cHeight);
+        }
+        Gray8Image result = newGray8Image(this.cWidth, this.cHeight);
+        this.resampler.resample(
+                input.getData(), 0, input.getWidth(),
+                result.getData(), 0, this.cWidth);
         super.setOutput(result);
     }
     
@@ -137,95 +141,6 @@ public class Gray8RectStretch extends PipelineStage {
         this.cWidth = cWidth;
     }
     
-    /** Horizontal stretch. Stretches the input from
-     * (input.getWidth(),input.getHeight()) to (this.cWidth,input.getHeight())
-     *
-     * @param input the input image
-     * @return the stretched image
-     */
-    private Gray8Image stretchHoriz(Gray8Image input) {
-        /* horizontal stretch */
-        Gray8Image horiz = new Gray8Image(this.cWidth, input.getHeight());
-        byte[] inData = input.getData();
-        byte[] outData = horiz.getData();
-        for (int j=0; j<this.cWidth; j++) {
-            /* the interpolated position is
-             * j*input.getWidth()/this.cWidth.
-             * Compute the remainder of this division.
-             */
-            int cMod = (j*input.getWidth()) % this.cWidth;
-            /* compute the left integral pixel position */
-            int cX = (j*input.getWidth()-cMod) / this.cWidth;
-            if (cX < input.getWidth()-1) {
-                /* compute the fractional position in that pixel (* 256 so
-                 * the computation can be done in integer */
-                int cFrac = (cMod<<8) / this.cWidth;
-                for (int i=0; i<input.getHeight(); i++) {
-                    /* interpolate */
-                    outData[i*this.cWidth+j] =
-                     (byte) ((inData[i*input.getWidth()+cX] * (256-cFrac) +
-                              inData[i*input.getWidth()+cX+1] * cFrac) >> 8);
-                }
-            } else {
-                /* adjust cX so we will use the last column of the input
-                 * image for interpolating beyond its right edge, without
-                 * accessing a value outside the array bounds. In other
-                 * words, for fractional input positions beyond input.getWidth()-1
-                 * we use input.getWidth()-1 as the column.
-                 */
-                cX = input.getWidth() - 2;
-                for (int i=0; i<input.getHeight(); i++) {
-                    /* interpolate */
-                    outData[i*this.cWidth+j] =
-                     inData[i*input.getWidth()+cX+1];
-                }
-            }
-        }
-        return horiz;
-    }
-    
-    /** Vertical stretch. Stretches an image from
-     * (this.cWidth,input.getHeight()) to (this.cWidth,this.cHeight)
-     *
-     * @param input the input image.
-     * @returns the stretched image.
-     */
-    private Gray8Image stretchVert(Gray8Image input) {
-        byte[] inData = input.getData();
-        Gray8Image vert = new Gray8Image(this.cWidth, this.cHeight);
-        byte[] outData = vert.getData();
-        for (int i=0; i<this.cHeight; i++) {
-            /* remainder */
-            int cMod = (i*input.getHeight()) % this.cHeight;
-            /* top integral position */
-            int cY = (i*input.getHeight()-cMod) / this.cHeight;
-            if (cY < input.getHeight() - 1) {
-                /* fractional position, times 256 */
-                int cFrac = (cMod<<8) / this.cHeight;
-                for (int j=0; j<input.getWidth(); j++) {
-                    /* interpolate */
-                    outData[i*this.cWidth+j] =
-                     (byte) ((inData[cY*this.cWidth+j] * (256-cFrac) +
-                              inData[(cY+1)*this.cWidth+j] * cFrac) >> 8);
-                }
-            } else {
-                /* adjust cX so we will use the last row of the input
-                 * image for interpolating beyond its bottom edge, without
-                 * accessing a value outside the array bounds. In other
-                 * words, for fractional input positions beyond input.getHeight()-1
-                 * we use input.getHeight()-1 as the row.
-                 */
-                cY = input.getHeight() - 2;
-                for (int j=0; j<input.getWidth(); j++) {
-                    /* interpolate */
-                    outData[i*this.cWidth+j] =
-                     (inData[(cY+1)*this.cWidth+j]);
-                }
-            }
-        }
-        return vert;
-    }
-    
     /** Return a string describing the stretching operation.
      *
      * @return the string describing the stretching operation.
@@ -57,7 +57,7 @@ public class Gray8Rgb extends PipelineStage {
                 	null);
         }
         Gray8Image gray = (Gray8Image) image;
-        RgbImage rgb = new RgbImage(image.getWidth(), image.getHeight());
+        RgbImage rgb = newRgbImage(image.getWidth(), image.getHeight());
         byte[] grayData = gray.getData();
         int[] rgbData = rgb.getData();
         for (int i=0; i<gray.getWidth() * gray.getHeight(); i++) {
@@ -74,4 +74,28 @@ public class Gray8Rgb extends PipelineStage {
         }
         super.setOutput(rgb);
     }
+    
+    /**
+     * Returns the type of image this stage accepts.
+     * @return Gray8Image.class
+     */
+    public Class getInputType() {
+        return Gray8Image.class;
+    }
+    
+    /**
+     * Returns the type of image this stage produces.
+     * @return RgbImage.class
+     */
+    public Class getOutputType() {
+        return RgbImage.class;
+    }
+    
+    /**
+     * Returns true, since the input image is not changed.
+     * @return true.
+     */
+    public boolean isInputReadOnly() {
+        return true;
+    }
 }
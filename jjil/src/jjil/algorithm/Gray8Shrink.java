@@ -28,19 +28,23 @@
 
 package jjil.algorithm;
 import jjil.core.Error;
-import jjil.core.Gray32Image;
 import jjil.core.Gray8Image;
 import jjil.core.Image;
 import jjil.core.PipelineStage;
 /**
  * Shrinks an input Gray8Image to a given new size. The shrinking is done with
  * proper averaging so each output pixel is the average of the corresponding
- * rectangular region in the input.
+ * rectangular region in the input. The work is done by a Resampler, which is
+ * kept from one push to the next while the input size doesn't change.<p>
+ * If an image pool is set (see PipelineStage.setImagePool) the output is
+ * taken from it, so shrinking a stream of images of the same size allocates
+ * nothing once the output images are released.
  * @author webb
  */
 public class Gray8Shrink extends PipelineStage {
     private int cHeight;
     private int cWidth;
+    private Resampler resampler = null; // resamples to the target size
     
     /** Creates a new instance of GrayRectStretch. 
      *
@@ -94,10 +98,15 @@ public class Gray8Shrink extends PipelineStage {
                 			null);
         }
         Gray8Image input = (Gray8Image) image;
-        /* horizontal shrink */
-        Gray32Image horiz = shrinkHoriz(input);
-        /* vertical shrink */
-        Gray8Image result = shrinkVert(horiz);
+        if (this.resampler == null || !this.resampler.isSize(
+                input.getWidth(), input.getHeight(), this.cWidth, this.cHeight)) {
+            this.resampler = new Resampler(
+                    input.getWidth(), input.getHeight(), this.cWidth, this.cHeight);
+        }
+        Gray8Image result = newGray8Image(this.cWidth, this.cHeight);
+        this.resampler.resample(
+                input.getData(), 0, input.getWidth(),
+                result.getData(), 0, this.cWidth);
         super.setOutput(result);
     }
         
@@ -135,95 +144,35 @@ public class Gray8Shrink extends PipelineStage {
         this.cWidth = cWidth;
     }
     
-    /** Horizontal shrink. Shrinks the input from
-     * (input.getWidth(),input.getHeight()) to (this.cWidth,input.getHeight())
-     * by averaging the pixels that are nearest each target pixel's pre-image.
-     * The mapping is x -> x * this.cWidth / input.getWidth() or in inverse
-     *                y -> y * input.getWidth() / this.cWidth
+    /** Return a string describing the shrinking operation.
      *
-     * @param input the input image
-     * @return the shrunk image
+     * @return the string describing the shrinking operation.
      */
-    private Gray32Image shrinkHoriz(Gray8Image input) {
-        /* horizontal shrink */
-        Gray32Image horiz = new Gray32Image(this.cWidth, input.getHeight());
-        byte[] inData = input.getData();
-        int[] outData = horiz.getData();
-        int[] nPixelSum = new int[input.getHeight()];
-        for (int i=0; i<input.getHeight(); i++) {
-            nPixelSum[i] = 0;
-        }
-        int nPos = 0;
-        int nNextPos = input.getWidth() * 256 / this.cWidth;
-        int nCount = 0;
-        for (int j=0; j<input.getWidth() && nPos < this.cWidth; j++) {
-            for (int i=0; i<input.getHeight(); i++) {
-                nPixelSum[i] += inData[i*input.getWidth() + j] - Byte.MIN_VALUE;
-            }
-            nCount += 1;
-            if ((j+1) * 256 >= nNextPos) {
-                for (int i=0; i<input.getHeight(); i++) {
-                    outData[i*this.cWidth + nPos] = nPixelSum[i] * 256 / nCount;
-                    nPixelSum[i] = 0;
-               }
-               nPos += 1;
-               nNextPos += input.getWidth() * 256 / this.cWidth;
-               nCount = 0;
-            }
-        }
-        return horiz;
+    public String toString() {
+        return super.toString() + " (" + this.cWidth + "," + this.cHeight + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
     }
     
-    /** Vertical shrink. Shrinks an image from
-     * (this.cWidth,input.getHeight()) to (this.cWidth,this.cHeight)
-     * by averaging the pixels that are nearest each target pixel's pre-image.
-     * The mapping is x -> x * this.cHeight / input.getHeight() or in inverse
-     *                y -> y * input.getHeight() / this.cHeight
-     *
-     * @param input the input image.
-     * @returns the shrunk image.
+    /**
+     * Returns the type of image this stage accepts.
+     * @return Gray8Image.class
      */
-    private Gray8Image shrinkVert(Gray32Image input) {
-        /* vertical shrink */
-        Gray8Image vert = new Gray8Image(input.getWidth(), this.cHeight);
-        int[] inData = input.getData();
-        byte[] outData = vert.getData();
-        int[] nPixelSum = new int[input.getWidth()];
-        for (int i=0; i<input.getWidth(); i++) {
-            nPixelSum[i] = 0;
-        }
-        int nPos = 0;
-        int nNextPos = input.getHeight() * 256 / this.cHeight;
-        int nCount = 0;
-        for (int j=0; j<input.getHeight() && nPos < input.getHeight(); j++) {
-            for (int i=0; i<input.getWidth(); i++) {
-                nPixelSum[i] += inData[j*input.getWidth() + i];
-            }
-            nCount += 1;
-            if ((j+1) * 256 >= nNextPos) {
-                for (int i=0; i<input.getWidth(); i++) {
-                    outData[nPos*input.getWidth() + i] = 
-                        (byte) (nPixelSum[i] / nCount / 256 + Byte.MIN_VALUE);
-                    nPixelSum[i] = 0;
-               }
-               nPos += 1;
-               if (nPos >= this.cHeight) {
-                   break;
-               }
-               nNextPos += input.getHeight() * 256 / this.cHeight;
-               nCount = 0;
-            }
-        }
-        return vert;
+    public Class getInputType() {
+        return Gray8Image.class;
     }
-     
     
-        
-    /** Return a string describing the shrinking operation.
-     *
-     * @return the string describing the shrinking operation.
+    /**
+     * Returns the type of image this stage produces.
+     * @return Gray8Image.class
      */
-    public String toString() {
-        return super.toString() + " (" + this.cWidth + "," + this.cHeight + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    public Class getOutputType() {
+        return Gray8Image.class;
+    }
+    
+    /**
+     * Returns true, since the input image is not changed.
+     * @return true.
+     */
+    public boolean isInputReadOnly() {
+        return true;
     }
 }
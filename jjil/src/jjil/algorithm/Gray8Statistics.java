@@ -25,6 +25,7 @@
 package jjil.algorithm;
 import jjil.core.Error;
 import jjil.core.Gray8Image;
+import jjil.core.Gray8ViewImage;
 import jjil.core.Image;
 import jjil.core.MathPlus;
 
@@ -47,12 +48,24 @@ public class Gray8Statistics {
     
     /** Estimate the mean and variance of an input gray image.
      *
-     * @param image the input image.
-     * @throws jjil.core.Error if the input image is not gray.
+     * @param image the input image, a Gray8Image or Gray8ViewImage.
+     * @throws jjil.core.Error if the input image is not a Gray8Image or
+     * Gray8ViewImage.
      */
     public void push(Image image) throws jjil.core.Error
     {
-        if (!(image instanceof Gray8Image)) {
+        byte[] data;
+        int nOffset, nStride; // position of input pixel (0,0) and row stride
+        if (image instanceof Gray8Image) {
+            data = ((Gray8Image) image).getData();
+            nOffset = 0;
+            nStride = image.getWidth();
+        } else if (image instanceof Gray8ViewImage) {
+            Gray8ViewImage imageView = (Gray8ViewImage) image;
+            data = imageView.getData();
+            nOffset = imageView.getOffset();
+            nStride = imageView.getStride();
+        } else {
             throw new Error(
                 			Error.PACKAGE.ALGORITHM,
                 			ErrorCodes.IMAGE_NOT_GRAY8IMAGE,
@@ -60,12 +73,10 @@ public class Gray8Statistics {
                 			null,
                 			null);
         }
-        Gray8Image gray = (Gray8Image) image;
         int nSum = 0, nSumSq = 0;
-        byte[] data = gray.getData();
-        for (int i=0; i<gray.getHeight(); i++) {
-            for (int j=0; j<gray.getWidth(); j++) {
-                int pixel = (data[i*image.getWidth()+j]) - Byte.MIN_VALUE;
+        for (int i=0; i<image.getHeight(); i++) {
+            for (int j=0; j<image.getWidth(); j++) {
+                int pixel = (data[nOffset+i*nStride+j]) - Byte.MIN_VALUE;
                 nSum += pixel;
                 nSumSq += pixel*pixel;
             }
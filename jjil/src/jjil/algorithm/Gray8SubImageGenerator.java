@@ -33,17 +33,25 @@ package jjil.algorithm;
 import jjil.core.Error;
 import jjil.core.Gray8Image;
 import jjil.core.Gray8OffsetImage;
+import jjil.core.Gray8ViewImage;
 import jjil.core.Image;
 import jjil.core.PipelineStage;
 
 /**
  * Generates sub images (cropped images positioned regularly across the input image) 
  * from an input Gray8Image. The subimages are of type Gray8OffsetImage which makes it
- * possible to determine their location in the original input image.
+ * possible to determine their location in the original input image.<p>
+ * Normally the pixels of each subimage are copied. After setView(true) the
+ * subimages are instead Gray8ViewImages, which share the pixels of the input
+ * image, so generating a subimage takes constant time. The input can also be
+ * a Gray8ViewImage.
  * @author webb
  */
 public class Gray8SubImageGenerator extends PipelineStage {
-    Gray8Image imageInput;  // input image
+    byte[] rbInput;         // input image pixels
+    int nInputOffset;       // offset of input pixel (0,0) in rbInput
+    int nInputStride;       // row stride of the input image
+    boolean bView = false;  // true if subimages share the input's pixels
     int nHeight;            // target height
     int nHorizLimit = 0;    // number of subimages generated horizontally
     int nVertLimit = 0;     // number of subimages generated vertically
@@ -91,7 +99,9 @@ public class Gray8SubImageGenerator extends PipelineStage {
     // Return the next subimage and increment the indices
     /**
      * Returns the next subimage.
-     * @return a subimage within the input image, of type Gray8OffsetImage.
+     * @return a subimage within the input image, of type Gray8OffsetImage,
+     * or Gray8ViewImage if setView(true) has been called. The same object
+     * is returned every time, changed to the new subimage.
      * @throws jjil.core.Error when there are no more subimages available (isEmpty() would return
      * true.)
      */
@@ -101,7 +111,17 @@ public class Gray8SubImageGenerator extends PipelineStage {
         // larget image.
         int nHOffset = this.nXOffset * this.nHorizIndex;
         int nVOffset = this.nYOffset * this.nVertIndex;
-        byte[] dataIn = this.imageInput.getData();
+        this.nHorizIndex ++;
+        if (this.nHorizIndex == this.nHorizLimit) {
+            this.nVertIndex ++;
+            this.nHorizIndex = 0;
+        }
+        if (this.bView) {
+            // reuse the view created in push, just moving it
+            Gray8ViewImage imageView = (Gray8ViewImage) super.imageOutput;
+            imageView.setPosition(nHOffset, nVOffset);
+            return imageView;
+        }
         // reuse output image
         // check to make sure nobody damaged it somehow
         if (!(super.imageOutput instanceof Gray8OffsetImage)) {
@@ -119,17 +139,12 @@ public class Gray8SubImageGenerator extends PipelineStage {
         for (int i=0; i<this.nHeight; i++) {
             int nVInLoc = i + nVOffset;
             System.arraycopy( 
-                    dataIn, 
-                    nVInLoc*this.imageInput.getWidth() + nHOffset, 
+                    this.rbInput, 
+                    this.nInputOffset + nVInLoc*this.nInputStride + nHOffset, 
                     dataOut, 
                     i*this.nWidth, 
                     this.nWidth);
         }
-        this.nHorizIndex ++;
-        if (this.nHorizIndex == this.nHorizLimit) {
-            this.nVertIndex ++;
-            this.nHorizIndex = 0;
-        }
         return imageResult;
     }
 
@@ -137,13 +152,24 @@ public class Gray8SubImageGenerator extends PipelineStage {
     /**
      * Reinitializes the subimage generator and prepares it to generate the first
      * Gray8OffsetImage for the new input.
-     * @param image The new input image (which must be of type Gray8Image).
-     * @throws jjil.core.Error if image is not of type Gray8Image, or is too small
+     * @param image The new input image (which must be of type Gray8Image or
+     * Gray8ViewImage).
+     * @throws jjil.core.Error if image is not of type Gray8Image or 
+     * Gray8ViewImage, or is too small
      * (less than the size of the subimages we're supposed to
      * be generating).
      */
     public void push(Image image) throws jjil.core.Error {
-        if (!(image instanceof Gray8Image)) {
+        if (image instanceof Gray8Image) {
+            this.rbInput = ((Gray8Image) image).getData();
+            this.nInputOffset = 0;
+            this.nInputStride = image.getWidth();
+        } else if (image instanceof Gray8ViewImage) {
+            Gray8ViewImage imageView = (Gray8ViewImage) image;
+            this.rbInput = imageView.getData();
+            this.nInputOffset = imageView.getOffset();
+            this.nInputStride = imageView.getStride();
+        } else {
             throw new Error(
             				Error.PACKAGE.ALGORITHM,
             				ErrorCodes.IMAGE_NOT_GRAY8IMAGE,
@@ -159,7 +185,24 @@ public class Gray8SubImageGenerator extends PipelineStage {
             				new Integer(this.nWidth).toString(),
             				new Integer(this.nHeight).toString());
         }
-        this.imageInput = (Gray8Image) image;
+        if (this.bView) {
+            super.imageOutput = new Gray8ViewImage(
+                    this.rbInput,
+                    this.nInputOffset,
+                    this.nInputStride,
+                    image.getWidth(),
+                    image.getHeight(),
+                    0,
+                    0,
+                    this.nWidth,
+                    this.nHeight);
+        } else if (!(super.imageOutput instanceof Gray8OffsetImage)) {
+            super.imageOutput = new Gray8OffsetImage( 
+                this.nWidth, 
+                this.nHeight, 
+                0, 
+                0);
+        }
         // we want to find the largest integer l such that
         // (l-1) * w + w  < iw 
         // where l = computed limit on index
@@ -173,4 +216,22 @@ public class Gray8SubImageGenerator extends PipelineStage {
         this.nVertIndex = 0;
     }
     
+    /**
+     * Choose whether the subimages share the input's pixels. This takes
+     * effect at the next push.
+     * @param bView true to generate Gray8ViewImages, false (the default) to
+     * copy the pixels into a Gray8OffsetImage.
+     */
+    public void setView(boolean bView) {
+        this.bView = bView;
+    }
+    
+    /**
+     * Returns true, since there is a subimage output for each position in
+     * the input image.
+     * @return true.
+     */
+    public boolean isMultiOutput() {
+        return true;
+    }
 }
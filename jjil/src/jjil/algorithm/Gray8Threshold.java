@@ -58,6 +58,20 @@ public class Gray8Threshold extends PipelineStage {
      */
     public void push(Image image)
         throws jjil.core.Error
+    {
+        push(image, image);
+    }
+    
+    /** Threshold gray image, writing the result into imageDest if it is a
+     * Gray8Image of the same size, and into the input otherwise.
+     *
+     * @param image the input image.
+     * @param imageDest the output image. May be the input image, or null.
+     * @throws jjil.core.Error if the image is not a gray 8-bit
+     * image.
+     */
+    public void push(Image image, Image imageDest)
+        throws jjil.core.Error
     {
         if (!(image instanceof Gray8Image)) {
             throw new Error(
@@ -68,12 +82,19 @@ public class Gray8Threshold extends PipelineStage {
             				null);
         }
         Gray8Image gray = (Gray8Image) image;
+        Gray8Image output = gray;
+        if (imageDest instanceof Gray8Image &&
+                imageDest.getWidth() == image.getWidth() &&
+                imageDest.getHeight() == image.getHeight()) {
+            output = (Gray8Image) imageDest;
+        }
         byte[] data = gray.getData();
+        byte[] dataOut = output.getData();
         for (int i=0; i<data.length; i++) {
-            data[i] = (((data[i]) < this.nThreshold)==this.bWithin) ?
+            dataOut[i] = (((data[i]) < this.nThreshold)==this.bWithin) ?
             		Byte.MAX_VALUE : Byte.MIN_VALUE;
         }
-        super.setOutput(image);
+        super.setOutput(output);
     }
     
     /**
@@ -83,5 +104,20 @@ public class Gray8Threshold extends PipelineStage {
     public String toString() {
     	return super.toString() + "(" + this.nThreshold + ")"; //$NON-NLS-1$ //$NON-NLS-2$
     }
-
+    
+    /**
+     * Returns the type of image this stage accepts.
+     * @return Gray8Image.class
+     */
+    public Class getInputType() {
+        return Gray8Image.class;
+    }
+    
+    /**
+     * Returns the type of image this stage produces.
+     * @return Gray8Image.class
+     */
+    public Class getOutputType() {
+        return Gray8Image.class;
+    }
 }
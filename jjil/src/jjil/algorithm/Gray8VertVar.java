@@ -110,4 +110,11 @@ public class Gray8VertVar extends PipelineStage {
         super.setOutput(g16);
     }
     
+    /**
+     * Returns true, since the input image is not changed.
+     * @return true.
+     */
+    public boolean isInputReadOnly() {
+        return true;
+    }
 }
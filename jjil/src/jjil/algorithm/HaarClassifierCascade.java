@@ -30,6 +30,7 @@ import java.io.Serializable;
 import jjil.core.Error;
 import jjil.core.Gray32Image;
 import jjil.core.Gray8Image;
+import jjil.core.Gray8ViewImage;
 import jjil.core.Image;
 /**
  * HaarClassifierCascade implements a Haar classifier, which is a trainable
@@ -119,12 +120,192 @@ public abstract class HaarClassifierCascade implements Serializable {
      * Returns true iff the input image passes all the tests in the Haar cascade, i.e.,
      * is a member of the positive sample image set, so far as it can tell.
      * @param i The input Gray8Image. The image size must be equal to the expected size
-     * (as given by getWidth() and getHeight()).
+     * (as given by getWidth() and getHeight()). Cascades for which
+     * isViewSupported() returns true also accept a Gray8ViewImage.
      * @return true iff the input image passes all the tests in the Haar cascade.
      * @throws jjil.core.Error if the input image is not a Gray8Image or is the wrong size.
      */
     public abstract boolean eval(Image i) throws jjil.core.Error;
     
+    /**
+     * Returns true iff the window with top-left corner (nX, nY) in the image
+     * whose integral image is ii passes all the tests in the Haar cascade. The
+     * window size is given by getWidth() and getHeight(). The result is the
+     * same as cropping the window and calling eval(Image), but no image has
+     * to be created and the integral image and standard deviation of the window
+     * do not have to be recomputed, so this is much faster when many windows
+     * in the same image are to be tested.
+     * @param ii the integral image of the image being searched.
+     * @param nX horizontal position of the top-left corner of the window.
+     * @param nY vertical position of the top-left corner of the window.
+     * @return true iff the window passes all the tests in the Haar cascade.
+     * @throws jjil.core.Error if the variance of the window is negative
+     * (this would indicate an overflow).
+     */
+    public abstract boolean eval(Gray8IntegralImage ii, int nX, int nY) 
+        throws jjil.core.Error;
+    
+    /**
+     * Applies the Haar cascade to a window in an integral image, like 
+     * eval(Gray8IntegralImage, int, int), but returns a score instead of a
+     * boolean. The score is the sum of the weak classifiers in the last stage
+     * evaluated minus that stage's threshold. So if the window fails a stage the
+     * score is negative and tells how far it was from passing; if it passes
+     * every stage the score is zero or positive and tells how confidently the
+     * last stage accepted it.<p>
+     * Cascades which do not compute stage sums return 0 if the window is
+     * accepted and -1 if not.
+     * @param ii the integral image of the image being searched.
+     * @param nX horizontal position of the top-left corner of the window.
+     * @param nY vertical position of the top-left corner of the window.
+     * @return the score of the last stage evaluated; this is 
+     * &ge; 0 iff the window passes all the stages of the cascade.
+     * @throws jjil.core.Error if the variance of the window is negative.
+     */
+    public int evalScore(Gray8IntegralImage ii, int nX, int nY) 
+        throws jjil.core.Error 
+    {
+        return eval(ii, nX, nY) ? 0 : -1;
+    }
+    
+    /**
+     * Applies only the first nStages stages of the Haar cascade to a window
+     * in an integral image and returns the score of the last stage evaluated,
+     * as in evalScore(Gray8IntegralImage, int, int). This is used to
+     * decide cheaply whether a window is worth searching around: a
+     * window whose early stage sums are far below threshold is unlikely
+     * to have a feature nearby.<p>
+     * Cascades which do not compute stage sums evaluate every stage and return
+     * 0 if the window is accepted and -1 if not.
+     * @param ii the integral image of the image being searched.
+     * @param nX horizontal position of the top-left corner of the window.
+     * @param nY vertical position of the top-left corner of the window.
+     * @param nStages the maximum number of stages to evaluate.
+     * @return the score of the last stage evaluated; this is 
+     * &ge; 0 iff the window passes the first nStages stages of the cascade.
+     * @throws jjil.core.Error if the variance of the window is negative.
+     */
+    public int evalScore(Gray8IntegralImage ii, int nX, int nY, int nStages) 
+        throws jjil.core.Error 
+    {
+        return evalScore(ii, nX, nY);
+    }
+    
+    /**
+     * Applies the first nStages stages of the Haar cascade to a window, like
+     * evalScore(Gray8IntegralImage, int, int, int), and counts the stages the
+     * window reaches. rnReach[i] is incremented for every stage i that is
+     * evaluated, including the stage the window fails, so rnReach[0] counts 
+     * the windows evaluated. This is used for profiling (see HaarProfile).<p>
+     * Cascades which do not compute stage sums count only rnReach[0].
+     * @param ii the integral image of the image being searched.
+     * @param nX horizontal position of the top-left corner of the window.
+     * @param nY vertical position of the top-left corner of the window.
+     * @param nStages the maximum number of stages to evaluate.
+     * @param rnReach the stage counts, at least getStageCount() long.
+     * @return the score of the last stage evaluated.
+     * @throws jjil.core.Error if the variance of the window is negative.
+     */
+    public int evalScore(
+            Gray8IntegralImage ii, 
+            int nX, 
+            int nY, 
+            int nStages, 
+            int[] rnReach) 
+        throws jjil.core.Error 
+    {
+        rnReach[0]++;
+        return evalScore(ii, nX, nY, nStages);
+    }
+    
+    /**
+     * Returns the number of stages in the Haar cascade.
+     * @return the number of stages. Cascades which do not compute stage sums
+     * return 1.
+     */
+    public int getStageCount() {
+        return 1;
+    }
+    
+    /**
+     * Returns the number of weak classifiers in a stage of the Haar cascade.
+     * @param nStage the stage, from 0 to getStageCount() - 1.
+     * @return the number of weak classifiers in the stage. Cascades which do
+     * not compute stage sums return 0.
+     */
+    public int getStageSize(int nStage) {
+        return 0;
+    }
+    
+    /**
+     * Returns true iff eval(Image) accepts a Gray8ViewImage as well as a
+     * Gray8Image. Detectors use this to decide whether they can pass a view
+     * of each window to the cascade or have to copy the window.
+     * @return false. Cascades which accept views override this.
+     */
+    public boolean isViewSupported() {
+        return false;
+    }
+    
+    /**
+     * Returns a copy of this Haar cascade that detects the same feature in a
+     * window that is larger by a factor of nScale / 256. The rectangles in every
+     * Haar feature are scaled and the feature values are normalized by the change
+     * in area of each rectangle, so the thresholds in the cascade don't change.
+     * This is the original Viola-Jones approach to multi-scale detection: the
+     * scaled cascade can be applied with eval(Gray8IntegralImage, int, int) to the
+     * integral image of the full resolution image, so the image never has to be
+     * resampled.
+     * @param nScale the scale factor, times 256. Must be at least 256.
+     * @return a new Haar cascade whose width and height are scaled by nScale / 256.
+     * @throws jjil.core.Error if nScale is less than 256 or the cascade cannot be scaled.
+     */
+    public abstract HaarClassifierCascade scale(int nScale) throws jjil.core.Error;
+    
+    /**
+     * Prepares the Haar cascade for evaluation in integral images with a given
+     * row stride. Every eval(Gray8IntegralImage, int, int) (and evalScore)
+     * binds the cascade to the stride of its integral image before evaluating,
+     * calling setStride when the stride differs from the one the cascade was
+     * last bound to, which modifies the cascade. Calling setStride first means
+     * eval will only read the cascade, so the same cascade can then be
+     * evaluated by several threads at once in integral images of the same
+     * stride.
+     * @param nStride the row stride of the integral image, as returned by
+     * Gray8IntegralImage.getStride().
+     */
+    public abstract void setStride(int nStride);
+    
+    /**
+     * Flattens the Haar cascade into a HaarCompiledCascade, which stores the
+     * stages, weak classifiers, and rectangles in arrays of primitive types
+     * and evaluates them in a single loop. The compiled cascade gives the same
+     * results as this one but is faster to evaluate. 
+     * @return the compiled cascade.
+     * @throws jjil.core.Error if this type of cascade cannot be compiled. Only
+     * stump-based cascades can be compiled.
+     */
+    public HaarCompiledCascade compile() throws jjil.core.Error {
+        throw new Error(
+                        Error.PACKAGE.ALGORITHM,
+                        ErrorCodes.OBJECT_NOT_EXPECTED_TYPE,
+                        this.toString(),
+                        "HaarClassifierStumpBase",
+                        null);
+    }
+    
+    /**
+     * Scales a coordinate by a factor, rounding to the nearest integer.
+     * Rectangle edges are scaled with this, rather than scaling widths and heights,
+     * so that adjacent rectangles stay adjacent after scaling.
+     * @param n the coordinate.
+     * @param nScale the scale factor, times 256.
+     * @return the coordinate times nScale / 256, rounded.
+     */
+    protected static int scaleCoord(int n, int nScale) {
+        return (n * nScale + 128) >> 8;
+    }
+    
     /**
      * Support method for reading integers from an input stream. The single-character
      * separator following the integer is also read. So a stream containing
@@ -209,7 +390,37 @@ public abstract class HaarClassifierCascade implements Serializable {
             // We precompute the indices of the features so we have to
             // change their values whenever the image width changes.
             protected abstract void setWidth(int nWidth);
+            // Same as setWidth, but for the padded integral image
+            // formed by Gray8IntegralImage.
+            protected abstract void setStride(int nStride);
+            // Create a copy of this rectangle, belonging to hfOwner, for a window 
+            // scaled by nScale / 256. nWidth and nHeight are the scaled window size.
+            protected abstract HaarRect scale(HaarFeature hfOwner, int nScale, 
+                    int nWidth, int nHeight);
+            // Add this rectangle to a compiled cascade
+            protected abstract void compile(HaarCompiledCascade.Builder b);
 
+            // offsets of the corners of the rectangle in a padded integral
+            // image, relative to the top-left corner of the window. Since
+            // the integral image is padded we don't need special cases
+            // for rectangles at the top or left of the window.
+            private int nTl, nTr, nBl, nBr;
+            private int nWeight;
+            
+            protected void setCorners(int nStride, int tlx, int tly, int w, int h, int weight) {
+                this.nTl = tly*nStride + tlx;
+                this.nTr = this.nTl + w;
+                this.nBl = this.nTl + h*nStride;
+                this.nBr = this.nBl + w;
+                this.nWeight = weight;
+            }
+            
+            // eval returns the rectangle feature value for the window
+            // starting at nBase in the padded integral image data
+            protected int eval(int[] data, int nBase) {
+                return this.nWeight * ( data[nBase+this.nBr] - data[nBase+this.nBl] -
+                                        data[nBase+this.nTr] + data[nBase+this.nTl] );
+            }
         }
         
         // Used for third null rectangle when a HaarFeature only uses 2 
@@ -232,6 +443,22 @@ public abstract class HaarClassifierCascade implements Serializable {
             protected void setWidth(int nWidth) {
             }
             
+            protected int eval(int[] data, int nBase) {
+                return 0;
+            }
+            
+            protected void setStride(int nStride) {
+            }
+            
+            protected HaarRect scale(HaarFeature hfOwner, int nScale, 
+                    int nWidth, int nHeight) {
+                return hfOwner.new HaarRectNone();
+            }
+            
+            protected void compile(HaarCompiledCascade.Builder b) {
+                // contributes nothing to the feature
+            }
+            
             public String toString() {
                 return "(hr 0 0 0 0 0)"; //$NON-NLS-1$
             }
@@ -272,6 +499,20 @@ public abstract class HaarClassifierCascade implements Serializable {
                     this.n4 = (tly+h-1)*nWidth + (tlx-1);
              }
             
+            protected void setStride(int nStride) {
+                setCorners(nStride, this.tlx, this.tly, this.w, this.h, this.weight);
+            }
+            
+            protected HaarRect scale(HaarFeature hfOwner, int nScale, 
+                    int nWidth, int nHeight) {
+                return hfOwner.new HaarRectScaled(this.tlx, this.tly, this.w, this.h,
+                        this.weight, nScale, nWidth, nHeight);
+            }
+            
+            protected void compile(HaarCompiledCascade.Builder b) {
+                b.addRect(this.tlx, this.tly, this.w, this.h, this.weight, 256);
+            }
+            
             public String toString() {
                 return "(hr " + this.tlx + " " + this.tly + //$NON-NLS-1$ //$NON-NLS-2$
                         " " + this.w + " " + this.h +  //$NON-NLS-1$ //$NON-NLS-2$
@@ -313,6 +554,20 @@ public abstract class HaarClassifierCascade implements Serializable {
                 this.n3 = (tly-1)*nWidth + w - 1;
             }
             
+            protected void setStride(int nStride) {
+                setCorners(nStride, 0, this.tly, this.w, this.h, this.weight);
+            }
+            
+            protected HaarRect scale(HaarFeature hfOwner, int nScale, 
+                    int nWidth, int nHeight) {
+                return hfOwner.new HaarRectScaled(0, this.tly, this.w, this.h,
+                        this.weight, nScale, nWidth, nHeight);
+            }
+            
+            protected void compile(HaarCompiledCascade.Builder b) {
+                b.addRect(0, this.tly, this.w, this.h, this.weight, 256);
+            }
+            
             public String toString() {
                 return "(hr 0 " + this.tly + //$NON-NLS-1$
                         " " + this.w + " " + this.h +  //$NON-NLS-1$ //$NON-NLS-2$
@@ -354,6 +609,20 @@ public abstract class HaarClassifierCascade implements Serializable {
                     this.n4 = (h - 1)*nWidth + (tlx-1);
             }
             
+            protected void setStride(int nStride) {
+                setCorners(nStride, this.tlx, 0, this.w, this.h, this.weight);
+            }
+            
+            protected HaarRect scale(HaarFeature hfOwner, int nScale, 
+                    int nWidth, int nHeight) {
+                return hfOwner.new HaarRectScaled(this.tlx, 0, this.w, this.h,
+                        this.weight, nScale, nWidth, nHeight);
+            }
+            
+            protected void compile(HaarCompiledCascade.Builder b) {
+                b.addRect(this.tlx, 0, this.w, this.h, this.weight, 256);
+            }
+            
             public String toString() {
                 return "(hr " + this.tlx + " 0 " +  //$NON-NLS-1$ //$NON-NLS-2$
                         this.w + " " + this.h +  //$NON-NLS-1$
@@ -391,11 +660,120 @@ public abstract class HaarClassifierCascade implements Serializable {
                 this.n2 = (h - 1)*nWidth + w - 1;
              }
              
+            protected void setStride(int nStride) {
+                setCorners(nStride, 0, 0, this.w, this.h, this.weight);
+            }
+            
+            protected HaarRect scale(HaarFeature hfOwner, int nScale, 
+                    int nWidth, int nHeight) {
+                return hfOwner.new HaarRectScaled(0, 0, this.w, this.h,
+                        this.weight, nScale, nWidth, nHeight);
+            }
+            
+            protected void compile(HaarCompiledCascade.Builder b) {
+                b.addRect(0, 0, this.w, this.h, this.weight, 256);
+            }
+             
             public String toString() {
                 return "(hr 0 0 " + this.w + " " + this.h +  //$NON-NLS-1$ //$NON-NLS-2$
                         " " + this.weight + ")"; //$NON-NLS-1$ //$NON-NLS-2$
             }
        };
+       
+        // HaarRectScaled is a rectangle from a Haar feature which has been scaled
+        // to a larger window. Because the scaled coordinates are rounded the area 
+        // of the rectangle doesn't scale exactly, so the rectangle sum is
+        // normalized by the ratio of the original area to the scaled area. This
+        // keeps the feature value in the same range as in the original window
+        // and corrects for the rounding, so the thresholds don't have to change.
+        class HaarRectScaled extends HaarRect implements Serializable {
+            /**
+			 * 
+			 */
+			private static final long serialVersionUID = 4473120911378512276L;
+			private int n1, n2, n3, n4;
+            private int tlx, tly, w, h; // scaled rectangle coordinates
+            private int nBaseTlx, nBaseTly, nBaseW, nBaseH; // original coordinates
+            private int nScale; // scale factor, times 256
+            private int nNorm; // original area / scaled area, times 65536
+            private int weight; // convolution weight assigned to rectangle
+
+            public HaarRectScaled(int tlx, int tly, int w, int h, int weight,
+                    int nScale, int nWidth, int nHeight) {
+                this.nBaseTlx = tlx;
+                this.nBaseTly = tly;
+                this.nBaseW = w;
+                this.nBaseH = h;
+                this.weight = weight;
+                this.nScale = nScale;
+                // scale the edges, not the width and height, so rectangles
+                // that are adjacent stay adjacent
+                this.tlx = Math.min(nWidth - 1, scaleCoord(tlx, nScale));
+                this.tly = Math.min(nHeight - 1, scaleCoord(tly, nScale));
+                this.w = Math.max(1, 
+                        Math.min(nWidth, scaleCoord(tlx + w, nScale)) - this.tlx);
+                this.h = Math.max(1, 
+                        Math.min(nHeight, scaleCoord(tly + h, nScale)) - this.tly);
+                this.nNorm = (w * h << 16) / (this.w * this.h);
+            }
+
+            // normalize the rectangle sum to the original area
+            private int normalize(int nSum) {
+                return ((int) (((long) nSum * this.nNorm) >> 16)) * this.weight;
+            }
+            
+            protected int eval(Gray32Image image) {
+                int data[] = image.getData();
+                int nSum = data[this.n2];
+                if (this.tlx > 0) {
+                    nSum -= data[this.n4];
+                }
+                if (this.tly > 0) {
+                    nSum -= data[this.n3];
+                    if (this.tlx > 0) {
+                        nSum += data[this.n1];
+                    }
+                }
+                return normalize(nSum);
+            }
+            
+            protected int eval(int[] data, int nBase) {
+                // the weight passed to setCorners is 1 so this is the 
+                // unweighted rectangle sum
+                return normalize(super.eval(data, nBase));
+            }
+            
+            protected void setWidth(int nWidth) {
+                this.n1 = (tly-1)*nWidth + (tlx-1);
+                this.n2 = (tly+h-1)*nWidth + (tlx+w-1);
+                this.n3 = (tly-1)*nWidth + (tlx+w-1);
+                this.n4 = (tly+h-1)*nWidth + (tlx-1);
+            }
+            
+            protected void setStride(int nStride) {
+                setCorners(nStride, this.tlx, this.tly, this.w, this.h, 1);
+            }
+            
+            protected HaarRect scale(HaarFeature hfOwner, int nScale, 
+                    int nWidth, int nHeight) {
+                // always scale from the original coordinates so rounding
+                // errors don't accumulate
+                return hfOwner.new HaarRectScaled(this.nBaseTlx, this.nBaseTly, 
+                        this.nBaseW, this.nBaseH, this.weight, 
+                        (this.nScale * nScale) >> 8, nWidth, nHeight);
+            }
+            
+            protected void compile(HaarCompiledCascade.Builder b) {
+                b.addRect(this.nBaseTlx, this.nBaseTly, this.nBaseW, this.nBaseH,
+                        this.weight, this.nScale);
+            }
+            
+            public String toString() {
+                return "(hr " + this.tlx + " " + this.tly + //$NON-NLS-1$ //$NON-NLS-2$
+                        " " + this.w + " " + this.h +  //$NON-NLS-1$ //$NON-NLS-2$
+                        " " + this.weight + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        };
         
         // construct from input
         // the expected input is
@@ -478,6 +856,21 @@ public abstract class HaarClassifierCascade implements Serializable {
             this.bTilted = (readInt(isr) == 1);
         }
         
+        /**
+         * Creates a copy of a HaarFeature for a window scaled by nScale / 256.
+         * @param hf the feature to copy.
+         * @param nScale the scale factor, times 256.
+         * @param nWidth the scaled window width.
+         * @param nHeight the scaled window height.
+         */
+        public HaarFeature(HaarFeature hf, int nScale, int nWidth, int nHeight) {
+            this.rect = new HaarRect[hf.rect.length];
+            for (int i=0; i<this.rect.length; i++) {
+                this.rect[i] = hf.rect[i].scale(this, nScale, nWidth, nHeight);
+            }
+            this.bTilted = hf.bTilted;
+        }
+        
         /**
          * Applies the HaarFeature to the image and returns the integer equal to the
          * result of convolving the rectangles in the feature with the image.
@@ -493,6 +886,22 @@ public abstract class HaarClassifierCascade implements Serializable {
             return nSum;
         }
         
+        /**
+         * Applies the HaarFeature to a window in a padded integral image (as
+         * formed by Gray8IntegralImage).
+         * @param data the padded integral image data. The stride should be
+         * equal to the last stride passed to setStride().
+         * @param nBase the index of the top-left corner of the window in data.
+         * @return the integer equal to the result of convolving the rectangles in the feature with the window.
+         */
+        public int eval(int[] data, int nBase) {
+            int nSum = 0;
+            for (int i=0; i<rect.length; i++) {
+                nSum += rect[i].eval(data, nBase);
+            }
+            return nSum;
+        }
+        
         /**
          * Changes the image width for the current feature. The image width is used
          * to pre-calculate the offsets of the rectangles within the image.
@@ -504,6 +913,28 @@ public abstract class HaarClassifierCascade implements Serializable {
             }           
         }
         
+        /**
+         * Changes the padded integral image stride for the current feature. 
+         * The stride is used to pre-calculate the offsets of the rectangles 
+         * relative to the window.
+         * @param nStride The expected integral image stride.
+         */
+        public void setStride(int nStride) {
+            for (int i=0; i<rect.length; i++) {
+                rect[i].setStride(nStride);
+            }           
+        }
+        
+        /**
+         * Adds the rectangles of this feature to a compiled cascade.
+         * @param b the compiled cascade builder.
+         */
+        void compile(HaarCompiledCascade.Builder b) {
+            for (int i=0; i<rect.length; i++) {
+                rect[i].compile(b);
+            }
+        }
+        
         /**
          * Returns a String representation of the HaarFeature. Passing this String
          * to the constructor via an input stream will create a HaarFeature with the
@@ -532,6 +963,22 @@ public abstract class HaarClassifierCascade implements Serializable {
          * @return The result of applying the weak classifier to the image.
          */
         public int eval(Gray32Image image);
+        
+        /**
+         * Applies a HaarWeakClassifier to a window in a padded integral image.
+         * @param data padded integral image data.
+         * @param nBase index of the top-left corner of the window in data.
+         * @param nStdDev standard deviation of the window, times 256.
+         * @return The result of applying the weak classifier to the window.
+         */
+        public int eval(int[] data, int nBase, int nStdDev);
+        
+        /**
+         * Computes the offsets of the feature rectangles for a padded
+         * integral image with a given row stride.
+         * @param nStride the integral image stride.
+         */
+        public void setStride(int nStride);
     };
     
     /**
@@ -550,6 +997,23 @@ public abstract class HaarClassifierCascade implements Serializable {
          * if not.
          */
         public boolean eval(Gray32Image image);
+        
+        /**
+         * Applies a HaarStageClassifier to a window in a padded integral image.
+         * @param data padded integral image data.
+         * @param nBase index of the top-left corner of the window in data.
+         * @param nStdDev standard deviation of the window, times 256.
+         * @return true if the window passes this stage of the classifer, false
+         * if not.
+         */
+        public boolean eval(int[] data, int nBase, int nStdDev);
+        
+        /**
+         * Computes the offsets of the feature rectangles in every weak
+         * classifier for a padded integral image with a given row stride.
+         * @param nStride the integral image stride.
+         */
+        public void setStride(int nStride);
     };
  
 
@@ -644,6 +1108,31 @@ class HaarClassifierTreeBase extends HaarClassifierCascade
             }
 
         }
+        
+        public int eval(int[] data, int nBase, int nStdDev) {
+            int nHf = this.feature.eval(data, nBase);
+            HaarWeakClassifier hcNext;
+            if (nHf < this.threshold) {
+                hcNext = this.left;
+            } else {
+                hcNext = this.right;
+            }
+            if (hcNext == null) {
+                return this.alpha;
+            } else {
+                return hcNext.eval(data, nBase, nStdDev);
+            }
+        }
+        
+        public void setStride(int nStride) {
+            this.feature.setStride(nStride);
+            if (this.left != null) {
+                this.left.setStride(nStride);
+            }
+            if (this.right != null) {
+                this.right.setStride(nStride);
+            }
+        }
     };
     
    
@@ -660,6 +1149,7 @@ class HaarClassifierTreeBase extends HaarClassifierCascade
     private HaarStageClassifier next;
     private HaarStageClassifier child;
     private HaarClassifierTreeBase parent;
+    private int nStride = 0;    // stride the features were last bound to
 
     public boolean eval(Image image) throws jjil.core.Error {
         if (!(image instanceof Gray32Image)) {
@@ -690,6 +1180,58 @@ class HaarClassifierTreeBase extends HaarClassifierCascade
             }
         }
     }
+
+    public HaarClassifierCascade scale(int nScale) throws jjil.core.Error {
+        // scaling is only implemented for stump-based classifiers
+        throw new Error(
+                        Error.PACKAGE.ALGORITHM,
+                        ErrorCodes.OBJECT_NOT_EXPECTED_TYPE,
+                        this.toString(),
+                        "HaarClassifierStumpBase",
+                        null);
+    }
+
+    public void setStride(int nStride) {
+        for (int i=0; i<this.classifier.length; i++) {
+            this.classifier[i].setStride(nStride);
+        }
+        if (this.child != null) {
+            this.child.setStride(nStride);
+        }
+        if (this.next != null) {
+            this.next.setStride(nStride);
+        }
+        this.nStride = nStride;
+    }
+
+    public boolean eval(Gray8IntegralImage ii, int nX, int nY) 
+        throws jjil.core.Error {
+        int nStdDev = ii.getStdDev(nX, nY, this.width, this.height);
+        // bind the feature offsets to this integral image's stride
+        int nStride = ii.getStride();
+        if (this.nStride != nStride) {
+            setStride(nStride);
+        }
+        int[] data = ii.getSum();
+        int nBase = nY * nStride + nX;
+        int nSumHc = 0;
+        for (int i=0; i<this.classifier.length; i++) {
+            nSumHc += this.classifier[i].eval(data, nBase, nStdDev);
+        }
+        if (nSumHc >= this.threshold) {
+            if (this.child == null) {
+                return true;
+            } else {
+                return this.child.eval(data, nBase, nStdDev);
+            }
+        } else {
+            if (this.parent == null || this.parent.next == null) {
+                return false;
+            } else {
+                return this.parent.next.eval(data, nBase, nStdDev);
+            }
+        }
+    }
 }
 
 
@@ -715,6 +1257,7 @@ class  HaarClassifierStumpBase extends HaarClassifierCascade
     // t = threshold * variance_norm_factor. If < t then it returns a,
     // o/w b.
     private int nWidth = 0;     // for detecting when image width changes
+    private int nStride = 0;    // stride the features were last bound to
     
     public class HaarWeakClassifierStump 
     	implements HaarWeakClassifier, Serializable
@@ -755,6 +1298,19 @@ class  HaarClassifierStumpBase extends HaarClassifierCascade
             this.height = height;
         }
         
+        // create a copy for a scaled window. The width and height used in
+        // computing the threshold are not changed because the feature value
+        // is normalized to the original window size.
+        public HaarWeakClassifierStump(HaarWeakClassifierStump hwcs, int nScale,
+                int nWidth, int nHeight) {
+            this.feature = new HaarFeature(hwcs.feature, nScale, nWidth, nHeight);
+            this.threshold = hwcs.threshold;
+            this.a = hwcs.a;
+            this.b = hwcs.b;
+            this.width = hwcs.width;
+            this.height = hwcs.height;
+        }
+        
         public int eval(Gray32Image image) {
             int nHf = this.feature.eval(image) << 12;
             if (nHf < this.modThreshold) { 
@@ -764,12 +1320,34 @@ class  HaarClassifierStumpBase extends HaarClassifierCascade
             }
         }
         
+        public int eval(int[] data, int nBase, int nStdDev) {
+            int nHf = this.feature.eval(data, nBase) << 12;
+            // same as setThreshold, but we don't modify the classifier
+            int nModThreshold = ((this.threshold * nStdDev >> 6)
+                    * this.width * this.height) >> 6;
+            if (nHf < nModThreshold) { 
+                return a;
+            } else {
+                return b;
+            }
+        }
+        
         public void setWidth(int nWidth) {
             this.feature.setWidth(nWidth);
             // width affects threshold
             setThreshold();
         }
         
+        public void setStride(int nStride) {
+            this.feature.setStride(nStride);
+        }
+        
+        void compile(HaarCompiledCascade.Builder b) {
+            b.addWeakClassifier(this.threshold, this.a, this.b, 
+                    this.width, this.height);
+            this.feature.compile(b);
+        }
+        
         // this should be called whenever the underlying image changes
         // it accepts the standard deviation of the image, multiplied by
         // 256
@@ -830,6 +1408,17 @@ class  HaarClassifierStumpBase extends HaarClassifierCascade
             this.threshold = readInt(isr);
         }
         
+        // create a copy for a scaled window
+        public HaarClassifierStump(HaarClassifierStump hcs, int nScale, 
+                int nWidth, int nHeight) {
+            this.hwcs = new HaarWeakClassifierStump[hcs.hwcs.length];
+            for (int i=0; i<this.hwcs.length; i++) {
+                this.hwcs[i] = new HaarWeakClassifierStump(hcs.hwcs[i], nScale,
+                        nWidth, nHeight);
+            }
+            this.threshold = hcs.threshold;
+        }
+        
         public boolean eval(Gray32Image image) {         
             int stageSum = 0;
             for (int i=0; i<this.hwcs.length; i++) {
@@ -838,18 +1427,44 @@ class  HaarClassifierStumpBase extends HaarClassifierCascade
             return (stageSum >= this.threshold);
         }
         
+        public boolean eval(int[] data, int nBase, int nStdDev) {         
+            return evalScore(data, nBase, nStdDev) >= 0;
+        }
+        
+        // the stage sum minus the threshold
+        public int evalScore(int[] data, int nBase, int nStdDev) {         
+            int stageSum = 0;
+            for (int i=0; i<this.hwcs.length; i++) {
+                stageSum += this.hwcs[i].eval(data, nBase, nStdDev);
+            }
+            return stageSum - this.threshold;
+        }
+        
         public void setWidth(int nWidth) {
             for (int i=0; i<this.hwcs.length; i++) {
                 this.hwcs[i].setWidth(nWidth);
             }
         }
         
+        public void setStride(int nStride) {
+            for (int i=0; i<this.hwcs.length; i++) {
+                this.hwcs[i].setStride(nStride);
+            }
+        }
+        
         public void setStdDev(int stdDev) {
             for (int i=0; i<this.hwcs.length; i++) {
                 this.hwcs[i].setStdDev(stdDev);
             }
         }
         
+        void compile(HaarCompiledCascade.Builder b) {
+            b.addStage(this.threshold);
+            for (int i=0; i<this.hwcs.length; i++) {
+                this.hwcs[i].compile(b);
+            }
+        }
+        
         public String toString() {
             String sz =  "(hcs " + this.hwcs.length; //$NON-NLS-1$
             for (int i=0; i<this.hwcs.length; i++) {
@@ -862,7 +1477,8 @@ class  HaarClassifierStumpBase extends HaarClassifierCascade
 
        
         public boolean eval(Image image) throws jjil.core.Error {
-            if (!(image instanceof Gray8Image)) {
+            if (!(image instanceof Gray8Image) && 
+                !(image instanceof Gray8ViewImage)) {
                  throw new Error(
                                  Error.PACKAGE.ALGORITHM,
                                  ErrorCodes.IMAGE_NOT_GRAY8IMAGE,
@@ -893,6 +1509,83 @@ class  HaarClassifierStumpBase extends HaarClassifierCascade
             }
             return true;
         }
+        
+        public boolean eval(Gray8IntegralImage ii, int nX, int nY) 
+            throws jjil.core.Error {
+            // the standard deviation of the window comes from the sums
+            // of squares, so we don't have to look at the pixels
+            int nStdDev = ii.getStdDev(nX, nY, this.width, this.height);
+            // bind the feature offsets to this integral image's stride
+            int nStride = ii.getStride();
+            if (this.nStride != nStride) {
+                setStride(nStride);
+            }
+            int[] data = ii.getSum();
+            int nBase = nY * nStride + nX;
+            for (int i=0; i<this.hsc.length; i++) {
+                if (!this.hsc[i].eval(data, nBase, nStdDev)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        public int evalScore(Gray8IntegralImage ii, int nX, int nY) 
+            throws jjil.core.Error {
+            return evalScore(ii, nX, nY, this.hsc.length);
+        }
+        
+        public int evalScore(Gray8IntegralImage ii, int nX, int nY, int nStages) 
+            throws jjil.core.Error {
+            return evalScore(ii, nX, nY, nStages, null);
+        }
+        
+        public int evalScore(
+                Gray8IntegralImage ii, 
+                int nX, 
+                int nY, 
+                int nStages, 
+                int[] rnReach) 
+            throws jjil.core.Error {
+            int nStdDev = ii.getStdDev(nX, nY, this.width, this.height);
+            // bind the feature offsets to this integral image's stride
+            int nStride = ii.getStride();
+            if (this.nStride != nStride) {
+                setStride(nStride);
+            }
+            int[] data = ii.getSum();
+            int nBase = nY * nStride + nX;
+            int nScore = 0;
+            for (int i=0; i<Math.min(nStages, this.hsc.length); i++) {
+                if (rnReach != null) {
+                    rnReach[i]++;
+                }
+                nScore = this.hsc[i].evalScore(data, nBase, nStdDev);
+                if (nScore < 0) {
+                    break;
+                }
+            }
+            return nScore;
+        }
+        
+    public int getStageCount() {
+        return this.hsc.length;
+    }
+    
+    public int getStageSize(int nStage) {
+        return this.hsc[nStage].hwcs.length;
+    }
+    
+    public boolean isViewSupported() {
+        return true;
+    }
+    
+    public void setStride(int nStride) {
+        for (int i=0; i<this.hsc.length; i++) {
+            this.hsc[i].setStride(nStride);
+        }
+        this.nStride = nStride;
+    }
     
     private HaarClassifierStump[] hsc;   // Haar feature tested by this classifier
 
@@ -937,6 +1630,38 @@ class  HaarClassifierStumpBase extends HaarClassifierCascade
         }
     }
         
+    // create a copy for a window scaled by nScale / 256
+    private HaarClassifierStumpBase(HaarClassifierStumpBase hcsb, int nScale) {
+        this.width = scaleCoord(hcsb.width, nScale);
+        this.height = scaleCoord(hcsb.height, nScale);
+        this.hsc = new HaarClassifierStump[hcsb.hsc.length];
+        for (int i=0; i<this.hsc.length; i++) {
+            this.hsc[i] = new HaarClassifierStump(hcsb.hsc[i], nScale,
+                    this.width, this.height);
+        }
+    }
+    
+    public HaarClassifierCascade scale(int nScale) throws jjil.core.Error {
+        if (nScale < 256) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            new Integer(nScale).toString(),
+                            "256",
+                            null);
+        }
+        return new HaarClassifierStumpBase(this, nScale);
+    }
+    
+    public HaarCompiledCascade compile() throws jjil.core.Error {
+        HaarCompiledCascade.Builder b = new HaarCompiledCascade.Builder();
+        b.setBaseSize(this.width, this.height);
+        for (int i=0; i<this.hsc.length; i++) {
+            this.hsc[i].compile(b);
+        }
+        return b.build();
+    }
+        
     public String toString() {
         String sz = "(hcsb " + this.width + " " + this.height + " " + //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
                 this.hsc.length;
@@ -0,0 +1,832 @@
+/*
+ * HaarCompiledCascade.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jjil.algorithm;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+import jjil.core.Error;
+import jjil.core.Gray8Image;
+import jjil.core.Gray8ViewImage;
+import jjil.core.Image;
+
+/**
+ * HaarCompiledCascade is a stump-based Haar cascade flattened into a few arrays
+ * of primitive types, so that it can be evaluated by a single tight loop without
+ * any virtual calls or pointer chasing. It is created from the object form of the
+ * cascade by HaarClassifierCascade.compile(), and gives exactly the same results.
+ * <p>
+ * The cascade is stored as follows:
+ * <ul>
+ * <li>Stage i consists of weak classifiers rnStageWc[i] through
+ * rnStageWc[i+1]-1, and passes if the sum of their results is at least
+ * rnStageThreshold[i].</li>
+ * <li>Weak classifier j sums the rectangles rnWcRect[j] through
+ * rnWcRect[j+1]-1 to form the feature value, compares it with
+ * rnWcThreshold[j] (normalized by the window standard deviation), and returns
+ * rnWcA[j] if it is less, rnWcB[j] otherwise.</li>
+ * <li>Rectangle k is at rsRect[4*k] .. rsRect[4*k+3] (top-left x, top-left y,
+ * width, height) in the trained window, and has weight rnRectWeight[k].
+ * Rectangles with zero area are dropped when the cascade is compiled.</li>
+ * </ul>
+ * These arrays are never modified, so scaled copies of the cascade (see scale())
+ * share them. The corner offsets of the rectangles in the integral image are
+ * computed from them when the integral image stride is known, as with the object
+ * form of the cascade.<p>
+ * A compiled cascade can be saved in a compact binary format with write() and
+ * loaded with read(), which is much faster than parsing the text format and
+ * doesn't depend on Java serialization. The format is, in big-endian order:
+ * <pre>
+ * int    MAGIC ('HCCB')
+ * int    VERSION
+ * int    trained window width
+ * int    trained window height
+ * int    number of stages (S)
+ * int    number of weak classifiers (W)
+ * int    number of rectangles (R)
+ * int[S]   rnStageThreshold
+ * int[S+1] rnStageWc
+ * int[W]   rnWcThreshold
+ * int[W]   rnWcA
+ * int[W]   rnWcB
+ * int[W+1] rnWcRect
+ * int[R]   rnRectWeight
+ * short[4R] rsRect
+ * </pre>
+ * All the ints come first so that the file can be memory-mapped and read
+ * directly as an int buffer followed by a short buffer.
+ * @author webb
+ */
+public class HaarCompiledCascade extends HaarClassifierCascade
+	implements Serializable
+{
+    /**
+     * Builder collects the stages, weak classifiers, and rectangles of
+     * a cascade in order and creates the HaarCompiledCascade from them.
+     */
+    static class Builder {
+        private int nBaseHeight, nBaseWidth;
+        private int nRects = 0, nStages = 0, nWcs = 0;
+        private int nScale = 256;
+        private int[] rnRectWeight = new int[64];
+        private int[] rnStageThreshold = new int[16];
+        private int[] rnStageWc = new int[16];
+        private int[] rnWcA = new int[64];
+        private int[] rnWcB = new int[64];
+        private int[] rnWcRect = new int[64];
+        private int[] rnWcThreshold = new int[64];
+        private short[] rsRect = new short[256];
+
+        // double the size of an array if it is full
+        private static int[] grow(int[] rn, int nUsed) {
+            if (nUsed < rn.length) {
+                return rn;
+            }
+            int[] rnNew = new int[rn.length * 2];
+            System.arraycopy(rn, 0, rnNew, 0, nUsed);
+            return rnNew;
+        }
+
+        // add a rectangle to the current weak classifier
+        void addRect(int tlx, int tly, int w, int h, int weight, int nScale) {
+            if (4 * this.nRects == this.rsRect.length) {
+                short[] rsNew = new short[this.rsRect.length * 2];
+                System.arraycopy(this.rsRect, 0, rsNew, 0, this.rsRect.length);
+                this.rsRect = rsNew;
+            }
+            this.rnRectWeight = grow(this.rnRectWeight, this.nRects);
+            this.rsRect[4*this.nRects] = (short) tlx;
+            this.rsRect[4*this.nRects+1] = (short) tly;
+            this.rsRect[4*this.nRects+2] = (short) w;
+            this.rsRect[4*this.nRects+3] = (short) h;
+            this.rnRectWeight[this.nRects] = weight;
+            this.nScale = nScale;
+            this.nRects++;
+        }
+
+        // start a new stage
+        void addStage(int nThreshold) {
+            this.rnStageThreshold = grow(this.rnStageThreshold, this.nStages);
+            this.rnStageWc = grow(this.rnStageWc, this.nStages);
+            this.rnStageThreshold[this.nStages] = nThreshold;
+            this.rnStageWc[this.nStages] = this.nWcs;
+            this.nStages++;
+        }
+
+        // start a new weak classifier in the current stage
+        void addWeakClassifier(int nThreshold, int a, int b,
+                int nBaseWidth, int nBaseHeight) {
+            this.rnWcThreshold = grow(this.rnWcThreshold, this.nWcs);
+            this.rnWcA = grow(this.rnWcA, this.nWcs);
+            this.rnWcB = grow(this.rnWcB, this.nWcs);
+            this.rnWcRect = grow(this.rnWcRect, this.nWcs);
+            this.rnWcThreshold[this.nWcs] = nThreshold;
+            this.rnWcA[this.nWcs] = a;
+            this.rnWcB[this.nWcs] = b;
+            this.rnWcRect[this.nWcs] = this.nRects;
+            this.nBaseWidth = nBaseWidth;
+            this.nBaseHeight = nBaseHeight;
+            this.nWcs++;
+        }
+
+        // create the compiled cascade from what has been added
+        HaarCompiledCascade build() throws jjil.core.Error {
+            int[] rnStageThreshold = new int[this.nStages];
+            int[] rnStageWc = new int[this.nStages+1];
+            int[] rnWcThreshold = new int[this.nWcs];
+            int[] rnWcA = new int[this.nWcs];
+            int[] rnWcB = new int[this.nWcs];
+            int[] rnWcRect = new int[this.nWcs+1];
+            short[] rsRect = new short[4*this.nRects];
+            int[] rnRectWeight = new int[this.nRects];
+            System.arraycopy(this.rnStageThreshold, 0, rnStageThreshold, 0, this.nStages);
+            System.arraycopy(this.rnStageWc, 0, rnStageWc, 0, this.nStages);
+            rnStageWc[this.nStages] = this.nWcs;
+            System.arraycopy(this.rnWcThreshold, 0, rnWcThreshold, 0, this.nWcs);
+            System.arraycopy(this.rnWcA, 0, rnWcA, 0, this.nWcs);
+            System.arraycopy(this.rnWcB, 0, rnWcB, 0, this.nWcs);
+            System.arraycopy(this.rnWcRect, 0, rnWcRect, 0, this.nWcs);
+            rnWcRect[this.nWcs] = this.nRects;
+            System.arraycopy(this.rsRect, 0, rsRect, 0, 4*this.nRects);
+            System.arraycopy(this.rnRectWeight, 0, rnRectWeight, 0, this.nRects);
+            return new HaarCompiledCascade(
+                    this.nBaseWidth,
+                    this.nBaseHeight,
+                    rnStageThreshold,
+                    rnStageWc,
+                    rnWcThreshold,
+                    rnWcA,
+                    rnWcB,
+                    rnWcRect,
+                    rsRect,
+                    rnRectWeight,
+                    this.nScale);
+        }
+
+        // set the size of the window the cascade was trained on. This
+        // is needed only if the cascade has no weak classifiers.
+        void setBaseSize(int nBaseWidth, int nBaseHeight) {
+            this.nBaseWidth = nBaseWidth;
+            this.nBaseHeight = nBaseHeight;
+        }
+    }
+
+    /**
+     * Magic number at the start of the binary format, the characters 'HCCB'.
+     */
+    public static final int MAGIC = 0x48434342;
+    /**
+     * Size of the header of the binary format, in ints.
+     */
+    public static final int HEADER_INTS = 7;
+    /**
+     * Largest number of stages accepted in the binary format.
+     */
+    public static final int MAX_STAGES = 4096;
+    /**
+     * Largest number of rectangles accepted in the binary format.
+     */
+    public static final int MAX_RECTS = 262144;
+    /**
+     * Largest number of weak classifiers accepted in the binary format.
+     */
+    public static final int MAX_WEAK_CLASSIFIERS = 65536;
+    /**
+     * Version of the binary format written by write().
+     */
+    public static final int VERSION = 1;
+    
+    /**
+	 *
+	 */
+	private static final long serialVersionUID = -2173440190734628810L;
+    private transient Gray8IntegralImage ii = null; // used by eval(Image)
+    private int nBaseHeight; // height of the window the cascade was trained on
+    private int nBaseWidth; // width of the window the cascade was trained on
+    private int nScale; // scale factor, times 256
+    private transient int nStride = 0; // stride rnCorner was computed for
+    private transient int[] rnCorner = null; // rectangle corner offsets, 4 per rect
+    private int[] rnNorm; // rectangle area normalization, or null if not scaled
+    private int[] rnRectWeight;
+    private int[] rnStageThreshold;
+    private int[] rnStageWc;
+    private int[] rnWcA;
+    private int[] rnWcB;
+    private int[] rnWcRect;
+    private int[] rnWcThreshold;
+    private short[] rsRect; // rectangle position, 4 per rect
+    private short[] rsScaled; // scaled rectangle position, 4 per rect
+
+    /**
+     * Creates a compiled Haar cascade from its arrays. The arrays are not
+     * copied and must not be modified afterwards.
+     * @param nBaseWidth width of the window the cascade was trained on.
+     * @param nBaseHeight height of the window the cascade was trained on.
+     * @param rnStageThreshold stage thresholds, one per stage.
+     * @param rnStageWc index of the first weak classifier in each stage,
+     * plus the total number of weak classifiers.
+     * @param rnWcThreshold weak classifier thresholds.
+     * @param rnWcA weak classifier results when the feature is less than
+     * the threshold.
+     * @param rnWcB weak classifier results otherwise.
+     * @param rnWcRect index of the first rectangle in each weak classifier,
+     * plus the total number of rectangles.
+     * @param rsRect rectangle positions in the trained window, four per rectangle.
+     * @param rnRectWeight rectangle weights.
+     * @param nScale scale factor relative to the trained window, times 256.
+     * @throws jjil.core.Error if nScale is less than 256 or the arrays are
+     * inconsistent.
+     */
+    public HaarCompiledCascade(
+            int nBaseWidth,
+            int nBaseHeight,
+            int[] rnStageThreshold,
+            int[] rnStageWc,
+            int[] rnWcThreshold,
+            int[] rnWcA,
+            int[] rnWcB,
+            int[] rnWcRect,
+            short[] rsRect,
+            int[] rnRectWeight,
+            int nScale) throws jjil.core.Error
+    {
+        if (rnStageWc.length != rnStageThreshold.length + 1 ||
+            rnStageWc[rnStageThreshold.length] != rnWcThreshold.length ||
+            rnWcA.length != rnWcThreshold.length ||
+            rnWcB.length != rnWcThreshold.length ||
+            rnWcRect.length != rnWcThreshold.length + 1 ||
+            rnWcRect[rnWcThreshold.length] != rnRectWeight.length ||
+            rsRect.length != 4 * rnRectWeight.length ||
+            nBaseWidth <= 0 || nBaseHeight <= 0) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARSE_ERROR,
+                            new Integer(rnStageThreshold.length).toString(),
+                            new Integer(rnWcThreshold.length).toString(),
+                            new Integer(rnRectWeight.length).toString());
+        }
+        // the arrays may come from a file, so make sure every index is in
+        // range before evaluation depends on it
+        checkIndices(rnStageWc, rnWcThreshold.length);
+        checkIndices(rnWcRect, rnRectWeight.length);
+        for (int i=0; i<rnRectWeight.length; i++) {
+            if (rsRect[4*i] < 0 || rsRect[4*i+1] < 0 || 
+                rsRect[4*i+2] <= 0 || rsRect[4*i+3] <= 0 ||
+                rsRect[4*i] + rsRect[4*i+2] > nBaseWidth ||
+                rsRect[4*i+1] + rsRect[4*i+3] > nBaseHeight) {
+                throw new Error(
+                                Error.PACKAGE.ALGORITHM,
+                                ErrorCodes.PARSE_ERROR,
+                                new Integer(i).toString(),
+                                new Integer(nBaseWidth).toString(),
+                                new Integer(nBaseHeight).toString());
+            }
+        }
+        this.nBaseWidth = nBaseWidth;
+        this.nBaseHeight = nBaseHeight;
+        this.rnStageThreshold = rnStageThreshold;
+        this.rnStageWc = rnStageWc;
+        this.rnWcThreshold = rnWcThreshold;
+        this.rnWcA = rnWcA;
+        this.rnWcB = rnWcB;
+        this.rnWcRect = rnWcRect;
+        this.rsRect = rsRect;
+        this.rnRectWeight = rnRectWeight;
+        setScale(nScale);
+    }
+
+    // create a scaled copy of a compiled cascade, sharing its arrays
+    private HaarCompiledCascade(HaarCompiledCascade hcc, int nScale)
+        throws jjil.core.Error
+    {
+        this.nBaseWidth = hcc.nBaseWidth;
+        this.nBaseHeight = hcc.nBaseHeight;
+        this.rnStageThreshold = hcc.rnStageThreshold;
+        this.rnStageWc = hcc.rnStageWc;
+        this.rnWcThreshold = hcc.rnWcThreshold;
+        this.rnWcA = hcc.rnWcA;
+        this.rnWcB = hcc.rnWcB;
+        this.rnWcRect = hcc.rnWcRect;
+        this.rsRect = hcc.rsRect;
+        this.rnRectWeight = hcc.rnRectWeight;
+        setScale(nScale);
+    }
+
+    // check that an array of start indices starts at 0, never decreases,
+    // and ends at nLast
+    private static void checkIndices(int[] rnFirst, int nLast) 
+        throws jjil.core.Error 
+    {
+        if (rnFirst[0] != 0 || rnFirst[rnFirst.length-1] != nLast) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARSE_ERROR,
+                            new Integer(rnFirst[0]).toString(),
+                            new Integer(rnFirst[rnFirst.length-1]).toString(),
+                            new Integer(nLast).toString());
+        }
+        for (int i=1; i<rnFirst.length; i++) {
+            if (rnFirst[i] < rnFirst[i-1]) {
+                throw new Error(
+                                Error.PACKAGE.ALGORITHM,
+                                ErrorCodes.PARSE_ERROR,
+                                new Integer(rnFirst[i]).toString(),
+                                new Integer(rnFirst[i-1]).toString(),
+                                null);
+            }
+        }
+    }
+
+    /**
+     * Checks the header of the binary format and returns the array sizes.
+     * @param rnHeader the first HEADER_INTS ints of the binary format.
+     * The sizes are checked against MAX_STAGES, MAX_WEAK_CLASSIFIERS and
+     * MAX_RECTS before anything is allocated from them, so a corrupt
+     * header can't ask for an enormous cascade.
+     * @throws jjil.core.Error if the magic number or version is wrong,
+     * the window size is not positive or won't fit in a short, or the
+     * sizes are negative or too large.
+     */
+    public static void checkHeader(int[] rnHeader) throws jjil.core.Error {
+        if (rnHeader[0] != MAGIC) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARSE_ERROR,
+                            Integer.toHexString(rnHeader[0]),
+                            Integer.toHexString(MAGIC),
+                            null);
+        }
+        if (rnHeader[1] != VERSION) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARSE_ERROR,
+                            new Integer(rnHeader[1]).toString(),
+                            new Integer(VERSION).toString(),
+                            null);
+        }
+        if (rnHeader[2] <= 0 || rnHeader[2] > Short.MAX_VALUE ||
+            rnHeader[3] <= 0 || rnHeader[3] > Short.MAX_VALUE) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARSE_ERROR,
+                            new Integer(rnHeader[2]).toString(),
+                            new Integer(rnHeader[3]).toString(),
+                            null);
+        }
+        if (rnHeader[4] < 0 || rnHeader[4] > MAX_STAGES ||
+            rnHeader[5] < 0 || rnHeader[5] > MAX_WEAK_CLASSIFIERS ||
+            rnHeader[6] < 0 || rnHeader[6] > MAX_RECTS) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARSE_ERROR,
+                            new Integer(rnHeader[4]).toString(),
+                            new Integer(rnHeader[5]).toString(),
+                            new Integer(rnHeader[6]).toString());
+        }
+    }
+
+    /**
+     * Returns the length of a cascade in the binary format, header
+     * included, from its header. The header must have passed checkHeader.
+     * @param rnHeader the first HEADER_INTS ints of the binary format.
+     * @return the length in bytes.
+     */
+    public static long getBinaryLength(int[] rnHeader) {
+        long lInts = (long) HEADER_INTS + 
+                2L * rnHeader[4] + 1 + 4L * rnHeader[5] + 1 + rnHeader[6];
+        return 4 * lInts + 8L * rnHeader[6];
+    }
+
+    /**
+     * Returns this cascade, which is already compiled.
+     * @return this cascade.
+     */
+    public HaarCompiledCascade compile() {
+        return this;
+    }
+
+    /**
+     * Applies the cascade to a Gray8Image the size of the cascade window.
+     * @param image the input Gray8Image or Gray8ViewImage.
+     * @return true iff the image passes all the stages of the cascade.
+     * @throws jjil.core.Error if the input is not a Gray8Image or 
+     * Gray8ViewImage, or is smaller than the cascade window.
+     */
+    public boolean eval(Image image) throws jjil.core.Error {
+        if (!(image instanceof Gray8Image) && 
+            !(image instanceof Gray8ViewImage)) {
+             throw new Error(
+                             Error.PACKAGE.ALGORITHM,
+                             ErrorCodes.IMAGE_NOT_GRAY8IMAGE,
+                             image.toString(),
+                             null,
+                             null);
+        }
+        if (image.getWidth() < this.width || image.getHeight() < this.height) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.IMAGE_TOO_SMALL,
+                            image.toString(),
+                            this.toString(),
+                            null);
+        }
+        if (this.ii == null) {
+            this.ii = new Gray8IntegralImage();
+        }
+        this.ii.push(image);
+        return eval(this.ii, 0, 0);
+    }
+
+    /**
+     * Applies the cascade to a window in an integral image.
+     * @param ii the integral image of the image being searched.
+     * @param nX horizontal position of the top-left corner of the window.
+     * @param nY vertical position of the top-left corner of the window.
+     * @return true iff the window passes all the stages of the cascade.
+     * @throws jjil.core.Error if the variance of the window is negative.
+     */
+    public boolean eval(Gray8IntegralImage ii, int nX, int nY)
+        throws jjil.core.Error {
+        return evalScore(ii, nX, nY) >= 0;
+    }
+
+    /**
+     * Applies the cascade to a window in an integral image and returns the 
+     * score of the last stage evaluated.
+     * @param ii the integral image of the image being searched.
+     * @param nX horizontal position of the top-left corner of the window.
+     * @param nY vertical position of the top-left corner of the window.
+     * @return the stage sum minus the stage threshold for the first stage
+     * the window fails, or for the last stage if it passes them all.
+     * @throws jjil.core.Error if the variance of the window is negative.
+     */
+    public int evalScore(Gray8IntegralImage ii, int nX, int nY)
+        throws jjil.core.Error {
+        return evalScore(ii, nX, nY, this.rnStageThreshold.length);
+    }
+
+    /**
+     * Applies the first nStages stages of the cascade to a window in an 
+     * integral image and returns the score of the last stage evaluated.
+     * @param ii the integral image of the image being searched.
+     * @param nX horizontal position of the top-left corner of the window.
+     * @param nY vertical position of the top-left corner of the window.
+     * @param nStages the maximum number of stages to evaluate.
+     * @return the stage sum minus the stage threshold for the first stage
+     * the window fails, or for the last stage evaluated if it passes them all.
+     * @throws jjil.core.Error if the variance of the window is negative.
+     */
+    public int evalScore(Gray8IntegralImage ii, int nX, int nY, int nStages)
+        throws jjil.core.Error {
+        return evalScore(ii, nX, nY, nStages, null);
+    }
+
+    /**
+     * Applies the first nStages stages of the cascade to a window in an 
+     * integral image, counting the stages reached in rnReach.
+     * @param ii the integral image of the image being searched.
+     * @param nX horizontal position of the top-left corner of the window.
+     * @param nY vertical position of the top-left corner of the window.
+     * @param nStages the maximum number of stages to evaluate.
+     * @param rnReach if not null, rnReach[i] is incremented for each stage i
+     * evaluated.
+     * @return the stage sum minus the stage threshold for the last stage
+     * evaluated.
+     * @throws jjil.core.Error if the variance of the window is negative.
+     */
+    public int evalScore(
+            Gray8IntegralImage ii, 
+            int nX, 
+            int nY, 
+            int nStages, 
+            int[] rnReach)
+        throws jjil.core.Error {
+        int nStdDev = ii.getStdDev(nX, nY, this.width, this.height);
+        int nStride = ii.getStride();
+        if (this.nStride != nStride) {
+            setStride(nStride);
+        }
+        int[] data = ii.getSum();
+        int nBase = nY * nStride + nX;
+        // threshold scale factor; see HaarWeakClassifierStump
+        int nArea = this.nBaseWidth * this.nBaseHeight;
+        int[] rnCorner = this.rnCorner;
+        int[] rnNorm = this.rnNorm;
+        int nWc = 0;
+        int nRect = 0;
+        int nScore = 0;
+        int nStageLast = Math.min(nStages, this.rnStageThreshold.length);
+        for (int nStage=0; nStage<nStageLast; nStage++) {
+            if (rnReach != null) {
+                rnReach[nStage]++;
+            }
+            int nStageSum = 0;
+            for (int nWcLast = this.rnStageWc[nStage+1]; nWc<nWcLast; nWc++) {
+                int nHf = 0;
+                for (int nRectLast = this.rnWcRect[nWc+1]; nRect<nRectLast; nRect++) {
+                    int nSum = data[rnCorner[4*nRect+3]+nBase] -
+                            data[rnCorner[4*nRect+2]+nBase] -
+                            data[rnCorner[4*nRect+1]+nBase] +
+                            data[rnCorner[4*nRect]+nBase];
+                    if (rnNorm != null) {
+                        nSum = (int) (((long) nSum * rnNorm[nRect]) >> 16);
+                    }
+                    nHf += nSum * this.rnRectWeight[nRect];
+                }
+                nHf <<= 12;
+                int nModThreshold = ((this.rnWcThreshold[nWc] * nStdDev >> 6)
+                        * nArea) >> 6;
+                if (nHf < nModThreshold) {
+                    nStageSum += this.rnWcA[nWc];
+                } else {
+                    nStageSum += this.rnWcB[nWc];
+                }
+            }
+            nScore = nStageSum - this.rnStageThreshold[nStage];
+            if (nScore < 0) {
+                break;
+            }
+        }
+        return nScore;
+    }
+
+    /**
+     * Returns the number of stages in the cascade.
+     * @return the number of stages.
+     */
+    public int getStageCount() {
+        return this.rnStageThreshold.length;
+    }
+
+    /**
+     * Returns the number of weak classifiers in a stage.
+     * @param nStage the stage, from 0 to getStageCount() - 1.
+     * @return the number of weak classifiers in the stage.
+     */
+    public int getStageSize(int nStage) {
+        return this.rnStageWc[nStage+1] - this.rnStageWc[nStage];
+    }
+
+    /**
+     * Returns true, since eval(Image) accepts a Gray8ViewImage.
+     * @return true.
+     */
+    public boolean isViewSupported() {
+        return true;
+    }
+
+    /**
+     * Reads a compiled cascade in the binary format written by write().
+     * The cascade is read directly into its arrays; nothing else is allocated.
+     * @param is the input stream. It is not closed.
+     * @return the cascade, at its trained size.
+     * The header is checked with checkHeader before the arrays are
+     * allocated, which bounds how much a corrupt header can allocate.
+     * @throws jjil.core.Error if the input is not a compiled cascade in
+     * a supported version of the format, or ends early.
+     * @throws java.io.IOException if the input cannot be read.
+     */
+    public static HaarCompiledCascade read(InputStream is) 
+        throws jjil.core.Error, IOException 
+    {
+        try {
+            return readCascade(new DataInputStream(is));
+        } catch (EOFException ex) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.INPUT_TERMINATED_EARLY,
+                            ex.toString(),
+                            null,
+                            null);
+        }
+    }
+
+    // read a compiled cascade, header first
+    private static HaarCompiledCascade readCascade(DataInputStream dis) 
+        throws jjil.core.Error, IOException 
+    {
+        int[] rnHeader = new int[HEADER_INTS];
+        readInts(dis, rnHeader);
+        checkHeader(rnHeader);
+        int nStages = rnHeader[4];
+        int nWcs = rnHeader[5];
+        int nRects = rnHeader[6];
+        int[] rnStageThreshold = new int[nStages];
+        int[] rnStageWc = new int[nStages+1];
+        int[] rnWcThreshold = new int[nWcs];
+        int[] rnWcA = new int[nWcs];
+        int[] rnWcB = new int[nWcs];
+        int[] rnWcRect = new int[nWcs+1];
+        int[] rnRectWeight = new int[nRects];
+        short[] rsRect = new short[4*nRects];
+        readInts(dis, rnStageThreshold);
+        readInts(dis, rnStageWc);
+        readInts(dis, rnWcThreshold);
+        readInts(dis, rnWcA);
+        readInts(dis, rnWcB);
+        readInts(dis, rnWcRect);
+        readInts(dis, rnRectWeight);
+        for (int i=0; i<rsRect.length; i++) {
+            rsRect[i] = dis.readShort();
+        }
+        return new HaarCompiledCascade(
+                rnHeader[2], 
+                rnHeader[3],
+                rnStageThreshold,
+                rnStageWc,
+                rnWcThreshold,
+                rnWcA,
+                rnWcB,
+                rnWcRect,
+                rsRect,
+                rnRectWeight,
+                256);
+    }
+    
+    // fill an array of ints from a stream
+    private static void readInts(DataInputStream dis, int[] rn) throws IOException {
+        for (int i=0; i<rn.length; i++) {
+            rn[i] = dis.readInt();
+        }
+    }
+    
+    /**
+     * Returns a copy of this cascade scaled by nScale / 256. The arrays
+     * describing the cascade are shared with this cascade.
+     * @param nScale the scale factor, times 256. Must be at least 256.
+     * @return the scaled cascade.
+     * @throws jjil.core.Error if nScale is less than 256.
+     */
+    public HaarClassifierCascade scale(int nScale) throws jjil.core.Error {
+        if (nScale < 256) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            new Integer(nScale).toString(),
+                            "256",
+                            null);
+        }
+        return new HaarCompiledCascade(this, (this.nScale * nScale) >> 8);
+    }
+
+    // compute the window size and rectangle positions for a scale factor.
+    // This is the same computation as in HaarRectScaled, so a compiled
+    // cascade gives the same results as a scaled object cascade.
+    private void setScale(int nScale) throws jjil.core.Error {
+        if (nScale < 256) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.PARAMETER_OUT_OF_RANGE,
+                            new Integer(nScale).toString(),
+                            "256",
+                            null);
+        }
+        this.nScale = nScale;
+        this.width = scaleCoord(this.nBaseWidth, nScale);
+        this.height = scaleCoord(this.nBaseHeight, nScale);
+        if (nScale == 256) {
+            this.rsScaled = this.rsRect;
+            this.rnNorm = null;
+            return;
+        }
+        int nRects = this.rnRectWeight.length;
+        this.rsScaled = new short[4*nRects];
+        this.rnNorm = new int[nRects];
+        for (int i=0; i<nRects; i++) {
+            int tlx = this.rsRect[4*i];
+            int tly = this.rsRect[4*i+1];
+            int w = this.rsRect[4*i+2];
+            int h = this.rsRect[4*i+3];
+            int nTlx = Math.min(this.width - 1, scaleCoord(tlx, nScale));
+            int nTly = Math.min(this.height - 1, scaleCoord(tly, nScale));
+            int nW = Math.max(1,
+                    Math.min(this.width, scaleCoord(tlx + w, nScale)) - nTlx);
+            int nH = Math.max(1,
+                    Math.min(this.height, scaleCoord(tly + h, nScale)) - nTly);
+            this.rsScaled[4*i] = (short) nTlx;
+            this.rsScaled[4*i+1] = (short) nTly;
+            this.rsScaled[4*i+2] = (short) nW;
+            this.rsScaled[4*i+3] = (short) nH;
+            this.rnNorm[i] = (w * h << 16) / (nW * nH);
+        }
+        this.nStride = 0;
+    }
+
+    /**
+     * Computes the offsets of the rectangle corners relative to the window
+     * for integral images with the given stride. After this eval() does not
+     * modify the cascade, so it can be shared between threads.
+     * @param nStride the integral image stride.
+     */
+    public void setStride(int nStride) {
+        int nRects = this.rnRectWeight.length;
+        int[] rnCorner = new int[4*nRects];
+        for (int i=0; i<nRects; i++) {
+            int nTl = this.rsScaled[4*i+1] * nStride + this.rsScaled[4*i];
+            int nBl = nTl + this.rsScaled[4*i+3] * nStride;
+            rnCorner[4*i] = nTl;
+            rnCorner[4*i+1] = nTl + this.rsScaled[4*i+2];
+            rnCorner[4*i+2] = nBl;
+            rnCorner[4*i+3] = nBl + this.rsScaled[4*i+2];
+        }
+        // assign the array after it is filled in so another thread never
+        // sees it partly computed
+        this.rnCorner = rnCorner;
+        this.nStride = nStride;
+    }
+
+    /**
+     * Writes the cascade in the binary format read by read(). The cascade is
+     * written at its trained size, whatever its scale.
+     * @param os the output stream. It is flushed but not closed.
+     * @throws java.io.IOException if the output cannot be written.
+     */
+    public void write(OutputStream os) throws IOException {
+        DataOutputStream dos = new DataOutputStream(os);
+        dos.writeInt(MAGIC);
+        dos.writeInt(VERSION);
+        dos.writeInt(this.nBaseWidth);
+        dos.writeInt(this.nBaseHeight);
+        dos.writeInt(this.rnStageThreshold.length);
+        dos.writeInt(this.rnWcThreshold.length);
+        dos.writeInt(this.rnRectWeight.length);
+        writeInts(dos, this.rnStageThreshold);
+        writeInts(dos, this.rnStageWc);
+        writeInts(dos, this.rnWcThreshold);
+        writeInts(dos, this.rnWcA);
+        writeInts(dos, this.rnWcB);
+        writeInts(dos, this.rnWcRect);
+        writeInts(dos, this.rnRectWeight);
+        for (int i=0; i<this.rsRect.length; i++) {
+            dos.writeShort(this.rsRect[i]);
+        }
+        dos.flush();
+    }
+    
+    // write an array of ints to a stream
+    private static void writeInts(DataOutputStream dos, int[] rn) throws IOException {
+        for (int i=0; i<rn.length; i++) {
+            dos.writeInt(rn[i]);
+        }
+    }
+    
+    /**
+     * Returns the cascade in the text format read by
+     * HaarClassifierCascade.fromStream. The scale factor is not included; the
+     * cascade is written at its trained size.
+     * @return the cascade as a String.
+     */
+    public String toString() {
+        StringBuffer sb = new StringBuffer();
+        sb.append("(hcsb ").append(this.nBaseWidth).append(" ") //$NON-NLS-1$ //$NON-NLS-2$
+            .append(this.nBaseHeight).append(" ") //$NON-NLS-1$
+            .append(this.rnStageThreshold.length).append(" "); //$NON-NLS-1$
+        for (int nStage=0; nStage<this.rnStageThreshold.length; nStage++) {
+            sb.append("(hcs ") //$NON-NLS-1$
+                .append(this.rnStageWc[nStage+1] - this.rnStageWc[nStage])
+                .append(" "); //$NON-NLS-1$
+            for (int nWc=this.rnStageWc[nStage]; nWc<this.rnStageWc[nStage+1]; nWc++) {
+                sb.append("(hwcs (hf "); //$NON-NLS-1$
+                int nRect = this.rnWcRect[nWc];
+                for (int i=0; i<3; i++, nRect++) {
+                    if (nRect < this.rnWcRect[nWc+1]) {
+                        sb.append("(hr ").append(this.rsRect[4*nRect]).append(",") //$NON-NLS-1$ //$NON-NLS-2$
+                            .append(this.rsRect[4*nRect+1]).append(",") //$NON-NLS-1$
+                            .append(this.rsRect[4*nRect+2]).append(",") //$NON-NLS-1$
+                            .append(this.rsRect[4*nRect+3]).append(",") //$NON-NLS-1$
+                            .append(this.rnRectWeight[nRect]).append(")"); //$NON-NLS-1$
+                    } else {
+                        sb.append("(hr 0,0,0,0,0)"); //$NON-NLS-1$
+                    }
+                }
+                sb.append("0)").append(this.rnWcThreshold[nWc]).append(",") //$NON-NLS-1$ //$NON-NLS-2$
+                    .append(this.rnWcA[nWc]).append(",") //$NON-NLS-1$
+                    .append(this.rnWcB[nWc]).append(")"); //$NON-NLS-1$
+            }
+            sb.append(this.rnStageThreshold[nStage]).append(")"); //$NON-NLS-1$
+        }
+        sb.append(")"); //$NON-NLS-1$
+        return sb.toString();
+    }
+}
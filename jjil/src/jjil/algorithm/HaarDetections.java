@@ -0,0 +1,326 @@
+/*
+ * HaarDetections.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jjil.algorithm;
+import jjil.core.Gray8Image;
+import jjil.core.Rect;
+
+/**
+ * HaarDetections is the list of windows where a Haar cascade detected a
+ * feature. The detections are packed into a single int array, FIELDS ints
+ * per detection, so a detector can report any number of them without creating
+ * an object for each. Each detection is:
+ * <ul>
+ * <li>the position and size of the window in the input image (X, Y, WIDTH,
+ * HEIGHT),</li>
+ * <li>the scale the window was detected at, times 256 (SCALE), and</li>
+ * <li>the score, which is how far the sum of the last stage of the cascade
+ * was above its threshold (SCORE). Larger scores are more confident
+ * detections.</li>
+ * </ul>
+ * Overlapping detections of the same feature can be merged with suppress(),
+ * and the detections can be drawn into a mask image with toMask().
+ * @author webb
+ */
+public class HaarDetections {
+    /**
+     * Offset of the horizontal position of the top-left corner of the window.
+     */
+    public static final int X = 0;
+    /**
+     * Offset of the vertical position of the top-left corner of the window.
+     */
+    public static final int Y = 1;
+    /**
+     * Offset of the window width.
+     */
+    public static final int WIDTH = 2;
+    /**
+     * Offset of the window height.
+     */
+    public static final int HEIGHT = 3;
+    /**
+     * Offset of the scale, times 256.
+     */
+    public static final int SCALE = 4;
+    /**
+     * Offset of the last stage score.
+     */
+    public static final int SCORE = 5;
+    /**
+     * Number of ints per detection.
+     */
+    public static final int FIELDS = 6;
+
+    private int nCount = 0;
+    private int[] rnData;
+
+    /**
+     * Creates a new, empty, instance of HaarDetections.
+     */
+    public HaarDetections() {
+        this.rnData = new int[16 * FIELDS];
+    }
+
+    /**
+     * Add a detection.
+     * @param nX horizontal position of the top-left corner of the window.
+     * @param nY vertical position of the top-left corner of the window.
+     * @param nWidth window width.
+     * @param nHeight window height.
+     * @param nScale scale at which the window was detected, times 256.
+     * @param nScore last stage score.
+     */
+    public void add(int nX, int nY, int nWidth, int nHeight, int nScale, int nScore) {
+        if ((this.nCount + 1) * FIELDS > this.rnData.length) {
+            int[] rnNew = new int[this.rnData.length * 2];
+            System.arraycopy(this.rnData, 0, rnNew, 0, this.nCount * FIELDS);
+            this.rnData = rnNew;
+        }
+        int n = this.nCount * FIELDS;
+        this.rnData[n + X] = nX;
+        this.rnData[n + Y] = nY;
+        this.rnData[n + WIDTH] = nWidth;
+        this.rnData[n + HEIGHT] = nHeight;
+        this.rnData[n + SCALE] = nScale;
+        this.rnData[n + SCORE] = nScore;
+        this.nCount++;
+    }
+
+    /**
+     * Remove all detections. The storage is kept for reuse.
+     */
+    public void clear() {
+        this.nCount = 0;
+    }
+
+    /**
+     * Returns true iff the center of a window lies inside one of the detections.
+     * The detectors use this to avoid searching areas where a feature has
+     * already been found.
+     * @param nX horizontal position of the top-left corner of the window.
+     * @param nY vertical position of the top-left corner of the window.
+     * @param nWidth window width.
+     * @param nHeight window height.
+     * @return true iff the center of the window is inside a detection.
+     */
+    public boolean containsCenter(int nX, int nY, int nWidth, int nHeight) {
+        int nCx = nX + nWidth / 2;
+        int nCy = nY + nHeight / 2;
+        for (int n = 0; n < this.nCount * FIELDS; n += FIELDS) {
+            if (nCx >= this.rnData[n + X] &&
+                nCx < this.rnData[n + X] + this.rnData[n + WIDTH] &&
+                nCy >= this.rnData[n + Y] &&
+                nCy < this.rnData[n + Y] + this.rnData[n + HEIGHT]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of detections.
+     * @return the number of detections.
+     */
+    public int getCount() {
+        return this.nCount;
+    }
+
+    /**
+     * Returns the packed detection data. Detection i is at
+     * i * FIELDS .. i * FIELDS + FIELDS - 1; only the first
+     * getCount() * FIELDS values are meaningful.
+     * @return the packed detection data. This is not a copy.
+     */
+    public int[] getData() {
+        return this.rnData;
+    }
+
+    /**
+     * Returns the height of a detection.
+     * @param i the detection index.
+     * @return the window height.
+     */
+    public int getHeight(int i) {
+        return this.rnData[i * FIELDS + HEIGHT];
+    }
+
+    /**
+     * Returns a detection as a Rect.
+     * @param i the detection index.
+     * @return a new Rect giving the window position and size.
+     */
+    public Rect getRect(int i) {
+        int n = i * FIELDS;
+        return new Rect(
+                this.rnData[n + X],
+                this.rnData[n + Y],
+                this.rnData[n + WIDTH],
+                this.rnData[n + HEIGHT]);
+    }
+
+    /**
+     * Returns the scale of a detection.
+     * @param i the detection index.
+     * @return the scale, times 256.
+     */
+    public int getScale(int i) {
+        return this.rnData[i * FIELDS + SCALE];
+    }
+
+    /**
+     * Returns the score of a detection.
+     * @param i the detection index.
+     * @return the last stage score.
+     */
+    public int getScore(int i) {
+        return this.rnData[i * FIELDS + SCORE];
+    }
+
+    /**
+     * Returns the width of a detection.
+     * @param i the detection index.
+     * @return the window width.
+     */
+    public int getWidth(int i) {
+        return this.rnData[i * FIELDS + WIDTH];
+    }
+
+    /**
+     * Returns the horizontal position of a detection.
+     * @param i the detection index.
+     * @return the horizontal position of the top-left corner of the window.
+     */
+    public int getX(int i) {
+        return this.rnData[i * FIELDS + X];
+    }
+
+    /**
+     * Returns the vertical position of a detection.
+     * @param i the detection index.
+     * @return the vertical position of the top-left corner of the window.
+     */
+    public int getY(int i) {
+        return this.rnData[i * FIELDS + Y];
+    }
+
+    /**
+     * Non-maximum suppression. The detections are sorted by decreasing score,
+     * and any detection that overlaps a higher-scoring detection by at least
+     * nOverlap percent is removed. Overlap is measured as the area of the
+     * intersection of the two windows as a percentage of the area of the
+     * smaller one, so a small window inside a larger one is always removed
+     * when nOverlap is 100 or less.
+     * @param nOverlap the minimum overlap percentage for a detection to
+     * be removed.
+     */
+    public void suppress(int nOverlap) {
+        // selection sort by decreasing score; there are never many detections
+        int[] rnTemp = new int[FIELDS];
+        for (int i = 0; i < this.nCount; i++) {
+            int nBest = i;
+            for (int j = i + 1; j < this.nCount; j++) {
+                if (this.rnData[j * FIELDS + SCORE] > this.rnData[nBest * FIELDS + SCORE]) {
+                    nBest = j;
+                }
+            }
+            if (nBest != i) {
+                System.arraycopy(this.rnData, i * FIELDS, rnTemp, 0, FIELDS);
+                System.arraycopy(this.rnData, nBest * FIELDS, this.rnData, i * FIELDS, FIELDS);
+                System.arraycopy(rnTemp, 0, this.rnData, nBest * FIELDS, FIELDS);
+            }
+        }
+        // keep each detection unless it overlaps one already kept
+        int nKept = 0;
+        for (int i = 0; i < this.nCount; i++) {
+            int n = i * FIELDS;
+            boolean bKeep = true;
+            for (int j = 0; j < nKept && bKeep; j++) {
+                int m = j * FIELDS;
+                int nLeft = Math.max(this.rnData[n + X], this.rnData[m + X]);
+                int nRight = Math.min(this.rnData[n + X] + this.rnData[n + WIDTH],
+                        this.rnData[m + X] + this.rnData[m + WIDTH]);
+                int nTop = Math.max(this.rnData[n + Y], this.rnData[m + Y]);
+                int nBottom = Math.min(this.rnData[n + Y] + this.rnData[n + HEIGHT],
+                        this.rnData[m + Y] + this.rnData[m + HEIGHT]);
+                if (nRight > nLeft && nBottom > nTop) {
+                    int nArea = Math.min(
+                            this.rnData[n + WIDTH] * this.rnData[n + HEIGHT],
+                            this.rnData[m + WIDTH] * this.rnData[m + HEIGHT]);
+                    if ((nRight - nLeft) * (nBottom - nTop) * 100 >= nOverlap * nArea) {
+                        bKeep = false;
+                    }
+                }
+            }
+            if (bKeep) {
+                if (nKept != i) {
+                    System.arraycopy(this.rnData, n, this.rnData, nKept * FIELDS, FIELDS);
+                }
+                nKept++;
+            }
+        }
+        this.nCount = nKept;
+    }
+
+    /**
+     * Creates a mask image with the detections set to Byte.MAX_VALUE and
+     * everything else Byte.MIN_VALUE. This is the output of
+     * Gray8DetectHaarFeatureScale, and of Gray8DetectHaarMultiScale when
+     * non-maximum suppression is set.
+     * @param nWidth width of the mask (normally the input image width).
+     * @param nHeight height of the mask.
+     * @return the mask image.
+     */
+    public Gray8Image toMask(int nWidth, int nHeight) {
+        Gray8Image imMask = new Gray8Image(nWidth, nHeight, Byte.MIN_VALUE);
+        for (int n = 0; n < this.nCount * FIELDS; n += FIELDS) {
+            // clip the detection to the mask
+            int nLeft = Math.max(0, this.rnData[n + X]);
+            int nTop = Math.max(0, this.rnData[n + Y]);
+            int nRight = Math.min(nWidth, this.rnData[n + X] + this.rnData[n + WIDTH]);
+            int nBottom = Math.min(nHeight, this.rnData[n + Y] + this.rnData[n + HEIGHT]);
+            if (nRight > nLeft && nBottom > nTop) {
+                imMask.fill(
+                        new Rect(nLeft, nTop, nRight - nLeft, nBottom - nTop),
+                        Byte.MAX_VALUE);
+            }
+        }
+        return imMask;
+    }
+
+    /**
+     * Returns a string describing the detections.
+     * @return the class and hash code, then the detections, one per line,
+     * as (x,y,w,h,scale,score).
+     */
+    public String toString() {
+        StringBuffer sb = new StringBuffer(super.toString());
+        for (int n = 0; n < this.nCount * FIELDS; n += FIELDS) {
+            sb.append("\n("); //$NON-NLS-1$
+            for (int i = 0; i < FIELDS; i++) {
+                if (i > 0) {
+                    sb.append(","); //$NON-NLS-1$
+                }
+                sb.append(this.rnData[n + i]);
+            }
+            sb.append(")"); //$NON-NLS-1$
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * HaarProfile.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jjil.algorithm;
+
+/**
+ * HaarProfile records where a Haar cascade detector spends its time. For each
+ * scale searched it counts the windows evaluated, how many of them reach each
+ * stage of the cascade, and the weak classifiers evaluated, and it records
+ * the time spent at the scale. This shows how quickly the cascade rejects
+ * windows, which is what determines the cost of detection, and is the
+ * information needed to choose scale ranges and step sizes, or to compare
+ * one cascade with another.<p>
+ * Times are measured with System.currentTimeMillis(), so on most platforms
+ * they are only meaningful when accumulated over many frames.<p>
+ * A detector fills in the profile by calling startScale, passing the array it
+ * returns to HaarClassifierCascade.evalScore, and then calling endScale.
+ * @author webb
+ */
+public class HaarProfile {
+    private int nScales = 0;            // number of scales recorded
+    private int[] rnScale = new int[16];  // scale, times 256
+    private int[][] rnrnReach = new int[16][]; // windows reaching each stage
+    private int[][] rnrnStageSize = new int[16][]; // weak classifiers per stage
+    private long[] rlTime = new long[16]; // milliseconds spent at each scale
+    private int nCurrent = -1;          // scale being recorded
+    private long lStart = 0;            // time the current scale was started
+
+    /**
+     * Creates a new, empty, instance of HaarProfile.
+     */
+    public HaarProfile() {
+    }
+
+    /**
+     * Creates a copy of a HaarProfile. The copy is a snapshot; it does not
+     * change when the original is updated.
+     * @param hp the profile to copy.
+     */
+    public HaarProfile(HaarProfile hp) {
+        this.nScales = hp.nScales;
+        this.rnScale = new int[Math.max(1, hp.nScales)];
+        this.rnrnReach = new int[this.rnScale.length][];
+        this.rnrnStageSize = new int[this.rnScale.length][];
+        this.rlTime = new long[this.rnScale.length];
+        for (int i=0; i<hp.nScales; i++) {
+            this.rnScale[i] = hp.rnScale[i];
+            this.rnrnReach[i] = new int[hp.rnrnReach[i].length];
+            System.arraycopy(hp.rnrnReach[i], 0, this.rnrnReach[i], 0,
+                    this.rnrnReach[i].length);
+            // stage sizes never change, so they can be shared
+            this.rnrnStageSize[i] = hp.rnrnStageSize[i];
+            this.rlTime[i] = hp.rlTime[i];
+        }
+    }
+
+    /**
+     * Remove all recorded scales.
+     */
+    public void clear() {
+        this.nScales = 0;
+        this.nCurrent = -1;
+    }
+
+    /**
+     * Stop recording the current scale, adding the time since startScale
+     * to its time.
+     */
+    public void endScale() {
+        if (this.nCurrent >= 0) {
+            this.rlTime[this.nCurrent] +=
+                    System.currentTimeMillis() - this.lStart;
+            this.nCurrent = -1;
+        }
+    }
+
+    /**
+     * Returns the scale of a recorded entry.
+     * @param i the entry index, from 0 to getScaleCount() - 1.
+     * @return the scale, times 256.
+     */
+    public int getScale(int i) {
+        return this.rnScale[i];
+    }
+
+    /**
+     * Returns the number of scales recorded.
+     * @return the number of scales.
+     */
+    public int getScaleCount() {
+        return this.nScales;
+    }
+
+    /**
+     * Returns the number of stages of the cascade used at a scale.
+     * @param i the entry index.
+     * @return the number of stages.
+     */
+    public int getStageCount(int i) {
+        return this.rnrnReach[i].length;
+    }
+
+    /**
+     * Returns the number of windows that reached a stage at a scale.
+     * @param i the entry index.
+     * @param nStage the stage.
+     * @return the number of windows for which the stage was evaluated.
+     */
+    public int getStageReach(int i, int nStage) {
+        return this.rnrnReach[i][nStage];
+    }
+
+    /**
+     * Returns the time spent at a scale.
+     * @param i the entry index.
+     * @return the time, in milliseconds.
+     */
+    public long getTime(int i) {
+        return this.rlTime[i];
+    }
+
+    /**
+     * Returns the number of weak classifiers evaluated at a scale.
+     * @param i the entry index.
+     * @return the number of weak classifiers evaluated.
+     */
+    public long getWeakClassifiers(int i) {
+        long l = 0;
+        for (int j=0; j<this.rnrnReach[i].length; j++) {
+            l += (long) this.rnrnReach[i][j] * this.rnrnStageSize[i][j];
+        }
+        return l;
+    }
+
+    /**
+     * Returns the number of windows evaluated at a scale. This is the number
+     * that reached the first stage.
+     * @param i the entry index.
+     * @return the number of windows evaluated.
+     */
+    public int getWindows(int i) {
+        return this.rnrnReach[i][0];
+    }
+
+    /**
+     * Start recording a scale. If the scale has been recorded before the counts
+     * and time are added to the existing entry, so a profile can accumulate
+     * over many frames.
+     * @param nScale the scale, times 256.
+     * @param hcc the Haar cascade being applied at the scale.
+     * @return the stage counts for the scale, to be passed to
+     * HaarClassifierCascade.evalScore.
+     */
+    public int[] startScale(int nScale, HaarClassifierCascade hcc) {
+        endScale();
+        int i = 0;
+        while (i < this.nScales && this.rnScale[i] != nScale) {
+            i++;
+        }
+        if (i == this.nScales) {
+            if (this.nScales == this.rnScale.length) {
+                grow();
+            }
+            int nStages = hcc.getStageCount();
+            this.rnScale[i] = nScale;
+            if (this.rnrnReach[i] == null || this.rnrnReach[i].length != nStages) {
+                this.rnrnReach[i] = new int[nStages];
+                this.rnrnStageSize[i] = new int[nStages];
+            }
+            for (int j=0; j<nStages; j++) {
+                this.rnrnReach[i][j] = 0;
+                this.rnrnStageSize[i][j] = hcc.getStageSize(j);
+            }
+            this.rlTime[i] = 0;
+            this.nScales++;
+        }
+        this.nCurrent = i;
+        this.lStart = System.currentTimeMillis();
+        return this.rnrnReach[i];
+    }
+
+    private void grow() {
+        int n = this.rnScale.length * 2;
+        int[] rnScale = new int[n];
+        System.arraycopy(this.rnScale, 0, rnScale, 0, this.nScales);
+        this.rnScale = rnScale;
+        int[][] rnrnReach = new int[n][];
+        System.arraycopy(this.rnrnReach, 0, rnrnReach, 0, this.nScales);
+        this.rnrnReach = rnrnReach;
+        int[][] rnrnStageSize = new int[n][];
+        System.arraycopy(this.rnrnStageSize, 0, rnrnStageSize, 0, this.nScales);
+        this.rnrnStageSize = rnrnStageSize;
+        long[] rlTime = new long[n];
+        System.arraycopy(this.rlTime, 0, rlTime, 0, this.nScales);
+        this.rlTime = rlTime;
+    }
+
+    /**
+     * Returns a string describing the profile.
+     * @return one entry per scale, as
+     * (scale windows weak-classifiers time-ms: stage reach counts).
+     */
+    public String toString() {
+        StringBuffer sb = new StringBuffer(super.toString());
+        for (int i=0; i<this.nScales; i++) {
+            sb.append(" ("); //$NON-NLS-1$
+            sb.append(this.rnScale[i]);
+            sb.append(" "); //$NON-NLS-1$
+            sb.append(getWindows(i));
+            sb.append(" "); //$NON-NLS-1$
+            sb.append(getWeakClassifiers(i));
+            sb.append(" "); //$NON-NLS-1$
+            sb.append(this.rlTime[i]);
+            sb.append(":"); //$NON-NLS-1$
+            for (int j=0; j<this.rnrnReach[i].length; j++) {
+                sb.append(" "); //$NON-NLS-1$
+                sb.append(this.rnrnReach[i][j]);
+            }
+            sb.append(")"); //$NON-NLS-1$
+        }
+        return sb.toString();
+    }
+}
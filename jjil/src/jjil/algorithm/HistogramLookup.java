@@ -0,0 +1,45 @@
+/*
+ * HistogramLookup.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jjil.algorithm;
+
+/**
+ * HistogramLookup is implemented by stages which compute the histogram of
+ * their input, derive a lookup table from it, and map the input through the
+ * table, like Gray8HistEq, Gray8HistMatch, and Gray8OtsuThreshold. Separating
+ * the table from the two passes over the pixels lets the passes be done
+ * another way: the histogram can be counted in bands on several threads, or
+ * counted in the same pass that applies the table from an earlier image
+ * (see Gray8Hist.addHistogramAndLookup).<p>
+ * Applying getLookup(histogram of image) to the image with Gray8Lookup gives
+ * the same result as pushing the image through the stage.
+ * @author webb
+ */
+public interface HistogramLookup {
+    /**
+     * Computes the lookup table for an image with a given histogram.
+     * @param rnHistogram the histogram, a 256-element int array offset so
+     * element 0 corresponds to Byte.MIN_VALUE, as from Gray8Hist. It is
+     * not changed.
+     * @return the lookup table, 256 elements, mapping value g to element
+     * g - Byte.MIN_VALUE.
+     * @throws jjil.core.Error if the histogram is not 256 elements long.
+     */
+    byte[] getLookup(int[] rnHistogram) throws jjil.core.Error;
+}
@@ -235,4 +235,12 @@ public class MaskedGray32SubImgGen extends PipelineStage {
         this.oSubImageReady = false;
     }
     
+    /**
+     * Returns true, since there is a subimage output for each position in
+     * the input image.
+     * @return true.
+     */
+    public boolean isMultiOutput() {
+        return true;
+    }
 }
@@ -35,6 +35,7 @@ package jjil.algorithm;
 import jjil.core.Error;
 import jjil.core.Gray8MaskedImage;
 import jjil.core.Gray8OffsetImage;
+import jjil.core.Gray8ViewImage;
 import jjil.core.Image;
 import jjil.core.PipelineStage;
 
@@ -43,12 +44,16 @@ import jjil.core.PipelineStage;
  * subimage generator subimages are generated evenly spaced across the input
  * image. Here, the subimage is generated only if is center point is not masked.
  * This can increase processing speed in hierarchical detection operations since features
- * detected at coarser resolution don't have to be redetected at finer resolution.
+ * detected at coarser resolution don't have to be redetected at finer resolution.<p>
+ * Normally the pixels of each subimage are copied. After setView(true) the
+ * subimages are instead Gray8ViewImages, which share the pixels of the input
+ * image, so generating a subimage takes constant time.
  * @author webb
  */
 public class MaskedGray8SubImgGen extends PipelineStage {
     Gray8MaskedImage imageInput;  // input image
     boolean oSubImageReady; // true if sub image position is OK
+    boolean bView = false;  // true if subimages share the input's pixels
     int nHeight;            // target height
     int nHorizLimit = 0;    // number of subimages generated horizontally
     int nVertLimit = 0;     // number of subimages generated vertically
@@ -141,8 +146,9 @@ public class MaskedGray8SubImgGen extends PipelineStage {
     /**
      * Returns the next subimage generated. The subimage will have its offset
      * set to indicate where it was generated in the input image.
-     * @return a MaskedGray8SubImage that is the next subimage in the input Gray8Image to
-     * be processed.
+     * @return a Gray8OffsetImage that is the next subimage in the input Gray8Image to
+     * be processed, or a Gray8ViewImage if setView(true) has been called. The 
+     * same object is returned every time, changed to the new subimage.
      * @throws jjil.core.Error if no subimage is available (you have to call isEmpty() to determine if
      * a subimage is available. As few as 0 subimage can be generated for a
      * given input if the entire image is masked.) Also throws if the output
@@ -150,16 +156,6 @@ public class MaskedGray8SubImgGen extends PipelineStage {
      */
      public Image getFront() throws jjil.core.Error
     {
-        // reuse output image
-        // check to make sure nobody damaged it somehow
-        if (!(super.imageOutput instanceof Gray8OffsetImage)) {
-            throw new Error(
-                            Error.PACKAGE.ALGORITHM,
-                            ErrorCodes.OBJECT_NOT_EXPECTED_TYPE,
-                            imageOutput.toString(),
-                            "Gray8SubImage",
-                            null);
-        }
         if (!advanceToNextSubImage()) {
             throw new Error(
                             Error.PACKAGE.ALGORITHM,
@@ -169,11 +165,28 @@ public class MaskedGray8SubImgGen extends PipelineStage {
                             null);
         }
         
-        byte[] dataIn = this.imageInput.getData();
         // offset of first pixel of the subimage within the
         // larget image.
         int nHOffset = this.nXOffset * this.nHorizIndex;
         int nVOffset = this.nYOffset * this.nVertIndex;
+        if (this.bView) {
+            // reuse the view created in push, just moving it
+            Gray8ViewImage imageView = (Gray8ViewImage) super.imageOutput;
+            imageView.setPosition(nHOffset, nVOffset);
+            this.oSubImageReady = false;
+            return imageView;
+        }
+        // reuse output image
+        // check to make sure nobody damaged it somehow
+        if (!(super.imageOutput instanceof Gray8OffsetImage)) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.OBJECT_NOT_EXPECTED_TYPE,
+                            imageOutput.toString(),
+                            "Gray8SubImage",
+                            null);
+        }
+        byte[] dataIn = this.imageInput.getData();
         Gray8OffsetImage imageResult = (Gray8OffsetImage) super.imageOutput;
         imageResult.setXOffset(nHOffset);
         imageResult.setYOffset(nVOffset);
@@ -220,6 +233,20 @@ public class MaskedGray8SubImgGen extends PipelineStage {
                             new Integer(this.nHeight).toString());
         }
         this.imageInput = (Gray8MaskedImage) image;
+        if (this.bView) {
+            super.imageOutput = new Gray8ViewImage(
+                    this.imageInput, 
+                    0, 
+                    0, 
+                    this.nWidth, 
+                    this.nHeight);
+        } else if (!(super.imageOutput instanceof Gray8OffsetImage)) {
+            super.imageOutput = new Gray8OffsetImage( 
+                this.nWidth, 
+                this.nHeight, 
+                0, 
+                0);
+        }
         // we want to find the largest integer l such that
         // (l-1) * w + w  <= iw 
         // where l = computed limit on index
@@ -234,4 +261,22 @@ public class MaskedGray8SubImgGen extends PipelineStage {
         this.oSubImageReady = false;
     }
     
+    /**
+     * Choose whether the subimages share the input's pixels. This takes
+     * effect at the next push.
+     * @param bView true to generate Gray8ViewImages, false (the default) to
+     * copy the pixels into a Gray8OffsetImage.
+     */
+    public void setView(boolean bView) {
+        this.bView = bView;
+    }
+    
+    /**
+     * Returns true, since there is a subimage output for each position in
+     * the input image.
+     * @return true.
+     */
+    public boolean isMultiOutput() {
+        return true;
+    }
 }
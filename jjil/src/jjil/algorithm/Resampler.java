@@ -0,0 +1,438 @@
+/*
+ * Resampler.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jjil.algorithm;
+import jjil.core.Error;
+
+/**
+ * Resampler changes the size of an image, by averaging when it gets smaller
+ * and by bilinear interpolation when it gets larger. It is the engine behind
+ * Gray8Shrink, RgbShrink, Gray8RectStretch, and RgbStretch, and can be used
+ * directly on any array of 8-bit gray or packed RGB pixels.<p>
+ * Each direction is resampled separately. In a direction in which the image
+ * gets smaller (or stays the same size), each output pixel is the average of
+ * a run of whole input pixels, the ones nearest its pre-image. In a direction
+ * in which it gets larger, each output pixel is interpolated between the two
+ * input pixels on either side of its pre-image, and pixels past the last input
+ * pixel copy it.<p>
+ * Which input pixels go into each output pixel, and with what weight, is
+ * worked out once, in the constructor, for each output column and each output
+ * row. The image is then processed a row at a time, in the order it is stored:
+ * each input row is resampled horizontally into a buffer one output row wide,
+ * and the buffered rows are combined into output rows. Only one or two rows
+ * are buffered, however large the image, and the input is read once. The
+ * three bands of an RGB image are done together in the same pass.<p>
+ * A Resampler keeps its buffers from one call to the next, so resampling a
+ * stream of images of the same size allocates nothing. It must only be used
+ * by one thread at a time.
+ * @author webb
+ */
+public class Resampler {
+    /**
+     * The input pixels that make up each output pixel in one direction.
+     */
+    private static class Axis {
+        boolean bArea;  // average (shrink) rather than interpolate (stretch)
+        int[] rnFirst;  // first input pixel of each output pixel
+        int[] rnSecond; // second input pixel, when interpolating
+        int[] rnWeight; // count of pixels averaged, or weight of the second
+                        // pixel times 256 when interpolating
+
+        /**
+         * Works out the input pixels for each output pixel.
+         * @param cIn the input size.
+         * @param cOut the output size.
+         */
+        Axis(int cIn, int cOut) {
+            this.bArea = cOut <= cIn;
+            this.rnFirst = new int[cOut];
+            this.rnWeight = new int[cOut];
+            if (this.bArea) {
+                // the run for output pixel k ends at the first input pixel j
+                // with (j+1)*256 >= (k+1) * (cIn*256/cOut); input pixels
+                // after the last run are not used
+                int nStep = cIn * 256 / cOut;
+                int nNextPos = nStep;
+                int nFirst = 0;
+                int k = 0;
+                for (int j=0; j<cIn && k<cOut; j++) {
+                    if ((j+1) * 256 >= nNextPos) {
+                        this.rnFirst[k] = nFirst;
+                        this.rnWeight[k] = j + 1 - nFirst;
+                        nFirst = j + 1;
+                        nNextPos += nStep;
+                        k++;
+                    }
+                }
+            } else {
+                this.rnSecond = new int[cOut];
+                for (int k=0; k<cOut; k++) {
+                    // the pre-image of k is k*cIn/cOut
+                    int nMod = (k * cIn) % cOut;
+                    int nPos = (k * cIn - nMod) / cOut;
+                    if (nPos < cIn - 1) {
+                        this.rnFirst[k] = nPos;
+                        this.rnSecond[k] = nPos + 1;
+                        this.rnWeight[k] = (nMod << 8) / cOut;
+                    } else {
+                        // past the last input pixel
+                        this.rnFirst[k] = cIn - 1;
+                        this.rnSecond[k] = cIn - 1;
+                        this.rnWeight[k] = 0;
+                    }
+                }
+            }
+        }
+    }
+
+    private final int cInHeight;
+    private final int cInWidth;
+    private final int cOutHeight;
+    private final int cOutWidth;
+    private final Axis horiz;
+    private final Axis vert;
+
+    private int nBands = 0;         // bands the buffers are allocated for
+    private int[][] rnAcc;          // sum of buffered rows, for each band
+    private int[][] rnRowIn;        // input row, unpacked into bands
+    private int[][][] rnSlot;       // horizontally resampled rows
+    private int[] rnSlotRow = new int[2]; // input row held by each slot
+
+    // the image being resampled, during a call to resample
+    private byte[] rbIn, rbOut;
+    private int[] rnIn, rnOut;
+    private int nInOffset, nInStride, nOutOffset, nOutStride;
+
+    /**
+     * Creates a new instance of Resampler.
+     * @param cInWidth the input image width.
+     * @param cInHeight the input image height.
+     * @param cOutWidth the output image width.
+     * @param cOutHeight the output image height.
+     * @throws jjil.core.Error if any size is less than or equal to zero.
+     */
+    public Resampler(int cInWidth, int cInHeight, int cOutWidth, int cOutHeight)
+        throws jjil.core.Error
+    {
+        if (cInWidth <= 0 || cInHeight <= 0) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.INPUT_IMAGE_SIZE_NEGATIVE,
+                            new Integer(cInWidth).toString(),
+                            new Integer(cInHeight).toString(),
+                            null);
+        }
+        if (cOutWidth <= 0 || cOutHeight <= 0) {
+            throw new Error(
+                            Error.PACKAGE.ALGORITHM,
+                            ErrorCodes.OUTPUT_IMAGE_SIZE_NEGATIVE,
+                            new Integer(cOutWidth).toString(),
+                            new Integer(cOutHeight).toString(),
+                            null);
+        }
+        this.cInWidth = cInWidth;
+        this.cInHeight = cInHeight;
+        this.cOutWidth = cOutWidth;
+        this.cOutHeight = cOutHeight;
+        this.horiz = new Axis(cInWidth, cOutWidth);
+        this.vert = new Axis(cInHeight, cOutHeight);
+    }
+
+    /**
+     * Allocate the row buffers for a number of bands, if they haven't been.
+     */
+    private void allocate(int nBands) {
+        if (this.nBands == nBands) {
+            return;
+        }
+        this.nBands = nBands;
+        this.rnAcc = new int[nBands][this.cOutWidth];
+        this.rnRowIn = new int[nBands][this.cInWidth];
+        this.rnSlot = new int[2][nBands][this.cOutWidth];
+    }
+
+    /**
+     * Returns a slot holding an input row resampled horizontally, computing
+     * it if neither slot holds it.
+     * @param nRow the input row.
+     * @param nKeep an input row which is also needed, so its slot must not
+     * be overwritten.
+     * @return the slot.
+     */
+    private int fetchRow(int nRow, int nKeep) {
+        for (int s=0; s<2; s++) {
+            if (this.rnSlotRow[s] == nRow) {
+                return s;
+            }
+        }
+        int s = (this.rnSlotRow[0] == nKeep) ? 1 : 0;
+        resampleRow(nRow, this.rnSlot[s]);
+        this.rnSlotRow[s] = nRow;
+        return s;
+    }
+
+    /**
+     * Returns the input image height.
+     * @return the input height.
+     */
+    public int getInputHeight() {
+        return this.cInHeight;
+    }
+
+    /**
+     * Returns the input image width.
+     * @return the input width.
+     */
+    public int getInputWidth() {
+        return this.cInWidth;
+    }
+
+    /**
+     * Returns the output image height.
+     * @return the output height.
+     */
+    public int getOutputHeight() {
+        return this.cOutHeight;
+    }
+
+    /**
+     * Returns the output image width.
+     * @return the output width.
+     */
+    public int getOutputWidth() {
+        return this.cOutWidth;
+    }
+
+    /**
+     * Returns true if this Resampler resamples between the given sizes, so
+     * a stage can keep using it.
+     * @param cInWidth the input image width.
+     * @param cInHeight the input image height.
+     * @param cOutWidth the output image width.
+     * @param cOutHeight the output image height.
+     * @return true iff all four sizes match.
+     */
+    public boolean isSize(int cInWidth, int cInHeight, int cOutWidth, int cOutHeight) {
+        return this.cInWidth == cInWidth && this.cInHeight == cInHeight &&
+                this.cOutWidth == cOutWidth && this.cOutHeight == cOutHeight;
+    }
+
+    /**
+     * Read an input row, unpacking it into unsigned values in each band.
+     */
+    private void loadRow(int nRow) {
+        int nIn = this.nInOffset + nRow * this.nInStride;
+        if (this.rbIn != null) {
+            int[] rnGray = this.rnRowIn[0];
+            for (int j=0; j<this.cInWidth; j++) {
+                rnGray[j] = this.rbIn[nIn++] - Byte.MIN_VALUE;
+            }
+        } else {
+            int[] rnR = this.rnRowIn[0];
+            int[] rnG = this.rnRowIn[1];
+            int[] rnB = this.rnRowIn[2];
+            for (int j=0; j<this.cInWidth; j++) {
+                int nRgb = this.rnIn[nIn++];
+                rnR[j] = (nRgb >> 16) & 0xff;
+                rnG[j] = (nRgb >> 8) & 0xff;
+                rnB[j] = nRgb & 0xff;
+            }
+        }
+    }
+
+    /**
+     * Resample a gray image. The input and output can be a whole Gray8Image
+     * or a window in a larger image.
+     * @param rbIn the input pixels, signed 8-bit values as in a Gray8Image.
+     * @param nInOffset the index of the first input pixel.
+     * @param nInStride the distance between input rows.
+     * @param rbOut the output pixels.
+     * @param nOutOffset the index of the first output pixel.
+     * @param nOutStride the distance between output rows.
+     */
+    public void resample(
+            byte[] rbIn,
+            int nInOffset,
+            int nInStride,
+            byte[] rbOut,
+            int nOutOffset,
+            int nOutStride)
+    {
+        allocate(1);
+        this.rbIn = rbIn;
+        this.rbOut = rbOut;
+        try {
+            run(nInOffset, nInStride, nOutOffset, nOutStride);
+        } finally {
+            this.rbIn = null;
+            this.rbOut = null;
+        }
+    }
+
+    /**
+     * Resample an RGB image, all three bands at once. The input and output
+     * can be a whole RgbImage or a window in a larger image. The output
+     * pixels are opaque.
+     * @param rnIn the input pixels, packed as in an RgbImage.
+     * @param nInOffset the index of the first input pixel.
+     * @param nInStride the distance between input rows.
+     * @param rnOut the output pixels.
+     * @param nOutOffset the index of the first output pixel.
+     * @param nOutStride the distance between output rows.
+     */
+    public void resample(
+            int[] rnIn,
+            int nInOffset,
+            int nInStride,
+            int[] rnOut,
+            int nOutOffset,
+            int nOutStride)
+    {
+        allocate(3);
+        this.rnIn = rnIn;
+        this.rnOut = rnOut;
+        try {
+            run(nInOffset, nInStride, nOutOffset, nOutStride);
+        } finally {
+            this.rnIn = null;
+            this.rnOut = null;
+        }
+    }
+
+    /**
+     * Read an input row and resample it horizontally. When averaging, the
+     * result is 256 times the average, for accuracy.
+     * @param nRow the input row.
+     * @param rnResult the result for each band.
+     */
+    private void resampleRow(int nRow, int[][] rnResult) {
+        loadRow(nRow);
+        int[] rnFirst = this.horiz.rnFirst;
+        int[] rnWeight = this.horiz.rnWeight;
+        for (int b=0; b<this.nBands; b++) {
+            int[] rnRow = this.rnRowIn[b];
+            int[] rnOut = rnResult[b];
+            if (this.horiz.bArea) {
+                for (int k=0; k<this.cOutWidth; k++) {
+                    int nSum = 0;
+                    int nLimit = rnFirst[k] + rnWeight[k];
+                    for (int j=rnFirst[k]; j<nLimit; j++) {
+                        nSum += rnRow[j];
+                    }
+                    rnOut[k] = (nSum << 8) / rnWeight[k];
+                }
+            } else {
+                int[] rnSecond = this.horiz.rnSecond;
+                for (int k=0; k<this.cOutWidth; k++) {
+                    int nFrac = rnWeight[k];
+                    rnOut[k] = (rnRow[rnFirst[k]] * (256 - nFrac) +
+                            rnRow[rnSecond[k]] * nFrac) >> 8;
+                }
+            }
+        }
+    }
+
+    /**
+     * Resample the image set up by resample.
+     */
+    private void run(int nInOffset, int nInStride, int nOutOffset, int nOutStride) {
+        this.nInOffset = nInOffset;
+        this.nInStride = nInStride;
+        this.nOutOffset = nOutOffset;
+        this.nOutStride = nOutStride;
+        this.rnSlotRow[0] = -1;
+        this.rnSlotRow[1] = -1;
+        // horizontally averaged rows are scaled by 256
+        int nShift = this.horiz.bArea ? 8 : 0;
+        for (int i=0; i<this.cOutHeight; i++) {
+            if (this.vert.bArea) {
+                int nFirst = this.vert.rnFirst[i];
+                int nCount = this.vert.rnWeight[i];
+                for (int b=0; b<this.nBands; b++) {
+                    int[] rnAcc = this.rnAcc[b];
+                    for (int k=0; k<this.cOutWidth; k++) {
+                        rnAcc[k] = 0;
+                    }
+                }
+                for (int nRow=nFirst; nRow<nFirst+nCount; nRow++) {
+                    resampleRow(nRow, this.rnSlot[0]);
+                    for (int b=0; b<this.nBands; b++) {
+                        int[] rnAcc = this.rnAcc[b];
+                        int[] rnRow = this.rnSlot[0][b];
+                        for (int k=0; k<this.cOutWidth; k++) {
+                            rnAcc[k] += rnRow[k];
+                        }
+                    }
+                }
+                for (int b=0; b<this.nBands; b++) {
+                    int[] rnAcc = this.rnAcc[b];
+                    for (int k=0; k<this.cOutWidth; k++) {
+                        rnAcc[k] = rnAcc[k] / nCount >> nShift;
+                    }
+                }
+            } else {
+                int nFirst = this.vert.rnFirst[i];
+                int nSecond = this.vert.rnSecond[i];
+                int nFrac = this.vert.rnWeight[i];
+                int[][] rnFirstRow = this.rnSlot[fetchRow(nFirst, nSecond)];
+                int[][] rnSecondRow = this.rnSlot[fetchRow(nSecond, nFirst)];
+                for (int b=0; b<this.nBands; b++) {
+                    int[] rnAcc = this.rnAcc[b];
+                    int[] rnRow0 = rnFirstRow[b];
+                    int[] rnRow1 = rnSecondRow[b];
+                    for (int k=0; k<this.cOutWidth; k++) {
+                        rnAcc[k] = (rnRow0[k] * (256 - nFrac) +
+                                rnRow1[k] * nFrac) >> 8 >> nShift;
+                    }
+                }
+            }
+            storeRow(i);
+        }
+    }
+
+    /**
+     * Write an output row from the accumulated values in each band.
+     */
+    private void storeRow(int nRow) {
+        int nOut = this.nOutOffset + nRow * this.nOutStride;
+        if (this.rbOut != null) {
+            int[] rnGray = this.rnAcc[0];
+            for (int k=0; k<this.cOutWidth; k++) {
+                this.rbOut[nOut++] = (byte) (rnGray[k] + Byte.MIN_VALUE);
+            }
+        } else {
+            int[] rnR = this.rnAcc[0];
+            int[] rnG = this.rnAcc[1];
+            int[] rnB = this.rnAcc[2];
+            for (int k=0; k<this.cOutWidth; k++) {
+                this.rnOut[nOut++] = 0xFF000000 |
+                        (rnR[k] << 16) | (rnG[k] << 8) | rnB[k];
+            }
+        }
+    }
+
+    /**
+     * Return a string describing the resampling.
+     * @return the input and output sizes.
+     */
+    public String toString() {
+        return super.toString() + " (" + this.cInWidth + "," + this.cInHeight + //$NON-NLS-1$ //$NON-NLS-2$
+                "->" + this.cOutWidth + "," + this.cOutHeight + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+}
@@ -23,6 +23,7 @@
  */
 package jjil.algorithm;
 
+import jjil.core.BandedStage;
 import jjil.core.Error;
 import jjil.core.Image;
 import jjil.core.PipelineStage;
@@ -33,7 +34,7 @@ import jjil.core.RgbVal;
  * Pipeline stage performs a 3x3 RGB average of the input.
  * @author webb
  */
-public class Rgb3x3Average extends PipelineStage {
+public class Rgb3x3Average extends PipelineStage implements BandedStage {
     
     /**
      * Creates a new instance of Rgb3x3Average
@@ -53,24 +54,39 @@ public class Rgb3x3Average extends PipelineStage {
      */
     public void push(Image imageInput) throws jjil.core.Error 
    {
-        if (!(imageInput instanceof RgbImage)) 
-        {
-            throw new Error(
-                			Error.PACKAGE.ALGORITHM,
-                			ErrorCodes.IMAGE_NOT_RGBIMAGE,
-                			imageInput.toString(),
-                			null,
-                			null);
-        }
-        
+        Image imageResult = startBands(imageInput);
+        pushBand(imageInput, imageResult, 0, imageInput.getHeight());
+        /* send output to PipelineStage
+         */
+        super.setOutput(imageResult);
+    }
+    
+    /**
+     * Returns 1, since the average uses the rows above and below each pixel.
+     * @return 1.
+     */
+    public int getHalo() {
+        return 1;
+    }
+    
+    /**
+     * Average rows nRowFirst to nRowLimit - 1 of the input.
+     * @param imageInput the input RgbImage.
+     * @param imageResult the output image, from startBands.
+     * @param nRowFirst the first row to compute.
+     * @param nRowLimit one past the last row to compute.
+     */
+    public void pushBand(
+            Image imageInput, 
+            Image imageResult, 
+            int nRowFirst, 
+            int nRowLimit) {
         int cWidth  = imageInput.getWidth();
         int cHeight = imageInput.getHeight();
         int rgbInput[] = ((RgbImage)imageInput).getData();
+        int[] rgbOutput = ((RgbImage)imageResult).getData();
         
-        RgbImage imageResult = new RgbImage(cWidth, cHeight);
-        int[] rgbOutput = imageResult.getData();
-        
-        for(int i=0;i<cHeight;i++) {
+        for(int i=nRowFirst;i<nRowLimit;i++) {
             /* declare and initialize integers which will hold the r, g, and b
              * pixel values. The variables are named and numbered as if
              * they were array indices for three different 3x3 arrays.
@@ -179,8 +195,24 @@ public class Rgb3x3Average extends PipelineStage {
                 pos2++;
             }
         }
-        /* send output to PipelineStage
-         */
-        super.setOutput(imageResult);
+    }
+    
+    /**
+     * Check the input and get the output image.
+     * @param imageInput the input image.
+     * @return an RgbImage the size of the input.
+     * @throws jjil.core.Error if imageInput is not an RgbImage
+     */
+    public Image startBands(Image imageInput) throws jjil.core.Error {
+        if (!(imageInput instanceof RgbImage)) 
+        {
+            throw new Error(
+                			Error.PACKAGE.ALGORITHM,
+                			ErrorCodes.IMAGE_NOT_RGBIMAGE,
+                			imageInput.toString(),
+                			null,
+                			null);
+        }
+        return newRgbImage(imageInput.getWidth(), imageInput.getHeight());
     }
 }
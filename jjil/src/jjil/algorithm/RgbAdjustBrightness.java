@@ -59,6 +59,17 @@ public class RgbAdjustBrightness extends PipelineStage {
      * @param image the input image.
      */
     public void push(Image image) throws jjil.core.Error {
+        push(image, image);
+    }
+    
+    /** Adjust brightness of RGB image, writing the result into imageDest if
+     * it is an RgbImage of the same size, and into the input otherwise.
+     *
+     * @param image the input image.
+     * @param imageDest the output image. May be the input image, or null.
+     * @throws jjil.core.Error if image is not an RgbImage.
+     */
+    public void push(Image image, Image imageDest) throws jjil.core.Error {
         if (!(image instanceof RgbImage)) {
             throw new Error(
                 			Error.PACKAGE.ALGORITHM,
@@ -68,7 +79,14 @@ public class RgbAdjustBrightness extends PipelineStage {
                 			null);
         }
         RgbImage imageInput = (RgbImage) image;
+        RgbImage imageResult = imageInput;
+        if (imageDest instanceof RgbImage &&
+                imageDest.getWidth() == image.getWidth() &&
+                imageDest.getHeight() == image.getHeight()) {
+            imageResult = (RgbImage) imageDest;
+        }
         int[] rgb = imageInput.getData();
+        int[] rgbOut = imageResult.getData();
         for (int i=0; i<imageInput.getHeight() * imageInput.getWidth(); i++) {
             // the scaling has to be done on unsigned values.
             int nRed = RgbVal.getR(rgb[i]) - Byte.MIN_VALUE;
@@ -84,9 +102,9 @@ public class RgbAdjustBrightness extends PipelineStage {
             nBlue = Math.max(Byte.MIN_VALUE, 
                     Math.min(Byte.MAX_VALUE, 
                     nBlue * this.nBlueFac / 256 + Byte.MIN_VALUE));
-            rgb[i] = RgbVal.toRgb((byte) nRed, (byte) nGreen, (byte) nBlue);
+            rgbOut[i] = RgbVal.toRgb((byte) nRed, (byte) nGreen, (byte) nBlue);
         }
-        super.setOutput(imageInput);
+        super.setOutput(imageResult);
     }
     
     
@@ -100,4 +118,20 @@ public class RgbAdjustBrightness extends PipelineStage {
                 this.nGreenFac + "," +
                 this.nBlueFac + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
     }
+    
+    /**
+     * Returns the type of image this stage accepts.
+     * @return RgbImage.class
+     */
+    public Class getInputType() {
+        return RgbImage.class;
+    }
+    
+    /**
+     * Returns the type of image this stage produces.
+     * @return RgbImage.class
+     */
+    public Class getOutputType() {
+        return RgbImage.class;
+    }
 }
@@ -23,6 +23,7 @@
  */
 
 package jjil.algorithm;
+import jjil.core.BandedStage;
 import jjil.core.Error;
 import jjil.core.Gray8Image;
 import jjil.core.Image;
@@ -38,7 +39,7 @@ import jjil.core.RgbVal;
  * R, G, and B values 127, 0, and -126 (and the average would be 0).
  * @author webb
  */
-public class RgbAvgGray extends PipelineStage {
+public class RgbAvgGray extends PipelineStage implements BandedStage {
     
     /** Creates a new instance of RgbAvgGray */
     public RgbAvgGray() {
@@ -54,19 +55,35 @@ public class RgbAvgGray extends PipelineStage {
      * @throws jjil.core.Error if image is not an RgbImage
      */
     public void push(Image image) throws jjil.core.Error {
-        if (!(image instanceof RgbImage)) {
-            throw new Error(
-            				Error.PACKAGE.ALGORITHM,
-            				ErrorCodes.IMAGE_NOT_RGBIMAGE,
-            				image.toString(),
-            				null,
-            				null);
-        }
-        RgbImage rgb = (RgbImage) image;
-        int[] rgbData = rgb.getData();
-        Gray8Image gray = new Gray8Image(image.getWidth(), image.getHeight());
-        byte[] grayData = gray.getData();
-        for (int i=0; i<image.getWidth() * image.getHeight(); i++) {
+        Image gray = startBands(image);
+        pushBand(image, gray, 0, image.getHeight());
+        super.setOutput(gray);
+    }
+    
+    /**
+     * Returns 0, since each pixel is converted independently.
+     * @return 0.
+     */
+    public int getHalo() {
+        return 0;
+    }
+    
+    /**
+     * Averages the R, G, and B values in rows nRowFirst to nRowLimit - 1.
+     * @param image the input RgbImage.
+     * @param imageOutput the output Gray8Image, from startBands.
+     * @param nRowFirst the first row to convert.
+     * @param nRowLimit one past the last row to convert.
+     */
+    public void pushBand(
+            Image image, 
+            Image imageOutput, 
+            int nRowFirst, 
+            int nRowLimit) {
+        int[] rgbData = ((RgbImage) image).getData();
+        byte[] grayData = ((Gray8Image) imageOutput).getData();
+        int nLimit = nRowLimit * image.getWidth();
+        for (int i=nRowFirst * image.getWidth(); i<nLimit; i++) {
             /* get individual r, g, and b values, unmasking them from the
              * ARGB word. 
              */
@@ -77,6 +94,47 @@ public class RgbAvgGray extends PipelineStage {
              */
             grayData[i] = (byte)((r + g + b) / 3);
         }
-        super.setOutput(gray);
+    }
+    
+    /**
+     * Check the input and get the output image.
+     * @param image the input image.
+     * @return a Gray8Image the size of the input.
+     * @throws jjil.core.Error if image is not an RgbImage
+     */
+    public Image startBands(Image image) throws jjil.core.Error {
+        if (!(image instanceof RgbImage)) {
+            throw new Error(
+            				Error.PACKAGE.ALGORITHM,
+            				ErrorCodes.IMAGE_NOT_RGBIMAGE,
+            				image.toString(),
+            				null,
+            				null);
+        }
+        return newGray8Image(image.getWidth(), image.getHeight());
+    }
+    
+    /**
+     * Returns the type of image this stage accepts.
+     * @return RgbImage.class
+     */
+    public Class getInputType() {
+        return RgbImage.class;
+    }
+    
+    /**
+     * Returns the type of image this stage produces.
+     * @return Gray8Image.class
+     */
+    public Class getOutputType() {
+        return Gray8Image.class;
+    }
+    
+    /**
+     * Returns true, since the input image is not changed.
+     * @return true.
+     */
+    public boolean isInputReadOnly() {
+        return true;
     }
 }
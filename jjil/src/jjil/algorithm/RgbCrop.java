@@ -28,6 +28,7 @@ import jjil.core.Image;
 import jjil.core.PipelineStage;
 import jjil.core.Rect;
 import jjil.core.RgbImage;
+import jjil.core.RgbViewImage;
 
 /**
  * Pipeline stage crops a gray image to a given rectangular cropping window.
@@ -38,6 +39,7 @@ public class RgbCrop extends PipelineStage {
     int cWidth; /* width of cropping window */
     int cX; /* left edge of cropping window */
     int cY; /* top of cropping window */
+    boolean bView = false; /* true if output shares the input's pixels */
     
     /** Creates a new instance of RgbCrop. The cropping window
      * is specified here.
@@ -69,15 +71,29 @@ public class RgbCrop extends PipelineStage {
     }
     
     /** Crops the input RGB image to the cropping window that was
-     * specified in the constructor.
+     * specified in the constructor. The input can be an RgbImage or
+     * an RgbViewImage. If setView(true) has been called the output is
+     * an RgbViewImage sharing the input's pixels, so cropping takes constant time;
+     * otherwise the pixels are copied into a new RgbImage.
      *
      * @param image the input image.
      * @throws jjil.core.Error if the cropping window
      *    extends outside the input image, or the input image
-     *    is not an RgbImage.
+     *    is not an RgbImage or RgbViewImage.
      */
     public void push(Image image) throws jjil.core.Error {
-        if (!(image instanceof RgbImage)) {
+        int[] src;
+        int nOffset, nStride; // position of input pixel (0,0) and row stride
+        if (image instanceof RgbImage) {
+            src = ((RgbImage) image).getData();
+            nOffset = 0;
+            nStride = image.getWidth();
+        } else if (image instanceof RgbViewImage) {
+            RgbViewImage imageView = (RgbViewImage) image;
+            src = imageView.getData();
+            nOffset = imageView.getOffset();
+            nStride = imageView.getStride();
+        } else {
             throw new Error(
                 			Error.PACKAGE.ALGORITHM,
                 			ErrorCodes.IMAGE_NOT_RGBIMAGE,
@@ -85,7 +101,6 @@ public class RgbCrop extends PipelineStage {
                 			null,
                 			null);
         }
-        RgbImage imageInput = (RgbImage) image;
         if (this.cX + this.cWidth > image.getWidth() ||
             this.cY + this.cHeight > image.getHeight()) {
             throw new Error(
@@ -95,13 +110,25 @@ public class RgbCrop extends PipelineStage {
                             this.toString(),
                             null);
         }
-        RgbImage imageResult = new RgbImage(this.cWidth,this.cHeight);
-        int[] src = imageInput.getData();
+        if (this.bView) {
+            super.setOutput(new RgbViewImage(
+                    src,
+                    nOffset,
+                    nStride,
+                    image.getWidth(),
+                    image.getHeight(),
+                    this.cX,
+                    this.cY,
+                    this.cWidth,
+                    this.cHeight));
+            return;
+        }
+        RgbImage imageResult = newRgbImage(this.cWidth,this.cHeight);
         int[] dst = imageResult.getData();
         for (int i=0; i<this.cHeight; i++) {
             System.arraycopy(
                     src, 
-                    (i+this.cY)*image.getWidth() + this.cX,
+                    nOffset + (i+this.cY)*nStride + this.cX,
                     dst,
                     i*this.cWidth,
                     this.cWidth);
@@ -141,6 +168,17 @@ public class RgbCrop extends PipelineStage {
         return this.cWidth;
     }
     
+    /**
+     * Choose whether the output shares the input's pixels. A view is
+     * created in constant time, but it is an RgbViewImage rather than an RgbImage,
+     * and changing its pixels changes the input image.
+     * @param bView true to output an RgbViewImage, false (the default) to
+     * copy the pixels into a new RgbImage.
+     */
+    public void setView(boolean bView) {
+        this.bView = bView;
+    }
+    
     /** Change the cropping window. 
      *
      * @param x left edge of cropping window
@@ -189,4 +227,14 @@ public class RgbCrop extends PipelineStage {
         return super.toString() + " (" + this.cX + "," + this.cY +  //$NON-NLS-1$ //$NON-NLS-2$
                 "," + this.cWidth + "," + this.cHeight + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
     }
+    
+    /**
+     * Returns true unless view mode is set. The input image is never changed
+     * here, but in view mode the output shares the input's pixels, so a later
+     * stage that changes the output would change the input too.
+     * @return true iff view mode is not set.
+     */
+    public boolean isInputReadOnly() {
+        return !this.bView;
+    }
 }
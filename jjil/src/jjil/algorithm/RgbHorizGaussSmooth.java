@@ -37,6 +37,7 @@ import jjil.core.Sequence;
 public class RgbHorizGaussSmooth extends PipelineStage {
    private Sequence seqR, seqG, seqB;
    int nSigma;
+   boolean bIteratedBox = false;
     
     /** Creates a new instance of RgbHorizGaussSmooth. RgbVertTrapWarp smooths
      * an RgbImage using a horizontal Gaussian blur. The red, green, and blue
@@ -48,6 +49,20 @@ public class RgbHorizGaussSmooth extends PipelineStage {
         setSigma(nSigma);
     }
     
+    /**
+     * Creates a new instance of RgbHorizGaussSmooth, choosing how the
+     * Gaussian is
+     * computed.
+     * @param nSigma the sigma value of window to blur over
+     * @param bIteratedBox true to approximate the Gaussian with iterated box
+     * filters (see Gray8GaussHoriz.setIteratedBox).
+     * @throws jjil.core.Error if sigma out of range
+     */
+    public RgbHorizGaussSmooth(int nSigma, boolean bIteratedBox) throws jjil.core.Error {
+        this.bIteratedBox = bIteratedBox;
+        setSigma(nSigma);
+    }
+    
     
     /**
      * Smooth an RgbImage horizontally using a Gaussian blur.
@@ -80,11 +95,29 @@ public class RgbHorizGaussSmooth extends PipelineStage {
     public void setSigma(int nSigma) throws jjil.core.Error {
         this.nSigma = nSigma;
         this.seqR = new Sequence(new RgbSelectGray(RgbSelectGray.RED));
-        this.seqR.add(new Gray8GaussHoriz(nSigma));
+        this.seqR.add(new Gray8GaussHoriz(nSigma, this.bIteratedBox));
         this.seqG = new Sequence(new RgbSelectGray(RgbSelectGray.GREEN));
-        this.seqG.add(new Gray8GaussHoriz(nSigma));
+        this.seqG.add(new Gray8GaussHoriz(nSigma, this.bIteratedBox));
         this.seqB = new Sequence(new RgbSelectGray(RgbSelectGray.BLUE));
-        this.seqB.add(new Gray8GaussHoriz(nSigma));
+        this.seqB.add(new Gray8GaussHoriz(nSigma, this.bIteratedBox));
+    }
+    
+    /**
+     * Chooses between convolving with a table of coefficients and the
+     * iterated box approximation of the Gaussian, whose cost doesn't depend
+     * on sigma (see Gray8GaussHoriz.setIteratedBox).
+     * @param bIteratedBox true to use iterated box mode. Default is false.
+     * @throws jjil.core.Error if sigma is too large for the mode chosen.
+     */
+    public void setIteratedBox(boolean bIteratedBox) throws jjil.core.Error {
+        boolean bOld = this.bIteratedBox;
+        this.bIteratedBox = bIteratedBox;
+        try {
+            setSigma(this.nSigma);
+        } catch (jjil.core.Error er) {
+            this.bIteratedBox = bOld;
+            throw er;
+        }
     }
     
     /**
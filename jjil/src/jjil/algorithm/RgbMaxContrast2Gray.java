@@ -64,7 +64,7 @@ public class RgbMaxContrast2Gray extends PipelineStage {
         }
         RgbImage rgb = (RgbImage) image;
         int[] rgbData = rgb.getData();
-        Gray8Image gray = new Gray8Image(image.getWidth(), image.getHeight());
+        Gray8Image gray = newGray8Image(image.getWidth(), image.getHeight());
         byte[] grayData = gray.getData();
         for (int i=0; i<image.getWidth() * image.getHeight(); i++) {
             /* get individual r, g, and b values, unmasking them from the
@@ -87,4 +87,28 @@ public class RgbMaxContrast2Gray extends PipelineStage {
         }
         super.setOutput(gray);
     }
+    
+    /**
+     * Returns the type of image this stage accepts.
+     * @return RgbImage.class
+     */
+    public Class getInputType() {
+        return RgbImage.class;
+    }
+    
+    /**
+     * Returns the type of image this stage produces.
+     * @return Gray8Image.class
+     */
+    public Class getOutputType() {
+        return Gray8Image.class;
+    }
+    
+    /**
+     * Returns true, since the input image is not changed.
+     * @return true.
+     */
+    public boolean isInputReadOnly() {
+        return true;
+    }
 }
@@ -28,13 +28,12 @@
 
 package jjil.algorithm;
 import jjil.core.Error;
-import jjil.core.Gray8Image;
 import jjil.core.Image;
 import jjil.core.PipelineStage;
 import jjil.core.RgbImage;
-import jjil.core.Sequence;
 /**
- * Shrinks a color (RgbImage) to a given size. Each band is shrunk independently.
+ * Shrinks a color (RgbImage) to a given size. Each band is shrunk independently,
+ * by a Resampler which does all three bands in one pass.
  * The pixels that each pixel maps to are averaged. There is no between-target-pixel
  * smoothing. The output image must be smaller than or equal to the size of the 
  * input.
@@ -43,7 +42,7 @@ import jjil.core.Sequence;
 public class RgbShrink extends PipelineStage {
     private int cHeight;
     private int cWidth;
-    private Sequence seqR, seqG, seqB;
+    private Resampler resampler = null; // resamples to the target size
     /** Creates a new instance of RgbShrink. 
      *
      * @param cWidth new image width
@@ -54,7 +53,6 @@ public class RgbShrink extends PipelineStage {
         throws jjil.core.Error {
         setWidth(cWidth);
         setHeight(cHeight);
-        setupPipeline();
     }
          
     /** Gets current target height 
@@ -96,18 +94,17 @@ public class RgbShrink extends PipelineStage {
                 			this.toString(),
                 			null);
         }
-        /* shrink R band */
-        this.seqR.push(image);
-        /* shrink G band */
-        this.seqG.push(image);
-        /* shrink B band */
-        this.seqB.push(image);
-        /* recombine bands */
-        Gray3Bands2Rgb g3rgb = new Gray3Bands2Rgb();
-        super.setOutput(g3rgb.push(
-                (Gray8Image)this.seqR.getFront(), 
-                (Gray8Image)this.seqG.getFront(), 
-                (Gray8Image)this.seqB.getFront()));
+        RgbImage input = (RgbImage) image;
+        if (this.resampler == null || !this.resampler.isSize(
+                input.getWidth(), input.getHeight(), this.cWidth, this.cHeight)) {
+            this.resampler = new Resampler(
+                    input.getWidth(), input.getHeight(), this.cWidth, this.cHeight);
+        }
+        RgbImage result = newRgbImage(this.cWidth, this.cHeight);
+        this.resampler.resample(
+                input.getData(), 0, input.getWidth(),
+                result.getData(), 0, this.cWidth);
+        super.setOutput(result);
     }
         
     /** Changes target height
@@ -127,22 +124,6 @@ public class RgbShrink extends PipelineStage {
         this.cHeight = cHeight;
     }
     
-    private void setupPipeline() throws jjil.core.Error
-    {
-        RgbSelectGray sel = new RgbSelectGray(RgbSelectGray.RED);
-        this.seqR = new Sequence(sel);
-        Gray8Shrink gs = new Gray8Shrink(cWidth, cHeight);
-        this.seqR.add(gs);
-        sel = new RgbSelectGray(RgbSelectGray.GREEN);
-        this.seqG = new Sequence(sel);
-        gs = new Gray8Shrink(cWidth, cHeight);
-        this.seqG.add(gs);
-        sel = new RgbSelectGray(RgbSelectGray.BLUE);
-        this.seqB = new Sequence(sel);
-        gs = new Gray8Shrink(cWidth, cHeight);
-        this.seqB.add(gs);
-    }
-    
     /** Changes target width
      * 
      * @param cWidth the new target width.
@@ -28,21 +28,20 @@
 
 package jjil.algorithm;
 import jjil.core.Error;
-import jjil.core.Gray8Image;
 import jjil.core.Image;
 import jjil.core.PipelineStage;
 import jjil.core.RgbImage;
-import jjil.core.Sequence;
 /**
- * Stretches a color (RgbImage) to a given size. Each band is shrunk independently.
- * The output image must be greater than or equal to the size of the 
- * input.
+ * Stretches a color (RgbImage) to a given size. Each band is stretched
+ * independently, with bilinear interpolation, by a Resampler which does all
+ * three bands in one pass. The output image must be greater than or equal to
+ * the size of the input.
  * @author webb
  */
 public class RgbStretch extends PipelineStage {
     private int cHeight;
     private int cWidth;
-    private Sequence seqR, seqG, seqB;
+    private Resampler resampler = null; // resamples to the target size
     /** Creates a new instance of RgbStretch. 
      *
      * @param cWidth new image width
@@ -51,9 +50,8 @@ public class RgbStretch extends PipelineStage {
      */
     public RgbStretch(int cWidth, int cHeight) 
         throws jjil.core.Error {
-        this.cWidth = cWidth;
-        this.cHeight = cHeight;
-        setupPipeline();
+        setWidth(cWidth);
+        setHeight(cHeight);
     }
          
     /** Gets current target height 
@@ -95,18 +93,17 @@ public class RgbStretch extends PipelineStage {
             			this.toString(),
             			null);
         }
-        /* stretch R band */
-        this.seqR.push(image);
-        /* shrink G band */
-        this.seqG.push(image);
-        /* stretch B band */
-        this.seqB.push(image);
-        /* recombine bands */
-        Gray3Bands2Rgb g3rgb = new Gray3Bands2Rgb();
-        super.setOutput(g3rgb.push(
-                (Gray8Image)this.seqR.getFront(), 
-                (Gray8Image)this.seqG.getFront(), 
-                (Gray8Image)this.seqB.getFront()));
+        RgbImage input = (RgbImage) image;
+        if (this.resampler == null || !this.resampler.isSize(
+                input.getWidth(), input.getHeight(), this.cWidth, this.cHeight)) {
+            this.resampler = new Resampler(
+                    input.getWidth(), input.getHeight(), this.cWidth, this.cHeight);
+        }
+        RgbImage result = newRgbImage(this.cWidth, this.cHeight);
+        this.resampler.resample(
+                input.getData(), 0, input.getWidth(),
+                result.getData(), 0, this.cWidth);
+        super.setOutput(result);
     }
         
     /** Changes target height
@@ -124,23 +121,6 @@ public class RgbStretch extends PipelineStage {
                 			null);
         }
         this.cHeight = cHeight;
-        setupPipeline();
-    }
-    
-    private void setupPipeline() throws jjil.core.Error
-    {
-        RgbSelectGray sel = new RgbSelectGray(RgbSelectGray.RED);
-        this.seqR = new Sequence(sel);
-        Gray8RectStretch gs = new Gray8RectStretch(cWidth, cHeight);
-        this.seqR.add(gs);
-        sel = new RgbSelectGray(RgbSelectGray.GREEN);
-        this.seqG = new Sequence(sel);
-        gs = new Gray8RectStretch(cWidth, cHeight);
-        this.seqG.add(gs);
-        sel = new RgbSelectGray(RgbSelectGray.BLUE);
-        this.seqB = new Sequence(sel);
-        gs = new Gray8RectStretch(cWidth, cHeight);
-        this.seqB.add(gs);
     }
     
     /** Changes target width
@@ -158,7 +138,6 @@ public class RgbStretch extends PipelineStage {
                 			null);
         }
         this.cWidth = cWidth;
-        setupPipeline();
     }
     
     
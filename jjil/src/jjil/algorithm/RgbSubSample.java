@@ -154,4 +154,28 @@ public class RgbSubSample extends PipelineStage {
         return super.toString() + " (" + this.cTargetWidth + "," +  //$NON-NLS-1$ //$NON-NLS-2$
                 this.cTargetHeight + ")"; //$NON-NLS-1$
     }
+    
+    /**
+     * Returns the type of image this stage accepts.
+     * @return RgbImage.class
+     */
+    public Class getInputType() {
+        return RgbImage.class;
+    }
+    
+    /**
+     * Returns the type of image this stage produces.
+     * @return RgbImage.class
+     */
+    public Class getOutputType() {
+        return RgbImage.class;
+    }
+    
+    /**
+     * Returns true, since the input image is not changed.
+     * @return true.
+     */
+    public boolean isInputReadOnly() {
+        return true;
+    }
 }
@@ -37,6 +37,7 @@ import jjil.core.Sequence;
 public class RgbVertGaussSmooth extends PipelineStage {
    private Sequence seqR, seqG, seqB;
    int nSigma;
+   boolean bIteratedBox = false;
     
     /** Smooth an image vertically using a Gaussian blur.
      * @param nSigma the sigma value of window to smooth over
@@ -46,6 +47,20 @@ public class RgbVertGaussSmooth extends PipelineStage {
         setWidth(nSigma);
     }
     
+    /**
+     * Creates a new instance of RgbVertGaussSmooth, choosing how the
+     * Gaussian is
+     * computed.
+     * @param nSigma the sigma value of window to blur over
+     * @param bIteratedBox true to approximate the Gaussian with iterated box
+     * filters (see Gray8GaussSmoothVert.setIteratedBox).
+     * @throws jjil.core.Error if sigma out of range
+     */
+    public RgbVertGaussSmooth(int nSigma, boolean bIteratedBox) throws jjil.core.Error {
+        this.bIteratedBox = bIteratedBox;
+        setWidth(nSigma);
+    }
+    
     
     /**
      * Smooth an RgbImage vertically using a Gaussian blur operator
@@ -77,11 +92,29 @@ public class RgbVertGaussSmooth extends PipelineStage {
     public void setWidth(int nSigma) throws jjil.core.Error {
         this.nSigma = nSigma;
         this.seqR = new Sequence(new RgbSelectGray(RgbSelectGray.RED));
-        this.seqR.add(new Gray8GaussSmoothVert(nSigma));
+        this.seqR.add(new Gray8GaussSmoothVert(nSigma, this.bIteratedBox));
         this.seqG = new Sequence(new RgbSelectGray(RgbSelectGray.GREEN));
-        this.seqG.add(new Gray8GaussSmoothVert(nSigma));
+        this.seqG.add(new Gray8GaussSmoothVert(nSigma, this.bIteratedBox));
         this.seqB = new Sequence(new RgbSelectGray(RgbSelectGray.BLUE));
-        this.seqB.add(new Gray8GaussSmoothVert(nSigma));
+        this.seqB.add(new Gray8GaussSmoothVert(nSigma, this.bIteratedBox));
+    }
+    
+    /**
+     * Chooses between convolving with a table of coefficients and the
+     * iterated box approximation of the Gaussian, whose cost doesn't depend
+     * on sigma (see Gray8GaussSmoothVert.setIteratedBox).
+     * @param bIteratedBox true to use iterated box mode. Default is false.
+     * @throws jjil.core.Error if sigma is too large for the mode chosen.
+     */
+    public void setIteratedBox(boolean bIteratedBox) throws jjil.core.Error {
+        boolean bOld = this.bIteratedBox;
+        this.bIteratedBox = bIteratedBox;
+        try {
+            setWidth(this.nSigma);
+        } catch (jjil.core.Error er) {
+            this.bIteratedBox = bOld;
+            throw er;
+        }
     }
     
     /**
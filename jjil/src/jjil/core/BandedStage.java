@@ -0,0 +1,67 @@
+/*
+ * BandedStage.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jjil.core;
+
+/**
+ * BandedStage is implemented by pipeline stages whose output can be computed
+ * a band of rows at a time. The output image has the same height as the
+ * input, and each output row depends only on the input rows within getHalo()
+ * rows of it, so bands can be computed independently, in any order, on any
+ * thread, and the result is the same as computing the whole image at once.<p>
+ * A stage implementing BandedStage computes its output by calling startBands,
+ * then pushBand once for all the rows, so the serial and banded results are
+ * computed by the same code. An engine that runs the bands in parallel calls
+ * startBands once, then pushBand for each band, with every band writing into
+ * the same output image, so nothing has to be copied or stitched together.
+ * @author webb
+ */
+public interface BandedStage {
+    /**
+     * Returns the number of input rows above and below an output row that
+     * it depends on. A pointwise or purely horizontal operation has a halo
+     * of 0.
+     * @return the vertical halo, in rows.
+     */
+    int getHalo();
+
+    /**
+     * Compute rows nRowFirst to nRowLimit - 1 of the output. This only reads
+     * the input and writes those rows of the output, so it can be called
+     * concurrently for bands that don't overlap.
+     * @param imageInput the input image, as passed to startBands.
+     * @param imageOutput the output image returned by startBands.
+     * @param nRowFirst the first row to compute.
+     * @param nRowLimit one past the last row to compute.
+     * @throws jjil.core.Error if the band cannot be computed.
+     */
+    void pushBand(Image imageInput, Image imageOutput, int nRowFirst, int nRowLimit)
+        throws jjil.core.Error;
+
+    /**
+     * Check the input image and get the output image for it. The output has
+     * the same height as the input. A stage with a halo of 0 may return the
+     * input image itself, computing its output in place.
+     * @param imageInput the input image.
+     * @return the output image, whose contents are undefined until every row
+     * has been computed by pushBand.
+     * @throws jjil.core.Error if the input is not of the expected type.
+     */
+    Image startBands(Image imageInput) throws jjil.core.Error;
+}
@@ -0,0 +1,392 @@
+/*
+ * CompiledSequence.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jjil.core;
+
+import java.util.Vector;
+
+/**
+ * CompiledSequence runs a fixed list of pipeline stages, held in an array,
+ * with a loop. It does the same thing as a Sequence built from the same
+ * stages, but a Sequence is a recursive list, so that each push, isEmpty, and
+ * getFront goes down the list one level at a time; a CompiledSequence does the
+ * work once when it is built. The stages are checked then: the output type of
+ * each stage (see PipelineStage.getOutputType) must be accepted by the next
+ * stage, when both types are known.<p>
+ * Stages which produce several outputs for one input (see
+ * PipelineStage.isMultiOutput), such as Gray8SubImageGenerator, can appear
+ * anywhere in the list. Each of their outputs is passed through the rest of
+ * the pipeline, and the outputs of the last stage are read with getFront until
+ * isEmpty returns true. The pipeline computes one output at a time, when it
+ * is asked for, so a stage which reuses the same output object (such as
+ * Gray8SubImageGenerator making views) works as it does at the end of a
+ * Sequence. Other stages pass on one output per push, as in a Sequence.<p>
+ * Each stage can be measured or observed with a StageMonitor (the default
+ * monitor when the CompiledSequence is built, see
+ * PipelineStage.setDefaultMonitor, or one set with setMonitor), and
+ * intermediate images can be reused from one push
+ * to the next with setReuseBuffers, as in Sequence.
+ * @author webb
+ */
+public class CompiledSequence extends PipelineStage {
+    private final PipelineStage[] rpStage; // the stages, in order
+    private final boolean[] rbMulti;    // true for multiple-output stages
+    private final Image[] rImageIn;     // input to each stage in this push
+    private final Image[] rImageLast;   // output of each stage, for reuse
+    private boolean bReuse = false;     // reuse intermediate images
+    private StageMonitor monitor = PipelineStage.getDefaultMonitor();
+    private Image imageFront = null;    // image last returned by getFront
+    private Image imageNext = null;     // next output, or null
+    private Image imageDest = null;     // caller's image for the next output
+    private int nResume = -1;           // stage to read the next output from
+    private Error errNext = null;       // error computing the next output
+
+    /**
+     * Creates a new instance of CompiledSequence from an array of stages.
+     * Stages which are Sequences are expanded into their stages.
+     * @param rpStage the stages, in the order they are applied.
+     * @throws jjil.core.Error if there are no stages or the output type of a
+     * stage is not accepted by the next stage.
+     */
+    public CompiledSequence(PipelineStage[] rpStage) throws jjil.core.Error {
+        this(toVector(rpStage));
+    }
+
+    /**
+     * Creates a new instance of CompiledSequence which runs the stages of a
+     * Sequence.
+     * @param seq the Sequence.
+     * @throws jjil.core.Error if the Sequence is empty or the output type of
+     * a stage is not accepted by the next stage.
+     */
+    public CompiledSequence(Sequence seq) throws jjil.core.Error {
+        this(toVector(seq));
+    }
+
+    private CompiledSequence(Vector v) throws jjil.core.Error {
+        if (v.size() == 0) {
+            throw new Error(
+                            Error.PACKAGE.CORE,
+                            ErrorCodes.PIPELINE_EMPTY_PUSH,
+                            null,
+                            null,
+                            null);
+        }
+        this.rpStage = new PipelineStage[v.size()];
+        v.copyInto(this.rpStage);
+        this.rbMulti = new boolean[this.rpStage.length];
+        for (int i=0; i<this.rpStage.length; i++) {
+            this.rbMulti[i] = this.rpStage[i].isMultiOutput();
+            if (i > 0) {
+                Class clsOut = this.rpStage[i-1].getOutputType();
+                Class clsIn = this.rpStage[i].getInputType();
+                if (clsOut != null && clsIn != null &&
+                        !clsIn.isAssignableFrom(clsOut)) {
+                    throw new Error(
+                                    Error.PACKAGE.CORE,
+                                    ErrorCodes.PIPELINE_TYPE_MISMATCH,
+                                    this.rpStage[i-1].toString(),
+                                    this.rpStage[i].toString(),
+                                    null);
+                }
+            }
+        }
+        this.rImageIn = new Image[this.rpStage.length];
+        this.rImageLast = new Image[this.rpStage.length];
+    }
+
+    private static Vector toVector(PipelineStage[] rpStage) {
+        Vector v = new Vector(rpStage.length);
+        for (int i=0; i<rpStage.length; i++) {
+            if (rpStage[i] instanceof Sequence) {
+                ((Sequence) rpStage[i]).addStagesTo(v);
+            } else {
+                v.addElement(rpStage[i]);
+            }
+        }
+        return v;
+    }
+
+    private static Vector toVector(Sequence seq) {
+        Vector v = new Vector();
+        seq.addStagesTo(v);
+        return v;
+    }
+
+    /**
+     * Returns the next output of the pipeline.
+     * @return the next output of the last stage.
+     * @throws jjil.core.Error if no output is available.
+     */
+    public Image getFront() throws jjil.core.Error
+    {
+        if (this.imageNext == null && this.errNext == null) {
+            advance();
+        }
+        if (this.errNext != null) {
+            Error e = this.errNext;
+            this.errNext = null;
+            throw e;
+        }
+        if (this.imageNext == null) {
+            throw new Error(
+                            Error.PACKAGE.CORE,
+                            ErrorCodes.NO_RESULT_AVAILABLE,
+                            this.toString(),
+                            null,
+                            null);
+        }
+        this.imageFront = this.imageNext;
+        this.imageNext = null;
+        return this.imageFront;
+    }
+
+    /**
+     * Returns the type of image the first stage accepts.
+     * @return the class of the input image, or null if it is not known.
+     */
+    public Class getInputType()
+    {
+        return this.rpStage[0].getInputType();
+    }
+
+    /**
+     * Returns the type of image the last stage produces.
+     * @return the class of the output image, or null if it is not known.
+     */
+    public Class getOutputType()
+    {
+        return this.rpStage[this.rpStage.length-1].getOutputType();
+    }
+
+    /**
+     * Returns a stage of the pipeline.
+     * @param i the stage index, from 0 to getStageCount() - 1.
+     * @return the stage.
+     */
+    public PipelineStage getStage(int i)
+    {
+        return this.rpStage[i];
+    }
+
+    /**
+     * Returns the number of stages in the pipeline.
+     * @return the number of stages.
+     */
+    public int getStageCount()
+    {
+        return this.rpStage.length;
+    }
+
+    /**
+     * Returns true iff the pipeline has no output available.
+     * @return true iff there are no outputs left from the last push.
+     */
+    public boolean isEmpty()
+    {
+        if (this.imageNext == null && this.errNext == null) {
+            try {
+                advance();
+            } catch (Error e) {
+                // report the error from getFront
+                this.errNext = e;
+            }
+        }
+        return this.imageNext == null && this.errNext == null;
+    }
+
+    /**
+     * Returns true iff no stage of the pipeline modifies its input.
+     * @return true iff every stage only reads its input.
+     */
+    public boolean isInputReadOnly()
+    {
+        for (int i=0; i<this.rpStage.length; i++) {
+            if (!this.rpStage[i].isInputReadOnly()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true iff one push can produce more than one output, because
+     * some stage produces more than one output.
+     * @return true iff some stage is a multiple-output stage.
+     */
+    public boolean isMultiOutput()
+    {
+        for (int i=0; i<this.rbMulti.length; i++) {
+            if (this.rbMulti[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Process an image by the pipeline, computing its first output. Any
+     * outputs of the previous push that have not been read are discarded.
+     * @param image the image to be pushed.
+     * @throws jjil.core.Error if a stage throws, or a single-output stage
+     * produces no output.
+     */
+    public void push(Image image) throws jjil.core.Error
+    {
+        push(image, null);
+    }
+
+    /**
+     * Process an image by the pipeline, writing the first output of the last
+     * stage into a caller-supplied image if possible (see
+     * PipelineStage.push(Image, Image)).
+     * @param image the image to be pushed.
+     * @param imageDest the image for the output, or null.
+     * @throws jjil.core.Error if a stage throws, or a single-output stage
+     * produces no output.
+     */
+    public void push(Image image, Image imageDest) throws jjil.core.Error
+    {
+        this.imageNext = null;
+        this.errNext = null;
+        this.imageDest = imageDest;
+        this.nResume = pushStage(0, image);
+        advance();
+    }
+
+    /**
+     * Compute the next output of the last stage, if there is one, by reading
+     * outputs from stage nResume on and passing them down the pipeline.
+     */
+    private void advance() throws jjil.core.Error {
+        int nLast = this.rpStage.length - 1;
+        int k = this.nResume;
+        // stop reading from the stages if something below throws
+        this.nResume = -1;
+        while (k >= 0) {
+            Image imageOut = this.rpStage[k].getFront();
+            if (k == nLast) {
+                this.imageNext = imageOut;
+                this.nResume = backUp(k);
+                return;
+            }
+            if (this.bReuse && imageOut != this.rImageIn[k]) {
+                this.rImageLast[k] = imageOut;
+            } else {
+                this.rImageLast[k] = null;
+            }
+            k = pushStage(k+1, imageOut);
+        }
+    }
+
+    /**
+     * Returns the index of the nearest multiple-output stage, starting at
+     * stage k and working back, which still has outputs, or -1 if there is
+     * none.
+     */
+    private int backUp(int k) {
+        while (k >= 0 && (!this.rbMulti[k] || this.rpStage[k].isEmpty())) {
+            k--;
+        }
+        return k;
+    }
+
+
+    /**
+     * Push an image into stage k, and return the index of the stage whose
+     * output is to be read next.
+     */
+    private int pushStage(int k, Image image)
+        throws jjil.core.Error
+    {
+        PipelineStage p = this.rpStage[k];
+        Image imageStageDest = null;
+        if (k == this.rpStage.length - 1) {
+            // the caller's image is used only for the first output
+            imageStageDest = this.imageDest;
+            this.imageDest = null;
+        } else if (this.bReuse && this.rImageLast[k] != this.imageFront) {
+            imageStageDest = this.rImageLast[k];
+        }
+        this.rImageIn[k] = image;
+        pushStage(p, image, imageStageDest, this.monitor);
+        if (p.isEmpty()) {
+            if (this.rbMulti[k]) {
+                return backUp(k);
+            }
+            throw new Error(
+                            Error.PACKAGE.CORE,
+                            ErrorCodes.NO_RESULT_AVAILABLE,
+                            p.toString(),
+                            null,
+                            null);
+        }
+        return k;
+    }
+
+    /**
+     * Set the monitor called around each stage, including the pipelines of
+     * Ladders in the list.
+     * @param monitor the monitor, or null to stop monitoring.
+     */
+    public void setMonitor(StageMonitor monitor)
+    {
+        this.monitor = monitor;
+        for (int i=0; i<this.rpStage.length; i++) {
+            if (this.rpStage[i] instanceof Ladder) {
+                ((Ladder) this.rpStage[i]).setMonitor(monitor);
+            } else if (this.rpStage[i] instanceof CompiledSequence) {
+                ((CompiledSequence) this.rpStage[i]).setMonitor(monitor);
+            }
+        }
+    }
+
+    /**
+     * Turn reuse of intermediate images on or off. When it is on each stage
+     * except the last is given the image it produced on the previous push as
+     * its destination (see PipelineStage.push(Image, Image)), unless that
+     * image is its own input or an output the caller may still be using. The
+     * default is off.
+     * @param bReuse true to reuse intermediate images.
+     */
+    public void setReuseBuffers(boolean bReuse)
+    {
+        this.bReuse = bReuse;
+        for (int i=0; i<this.rImageLast.length; i++) {
+            this.rImageLast[i] = null;
+        }
+    }
+
+    /** Return a string describing the pipeline, as a list of its stages.
+     *
+     * @return the string describing the pipeline.
+     */
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer("["); //$NON-NLS-1$
+        for (int i=0; i<this.rpStage.length; i++) {
+            if (i > 0) {
+                sb.append(" "); //$NON-NLS-1$
+            }
+            sb.append(this.rpStage[i].toString());
+        }
+        sb.append("]"); //$NON-NLS-1$
+        return sb.toString();
+    }
+}
@@ -51,9 +51,19 @@ public class ErrorCodes {
      */
         public static final int PIPELINE_EMPTY_PUSH = 
         	NO_RESULT_AVAILABLE + 1;					
+    /**
+     * output type of one pipeline stage not accepted by the next
+     */
+        public static final int PIPELINE_TYPE_MISMATCH = 
+        	PIPELINE_EMPTY_PUSH + 1;					
+    /**
+     * pipeline stage cannot process an image a band of rows at a time
+     */
+        public static final int PIPELINE_NOT_BANDED = 
+        	PIPELINE_TYPE_MISMATCH + 1;					
         
     /**
      * Count of error codes.
      */
-        public static final int COUNT = PIPELINE_EMPTY_PUSH + 1;
+        public static final int COUNT = PIPELINE_NOT_BANDED + 1;
 }
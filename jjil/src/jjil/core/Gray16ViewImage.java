@@ -0,0 +1,127 @@
+/*
+ * Gray16ViewImage.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jjil.core;
+
+/**
+ * Gray16ViewImage is a ViewImage of a larger signed 16-bit image: a rectangular window
+ * that shares the larger image's pixels instead of copying them.<p>
+ * Gray16ViewImage is not a Gray16Image, since the data of a Gray16Image is always
+ * a dense array of width &times; height pixels, and stages which expect that
+ * would give wrong results on a view. Stages which accept views say so; for
+ * other stages, toGray16Image makes a copy.
+ * @author webb
+ */
+public class Gray16ViewImage extends ViewImage {
+    private final short[] rsData;   // pixels of the larger image
+
+    /**
+     * Creates a new instance of Gray16ViewImage, viewing a window in a Gray16Image.
+     * @param image the image to view.
+     * @param cX horizontal position of the top-left corner of the window.
+     * @param cY vertical position of the top-left corner of the window.
+     * @param cWidth window width.
+     * @param cHeight window height.
+     * @throws jjil.core.Error if the window extends outside the image.
+     */
+    public Gray16ViewImage(Gray16Image image, int cX, int cY, int cWidth, int cHeight)
+        throws jjil.core.Error {
+        this(image.getData(), 0, image.getWidth(), image.getWidth(),
+                image.getHeight(), cX, cY, cWidth, cHeight);
+    }
+
+    /**
+     * Creates a new instance of Gray16ViewImage, viewing a window in another
+     * view. The new view shares the pixels of the image the other view is in.
+     * @param image the view to view.
+     * @param cX horizontal position of the top-left corner of the window,
+     * in the other view.
+     * @param cY vertical position of the top-left corner of the window.
+     * @param cWidth window width.
+     * @param cHeight window height.
+     * @throws jjil.core.Error if the window extends outside the other view.
+     */
+    public Gray16ViewImage(Gray16ViewImage image, int cX, int cY, int cWidth, int cHeight)
+        throws jjil.core.Error {
+        this(image.getData(), image.getOffset(), image.getStride(),
+                image.getWidth(), image.getHeight(), cX, cY, cWidth, cHeight);
+    }
+
+    /**
+     * Creates a new instance of Gray16ViewImage from an array of pixels.
+     * @param rsData the pixels of the larger image.
+     * @param nBase the offset of pixel (0,0) of the larger image in rsData.
+     * @param nStride the row stride of the larger image in rsData.
+     * @param nParentWidth the width of the larger image.
+     * @param nParentHeight the height of the larger image.
+     * @param cX horizontal position of the top-left corner of the window.
+     * @param cY vertical position of the top-left corner of the window.
+     * @param cWidth window width.
+     * @param cHeight window height.
+     * @throws jjil.core.Error if the window extends outside the larger image.
+     */
+    public Gray16ViewImage(
+            short[] rsData,
+            int nBase,
+            int nStride,
+            int nParentWidth,
+            int nParentHeight,
+            int cX,
+            int cY,
+            int cWidth,
+            int cHeight) throws jjil.core.Error {
+        super(nBase, nStride, nParentWidth, nParentHeight, cX, cY, cWidth, cHeight);
+        this.rsData = rsData;
+    }
+
+    /**
+     * Copy this image. The copy has its own pixels, so changing it doesn't
+     * change this view or the larger image.
+     * @return the image copy, a Gray16ViewImage viewing all of a new image.
+     */
+    public Object clone()
+    {
+        try {
+            return new Gray16ViewImage(toGray16Image(), 0, 0, getWidth(), getHeight());
+        } catch (Error e) {
+            // can't happen, the window is the whole image
+            return null;
+        }
+    }
+
+    /** Return the pixels of the larger image.
+     *
+     * @return the data pointer. This is not a copy.
+     */
+    public short[] getData()
+    {
+        return this.rsData;
+    }
+
+    /**
+     * Copy the pixels of the view into a new Gray16Image, for stages which
+     * don't accept views.
+     * @return a new Gray16Image with the same size and pixels as the view.
+     */
+    public Gray16Image toGray16Image() {
+        Gray16Image image = new Gray16Image(getWidth(), getHeight());
+        copyRows(this.rsData, image.getData());
+        return image;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * ImagePool.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jjil.core;
+
+import java.util.Vector;
+
+/**
+ * ImagePool keeps images that are no longer in use so they can be reused
+ * instead of allocating new ones. When a pipeline processes video, each stage
+ * creates output images of the same size for every frame; if the images are
+ * released back to a pool when they have been used, the next frame's images
+ * come from the pool and a steady-state pipeline allocates nothing.<p>
+ * Gray8Image, Gray16Image, Gray32Image, and RgbImage are pooled, each in its own
+ * list, and an image is reused only for a request of exactly the same size.
+ * Images from the pool are not cleared; they hold whatever was in them when
+ * they were released, so they should only be used where every pixel is
+ * assigned.<p>
+ * Only images that are no longer referenced anywhere else should be released.
+ * In particular, an image that is still the input or output of some stage, or
+ * that is shared by a view (such as Gray8ViewImage), must not be released.
+ * ImagePool is not synchronized; a pool should be used by one thread.
+ * @author webb
+ */
+public class ImagePool {
+    private Vector vGray8 = new Vector();   // free Gray8Images
+    private Vector vGray16 = new Vector();  // free Gray16Images
+    private Vector vGray32 = new Vector();  // free Gray32Images
+    private Vector vRgb = new Vector();     // free RgbImages
+    private int nMaxFree = 16;              // maximum free images of each type
+
+    /**
+     * Creates a new, empty, instance of ImagePool.
+     */
+    public ImagePool() {
+    }
+
+    /**
+     * Discard all the free images in the pool.
+     */
+    public void clear() {
+        this.vGray8.removeAllElements();
+        this.vGray16.removeAllElements();
+        this.vGray32.removeAllElements();
+        this.vRgb.removeAllElements();
+    }
+
+    /**
+     * Returns the number of free images in the pool, of all types.
+     * @return the number of free images.
+     */
+    public int getFreeCount() {
+        return this.vGray8.size() + this.vGray16.size() +
+                this.vGray32.size() + this.vRgb.size();
+    }
+
+    /**
+     * Get a Gray8Image of a given size, from the pool if possible.
+     * @param cWidth the image width.
+     * @param cHeight the image height.
+     * @return a Gray8Image of the given size, whose contents are undefined.
+     */
+    public Gray8Image getGray8Image(int cWidth, int cHeight) {
+        Image image = find(this.vGray8, cWidth, cHeight);
+        if (image != null) {
+            return (Gray8Image) image;
+        }
+        return new Gray8Image(cWidth, cHeight);
+    }
+
+    /**
+     * Get a Gray16Image of a given size, from the pool if possible.
+     * @param cWidth the image width.
+     * @param cHeight the image height.
+     * @return a Gray16Image of the given size, whose contents are undefined.
+     */
+    public Gray16Image getGray16Image(int cWidth, int cHeight) {
+        Image image = find(this.vGray16, cWidth, cHeight);
+        if (image != null) {
+            return (Gray16Image) image;
+        }
+        return new Gray16Image(cWidth, cHeight);
+    }
+
+    /**
+     * Get a Gray32Image of a given size, from the pool if possible.
+     * @param cWidth the image width.
+     * @param cHeight the image height.
+     * @return a Gray32Image of the given size, whose contents are undefined.
+     */
+    public Gray32Image getGray32Image(int cWidth, int cHeight) {
+        Image image = find(this.vGray32, cWidth, cHeight);
+        if (image != null) {
+            return (Gray32Image) image;
+        }
+        return new Gray32Image(cWidth, cHeight);
+    }
+
+    /**
+     * Get an RgbImage of a given size, from the pool if possible.
+     * @param cWidth the image width.
+     * @param cHeight the image height.
+     * @return an RgbImage of the given size, whose contents are undefined.
+     */
+    public RgbImage getRgbImage(int cWidth, int cHeight) {
+        Image image = find(this.vRgb, cWidth, cHeight);
+        if (image != null) {
+            return (RgbImage) image;
+        }
+        return new RgbImage(cWidth, cHeight);
+    }
+
+    /**
+     * Return an image to the pool. Images of types that aren't pooled are
+     * ignored, as are images beyond the maximum number of free images of
+     * their type. The caller must not use the image after releasing it.
+     * @param image the image to release. May be null.
+     */
+    public void release(Image image) {
+        Vector v;
+        if (image instanceof Gray8Image) {
+            v = this.vGray8;
+        } else if (image instanceof Gray16Image) {
+            v = this.vGray16;
+        } else if (image instanceof Gray32Image) {
+            v = this.vGray32;
+        } else if (image instanceof RgbImage) {
+            v = this.vRgb;
+        } else {
+            return;
+        }
+        if (v.size() < this.nMaxFree && !v.contains(image)) {
+            v.addElement(image);
+        }
+    }
+
+    /**
+     * Set the maximum number of free images of each type kept in the pool.
+     * This bounds the memory held by the pool when images of many different
+     * sizes are released. The default is 16.
+     * @param nMaxFree the maximum number of free images of each type.
+     * @throws jjil.core.Error if nMaxFree is negative.
+     */
+    public void setMaxFree(int nMaxFree) throws jjil.core.Error {
+        if (nMaxFree < 0) {
+            throw new Error(
+                            Error.PACKAGE.CORE,
+                            ErrorCodes.ILLEGAL_PARAMETER_VALUE,
+                            new Integer(nMaxFree).toString(),
+                            "0", //$NON-NLS-1$
+                            null);
+        }
+        this.nMaxFree = nMaxFree;
+        trim(this.vGray8);
+        trim(this.vGray16);
+        trim(this.vGray32);
+        trim(this.vRgb);
+    }
+
+    /**
+     * Remove an image of a given size from a free list.
+     * @param v the free list.
+     * @param cWidth the image width.
+     * @param cHeight the image height.
+     * @return the image, or null if there is no free image of that size.
+     */
+    private Image find(Vector v, int cWidth, int cHeight) {
+        // search from the end, so the most recently released image is used
+        // and removing it is cheap
+        for (int i=v.size()-1; i>=0; i--) {
+            Image image = (Image) v.elementAt(i);
+            if (image.getWidth() == cWidth && image.getHeight() == cHeight) {
+                v.removeElementAt(i);
+                return image;
+            }
+        }
+        return null;
+    }
+
+    private void trim(Vector v) {
+        while (v.size() > this.nMaxFree) {
+            v.removeElementAt(0);
+        }
+    }
+}
@@ -25,7 +25,14 @@
 package jjil.core;
 
 /** Ladder manages two pipelines. An image is passed to both. The output
- * of each pipeline is passed to a merge function.
+ * of each pipeline is passed to a merge function.<p>
+ * A pipeline which may modify its input is given its own copy of the input
+ * image, so the two pipelines don't interfere. When both pipelines only read
+ * their input (see PipelineStage.isInputReadOnly) they share it and no copy
+ * is made.<p>
+ * A Ladder built while a default StageMonitor is set (see
+ * PipelineStage.setDefaultMonitor) calls it around its two pipelines, or
+ * around their stages when they are Sequences.
  *
  * @author webb
  */
@@ -58,6 +65,10 @@ public class Ladder extends PipelineStage {
      * Join class, which combines the two output images into one.
      */
     protected final Join join;
+    /**
+     * Monitor called around the pipelines, or null.
+     */
+    private StageMonitor monitor = PipelineStage.getDefaultMonitor();
     
     /**
      * Creates a new instance of Ladder
@@ -74,6 +85,39 @@ public class Ladder extends PipelineStage {
         this.join = join;
     }
     
+    /**
+     * Push an image into one of the pipelines, calling the monitor around
+     * it. Derived classes that run the pipelines themselves use this
+     * instead of calling push on them.
+     * @param pipe the pipeline.
+     * @param image the input image.
+     * @throws jjil.core.Error if the pipeline throws it.
+     */
+    protected void pushPipe(PipelineStage pipe, Image image)
+        throws jjil.core.Error
+    {
+        pushStage(pipe, image, null, this.monitor);
+    }
+    
+    /**
+     * Returns true iff the first pipeline must be given a copy of the input
+     * image. This is so when it may modify its input and the second pipeline
+     * doesn't; otherwise the first pipeline gets the input image itself.
+     * @return true iff the first pipeline needs a copy of the input.
+     */
+    protected boolean isFirstCopied() {
+        return !pipeFirst.isInputReadOnly() && pipeSecond.isInputReadOnly();
+    }
+    
+    /**
+     * Returns true iff the second pipeline must be given a copy of the input
+     * image, because it may modify its input.
+     * @return true iff the second pipeline needs a copy of the input.
+     */
+    protected boolean isSecondCopied() {
+        return !pipeSecond.isInputReadOnly();
+    }
+    
     /**
      * Pass the input image to both pipeines, then combine the two outputs into one
      * using the join operation
@@ -82,9 +126,16 @@ public class Ladder extends PipelineStage {
      * after being supplied with the input.
      */
     public void push(Image image) throws jjil.core.Error {
-        Image imageCopy = (Image) image.clone();
-        pipeFirst.push(image);
-        pipeSecond.push(imageCopy);
+        Image imageFirst = image;
+        Image imageSecond = image;
+        if (isFirstCopied()) {
+            imageFirst = (Image) image.clone();
+        }
+        if (isSecondCopied()) {
+            imageSecond = (Image) image.clone();
+        }
+        pushPipe(pipeFirst, imageFirst);
+        pushPipe(pipeSecond, imageSecond);
         if (pipeFirst.isEmpty()) {
             throw new Error(
                             Error.PACKAGE.CORE,
@@ -105,4 +156,28 @@ public class Ladder extends PipelineStage {
                 join.doJoin(pipeFirst.getFront(), pipeSecond.getFront())
                 );
     }
+    
+    /**
+     * Set the monitor called around the two pipelines, or their stages.
+     * @param monitor the monitor, or null to stop monitoring.
+     */
+    public void setMonitor(StageMonitor monitor) {
+        this.monitor = monitor;
+        setMonitor(pipeFirst, monitor);
+        setMonitor(pipeSecond, monitor);
+    }
+    
+    /**
+     * Set the monitor of a pipeline, if it is a Sequence, Ladder, or
+     * CompiledSequence.
+     */
+    private static void setMonitor(PipelineStage pipe, StageMonitor monitor) {
+        if (pipe instanceof Sequence) {
+            ((Sequence) pipe).setMonitor(monitor);
+        } else if (pipe instanceof Ladder) {
+            ((Ladder) pipe).setMonitor(monitor);
+        } else if (pipe instanceof CompiledSequence) {
+            ((CompiledSequence) pipe).setMonitor(monitor);
+        }
+    }
 }
@@ -29,7 +29,24 @@ package jjil.core;
  * processing operations must derive. It holds the output image
  * (in imageOutput) and notes whether there is an image available
  * or not (in fReady). It is intended to be used as a single-level
- * stack element.
+ * stack element.<p>
+ * A stage can be given an ImagePool (see setImagePool). Stages which support
+ * it then take their output images from the pool, and the caller returns each
+ * output to the pool with release once it is finished with it, so that
+ * processing a stream of images of the same size allocates nothing after the
+ * first. Stages without a pool allocate a new output image each time, as
+ * before.<p>
+ * The caller can also supply the output image itself, with
+ * push(Image, Image). Stages which take their outputs from newGray8Image
+ * and the like write into the supplied image when it has the right type and
+ * size, so a caller can reuse one output image from frame to frame. Stages
+ * which modify their input (such as Gray8Threshold) write into the supplied
+ * image instead, leaving the input unchanged; pushing an image as its own
+ * destination is the same as push(Image).<p>
+ * The stages of a pipeline can be measured by a StageMonitor, which a
+ * Sequence, CompiledSequence, or Ladder calls around each stage it pushes.
+ * Pipelines built while a default monitor is set (see setDefaultMonitor)
+ * use it. When there is no monitor the only cost is a test for null.
  *
  *
  * @author webb
@@ -42,6 +59,15 @@ public abstract class PipelineStage
     /** The output image from this stage.
      */
     protected Image imageOutput = null;
+    /** Pool output images are taken from, or null.
+     */
+    private ImagePool pool = null;
+    /** Output image supplied to push(Image, Image), or null.
+     */
+    private Image imageDest = null;
+    /** Monitor given to pipelines when they are built, or null.
+     */
+    private static StageMonitor monitorDefault = null;
    
     /** Class constructor
      */
@@ -49,6 +75,45 @@ public abstract class PipelineStage
     {
     }
     
+    /**
+     * Returns the monitor given to pipelines when they are built.
+     * @return the default monitor, or null if none has been set.
+     */
+    public static StageMonitor getDefaultMonitor()
+    {
+        return PipelineStage.monitorDefault;
+    }
+    
+    /**
+     * Returns the pool output images are taken from.
+     * @return the image pool, or null if none has been set.
+     */
+    public ImagePool getImagePool()
+    {
+        return this.pool;
+    }
+    
+    /**
+     * Returns the type of image this stage accepts, so that a pipeline can
+     * be checked when it is built (see CompiledSequence). Stages which accept
+     * more than one type, or which don't say, return null.
+     * @return the class of the input image, or null.
+     */
+    public Class getInputType()
+    {
+        return null;
+    }
+    
+    /**
+     * Returns the type of image this stage produces, or null if it is not
+     * known in advance.
+     * @return the class of the output image, or null.
+     */
+    public Class getOutputType()
+    {
+        return null;
+    }
+    
     /** Returns true iff this pipeline stage does not have an
      * output available.
      *
@@ -59,6 +124,29 @@ public abstract class PipelineStage
         return !this.fReady;
     }
     
+    /**
+     * Returns true iff this stage only reads its input image, never changing
+     * it, so the input can be shared with other stages, for example by the
+     * two pipelines of a Ladder, instead of being copied. Stages which modify
+     * their input, or which don't say, return false.
+     * @return true iff push never modifies the input image.
+     */
+    public boolean isInputReadOnly()
+    {
+        return false;
+    }
+    
+    /**
+     * Returns true iff this stage can produce more than one output for each
+     * input, like Gray8SubImageGenerator. Such a stage is read with getFront
+     * until isEmpty returns true. Other stages produce one output per push.
+     * @return true iff the stage produces a sequence of outputs.
+     */
+    public boolean isMultiOutput()
+    {
+        return false;
+    }
+    
     /**
      * Returns the current output, and pops it off the stack.
      * @return the current output
@@ -87,6 +175,211 @@ public abstract class PipelineStage
      */
     public abstract void push(Image imageInput) throws jjil.core.Error;
     
+    /**
+     * Process an image, writing the output into a caller-supplied image if
+     * possible. The destination is used if the stage produces an output of
+     * the same type and size; otherwise the stage allocates its output as
+     * usual, so getFront should always be used to get the result. The
+     * destination must not be the input image unless the stage documents
+     * that it operates in place.<p>
+     * This implementation makes the destination available to newGray8Image,
+     * newGray16Image, newGray32Image, and newRgbImage for the duration of
+     * push(Image). Stages which modify their input override it.
+     * @param imageInput the input image.
+     * @param imageDest the image to write the output into, or null.
+     * @throws jjil.core.Error typically, when the image is not of the expected type.
+     */
+    public void push(Image imageInput, Image imageDest) throws jjil.core.Error
+    {
+        this.imageDest = imageDest;
+        try {
+            push(imageInput);
+        } finally {
+            this.imageDest = null;
+        }
+    }
+    
+    /**
+     * Push an image into a stage on behalf of a pipeline, calling a monitor
+     * around it. Pipelines (Sequence, CompiledSequence, Ladder) aren't
+     * reported themselves, since they report their own stages.
+     * @param p the stage.
+     * @param image the input image.
+     * @param imageDest the destination, or null to call push(Image).
+     * @param monitor the monitor, or null.
+     * @throws jjil.core.Error if the stage throws it.
+     */
+    static void pushStage(
+            PipelineStage p,
+            Image image,
+            Image imageDest,
+            StageMonitor monitor) throws jjil.core.Error
+    {
+        if (monitor == null || p instanceof Sequence || 
+                p instanceof CompiledSequence || p instanceof Ladder) {
+            if (imageDest != null) {
+                p.push(image, imageDest);
+            } else {
+                p.push(image);
+            }
+            return;
+        }
+        Image imageOut = null;
+        monitor.startStage(p, image);
+        try {
+            if (imageDest != null) {
+                p.push(image, imageDest);
+            } else {
+                p.push(image);
+            }
+            if (p.fReady) {
+                imageOut = p.imageOutput;
+            }
+        } finally {
+            monitor.endStage(p, imageOut);
+        }
+    }
+    
+    /**
+     * Returns an image to this stage's pool when the caller is finished with 
+     * it, normally an image returned by getFront. The image must not be used
+     * after it is released. If there is no pool this does nothing, so callers
+     * can always release images whether or not a pool is in use.
+     * @param image the image to release. May be null.
+     */
+    public void release(Image image)
+    {
+        if (this.pool != null) {
+            this.pool.release(image);
+        }
+    }
+    
+    /**
+     * Set the monitor given to Sequences, CompiledSequences, and Ladders
+     * when they are built. Pipelines built before it is set are not
+     * monitored unless their setMonitor is called.
+     * @param monitor the monitor, or null to build pipelines without one,
+     * which is the default.
+     */
+    public static void setDefaultMonitor(StageMonitor monitor)
+    {
+        PipelineStage.monitorDefault = monitor;
+    }
+    
+    /**
+     * Set the pool output images are taken from. Several stages can share
+     * one pool.
+     * @param pool the image pool, or null to allocate a new image for each
+     * output, which is the default.
+     */
+    public void setImagePool(ImagePool pool)
+    {
+        this.pool = pool;
+    }
+    
+    /**
+     * Get a Gray8Image for output. This is the image supplied to
+     * push(Image, Image) if it is a Gray8Image of the right size, otherwise
+     * an image from the pool if there is one. Stages use this instead of
+     * allocating their output.
+     * @param cWidth the image width.
+     * @param cHeight the image height.
+     * @return a Gray8Image of the given size. If it was supplied or comes
+     * from the pool its contents are undefined.
+     */
+    protected Gray8Image newGray8Image(int cWidth, int cHeight)
+    {
+        if (this.imageDest instanceof Gray8Image && 
+                isDestination(cWidth, cHeight)) {
+            return (Gray8Image) takeDestination();
+        }
+        if (this.pool != null) {
+            return this.pool.getGray8Image(cWidth, cHeight);
+        }
+        return new Gray8Image(cWidth, cHeight);
+    }
+    
+    /**
+     * Get a Gray16Image for output, from the supplied destination or the
+     * pool if possible.
+     * @param cWidth the image width.
+     * @param cHeight the image height.
+     * @return a Gray16Image of the given size. If it was supplied or comes
+     * from the pool its contents are undefined.
+     */
+    protected Gray16Image newGray16Image(int cWidth, int cHeight)
+    {
+        if (this.imageDest instanceof Gray16Image && 
+                isDestination(cWidth, cHeight)) {
+            return (Gray16Image) takeDestination();
+        }
+        if (this.pool != null) {
+            return this.pool.getGray16Image(cWidth, cHeight);
+        }
+        return new Gray16Image(cWidth, cHeight);
+    }
+    
+    /**
+     * Get a Gray32Image for output, from the supplied destination or the
+     * pool if possible.
+     * @param cWidth the image width.
+     * @param cHeight the image height.
+     * @return a Gray32Image of the given size. If it was supplied or comes
+     * from the pool its contents are undefined.
+     */
+    protected Gray32Image newGray32Image(int cWidth, int cHeight)
+    {
+        if (this.imageDest instanceof Gray32Image && 
+                isDestination(cWidth, cHeight)) {
+            return (Gray32Image) takeDestination();
+        }
+        if (this.pool != null) {
+            return this.pool.getGray32Image(cWidth, cHeight);
+        }
+        return new Gray32Image(cWidth, cHeight);
+    }
+    
+    /**
+     * Get an RgbImage for output, from the supplied destination or the
+     * pool if possible.
+     * @param cWidth the image width.
+     * @param cHeight the image height.
+     * @return an RgbImage of the given size. If it was supplied or comes
+     * from the pool its contents are undefined.
+     */
+    protected RgbImage newRgbImage(int cWidth, int cHeight)
+    {
+        if (this.imageDest instanceof RgbImage && 
+                isDestination(cWidth, cHeight)) {
+            return (RgbImage) takeDestination();
+        }
+        if (this.pool != null) {
+            return this.pool.getRgbImage(cWidth, cHeight);
+        }
+        return new RgbImage(cWidth, cHeight);
+    }
+    
+    /**
+     * Returns true iff the supplied destination has a given size.
+     */
+    private boolean isDestination(int cWidth, int cHeight)
+    {
+        return this.imageDest.getWidth() == cWidth &&
+                this.imageDest.getHeight() == cHeight;
+    }
+    
+    /**
+     * Returns the supplied destination, which is then used up, so a stage
+     * that allocates several images of the same type and size writes into
+     * it only once.
+     */
+    private Image takeDestination()
+    {
+        Image image = this.imageDest;
+        this.imageDest = null;
+        return image;
+    }
+    
     /** Derived classes use setOutput to pass their result back
      * here.
      *
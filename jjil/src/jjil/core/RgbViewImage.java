@@ -0,0 +1,127 @@
+/*
+ * RgbViewImage.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jjil.core;
+
+/**
+ * RgbViewImage is a ViewImage of a larger RGB image: a rectangular window
+ * that shares the larger image's pixels instead of copying them.<p>
+ * RgbViewImage is not an RgbImage, since the data of an RgbImage is always
+ * a dense array of width &times; height pixels, and stages which expect that
+ * would give wrong results on a view. Stages which accept views say so; for
+ * other stages, toRgbImage makes a copy.
+ * @author webb
+ */
+public class RgbViewImage extends ViewImage {
+    private final int[] rnData;     // pixels of the larger image
+
+    /**
+     * Creates a new instance of RgbViewImage, viewing a window in a RgbImage.
+     * @param image the image to view.
+     * @param cX horizontal position of the top-left corner of the window.
+     * @param cY vertical position of the top-left corner of the window.
+     * @param cWidth window width.
+     * @param cHeight window height.
+     * @throws jjil.core.Error if the window extends outside the image.
+     */
+    public RgbViewImage(RgbImage image, int cX, int cY, int cWidth, int cHeight)
+        throws jjil.core.Error {
+        this(image.getData(), 0, image.getWidth(), image.getWidth(),
+                image.getHeight(), cX, cY, cWidth, cHeight);
+    }
+
+    /**
+     * Creates a new instance of RgbViewImage, viewing a window in another
+     * view. The new view shares the pixels of the image the other view is in.
+     * @param image the view to view.
+     * @param cX horizontal position of the top-left corner of the window,
+     * in the other view.
+     * @param cY vertical position of the top-left corner of the window.
+     * @param cWidth window width.
+     * @param cHeight window height.
+     * @throws jjil.core.Error if the window extends outside the other view.
+     */
+    public RgbViewImage(RgbViewImage image, int cX, int cY, int cWidth, int cHeight)
+        throws jjil.core.Error {
+        this(image.getData(), image.getOffset(), image.getStride(),
+                image.getWidth(), image.getHeight(), cX, cY, cWidth, cHeight);
+    }
+
+    /**
+     * Creates a new instance of RgbViewImage from an array of pixels.
+     * @param rnData the pixels of the larger image.
+     * @param nBase the offset of pixel (0,0) of the larger image in rnData.
+     * @param nStride the row stride of the larger image in rnData.
+     * @param nParentWidth the width of the larger image.
+     * @param nParentHeight the height of the larger image.
+     * @param cX horizontal position of the top-left corner of the window.
+     * @param cY vertical position of the top-left corner of the window.
+     * @param cWidth window width.
+     * @param cHeight window height.
+     * @throws jjil.core.Error if the window extends outside the larger image.
+     */
+    public RgbViewImage(
+            int[] rnData,
+            int nBase,
+            int nStride,
+            int nParentWidth,
+            int nParentHeight,
+            int cX,
+            int cY,
+            int cWidth,
+            int cHeight) throws jjil.core.Error {
+        super(nBase, nStride, nParentWidth, nParentHeight, cX, cY, cWidth, cHeight);
+        this.rnData = rnData;
+    }
+
+    /**
+     * Copy this image. The copy has its own pixels, so changing it doesn't
+     * change this view or the larger image.
+     * @return the image copy, a RgbViewImage viewing all of a new image.
+     */
+    public Object clone()
+    {
+        try {
+            return new RgbViewImage(toRgbImage(), 0, 0, getWidth(), getHeight());
+        } catch (Error e) {
+            // can't happen, the window is the whole image
+            return null;
+        }
+    }
+
+    /** Return the pixels of the larger image.
+     *
+     * @return the data pointer. This is not a copy.
+     */
+    public int[] getData()
+    {
+        return this.rnData;
+    }
+
+    /**
+     * Copy the pixels of the view into a new RgbImage, for stages which
+     * don't accept views.
+     * @return a new RgbImage with the same size and pixels as the view.
+     */
+    public RgbImage toRgbImage() {
+        RgbImage image = new RgbImage(getWidth(), getHeight());
+        copyRows(this.rnData, image.getData());
+        return image;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * RowReader.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jjil.core;
+
+/**
+ * RowReader is the source of a StreamingSequence. It supplies an image a
+ * few rows at a time, from top to bottom, so that an image too large to hold
+ * in memory (such as a high-resolution scan being decoded from a file) can
+ * be processed.
+ * @author webb
+ */
+public interface RowReader {
+    /**
+     * Returns the height of the whole image.
+     * @return the number of rows that will be read.
+     */
+    int getHeight();
+
+    /**
+     * Returns the width of the image.
+     * @return the image width.
+     */
+    int getWidth();
+
+    /**
+     * Read the next rows of the image. The rows are copied out of the
+     * returned image before readRows is called again, so the reader can
+     * return the same image each time.
+     * @param nRows the number of rows to read.
+     * @return an image getWidth() wide and nRows high holding the rows.
+     * @throws jjil.core.Error if the rows cannot be read.
+     */
+    Image readRows(int nRows) throws jjil.core.Error;
+}
@@ -0,0 +1,37 @@
+/*
+ * RowWriter.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jjil.core;
+
+/**
+ * RowWriter is the sink of a StreamingSequence. It receives the output
+ * image a few rows at a time, from top to bottom.
+ * @author webb
+ */
+public interface RowWriter {
+    /**
+     * Write the next rows of the output. The image is reused once
+     * writeRows returns, so the rows must be copied or consumed here.
+     * @param image an image holding the rows.
+     * @param nRowFirst the row of image holding the first row to write.
+     * @param nRows the number of rows to write.
+     * @throws jjil.core.Error if the rows cannot be written.
+     */
+    void writeRows(Image image, int nRowFirst, int nRows) throws jjil.core.Error;
+}
@@ -32,12 +32,28 @@ package jjil.core;
  * and a Sequence object, which can also be null. The PipelineStage
  * is the head of the list of PipelineStage's starting here, and
  * the Sequence object is the rest of the list. The Sequence object
- * can be non-null only if the PipelineStage object is non-null.
+ * can be non-null only if the PipelineStage object is non-null.<p>
+ * When buffer reuse is turned on (see setReuseBuffers) the Sequence
+ * remembers the image each stage produced for the previous push and passes
+ * it to the stage as its destination (see PipelineStage.push(Image, Image)),
+ * so stages that support destinations write each frame into the same
+ * intermediate images instead of allocating new ones. An image is reused
+ * only if it is private to the pipeline: outputs that are the stage's own
+ * input (because the stage works in place) and the image last returned by
+ * getFront are never reused. Stages which keep a reference to their input
+ * from one push to the next should not be used with buffer reuse, since
+ * their previous input may be overwritten.<p>
+ * A Sequence built while a default StageMonitor is set (see
+ * PipelineStage.setDefaultMonitor) calls it around each of its stages.
  * @author webb
  */
 public class Sequence extends PipelineStage {
     private PipelineStage pFirst;
     private Sequence pNext;
+    private boolean bReuse = false;     // reuse intermediate images
+    private Image imageLast = null;     // pFirst's output from the last push
+    private Image imageFront = null;    // image last returned by getFront
+    private StageMonitor monitor = PipelineStage.getDefaultMonitor();
     
     /** Creates a new instance of Sequence with no pipeline. */
     public Sequence() {
@@ -64,12 +80,99 @@ public class Sequence extends PipelineStage {
         } else {
             if (this.pNext == null) {
                 this.pNext = new Sequence(p);
+                this.pNext.bReuse = this.bReuse;
+                this.pNext.monitor = this.monitor;
             } else {
                 this.pNext.add(p);
             }
         } 
     }
     
+    /**
+     * Adds the stages of this Sequence, in order, to a Vector. Nested
+     * Sequences are expanded, so the Vector holds only the stages that do
+     * the work.
+     * @param v the Vector to add the stages to.
+     */
+    void addStagesTo(java.util.Vector v)
+    {
+        if (this.pFirst instanceof Sequence) {
+            ((Sequence) this.pFirst).addStagesTo(v);
+        } else if (this.pFirst != null) {
+            v.addElement(this.pFirst);
+        }
+        if (this.pNext != null) {
+            this.pNext.addStagesTo(v);
+        }
+    }
+    
+    /**
+     * Build a CompiledSequence that runs the same stages as this Sequence,
+     * as a flat array instead of a recursive list. Stages added to this
+     * Sequence afterwards are not part of the CompiledSequence.
+     * @return the compiled pipeline.
+     * @throws jjil.core.Error if the Sequence is empty or the output type of
+     * a stage is not accepted by the next stage.
+     */
+    public CompiledSequence compile() throws jjil.core.Error
+    {
+        return new CompiledSequence(this);
+    }
+    
+    /**
+     * Build a StreamingSequence that runs the same stages as this Sequence
+     * on an image read and written a few rows at a time, so that the whole
+     * image never has to be in memory. Every stage must be a BandedStage.
+     * @return the streaming pipeline.
+     * @throws jjil.core.Error if the Sequence is empty, the output type of
+     * a stage is not accepted by the next stage, or a stage is not a 
+     * BandedStage.
+     */
+    public StreamingSequence stream() throws jjil.core.Error
+    {
+        return new StreamingSequence(compile());
+    }
+    
+    /**
+     * Returns the type of image the first stage accepts.
+     * @return the class of the input image, or null if it is not known.
+     */
+    public Class getInputType()
+    {
+        if (this.pFirst == null) {
+            return null;
+        }
+        return this.pFirst.getInputType();
+    }
+    
+    /**
+     * Returns the type of image the last stage produces.
+     * @return the class of the output image, or null if it is not known.
+     */
+    public Class getOutputType()
+    {
+        if (this.pNext != null) {
+            return this.pNext.getOutputType();
+        }
+        if (this.pFirst == null) {
+            return null;
+        }
+        return this.pFirst.getOutputType();
+    }
+    
+    /**
+     * Returns true iff no stage of the pipeline modifies its input, so the
+     * image pushed into the pipeline is not changed.
+     * @return true iff every stage only reads its input.
+     */
+    public boolean isInputReadOnly()
+    {
+        if (this.pFirst == null || !this.pFirst.isInputReadOnly()) {
+            return false;
+        }
+        return this.pNext == null || this.pNext.isInputReadOnly();
+    }
+    
     /** Returns true iff the pipeline has no image available
      *
      * @return true iff the pipeline has no image available.
@@ -92,10 +195,11 @@ public class Sequence extends PipelineStage {
     public Image getFront() throws jjil.core.Error
     {
         if (pNext == null) {
-            return pFirst.getFront();
+            this.imageFront = pFirst.getFront();
         } else {
-            return pNext.getFront();
+            this.imageFront = pNext.getFront();
         }
+        return this.imageFront;
     }
     
     /**
@@ -108,6 +212,21 @@ public class Sequence extends PipelineStage {
      * @throws jjil.core.Error if the pipeline is empty.
      */
     public void push(Image i) throws jjil.core.Error
+    {
+        push(i, null);
+    }
+    
+    /**
+     * Process an image by the pipeline, writing the output of the last stage
+     * into a caller-supplied image if possible. Intermediate images are
+     * reused as described in setReuseBuffers.
+     * Overrides PipelineStage.push(Image, Image).
+     * @param i the image to be pushed.
+     * @param imageDest the image the last stage should write its output
+     * into, or null.
+     * @throws jjil.core.Error if the pipeline is empty.
+     */
+    public void push(Image i, Image imageDest) throws jjil.core.Error
     {
         if (pFirst == null) {
             throw new Error(
@@ -117,7 +236,13 @@ public class Sequence extends PipelineStage {
                             null,
                             null);
         }
-        pFirst.push(i);
+        if (pNext == null) {
+            pushStage(pFirst, i, imageDest, this.monitor);
+        } else if (this.bReuse && this.imageLast != this.imageFront) {
+            pushStage(pFirst, i, this.imageLast, this.monitor);
+        } else {
+            pushStage(pFirst, i, null, this.monitor);
+        }
         if (pFirst.isEmpty()) {
             throw new Error(
                             Error.PACKAGE.CORE,
@@ -127,7 +252,50 @@ public class Sequence extends PipelineStage {
                             null);
         }
         if (pNext != null) {
-            pNext.push(pFirst.getFront());
+            Image imageOut = pFirst.getFront();
+            if (this.bReuse && imageOut != i) {
+                this.imageLast = imageOut;
+            } else {
+                this.imageLast = null;
+            }
+            pNext.push(imageOut, imageDest);
+        }
+    }
+    
+    /**
+     * Set the monitor called around each stage of this Sequence, including
+     * the stages of nested Sequences and Ladders.
+     * @param monitor the monitor, or null to stop monitoring.
+     */
+    public void setMonitor(StageMonitor monitor)
+    {
+        this.monitor = monitor;
+        if (this.pFirst instanceof Sequence) {
+            ((Sequence) this.pFirst).setMonitor(monitor);
+        } else if (this.pFirst instanceof Ladder) {
+            ((Ladder) this.pFirst).setMonitor(monitor);
+        } else if (this.pFirst instanceof CompiledSequence) {
+            ((CompiledSequence) this.pFirst).setMonitor(monitor);
+        }
+        if (this.pNext != null) {
+            this.pNext.setMonitor(monitor);
+        }
+    }
+    
+    /**
+     * Turn reuse of intermediate images on or off. When it is on each stage
+     * except the last is given the image it produced on the previous push as
+     * its destination, so after the first push a pipeline of stages that
+     * support destinations allocates only its final output. The default is
+     * off.
+     * @param bReuse true to reuse intermediate images.
+     */
+    public void setReuseBuffers(boolean bReuse)
+    {
+        this.bReuse = bReuse;
+        this.imageLast = null;
+        if (this.pNext != null) {
+            this.pNext.setReuseBuffers(bReuse);
         }
     }
     
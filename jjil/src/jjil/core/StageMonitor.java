@@ -0,0 +1,50 @@
+/*
+ * StageMonitor.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jjil.core;
+
+/**
+ * StageMonitor is called around each stage a Sequence, CompiledSequence, or
+ * Ladder pushes, so that the time, memory, and output of every stage in a
+ * pipeline can be measured without changing the stages. A monitor is set
+ * for all pipelines built afterwards with PipelineStage.setDefaultMonitor,
+ * or for one pipeline with its setMonitor.<p>
+ * Only the stages that do the work are reported: a Sequence, CompiledSequence
+ * or Ladder inside a pipeline reports its own stages instead. Stages in
+ * different pipelines, or in the two pipelines of a ParallelLadder, may be
+ * pushed on different threads at the same time, so a monitor must be
+ * thread-safe. Calls for one thread are always properly nested.
+ * @author webb
+ */
+public interface StageMonitor {
+    /**
+     * Called after a stage has been pushed, even if it threw.
+     * @param stage the stage.
+     * @param imageOutput the stage's output, or null if it has no output or
+     * threw.
+     */
+    void endStage(PipelineStage stage, Image imageOutput);
+
+    /**
+     * Called before a stage is pushed.
+     * @param stage the stage.
+     * @param imageInput the image being pushed into the stage.
+     */
+    void startStage(PipelineStage stage, Image imageInput);
+}
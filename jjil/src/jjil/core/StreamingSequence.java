@@ -0,0 +1,286 @@
+/*
+ * StreamingSequence.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jjil.core;
+
+/**
+ * StreamingSequence runs a pipeline of BandedStages on an image that is read
+ * and written a few rows at a time, so the whole image, and the intermediate
+ * images between the stages, never have to be in memory at once. This is
+ * useful for very large images, such as high-resolution document scans, which
+ * a Sequence would hold in full at every stage.<p>
+ * The rows come from a RowReader, in chunks of getChunkRows() rows, and flow
+ * through the stages to a RowWriter. Each stage holds only the input rows it
+ * still needs: the rows of the current chunk, plus getHalo() rows above and
+ * below the rows it is computing. So the memory used is proportional to the
+ * image width times the chunk size plus the halos, not to the image size.<p>
+ * Each output row is computed by the stage's own pushBand from the same input
+ * rows as when the whole image is pushed, so the output is identical to the
+ * output of a Sequence of the same stages. A StreamingSequence is built by
+ * Sequence.stream(); every stage must implement BandedStage.
+ * @author webb
+ */
+public class StreamingSequence {
+    private final BandedStage[] rStage; // the stages, in order
+    private final int[] rnHalo;         // halo of each stage
+    private final Image[] rImageBuf;    // input rows held by each stage
+    private final int[] rnBufFirst;     // image row of rImageBuf's first row
+    private final int[] rnNextOut;      // next row each stage will compute
+    private final ImagePool pool = new ImagePool(); // buffers for the rows
+    private int cHeight;                // height of the image being streamed
+    private int nChunkRows = 32;        // rows read at a time
+
+    /**
+     * Creates a new instance of StreamingSequence running the stages of a
+     * CompiledSequence.
+     * @param seq the pipeline.
+     * @throws jjil.core.Error if a stage is not a BandedStage.
+     */
+    public StreamingSequence(CompiledSequence seq) throws jjil.core.Error {
+        int nStages = seq.getStageCount();
+        this.rStage = new BandedStage[nStages];
+        this.rnHalo = new int[nStages];
+        for (int i=0; i<nStages; i++) {
+            PipelineStage stage = seq.getStage(i);
+            if (!(stage instanceof BandedStage)) {
+                throw new Error(
+                                Error.PACKAGE.CORE,
+                                ErrorCodes.PIPELINE_NOT_BANDED,
+                                stage.toString(),
+                                null,
+                                null);
+            }
+            this.rStage[i] = (BandedStage) stage;
+            this.rnHalo[i] = this.rStage[i].getHalo();
+        }
+        this.rImageBuf = new Image[nStages];
+        this.rnBufFirst = new int[nStages];
+        this.rnNextOut = new int[nStages];
+    }
+
+    /**
+     * Add input rows to the rows a stage holds, discarding the rows it no
+     * longer needs. The buffer always holds exactly the rows that are
+     * needed, since stages use the image height to find the bottom edge.
+     * @param k the stage.
+     * @param image image holding the new rows.
+     * @param nRowFirst the first new row in image.
+     * @param nRows the number of new rows.
+     * @return the stage's new buffer.
+     * @throws jjil.core.Error if the image type is not supported.
+     */
+    private Image append(int k, Image image, int nRowFirst, int nRows)
+        throws jjil.core.Error
+    {
+        Image imageOld = this.rImageBuf[k];
+        int nKeepFirst = 0;
+        int nKeep = 0;
+        if (imageOld != null) {
+            // rows above the next output row's halo aren't needed any more
+            int nFirst = Math.max(
+                    this.rnBufFirst[k],
+                    this.rnNextOut[k] - this.rnHalo[k]);
+            nKeepFirst = nFirst - this.rnBufFirst[k];
+            nKeep = imageOld.getHeight() - nKeepFirst;
+            this.rnBufFirst[k] = nFirst;
+        }
+        Image imageBuf = newImage(image, nKeep + nRows);
+        if (nKeep > 0) {
+            copyRows(imageOld, nKeepFirst, imageBuf, 0, nKeep);
+        }
+        copyRows(image, nRowFirst, imageBuf, nKeep, nRows);
+        // the stage's output from the old buffer has already been passed
+        // on, so the old buffer can be reused
+        this.pool.release(imageOld);
+        this.rImageBuf[k] = imageBuf;
+        return imageBuf;
+    }
+
+    /**
+     * Copy rows from one image to another of the same type and width.
+     */
+    private static void copyRows(
+            Image imageSrc,
+            int nSrcRow,
+            Image imageDst,
+            int nDstRow,
+            int nRows) {
+        int cWidth = imageSrc.getWidth();
+        Object data, dataDst;
+        if (imageSrc instanceof Gray8Image) {
+            data = ((Gray8Image) imageSrc).getData();
+            dataDst = ((Gray8Image) imageDst).getData();
+        } else if (imageSrc instanceof Gray16Image) {
+            data = ((Gray16Image) imageSrc).getData();
+            dataDst = ((Gray16Image) imageDst).getData();
+        } else if (imageSrc instanceof Gray32Image) {
+            data = ((Gray32Image) imageSrc).getData();
+            dataDst = ((Gray32Image) imageDst).getData();
+        } else {
+            data = ((RgbImage) imageSrc).getData();
+            dataDst = ((RgbImage) imageDst).getData();
+        }
+        System.arraycopy(
+                data,
+                nSrcRow * cWidth,
+                dataDst,
+                nDstRow * cWidth,
+                nRows * cWidth);
+    }
+
+    /**
+     * Pass rows to a stage, computing and passing on as many of its output
+     * rows as possible.
+     * @param k the stage. If this is past the last stage the rows are
+     * written to the RowWriter.
+     * @param image image holding the rows.
+     * @param nRowFirst the first row in image.
+     * @param nRows the number of rows.
+     * @param writer the RowWriter.
+     * @throws jjil.core.Error if a stage or the writer throws it.
+     */
+    private void feed(
+            int k,
+            Image image,
+            int nRowFirst,
+            int nRows,
+            RowWriter writer) throws jjil.core.Error
+    {
+        if (k == this.rStage.length) {
+            writer.writeRows(image, nRowFirst, nRows);
+            return;
+        }
+        Image imageBuf = append(k, image, nRowFirst, nRows);
+        int nBufFirst = this.rnBufFirst[k];
+        int nRowsIn = nBufFirst + imageBuf.getHeight();
+        // an output row can be computed once the rows within the halo below
+        // it have arrived, or all the rows have
+        int nLimit = nRowsIn;
+        if (nRowsIn < this.cHeight) {
+            nLimit -= this.rnHalo[k];
+        }
+        int nNext = this.rnNextOut[k];
+        if (nLimit <= nNext) {
+            return;
+        }
+        Image imageOut = this.rStage[k].startBands(imageBuf);
+        this.rStage[k].pushBand(
+                imageBuf,
+                imageOut,
+                nNext - nBufFirst,
+                nLimit - nBufFirst);
+        this.rnNextOut[k] = nLimit;
+        feed(k+1, imageOut, nNext - nBufFirst, nLimit - nNext, writer);
+    }
+
+    /**
+     * Returns the number of rows read from the RowReader at a time.
+     * @return the chunk size, in rows.
+     */
+    public int getChunkRows() {
+        return this.nChunkRows;
+    }
+
+    /**
+     * Get an image of the same type and width as another image, from the
+     * pool.
+     * @param image the image to match.
+     * @param nRows the height of the new image.
+     * @return a new image, whose contents are undefined.
+     * @throws jjil.core.Error if the image is not a Gray8Image, Gray16Image,
+     * Gray32Image, or RgbImage.
+     */
+    private Image newImage(Image image, int nRows) throws jjil.core.Error {
+        int cWidth = image.getWidth();
+        if (image instanceof Gray8Image) {
+            return this.pool.getGray8Image(cWidth, nRows);
+        } else if (image instanceof Gray16Image) {
+            return this.pool.getGray16Image(cWidth, nRows);
+        } else if (image instanceof Gray32Image) {
+            return this.pool.getGray32Image(cWidth, nRows);
+        } else if (image instanceof RgbImage) {
+            return this.pool.getRgbImage(cWidth, nRows);
+        }
+        throw new Error(
+                        Error.PACKAGE.CORE,
+                        ErrorCodes.ILLEGAL_PARAMETER_VALUE,
+                        image.toString(),
+                        null,
+                        null);
+    }
+
+    /**
+     * Stream an image through the pipeline. All the rows are read from the
+     * reader, and all the output rows are written to the writer, in order,
+     * before run returns.
+     * @param reader supplies the input image.
+     * @param writer receives the output image.
+     * @throws jjil.core.Error if the reader returns rows of the wrong size,
+     * or a stage or the writer throws it.
+     */
+    public void run(RowReader reader, RowWriter writer) throws jjil.core.Error {
+        this.cHeight = reader.getHeight();
+        for (int i=0; i<this.rStage.length; i++) {
+            this.rImageBuf[i] = null;
+            this.rnBufFirst[i] = 0;
+            this.rnNextOut[i] = 0;
+        }
+        try {
+            int nRow = 0;
+            while (nRow < this.cHeight) {
+                int nRows = Math.min(this.nChunkRows, this.cHeight - nRow);
+                Image image = reader.readRows(nRows);
+                if (image.getWidth() != reader.getWidth() ||
+                    image.getHeight() != nRows) {
+                    throw new Error(
+                                    Error.PACKAGE.CORE,
+                                    ErrorCodes.ILLEGAL_PARAMETER_VALUE,
+                                    image.toString(),
+                                    new Integer(nRows).toString(),
+                                    null);
+                }
+                feed(0, image, 0, nRows, writer);
+                nRow += nRows;
+            }
+        } finally {
+            for (int i=0; i<this.rStage.length; i++) {
+                this.pool.release(this.rImageBuf[i]);
+                this.rImageBuf[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Set the number of rows read from the RowReader at a time. Larger
+     * chunks have less overhead; smaller chunks use less memory.
+     * @param nChunkRows the chunk size, in rows. Default is 32.
+     * @throws jjil.core.Error if nChunkRows is not positive.
+     */
+    public void setChunkRows(int nChunkRows) throws jjil.core.Error {
+        if (nChunkRows <= 0) {
+            throw new Error(
+                            Error.PACKAGE.CORE,
+                            ErrorCodes.ILLEGAL_PARAMETER_VALUE,
+                            new Integer(nChunkRows).toString(),
+                            "1", //$NON-NLS-1$
+                            null);
+        }
+        this.nChunkRows = nChunkRows;
+    }
+}
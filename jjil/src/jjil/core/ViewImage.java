@@ -0,0 +1,155 @@
+/*
+ * ViewImage.java
+ *
+ * Copyright 2026 by Jon A. Webb
+ *     This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the Lesser GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package jjil.core;
+
+/**
+ * ViewImage is a rectangular window in a larger image that shares the larger
+ * image's pixels instead of copying them. Pixel (x,y) of the view is
+ * getData()[getOffset() + y * getStride() + x], where getData is defined by
+ * the subclass for its pixel type (see Gray8ViewImage, Gray16ViewImage and
+ * RgbViewImage). Creating a view, or moving it with setPosition, takes
+ * constant time no matter how large the window is, and changes to the pixels
+ * of the view change the larger image.
+ * @author webb
+ */
+public abstract class ViewImage extends Image {
+    private final int nBase;        // offset of pixel (0,0) of the larger image
+    private final int nStride;      // row stride of the larger image
+    private final int nParentWidth; // width of the larger image
+    private final int nParentHeight; // height of the larger image
+    private int cX;                 // left edge of the view in the larger image
+    private int cY;                 // top edge of the view in the larger image
+
+    /**
+     * Creates a new instance of ViewImage.
+     * @param nBase the offset of pixel (0,0) of the larger image in its
+     * pixel array.
+     * @param nStride the row stride of the larger image in its pixel array.
+     * @param nParentWidth the width of the larger image.
+     * @param nParentHeight the height of the larger image.
+     * @param cX horizontal position of the top-left corner of the window.
+     * @param cY vertical position of the top-left corner of the window.
+     * @param cWidth window width.
+     * @param cHeight window height.
+     * @throws jjil.core.Error if the window extends outside the larger image.
+     */
+    protected ViewImage(
+            int nBase,
+            int nStride,
+            int nParentWidth,
+            int nParentHeight,
+            int cX,
+            int cY,
+            int cWidth,
+            int cHeight) throws jjil.core.Error {
+        super(cWidth, cHeight);
+        this.nBase = nBase;
+        this.nStride = nStride;
+        this.nParentWidth = nParentWidth;
+        this.nParentHeight = nParentHeight;
+        setPosition(cX, cY);
+    }
+
+    /**
+     * Copy the rows of the view out of the larger image's pixels into a
+     * dense array of width &times; height pixels.
+     * @param oSrc the pixels of the larger image.
+     * @param oDst the array to copy into, of the same type as oSrc.
+     */
+    protected void copyRows(Object oSrc, Object oDst) {
+        int nSrc = getOffset();
+        for (int i=0; i<getHeight(); i++) {
+            System.arraycopy(
+                    oSrc,
+                    nSrc,
+                    oDst,
+                    i * getWidth(),
+                    getWidth());
+            nSrc += this.nStride;
+        }
+    }
+
+    /**
+     * Returns the offset of the top-left pixel of the view in getData().
+     * @return the offset of pixel (0,0).
+     */
+    public int getOffset() {
+        return this.nBase + this.cY * this.nStride + this.cX;
+    }
+
+    /**
+     * Returns the row stride of getData(): the difference in offset between
+     * a pixel and the pixel below it.
+     * @return the row stride.
+     */
+    public int getStride() {
+        return this.nStride;
+    }
+
+    /**
+     * Get horizontal position of the view in the larger image.
+     * @return the horizontal position of the top-left corner of the view.
+     */
+    public int getXOffset()
+    {
+        return this.cX;
+    }
+
+    /**
+     * Get vertical position of the view in the larger image.
+     * @return the vertical position of the top-left corner of the view.
+     */
+    public int getYOffset()
+    {
+        return this.cY;
+    }
+
+    /**
+     * Move the view to a new position in the larger image. The size doesn't
+     * change.
+     * @param cX the new horizontal position of the top-left corner.
+     * @param cY the new vertical position of the top-left corner.
+     * @throws jjil.core.Error if the view would extend outside the larger image.
+     */
+    public void setPosition(int cX, int cY) throws jjil.core.Error {
+        if (cX < 0 || cY < 0 ||
+            cX + getWidth() > this.nParentWidth ||
+            cY + getHeight() > this.nParentHeight) {
+            throw new Error(
+                            Error.PACKAGE.CORE,
+                            ErrorCodes.BOUNDS_OUTSIDE_IMAGE,
+                            new Integer(cX).toString(),
+                            new Integer(cY).toString(),
+                            this.toString());
+        }
+        this.cX = cX;
+        this.cY = cY;
+    }
+
+    /** Return a string describing the image.
+     *
+     * @return the string.
+     */
+    public String toString()
+    {
+        return super.toString() + " (" + getWidth() + "x" + getHeight() + //$NON-NLS-1$ //$NON-NLS-2$
+                "," + getXOffset() + "," + getYOffset() + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+}